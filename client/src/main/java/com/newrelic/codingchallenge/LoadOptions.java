@@ -0,0 +1,214 @@
+package com.newrelic.codingchallenge;
+
+// Command line options for the load generator, passed as --name=value. With no
+// options it behaves like the old client: five connections to localhost:4000
+// each sending about 250,000 random numbers a second, forever.
+public class LoadOptions {
+    public enum Format {
+        // nine digits and a newline per number
+        TEXT,
+        // the negotiated binary protocol: frames of 4-byte big-endian numbers
+        BINARY
+    }
+
+    public enum Distribution {
+        // every number in the space equally likely
+        UNIFORM,
+        // each connection counts up through its own slice of the space, so
+        // nothing repeats except what --duplicate-ratio adds
+        SEQUENTIAL,
+        // a few keys very hot and a long tail, over --key-space numbers
+        ZIPF
+    }
+
+    private String _host = "localhost";
+    private int _port = 4000;
+    private int _connections = 5;
+    private long _rate = 250000;
+    private long _count = 0;
+    private int _durationSeconds = 0;
+    private double _duplicateRatio = 0;
+    private Distribution _distribution = Distribution.UNIFORM;
+    private int _keySpace = 1000000;
+    private boolean _terminate = false;
+    private int _bufferKilobytes = 64;
+    private Format _format = Format.TEXT;
+    private String _captureDir = null;
+
+    public static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException(String.format("Expected an option like --name=value: %s", arg));
+            }
+
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+
+            switch (name) {
+            case "host":
+                options._host = value;
+                break;
+            case "port":
+                options._port = (int) parseLong(name, value, 1, 65535);
+                break;
+            case "connections":
+                options._connections = (int) parseLong(name, value, 1, 1000);
+                break;
+            case "rate":
+                options._rate = parseLong(name, value, 0, Long.MAX_VALUE);
+                break;
+            case "count":
+                options._count = parseLong(name, value, 0, Long.MAX_VALUE);
+                break;
+            case "duration-seconds":
+                options._durationSeconds = (int) parseLong(name, value, 0, Integer.MAX_VALUE);
+                break;
+            case "duplicate-ratio":
+                options._duplicateRatio = parseRatio(name, value);
+                break;
+            case "distribution":
+                options._distribution = parseEnum(Distribution.class, name, value);
+                break;
+            case "key-space":
+                options._keySpace = (int) parseLong(name, value, 1, PayloadGenerator.NUMBER_SPACE);
+                break;
+            case "terminate":
+                options._terminate = parseBoolean(name, value);
+                break;
+            case "format":
+                options._format = parseEnum(Format.class, name, value);
+                break;
+            case "capture-dir":
+                options._captureDir = value;
+                break;
+            case "buffer-kb":
+                options._bufferKilobytes = (int) parseLong(name, value, 1, 64 * 1024);
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown option: --%s", name));
+            }
+        }
+
+        return options;
+    }
+
+    public String getHost() {
+        return _host;
+    }
+
+    public int getPort() {
+        return _port;
+    }
+
+    public int getConnections() {
+        return _connections;
+    }
+
+    // numbers per second per connection; 0 sends as fast as the socket takes them
+    public long getRate() {
+        return _rate;
+    }
+
+    // numbers to send per connection; 0 for no limit
+    public long getCount() {
+        return _count;
+    }
+
+    // how long to run; 0 for no limit
+    public int getDurationSeconds() {
+        return _durationSeconds;
+    }
+
+    // the fraction of numbers that repeat one the connection already sent
+    public double getDuplicateRatio() {
+        return _duplicateRatio;
+    }
+
+    public Distribution getDistribution() {
+        return _distribution;
+    }
+
+    public int getKeySpace() {
+        return _keySpace;
+    }
+
+    // send "terminate" once every connection has finished
+    public boolean isTerminate() {
+        return _terminate;
+    }
+
+    public int getBufferSize() {
+        return _bufferKilobytes * 1024;
+    }
+
+    public Format getFormat() {
+        return _format;
+    }
+
+    // write each connection's bytes to a file in this directory instead of
+    // sending them, for the server's --replay; null to send as usual
+    public String getCaptureDir() {
+        return _captureDir;
+    }
+
+    private static long parseLong(String name, String value, long min, long max) {
+        long parsed;
+
+        try {
+            parsed = Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("--%s must be a number: %s", name, value));
+        }
+
+        if (parsed < min || parsed > max) {
+            throw new IllegalArgumentException(
+                    String.format("--%s must be between %d and %d: %d", name, min, max, parsed));
+        }
+
+        return parsed;
+    }
+
+    private static double parseRatio(String name, String value) {
+        double parsed;
+
+        try {
+            parsed = Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("--%s must be a number: %s", name, value));
+        }
+
+        if (parsed < 0 || parsed > 1) {
+            throw new IllegalArgumentException(String.format("--%s must be between 0 and 1: %s", name, value));
+        }
+
+        return parsed;
+    }
+
+    private static boolean parseBoolean(String name, String value) {
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+
+        throw new IllegalArgumentException(String.format("--%s must be true or false: %s", name, value));
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String name, String value) {
+        StringBuilder names = new StringBuilder();
+
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equalsIgnoreCase(value)) {
+                return constant;
+            }
+
+            names.append(names.length() == 0 ? "" : ", ").append(constant.name().toLowerCase());
+        }
+
+        throw new IllegalArgumentException(String.format("--%s must be one of %s: %s", name, names, value));
+    }
+}
@@ -1,19 +1,106 @@
 package com.newrelic.codingchallenge;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 public class Main {
 
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
         Logger logger = Logger.getGlobal();
-        ScheduledExecutorService service = Executors.newScheduledThreadPool(5);
+        AtomicBoolean stopSignal = new AtomicBoolean();
+        List<NumberWriter> writers = new ArrayList<>();
 
-        for (int i = 0; i < 5; i++) {
-            service.scheduleAtFixedRate(new NumberWriter(logger), 0, 1, TimeUnit.SECONDS);
+        logger.info(String.format("Sending %s to %s over %d connections at %s",
+                options.getFormat().toString().toLowerCase(),
+                options.getCaptureDir() != null ? options.getCaptureDir()
+                        : String.format("%s:%d", options.getHost(), options.getPort()),
+                options.getConnections(),
+                options.getRate() > 0 ? String.format("%d numbers/sec each", options.getRate()) : "full speed"));
+
+        if (options.getCaptureDir() != null) {
+            Files.createDirectories(Paths.get(options.getCaptureDir()));
+        }
+
+        ExecutorService writerService = Executors.newFixedThreadPool(options.getConnections());
+
+        for (int i = 0; i < options.getConnections(); i++) {
+            NumberWriter writer = new NumberWriter(options, i, stopSignal, logger);
+            writers.add(writer);
+            writerService.execute(writer);
         }
+
+        writerService.shutdown();
+
+        // report how fast each connection is going every second
+        ScheduledExecutorService reporterService = Executors.newScheduledThreadPool(1);
+        reporterService.scheduleAtFixedRate(() -> report(writers, logger), 1, 1, TimeUnit.SECONDS);
+
+        if (options.getDurationSeconds() > 0) {
+            if (!writerService.awaitTermination(options.getDurationSeconds(), TimeUnit.SECONDS)) {
+                stopSignal.set(true);
+            }
+        }
+
+        writerService.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        reporterService.shutdownNow();
+
+        logger.info("Finished");
+        report(writers, logger);
+
+        // a capture is replayed to the end, so it has no use for a terminate
+        if (options.isTerminate() && options.getCaptureDir() == null) {
+            sendTerminate(options, logger);
+        }
+    }
+
+    private static void report(List<NumberWriter> writers, Logger logger) {
+        long total = 0;
+        double throughput = 0;
+
+        for (NumberWriter writer : writers) {
+            total += writer.sent();
+            throughput += writer.throughput();
+
+            logger.info(String.format("Connection %d: %d numbers, %.0f numbers/sec", writer.connection(),
+                    writer.sent(), writer.throughput()));
+        }
+
+        logger.info(String.format("Total: %d numbers, %.0f numbers/sec", total, throughput));
+    }
+
+    private static void sendTerminate(LoadOptions options, Logger logger) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(
+                new InetSocketAddress(options.getHost(), options.getPort()))) {
+            ByteBuffer terminate;
+
+            if (options.getFormat() == LoadOptions.Format.BINARY) {
+                byte[] handshake = PayloadGenerator.HANDSHAKE.getBytes(StandardCharsets.US_ASCII);
+
+                terminate = ByteBuffer.allocate(handshake.length + Integer.BYTES);
+                terminate.put(handshake).putInt(PayloadGenerator.BINARY_TERMINATE).flip();
+            } else {
+                terminate = ByteBuffer.wrap("terminate\n".getBytes(StandardCharsets.US_ASCII));
+            }
+
+            while (terminate.hasRemaining()) {
+                channel.write(terminate);
+            }
+        }
+
+        logger.info("Sent terminate");
     }
 }
@@ -1,35 +1,125 @@
 package com.newrelic.codingchallenge;
 
-import java.io.DataOutputStream;
-import java.net.Socket;
-import java.util.Random;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
+// One persistent connection to the server, sending buffer after buffer of
+// records until it has sent its count, the run is stopped, or the server hangs
+// up. With a rate set, buffers are paced so the connection averages that many
+// numbers a second; otherwise it writes as fast as the socket drains.
+//
+// With --capture-dir, the same bytes go to connection-N.cap in that directory
+// instead, for replaying into the server later.
 public class NumberWriter implements Runnable {
-    public static int MAX_RANDOM = 999999999;
-
+    private final LoadOptions _options;
+    private final int _connection;
+    private final PayloadGenerator _generator;
+    private final AtomicBoolean _stopSignal;
     private final Logger _logger;
-    private final Random _random;
+    private final AtomicLong _sent;
+    private final AtomicLong _bytes;
+    private volatile long _startNanos;
+    private volatile long _endNanos;
 
-    public NumberWriter(final Logger logger) {
+    public NumberWriter(LoadOptions options, int connection, AtomicBoolean stopSignal, Logger logger) {
+        _options = options;
+        _connection = connection;
+        _generator = new PayloadGenerator(options, connection, System.nanoTime() + connection);
+        _stopSignal = stopSignal;
         _logger = logger;
-        _random = new Random();
+        _sent = new AtomicLong();
+        _bytes = new AtomicLong();
     }
 
     @Override
     public void run() {
-        try (Socket socket = new Socket("localhost", 4000)) {
-            DataOutputStream outputStream = new DataOutputStream(socket.getOutputStream());
+        ByteBuffer buffer = ByteBuffer.allocateDirect(_options.getBufferSize());
+        long limit = _options.getCount() > 0 ? _options.getCount() : Long.MAX_VALUE;
+        long rate = _options.getRate();
+
+        try (WritableByteChannel channel = open()) {
+            _startNanos = System.nanoTime();
 
-            for (int i = 0; i <= 250000; i++) {
-                final String nextRandom = String.format("%09d", _random.nextInt(MAX_RANDOM));
-                outputStream.writeBytes(String.format("%s\n", nextRandom));
+            if (_options.getFormat() == LoadOptions.Format.BINARY) {
+                write(channel, ByteBuffer.wrap(PayloadGenerator.HANDSHAKE.getBytes(StandardCharsets.US_ASCII)));
             }
 
-            _logger.info("Wrote 250,000 numbers to socket");
-            outputStream.close();
-        } catch (Exception ex) {
-            _logger.severe(String.format("Error writing to socket: %s", ex.getMessage()));
+            while (!_stopSignal.get() && _sent.get() < limit) {
+                int records = _generator.fill(buffer, limit - _sent.get());
+                int bytes = buffer.remaining();
+
+                write(channel, buffer);
+
+                long sent = _sent.addAndGet(records);
+                _bytes.addAndGet(bytes);
+
+                if (rate > 0) {
+                    // wait until this connection is back on schedule
+                    long due = _startNanos + TimeUnit.SECONDS.toNanos(sent) / rate;
+                    long wait;
+
+                    while ((wait = due - System.nanoTime()) > 0 && !_stopSignal.get()) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            _logger.severe(String.format("Connection %d: error writing: %s", _connection, ex.getMessage()));
+        } finally {
+            _endNanos = System.nanoTime();
+        }
+    }
+
+    private WritableByteChannel open() throws IOException {
+        if (_options.getCaptureDir() != null) {
+            return FileChannel.open(
+                    Paths.get(_options.getCaptureDir(), String.format("connection-%d.cap", _connection)),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        return SocketChannel.open(new InetSocketAddress(_options.getHost(), _options.getPort()));
+    }
+
+    private static void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
         }
     }
+
+    public int connection() {
+        return _connection;
+    }
+
+    public long sent() {
+        return _sent.get();
+    }
+
+    public long bytes() {
+        return _bytes.get();
+    }
+
+    // numbers per second since the connection opened
+    public double throughput() {
+        long start = _startNanos;
+
+        if (start == 0) {
+            return 0;
+        }
+
+        long end = _endNanos != 0 ? _endNanos : System.nanoTime();
+
+        return _sent.get() * 1e9 / Math.max(1, end - start);
+    }
 }
@@ -0,0 +1,128 @@
+package com.newrelic.codingchallenge;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+// Fills buffers with ready-to-send records - nine zero-padded digits and a
+// newline - without creating a single string. Each connection has its own
+// generator, so nothing here is shared between threads.
+//
+// In the binary format each buffer is one frame instead: a 4-byte big-endian
+// count, then that many 4-byte big-endian numbers. The connection has to send
+// HANDSHAKE first.
+//
+// Duplicates are exact: with probability `duplicateRatio` a record repeats one
+// of the last HISTORY numbers this generator produced instead of drawing a new
+// one from the distribution.
+public class PayloadGenerator {
+    public static final int NUMBER_SPACE = 1_000_000_000;
+    public static final int RECORD_SIZE = 10;
+    public static final int BINARY_RECORD_SIZE = 4;
+    public static final String HANDSHAKE = "BINARY/1\n";
+    public static final int MAX_FRAME_NUMBERS = 1 << 16;
+    public static final int BINARY_TERMINATE = -1;
+
+    private static final int HISTORY = 1 << 16;
+
+    private final SplittableRandom _random;
+    private final LoadOptions.Format _format;
+    private final LoadOptions.Distribution _distribution;
+    private final double _duplicateRatio;
+    private final int[] _history;
+    private final ZipfGenerator _zipf;
+    private final byte[] _record;
+    private int _historySize;
+    private int _historyNext;
+    private int _sequence;
+    private int _sequenceStart;
+    private int _sequenceEnd;
+
+    public PayloadGenerator(LoadOptions options, int connection, long seed) {
+        _random = new SplittableRandom(seed);
+        _format = options.getFormat();
+        _distribution = options.getDistribution();
+        _duplicateRatio = options.getDuplicateRatio();
+        _history = new int[HISTORY];
+        _zipf = _distribution == LoadOptions.Distribution.ZIPF ? new ZipfGenerator(options.getKeySpace()) : null;
+        _record = new byte[RECORD_SIZE];
+        _record[RECORD_SIZE - 1] = '\n';
+
+        // sequential connections each count through their own slice of the space
+        int slice = NUMBER_SPACE / options.getConnections();
+        _sequenceStart = connection * slice;
+        _sequenceEnd = _sequenceStart + slice;
+        _sequence = _sequenceStart;
+    }
+
+    // fills the buffer with as many whole records as fit, leaves it flipped
+    // and ready to write, and returns the number of records
+    public int fill(ByteBuffer buffer, long maxRecords) {
+        buffer.clear();
+
+        if (_format == LoadOptions.Format.BINARY) {
+            return fillFrame(buffer, maxRecords);
+        }
+
+        int records = (int) Math.min(buffer.remaining() / RECORD_SIZE, maxRecords);
+
+        for (int i = 0; i < records; i++) {
+            encode(next());
+            buffer.put(_record);
+        }
+
+        buffer.flip();
+        return records;
+    }
+
+    private int fillFrame(ByteBuffer buffer, long maxRecords) {
+        int records = (int) Math.min(Math.min(buffer.remaining() / BINARY_RECORD_SIZE - 1, maxRecords),
+                MAX_FRAME_NUMBERS);
+
+        buffer.putInt(records);
+
+        for (int i = 0; i < records; i++) {
+            buffer.putInt(next());
+        }
+
+        buffer.flip();
+        return records;
+    }
+
+    public int next() {
+        if (_historySize > 0 && _duplicateRatio > 0 && _random.nextDouble() < _duplicateRatio) {
+            return _history[_random.nextInt(_historySize)];
+        }
+
+        int number;
+
+        switch (_distribution) {
+        case SEQUENTIAL:
+            number = _sequence++;
+
+            // a slice that's used up starts over, so from then on it only repeats
+            if (_sequence == _sequenceEnd) {
+                _sequence = _sequenceStart;
+            }
+
+            break;
+        case ZIPF:
+            number = _zipf.next(_random);
+            break;
+        default:
+            number = _random.nextInt(NUMBER_SPACE);
+        }
+
+        _history[_historyNext] = number;
+        _historyNext = (_historyNext + 1) & (HISTORY - 1);
+        _historySize = Math.min(_historySize + 1, HISTORY);
+
+        return number;
+    }
+
+    private void encode(int number) {
+        for (int i = RECORD_SIZE - 2; i >= 0; i--) {
+            _record[i] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+    }
+}
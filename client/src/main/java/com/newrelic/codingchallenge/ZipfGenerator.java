@@ -0,0 +1,83 @@
+package com.newrelic.codingchallenge;
+
+import java.util.SplittableRandom;
+
+// Draws numbers from [0, n) with a Zipfian distribution: 0 is the hottest key,
+// 1 the next, and so on down a long tail. Uses the constant-time approximation
+// from Gray et al., "Quickly Generating Billion-Record Synthetic Databases".
+// The normalizing constant, zeta(n) = sum of 1 / i^theta for i up to n, is
+// summed directly for the first EXACT_TERMS terms and estimated for the rest,
+// so building a generator over the whole number space is as quick as over a
+// small one.
+//
+// Hot keys are scattered across the number space rather than bunched at the
+// bottom of it, which would put them all in one server shard.
+public class ZipfGenerator {
+    private static final double THETA = 0.99;
+    private static final int EXACT_TERMS = 1000;
+
+    private final int _n;
+    private final double _alpha;
+    private final double _zetaN;
+    private final double _eta;
+    private final double _halfPowTheta;
+
+    public ZipfGenerator(int n) {
+        double zeta2 = 1 + Math.pow(0.5, THETA);
+        double zetaN = zeta(n);
+
+        _n = n;
+        _alpha = 1 / (1 - THETA);
+        _zetaN = zetaN;
+        _eta = (1 - Math.pow(2.0 / n, 1 - THETA)) / (1 - zeta2 / zetaN);
+        _halfPowTheta = 1 + Math.pow(0.5, THETA);
+    }
+
+    // the terms past EXACT_TERMS come from the Euler-Maclaurin formula: the
+    // integral of x^-theta plus end corrections, which is within about 1e-12 of
+    // the sum that far out
+    static double zeta(int n) {
+        double sum = 0;
+
+        for (int i = 1; i <= Math.min(n, EXACT_TERMS); i++) {
+            sum += 1 / Math.pow(i, THETA);
+        }
+
+        if (n <= EXACT_TERMS) {
+            return sum;
+        }
+
+        double a = EXACT_TERMS;
+        double b = n;
+
+        // sum over (a, b] = integral from a to b + (f(b) - f(a)) / 2 + (f'(b) - f'(a)) / 12
+        return sum + (Math.pow(b, 1 - THETA) - Math.pow(a, 1 - THETA)) / (1 - THETA)
+                + (Math.pow(b, -THETA) - Math.pow(a, -THETA)) / 2
+                - THETA * (Math.pow(b, -THETA - 1) - Math.pow(a, -THETA - 1)) / 12;
+    }
+
+    public int next(SplittableRandom random) {
+        double u = random.nextDouble();
+        double uz = u * _zetaN;
+        int rank;
+
+        if (uz < 1) {
+            rank = 0;
+        } else if (uz < _halfPowTheta) {
+            rank = 1;
+        } else {
+            rank = (int) Math.min(_n - 1, (long) (_n * Math.pow(_eta * u - _eta + 1, _alpha)));
+        }
+
+        return scatter(rank);
+    }
+
+    // spreads ranks over the whole number space with a multiplicative hash. Folding
+    // the 32-bit hash into the space can merge the odd pair of ranks, which makes
+    // no difference to the load.
+    private static int scatter(int rank) {
+        long hashed = (rank * 0x9E3779B1L) & 0xFFFFFFFFL;
+
+        return (int) (hashed % PayloadGenerator.NUMBER_SPACE);
+    }
+}
@@ -0,0 +1,75 @@
+package com.newrelic.codingchallenge;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Parsing cost of NumberListener.handleSocketInput: one socket read's worth of
+// records decoded and published to the read queue. The queue is drained after
+// every read so it never fills up.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ListenerBenchmark {
+    // one 8 KB socket read holds this many 10-byte records
+    private static final int RECORDS = 819;
+
+    private ByteArrayInputStream _input;
+    private IntRingBuffer _readQueue;
+    private NumberListener _listener;
+    private NumberDecoder _decoder;
+    private byte[] _bytes;
+    private int[] _drained;
+    private NumberDecoder.Handler _handler;
+    private int _sum;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        StringBuilder records = new StringBuilder();
+
+        for (int i = 0; i < RECORDS; i++) {
+            records.append(String.format("%09d\n", random.nextInt(OffHeapNumberSet.NUMBER_SPACE)));
+        }
+
+        _bytes = records.toString().getBytes(StandardCharsets.US_ASCII);
+        _input = new ByteArrayInputStream(_bytes);
+        _readQueue = IntRingBuffer.multiProducer(1024, new BusySpinWaitStrategy());
+        _listener = new NumberListener(new Socket(), new ReadRouter(_readQueue),
+                new FlowControl(75, 25, new BusySpinWaitStrategy(), _readQueue), new TerminationSignal(),
+                new MetricsRegistry(), Logger.getGlobal());
+        _decoder = new NumberDecoder();
+        _drained = new int[1024];
+        _handler = number -> _sum += number;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int handleSocketInput() throws IOException {
+        _input.reset();
+        _listener.handleSocketInput(_input);
+
+        return _readQueue.drain(_drained);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int decodeOnly() {
+        _decoder.decode(_bytes, 0, _bytes.length, _handler);
+
+        return _sum;
+    }
+}
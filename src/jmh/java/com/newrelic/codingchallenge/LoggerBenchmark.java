@@ -0,0 +1,103 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// NumberLogger.evaluateQueue: encoding a batch of uniques and writing them out.
+// "discard" measures encoding alone; "channel" and "mapped" also write to a
+// temporary file through the matching LogOutput. "format" picks the text lines or
+// the sorted varint segments.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoggerBenchmark {
+    private static final int BATCH = 4096;
+
+    @Param({ "discard", "channel", "mapped" })
+    public String output;
+
+    @Param({ "text", "segments" })
+    public String format;
+
+    private Path _file;
+    private IntRingBuffer _logQueue;
+    private NumberLogger _logger;
+    private int[] _batch;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+
+        _batch = new int[BATCH];
+
+        for (int i = 0; i < BATCH; i++) {
+            _batch[i] = random.nextInt(OffHeapNumberSet.NUMBER_SPACE);
+        }
+
+        _file = Files.createTempFile("numbers", ".log");
+        _logQueue = IntRingBuffer.singleProducer(BATCH, new BusySpinWaitStrategy());
+        _logger = new NumberLogger(openOutput(),
+                format.equals("segments") ? new SegmentLogEncoder() : new TextLogEncoder(),
+                new FlushPolicy(Long.MAX_VALUE, FlushPolicy.SyncMode.NEVER), _logQueue, new AtomicBoolean(),
+                new MetricsRegistry(), Logger.getGlobal());
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        _logger.flush(false);
+        Files.deleteIfExists(_file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int evaluateQueue() throws IOException, InterruptedException {
+        _logQueue.publish(_batch, 0, BATCH);
+
+        return _logger.evaluateQueue();
+    }
+
+    private LogOutput openOutput() throws IOException {
+        switch (output) {
+        case "channel":
+            return new ChannelLogOutput(FileChannel.open(_file, StandardOpenOption.WRITE));
+        case "mapped":
+            return new MappedLogOutput(FileChannel.open(_file, StandardOpenOption.READ, StandardOpenOption.WRITE),
+                    64 * 1024 * 1024);
+        default:
+            return new LogOutput() {
+                @Override
+                public void write(ByteBuffer buffer) {
+                    buffer.position(buffer.limit());
+                }
+
+                @Override
+                public void flush(boolean sync) {
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.newrelic.codingchallenge;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Range counts against a set holding ten million random numbers, over ranges of
+// a given width starting at random points - the rank index is what keeps the
+// wide ones from having to popcount every word they cover.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryBenchmark {
+    private static final int NUMBERS = 10_000_000;
+
+    @Param({ "1000", "1000000", "1000000000" })
+    public int width;
+
+    private SplittableRandom _random;
+    private OffHeapNumberSet _seenNumbers;
+
+    @Setup
+    public void setup() {
+        _random = new SplittableRandom(42);
+        _seenNumbers = new OffHeapNumberSet();
+
+        for (int i = 0; i < NUMBERS; i++) {
+            _seenNumbers.add(_random.nextInt(OffHeapNumberSet.NUMBER_SPACE));
+        }
+    }
+
+    @Benchmark
+    public long count() {
+        int from = _random.nextInt(OffHeapNumberSet.NUMBER_SPACE - width + 1);
+
+        return _seenNumbers.count(from, from + width - 1);
+    }
+}
@@ -0,0 +1,137 @@
+package com.newrelic.codingchallenge;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// Handoff from 1-5 producer threads (the listeners) to a single consumer (the
+// reader). Producers run flat out on their own threads for the whole iteration;
+// the score is how many numbers per microsecond the consumer takes off the queue.
+//
+// "ring" is the IntRingBuffer the pipeline uses, with 82-number batches like a
+// listener publishing one 8 KB read at a time (819 records split ten ways keeps
+// several producers interleaving). "clq" is the ConcurrentLinkedQueue<Integer>
+// it replaced, one boxed number at a time.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueueBenchmark {
+    private static final int PRODUCER_BATCH = 82;
+    private static final int CONSUMED = 4096;
+    private static final int MAX_BACKLOG = 1 << 16;
+
+    @Param({ "1", "2", "3", "4", "5" })
+    public int producers;
+
+    @Param({ "ring", "clq" })
+    public String queue;
+
+    private IntRingBuffer _ring;
+    private ConcurrentLinkedQueue<Integer> _linkedQueue;
+    private Thread[] _threads;
+    private volatile boolean _running;
+    private int[] _drained;
+    private AtomicLong _produced;
+    private volatile long _consumed;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        _ring = IntRingBuffer.multiProducer(1 << 16, new YieldingWaitStrategy());
+        _linkedQueue = new ConcurrentLinkedQueue<>();
+        _drained = new int[CONSUMED];
+        _produced = new AtomicLong();
+        _consumed = 0;
+        _running = true;
+        _threads = new Thread[producers];
+
+        for (int p = 0; p < producers; p++) {
+            _threads[p] = new Thread(this::produce);
+            _threads[p].setDaemon(true);
+            _threads[p].start();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void teardown() throws InterruptedException {
+        _running = false;
+
+        for (Thread thread : _threads) {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONSUMED)
+    public int consume() {
+        int sum = 0;
+        int count = 0;
+
+        while (count < CONSUMED && _running) {
+            if (queue.equals("ring")) {
+                // never past CONSUMED, or the score would count numbers the
+                // invocation didn't declare
+                int drained = _ring.drain(_drained, 0, CONSUMED - count);
+
+                for (int i = 0; i < drained; i++) {
+                    sum += _drained[i];
+                }
+
+                count += drained;
+            } else {
+                Integer number = _linkedQueue.poll();
+
+                if (number != null) {
+                    sum += number;
+                    count++;
+                }
+            }
+
+            if (count == 0) {
+                Thread.onSpinWait();
+            }
+        }
+
+        _consumed += count;
+        return sum;
+    }
+
+    private void produce() {
+        int[] batch = new int[PRODUCER_BATCH];
+
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = i;
+        }
+
+        try {
+            while (_running) {
+                if (queue.equals("ring")) {
+                    _ring.publish(batch, 0, batch.length);
+                } else if (_produced.get() - _consumed < MAX_BACKLOG) {
+                    // keep the unbounded queue about as deep as the ring, or it
+                    // would measure the garbage collector instead
+                    for (int number : batch) {
+                        _linkedQueue.add(number);
+                    }
+
+                    _produced.addAndGet(batch.length);
+                } else {
+                    Thread.yield();
+                }
+            }
+        } catch (InterruptedException ex) {
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// NumberReader.evaluateQueue against a seen set that's already a given fraction
+// full. Each invocation dedups one batch of uniformly random numbers; the log
+// queue is drained afterwards so the reader never waits on it.
+//
+// The set is filled by setting exactly `fill` of the bits in every 2^23-bit
+// chunk of the space, scattered by an odd multiplier, rather than by adding
+// random numbers - those repeat, so adding fill * 10^9 of them leaves the set
+// only 1 - e^-fill full. The reader adds every number it hasn't seen, so the
+// set is put back before each iteration; within one, at about 10 numbers per
+// microsecond over 2 s, it drifts up by at most 2 percentage points.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReaderBenchmark {
+    private static final int BATCH = 4096;
+    private static final int CHUNK_BITS = 1 << 23;
+
+    @Param({ "0.0", "0.1", "0.5", "0.9" })
+    public double fill;
+
+    private SplittableRandom _random;
+    private OffHeapNumberSet _seenNumbers;
+    private ByteBuffer _chunk;
+    private IntRingBuffer _readQueue;
+    private IntRingBuffer _logQueue;
+    private NumberReader _reader;
+    private int[] _batch;
+    private int[] _drained;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        _random = new SplittableRandom(42);
+        _seenNumbers = new OffHeapNumberSet();
+        _chunk = chunk(fill);
+        _readQueue = IntRingBuffer.multiProducer(BATCH, new BusySpinWaitStrategy());
+        _logQueue = IntRingBuffer.singleProducer(BATCH, new BusySpinWaitStrategy());
+        _reader = new NumberReader(_readQueue, _logQueue, new DedupCounters(1, 0).stripe(0), _seenNumbers,
+                new AtomicBoolean(), new MetricsRegistry(), Logger.getGlobal());
+        _batch = new int[BATCH];
+        _drained = new int[BATCH];
+    }
+
+    @Setup(Level.Iteration)
+    public void fillSet() throws IOException {
+        _seenNumbers.readFrom(new RepeatingChannel(_chunk));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int evaluateQueue() throws InterruptedException {
+        for (int i = 0; i < BATCH; i++) {
+            _batch[i] = _random.nextInt(OffHeapNumberSet.NUMBER_SPACE);
+        }
+
+        _readQueue.publish(_batch, 0, BATCH);
+        _reader.evaluateQueue();
+
+        return _logQueue.drain(_drained);
+    }
+
+    // the words of one chunk with (int) (fill * CHUNK_BITS) bits set, in the
+    // order OffHeapNumberSet.readFrom expects
+    private static ByteBuffer chunk(double fill) {
+        long[] words = new long[CHUNK_BITS / 64];
+        int set = (int) (fill * CHUNK_BITS);
+
+        // i -> i * odd is a permutation of the chunk, so exactly `set` bits map
+        // below the threshold, spread all over it
+        for (int i = 0; i < CHUNK_BITS; i++) {
+            if (((i * 0x9E3779B1) & (CHUNK_BITS - 1)) < set) {
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_BITS / 8).order(ByteOrder.nativeOrder());
+        chunk.asLongBuffer().put(words);
+
+        return chunk;
+    }
+
+    // the chunk over and over, for as long as the set reads
+    private static class RepeatingChannel implements ReadableByteChannel {
+        private final ByteBuffer _chunk;
+
+        RepeatingChannel(ByteBuffer chunk) {
+            _chunk = chunk.duplicate();
+        }
+
+        @Override
+        public int read(ByteBuffer into) {
+            int read = 0;
+
+            while (into.hasRemaining()) {
+                if (!_chunk.hasRemaining()) {
+                    _chunk.rewind();
+                }
+
+                ByteBuffer part = _chunk.duplicate();
+                part.limit(part.position() + Math.min(part.remaining(), into.remaining()));
+                into.put(part);
+                read += part.position() - _chunk.position();
+                _chunk.position(part.position());
+            }
+
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
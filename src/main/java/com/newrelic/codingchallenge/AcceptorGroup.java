@@ -0,0 +1,229 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// Accepts connections for the blocking ingest modes on one or more acceptor
+// threads, each starting listeners on a pool of its own.
+//
+// With SO_REUSEPORT (Linux and most BSDs) every acceptor binds its own server
+// socket to the port and the kernel spreads new connections between them, so
+// a burst of reconnects isn't queued up behind one thread building listeners.
+// Where it isn't supported, the acceptors share a single server socket instead.
+//
+// The 5-client limit still holds across all of them, through the one shared
+// ConnectionRegistry. An acceptor takes its slot after accepting rather than
+// before: with a socket each, an idle acceptor holding a slot while it waits in
+// accept() could keep a client queued on another acceptor's socket out
+// indefinitely. A client past the limit is accepted but isn't read from until a
+// slot frees up, and anyone after it waits in the backlog as before.
+//
+// Accepting is timed in two parts: how long an accepted connection waited for
+// a slot, and how long it then took to get its listener running.
+public class AcceptorGroup {
+    private static final long ADMIT_POLL_MILLIS = 100;
+
+    private final List<ServerSocket> _servers;
+    private final List<ExecutorService> _workers;
+    private final ConnectionRegistry _connections;
+    private final ReadRouter _readRouter;
+    private final FlowControl _flowControl;
+    private final TerminationSignal _terminationSignal;
+    private final MetricsRegistry _metrics;
+    private final Logger _logger;
+    private final Histogram _admitNanos;
+    private final Histogram _handoffNanos;
+    private final boolean _reusePort;
+
+    public AcceptorGroup(int port, int acceptors, ServerOptions.IngestMode mode, ConnectionRegistry connections,
+            ReadRouter readRouter, FlowControl flowControl, TerminationSignal terminationSignal,
+            MetricsRegistry metrics, Logger logger) throws IOException {
+        _servers = new ArrayList<>();
+        _workers = new ArrayList<>();
+        _connections = connections;
+        _readRouter = readRouter;
+        _flowControl = flowControl;
+        _terminationSignal = terminationSignal;
+        _metrics = metrics;
+        _logger = logger;
+        _admitNanos = metrics.histogram("accept_admit_nanos");
+        _handoffNanos = metrics.histogram("accept_handoff_nanos");
+        _reusePort = acceptors > 1 && reusePortAvailable();
+
+        try {
+            for (int i = 0; i < (_reusePort ? acceptors : 1); i++) {
+                ServerSocket server = new ServerSocket();
+
+                if (_reusePort) {
+                    server.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                }
+
+                // the rest join whichever port the first one got, in case it was 0
+                _servers.add(server);
+                server.bind(new InetSocketAddress(i == 0 ? port : _servers.get(0).getLocalPort()));
+            }
+        } catch (IOException ex) {
+            close();
+            throw ex;
+        }
+
+        // any one acceptor may end up with every client, so each pool has room
+        // for all of them
+        for (int i = 0; i < acceptors; i++) {
+            _workers.add(ListenerExecutors.create(mode, ServerOptions.MAX_CLIENTS, logger));
+        }
+
+        // closing the server sockets is what wakes the acceptors up on a terminate
+        terminationSignal.onSet(this::close);
+    }
+
+    public static boolean reusePortAvailable() {
+        try (ServerSocket server = new ServerSocket()) {
+            return server.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    public boolean isReusingPort() {
+        return _reusePort;
+    }
+
+    public int localPort() {
+        return _servers.get(0).getLocalPort();
+    }
+
+    // runs an acceptor on every pool until the termination signal closes the
+    // server sockets; the calling thread runs the first one
+    public void run() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 1; i < _workers.size(); i++) {
+            int acceptor = i;
+            Thread thread = new Thread(() -> accept(acceptor), "acceptor-" + i);
+
+            thread.start();
+            threads.add(thread);
+        }
+
+        accept(0);
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    // stops every pool taking new listeners and waits for the running ones to
+    // finish; false if the deadline passed first
+    public boolean awaitListeners(long deadlineNanos) throws InterruptedException {
+        for (ExecutorService workers : _workers) {
+            workers.shutdown();
+        }
+
+        for (ExecutorService workers : _workers) {
+            if (!ShutdownCoordinator.awaitTermination(workers, deadlineNanos)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public void shutdownNow() {
+        for (ExecutorService workers : _workers) {
+            workers.shutdownNow();
+        }
+    }
+
+    private void accept(int acceptor) {
+        ServerSocket server = _servers.get(_reusePort ? acceptor : 0);
+        ExecutorService workers = _workers.get(acceptor);
+        Counter accepted = _metrics.counter(String.format("accept_connections_total{acceptor=\"%d\"}", acceptor));
+
+        while (!_terminationSignal.isSet()) {
+            Socket socket;
+
+            try {
+                socket = server.accept();
+            } catch (IOException ex) {
+                if (!_terminationSignal.isSet()) {
+                    _logger.info(String.format("Exception while connecting: %s", ex.getMessage()));
+                }
+
+                continue;
+            }
+
+            long acceptedNanos = System.nanoTime();
+            accepted.increment();
+
+            try {
+                if (!admit()) {
+                    socket.close();
+                    break;
+                }
+            } catch (InterruptedException | IOException ex) {
+                break;
+            }
+
+            long admittedNanos = System.nanoTime();
+            _admitNanos.record(admittedNanos - acceptedNanos);
+
+            NumberListener numberListener = null;
+
+            try {
+                numberListener = new NumberListener(socket, _readRouter, _flowControl, _terminationSignal, _metrics,
+                        _logger);
+                Runnable tracked = _connections.track(numberListener);
+
+                workers.execute(() -> {
+                    _handoffNanos.record(System.nanoTime() - admittedNanos);
+                    tracked.run();
+                });
+            } catch (Exception ex) {
+                // the slot goes back whether the listener or the executor failed
+                if (numberListener != null) {
+                    numberListener.shutdown();
+                }
+
+                _connections.release(numberListener);
+
+                if (!_terminationSignal.isSet()) {
+                    _logger.info(String.format("Exception while connecting: %s", ex.getMessage()));
+                }
+            }
+        }
+    }
+
+    // waits for one of the registry's slots; false if the server is terminating
+    private boolean admit() throws InterruptedException {
+        while (!_connections.admit(ADMIT_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (_terminationSignal.isSet()) {
+                return false;
+            }
+        }
+
+        if (_terminationSignal.isSet()) {
+            _connections.release(null);
+            return false;
+        }
+
+        return true;
+    }
+
+    private void close() {
+        for (ServerSocket server : _servers) {
+            try {
+                server.close();
+            } catch (IOException ex) {
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.newrelic.codingchallenge;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Spins, then yields, then parks for exponentially longer stretches up to a cap.
+// A stage that's been idle for a while costs next to nothing, at the price of up
+// to the maximum park time of extra latency on the first number after a lull.
+public class BackoffWaitStrategy implements WaitStrategy {
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+
+    private final long _maxParkNanos;
+
+    public BackoffWaitStrategy() {
+        this(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    public BackoffWaitStrategy(long maxParkNanos) {
+        _maxParkNanos = maxParkNanos;
+    }
+
+    @Override
+    public void idle(int attempt) {
+        if (attempt < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (attempt < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            int doublings = Math.min(attempt - SPIN_TRIES - YIELD_TRIES, 20);
+
+            LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << doublings, _maxParkNanos));
+        }
+    }
+}
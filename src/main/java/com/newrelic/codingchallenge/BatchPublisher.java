@@ -0,0 +1,8 @@
+package com.newrelic.codingchallenge;
+
+// Where a stage hands on a batch of numbers: straight into the next stage's
+// IntRingBuffer, or through a SinkFanout to several.
+public interface BatchPublisher {
+    // may wait for room, but always takes the whole batch
+    void publish(int[] values, int offset, int length) throws InterruptedException;
+}
@@ -0,0 +1,20 @@
+package com.newrelic.codingchallenge;
+
+// Where a stage takes its batches of numbers from: one shared IntRingBuffer,
+// or the per-connection lanes of a ReadLanes. Only the one consumer may call
+// drain().
+public interface BatchSource {
+    // copies up to into.length waiting numbers into the array and returns how
+    // many there were, without waiting
+    int drain(int[] into);
+
+    int size();
+
+    WaitStrategy waitStrategy();
+
+    // every producer has stopped for good
+    void close();
+
+    // true once closed and empty
+    boolean isDrained();
+}
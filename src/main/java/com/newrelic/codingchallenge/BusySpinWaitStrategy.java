@@ -0,0 +1,10 @@
+package com.newrelic.codingchallenge;
+
+// Never gives up the core. Lowest latency, and the most CPU: an idle stage burns
+// a whole core, which is what the stages did before they had wait strategies.
+public class BusySpinWaitStrategy implements WaitStrategy {
+    @Override
+    public void idle(int attempt) {
+        Thread.onSpinWait();
+    }
+}
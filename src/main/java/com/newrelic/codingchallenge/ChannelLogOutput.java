@@ -0,0 +1,34 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Writes straight through a FileChannel. Each write lands in the OS page cache
+// right away, so flushing only has anything to do when it has to sync.
+public class ChannelLogOutput implements LogOutput {
+    private final FileChannel _channel;
+
+    public ChannelLogOutput(FileChannel channel) {
+        _channel = channel;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            _channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void flush(boolean sync) throws IOException {
+        if (sync) {
+            _channel.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+}
@@ -0,0 +1,318 @@
+package com.newrelic.codingchallenge;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+// The persistent connection from this node to one peer. Listeners put every
+// number the peer owns on this link's queue, and the link sends them on in
+// batches of up to MAX_BATCH, along with this node's running totals once a second
+// and a terminate if one arrives here.
+//
+// The wire format is a stream of frames, each a type byte followed by
+// big-endian fields:
+// - HELLO, int node id - always first, so the peer knows who's talking
+// - NUMBERS, long sequence, int count, count ints
+// - STATS, long uniques, long duplicates, long seen
+// - TERMINATE
+// - BYE - this node has stopped ingesting and the peer has acknowledged
+// everything it had for it
+//
+// and the peer answers each NUMBERS frame with
+// - ACK, long sequence - every batch up to this one is on the peer's read queues
+//
+// Batches stay in a window of up to WINDOW until they're acknowledged; a full
+// window holds the link (and through its queue and flow control, the clients)
+// back. The link reconnects whenever the connection drops and resends every
+// batch that wasn't acknowledged, so numbers are delivered at least once - even
+// ones the kernel had accepted but never got to the peer. Anything the peer
+// got twice is counted as a duplicate there. An acknowledged batch is the
+// peer's responsibility, so what's lost if the peer itself dies is whatever
+// its own read queues held, as for its listeners.
+//
+// Once the queue is closed and empty and everything has been acknowledged, the
+// link says goodbye, then stays up until finish() so it can send this node's
+// final totals - which aren't known until the numbers peers sent here are
+// deduplicated - and hangs up.
+public class ClusterLink implements Runnable {
+    static final int HELLO = 'H';
+    static final int NUMBERS = 'N';
+    static final int STATS = 'S';
+    static final int TERMINATE = 'T';
+    static final int BYE = 'B';
+    static final int ACK = 'A';
+
+    static final int MAX_BATCH = 4096;
+    static final int WINDOW = 64;
+    static final int ACK_BYTES = 1 + Long.BYTES;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final long RECONNECT_MILLIS = 250;
+    private static final long STATS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int _nodeId;
+    private final int _peer;
+    private final InetSocketAddress _address;
+    private final IntRingBuffer _queue;
+    private final ClusterStats _stats;
+    private final AtomicBoolean _abortSignal;
+    private final Logger _logger;
+    private final int[][] _window;
+    private final int[] _windowSizes;
+    private final ByteBuffer _frame;
+    private final Counter _forwardedMetric;
+    private final Counter _failuresMetric;
+    private final CountDownLatch _goodbye;
+
+    private volatile boolean _terminateRequested;
+    private volatile boolean _finishRequested;
+    private volatile boolean _connected;
+    private Socket _socket;
+    private OutputStream _out;
+    private DataInputStream _in;
+    private boolean _terminateSent;
+    private boolean _byeSent;
+    private long _lastStats;
+    // batches before _acked are acknowledged, batches before _sent have been
+    // sent on this connection, and batches before _next have been taken off the
+    // queue
+    private long _acked;
+    private long _sent;
+    private long _next;
+    private boolean _failing;
+
+    public ClusterLink(int nodeId, int peer, InetSocketAddress address, IntRingBuffer queue, ClusterStats stats,
+            AtomicBoolean abortSignal, MetricsRegistry metrics, Logger logger) {
+        _nodeId = nodeId;
+        _peer = peer;
+        _address = address;
+        _queue = queue;
+        _stats = stats;
+        _abortSignal = abortSignal;
+        _logger = logger;
+        _window = new int[WINDOW][MAX_BATCH];
+        _windowSizes = new int[WINDOW];
+        _frame = ByteBuffer.allocate(1 + Long.BYTES + Integer.BYTES + MAX_BATCH * Integer.BYTES);
+        _forwardedMetric = metrics.counter(String.format("cluster_forwarded_numbers_total{node=\"%d\"}", peer));
+        _failuresMetric = metrics.counter(String.format("cluster_link_failures_total{node=\"%d\"}", peer));
+        _goodbye = new CountDownLatch(1);
+    }
+
+    public int peer() {
+        return _peer;
+    }
+
+    public boolean isConnected() {
+        return _connected;
+    }
+
+    // passes a terminate on to the peer as soon as the link is up
+    public void requestTerminate() {
+        _terminateRequested = true;
+    }
+
+    // waits until the peer has been sent everything in the closed queue
+    public boolean awaitGoodbye(long deadlineNanos) throws InterruptedException {
+        return _goodbye.await(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    // sends the final totals once the goodbye is out, then hangs up
+    public void finish() {
+        _finishRequested = true;
+    }
+
+    @Override
+    public void run() {
+        int idle = 0;
+
+        try {
+            while (!_abortSignal.get()) {
+                try {
+                    if (_out == null && !connect()) {
+                        Thread.sleep(RECONNECT_MILLIS);
+                        continue;
+                    }
+
+                    if (_terminateRequested && !_terminateSent) {
+                        writeFrame(TERMINATE);
+                        _terminateSent = true;
+                    }
+
+                    // after the goodbye, the only totals the peer gets are the final ones
+                    if (!_byeSent && System.nanoTime() - _lastStats >= STATS_INTERVAL_NANOS) {
+                        writeStats();
+                    }
+
+                    readAcks();
+
+                    // batches that weren't acknowledged go (again) before anything new
+                    if (_sent < _next) {
+                        writeNumbers(_sent++);
+                        idle = 0;
+                    } else if (_next - _acked < WINDOW && takeBatch()) {
+                        idle = 0;
+                    } else if (_queue.isDrained() && _acked == _next && !_byeSent) {
+                        // this node is done ingesting; tell the peer nothing else is
+                        // coming
+                        writeFrame(BYE);
+                        _byeSent = true;
+                        _goodbye.countDown();
+                    } else if (_byeSent && _finishRequested) {
+                        writeStats();
+                        break;
+                    } else {
+                        _queue.waitStrategy().idle(idle++);
+                    }
+                } catch (IOException ex) {
+                    _failuresMetric.increment();
+                    _logger.warning(String.format("Lost the link to node %d: %s", _peer, ex.getMessage()));
+                    disconnect();
+                }
+            }
+        } catch (InterruptedException ex) {
+            _logger.warning(String.format("Interrupted while linking to node %d", _peer));
+        } finally {
+            disconnect();
+        }
+    }
+
+    private boolean connect() {
+        Socket socket = new Socket();
+
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(_address.getHostString(), _address.getPort()),
+                    CONNECT_TIMEOUT_MILLIS);
+            _socket = socket;
+            _out = socket.getOutputStream();
+            _in = new DataInputStream(socket.getInputStream());
+            // a new connection is a new conversation; repeat whatever the peer may
+            // have missed
+            _sent = _acked;
+            _terminateSent = false;
+            _byeSent = false;
+            _failing = false;
+            _connected = true;
+            writeHello();
+            _logger.info(String.format("Linked to node %d at %s:%d", _peer, _address.getHostString(),
+                    _address.getPort()));
+            return true;
+        } catch (IOException ex) {
+            // a peer that isn't up yet is expected at startup; only say so once
+            if (!_failing) {
+                _logger.info(String.format("Can't reach node %d at %s:%d yet: %s", _peer,
+                        _address.getHostString(), _address.getPort(), ex.getMessage()));
+                _failing = true;
+            }
+
+            disconnect();
+
+            try {
+                socket.close();
+            } catch (IOException closeEx) {
+            }
+
+            return false;
+        }
+    }
+
+    private void disconnect() {
+        _connected = false;
+
+        if (_socket != null) {
+            try {
+                _socket.close();
+            } catch (IOException ex) {
+            }
+        }
+
+        _socket = null;
+        _out = null;
+        _in = null;
+    }
+
+    // moves the next batch off the queue into the window; false if there wasn't
+    // one
+    private boolean takeBatch() {
+        int slot = (int) (_next % WINDOW);
+        int count = _queue.drain(_window[slot]);
+
+        if (count == 0) {
+            return false;
+        }
+
+        _windowSizes[slot] = count;
+        _next++;
+        return true;
+    }
+
+    // takes in whatever acknowledgements have arrived, without waiting for more
+    private void readAcks() throws IOException {
+        while (_in.available() >= ACK_BYTES) {
+            int type = _in.read();
+
+            if (type != ACK) {
+                throw new IOException(String.format("Expected an ack, got frame type %d", type));
+            }
+
+            long sequence = _in.readLong();
+
+            // anything before _acked was already acknowledged on an earlier
+            // connection
+            if (sequence >= _next) {
+                throw new IOException(String.format("Ack for batch %d, which isn't waiting for one", sequence));
+            }
+
+            for (; _acked <= sequence; _acked++) {
+                _forwardedMetric.add(_windowSizes[(int) (_acked % WINDOW)]);
+            }
+        }
+    }
+
+    private void writeHello() throws IOException {
+        _frame.clear();
+        _frame.put((byte) HELLO).putInt(_nodeId);
+        send();
+    }
+
+    private void writeNumbers(long sequence) throws IOException {
+        int[] batch = _window[(int) (sequence % WINDOW)];
+        int count = _windowSizes[(int) (sequence % WINDOW)];
+
+        _frame.clear();
+        _frame.put((byte) NUMBERS).putLong(sequence).putInt(count);
+
+        for (int i = 0; i < count; i++) {
+            _frame.putInt(batch[i]);
+        }
+
+        send();
+    }
+
+    private void writeStats() throws IOException {
+        long[] local = _stats.local();
+
+        _frame.clear();
+        _frame.put((byte) STATS).putLong(local[0]).putLong(local[1]).putLong(local[2]);
+        send();
+        _lastStats = System.nanoTime();
+    }
+
+    private void writeFrame(int type) throws IOException {
+        _frame.clear();
+        _frame.put((byte) type);
+        send();
+    }
+
+    private void send() throws IOException {
+        _out.write(_frame.array(), 0, _frame.position());
+        _out.flush();
+    }
+}
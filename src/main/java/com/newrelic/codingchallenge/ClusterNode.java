@@ -0,0 +1,222 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+// This server's part in a cluster: a link out to every peer, carrying the
+// numbers they own, and a cluster port that accepts each peer's link in.
+//
+// Shutting a cluster down without losing anything takes two steps on every node,
+// after its own listeners have stopped: closeLinks() sends each peer whatever is
+// left for it and says goodbye, then awaitPeers() waits for every peer to have
+// done the same. Only then can the read queues be closed. Once the readers are
+// done, finish() swaps final totals with the peers for the last cluster report.
+// None of the steps waits on a later step of another node, so nodes can shut
+// down in any order.
+public class ClusterNode {
+    private final ClusterTopology _topology;
+    private final IntRingBuffer[] _linkQueues;
+    private final ClusterStats _stats;
+    private final TerminationSignal _terminationSignal;
+    private final MetricsRegistry _metrics;
+    private final Logger _logger;
+    private final List<ClusterLink> _links;
+    private final Set<ClusterReceiver> _receivers;
+    private final Set<Integer> _finishedPeers;
+    private final CountDownLatch _peersFinished;
+    private final Set<Integer> _reportedPeers;
+    private final CountDownLatch _peersReported;
+    private final AtomicBoolean _abortSignal;
+    private final ExecutorService _linkService;
+    private final ExecutorService _receiverService;
+    private ServerSocket _server;
+
+    // linkQueues[node] carries the numbers bound for that node; the entry for this
+    // node is unused
+    public ClusterNode(ClusterTopology topology, IntRingBuffer[] linkQueues, ClusterStats stats,
+            TerminationSignal terminationSignal, MetricsRegistry metrics, Logger logger) {
+        _topology = topology;
+        _linkQueues = linkQueues;
+        _stats = stats;
+        _terminationSignal = terminationSignal;
+        _metrics = metrics;
+        _logger = logger;
+        _links = new ArrayList<>();
+        _receivers = ConcurrentHashMap.newKeySet();
+        _finishedPeers = ConcurrentHashMap.newKeySet();
+        _peersFinished = new CountDownLatch(topology.nodes() - 1);
+        _reportedPeers = ConcurrentHashMap.newKeySet();
+        _peersReported = new CountDownLatch(topology.nodes() - 1);
+        _abortSignal = new AtomicBoolean();
+        _linkService = Executors.newFixedThreadPool(Math.max(1, topology.nodes() - 1));
+        // the accept loop plus one receiver per peer, with room for reconnects
+        _receiverService = Executors.newCachedThreadPool();
+
+        for (int node = 0; node < topology.nodes(); node++) {
+            if (node != topology.nodeId()) {
+                _links.add(new ClusterLink(topology.nodeId(), node, topology.address(node), linkQueues[node], stats,
+                        _abortSignal, metrics, logger));
+            }
+        }
+    }
+
+    // binds the cluster port and starts linking to the peers. Peers that aren't up
+    // yet are retried until they are; their numbers wait in the link queues, and
+    // flow control holds ingest back if they wait too long.
+    public void start(ReadRouter readRouter, FlowControl flowControl) throws IOException {
+        InetSocketAddress address = _topology.address(_topology.nodeId());
+
+        _server = new ServerSocket();
+        _server.setReuseAddress(true);
+        _server.bind(new InetSocketAddress(address.getHostString(), address.getPort()));
+        _receiverService.execute(() -> acceptLinks(readRouter, flowControl));
+
+        for (ClusterLink link : _links) {
+            _linkService.execute(link);
+        }
+
+        // a terminate from a client here, or from a peer, reaches every node
+        _terminationSignal.onSet(() -> {
+            for (ClusterLink link : _links) {
+                link.requestTerminate();
+            }
+        });
+    }
+
+    public int connectedPeers() {
+        int connected = 0;
+
+        for (ClusterLink link : _links) {
+            if (link.isConnected()) {
+                connected++;
+            }
+        }
+
+        return connected;
+    }
+
+    // nothing more will be forwarded; sends what's queued and says goodbye to
+    // every peer
+    public boolean closeLinks(long deadlineNanos) throws InterruptedException {
+        for (IntRingBuffer queue : _linkQueues) {
+            if (queue != null) {
+                queue.close();
+            }
+        }
+
+        for (ClusterLink link : _links) {
+            if (!link.awaitGoodbye(deadlineNanos)) {
+                // a peer that's down can't be told; give up on what was queued for it
+                _logger.warning(String.format("Gave up forwarding to node %d", link.peer()));
+                _abortSignal.set(true);
+                _linkService.shutdownNow();
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // waits for every peer to have sent everything it had for this node
+    public boolean awaitPeers(long deadlineNanos) throws InterruptedException {
+        return await(_peersFinished, deadlineNanos, "finish forwarding");
+    }
+
+    // sends this node's final totals to every peer and waits for theirs, then
+    // hangs up
+    public boolean finish(long deadlineNanos) throws InterruptedException {
+        try {
+            for (ClusterLink link : _links) {
+                link.finish();
+            }
+
+            _linkService.shutdown();
+
+            if (!ShutdownCoordinator.awaitTermination(_linkService, deadlineNanos)) {
+                _abortSignal.set(true);
+                _linkService.shutdownNow();
+                return false;
+            }
+
+            return await(_peersReported, deadlineNanos, "report");
+        } finally {
+            stop();
+        }
+    }
+
+    // stops accepting links and hangs up on every peer, in both directions
+    public void stop() {
+        _abortSignal.set(true);
+        _linkService.shutdownNow();
+
+        try {
+            _server.close();
+        } catch (IOException ex) {
+        }
+
+        for (ClusterReceiver receiver : _receivers) {
+            receiver.shutdown();
+        }
+
+        _receiverService.shutdownNow();
+    }
+
+    private void acceptLinks(ReadRouter readRouter, FlowControl flowControl) {
+        while (!_server.isClosed()) {
+            try {
+                Socket socket = _server.accept();
+                socket.setTcpNoDelay(true);
+
+                ClusterReceiver receiver = new ClusterReceiver(socket, _topology, readRouter, flowControl, _stats,
+                        _terminationSignal, this::peerFinished, this::peerReported, _metrics, _logger);
+                _receivers.add(receiver);
+                _receiverService.execute(() -> {
+                    try {
+                        receiver.run();
+                    } finally {
+                        _receivers.remove(receiver);
+                    }
+                });
+            } catch (Exception ex) {
+                if (!_server.isClosed()) {
+                    _logger.warning(String.format("Exception while accepting a peer: %s", ex.getMessage()));
+                }
+            }
+        }
+    }
+
+    private boolean await(CountDownLatch latch, long deadlineNanos, String what) throws InterruptedException {
+        if (latch.await(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+            return true;
+        }
+
+        _logger.warning(String.format("Gave up waiting for %d peers to %s", latch.getCount(), what));
+        return false;
+    }
+
+    // a peer only finishes or reports once, however many times its link
+    // reconnected
+    private void peerFinished(int peer) {
+        if (_finishedPeers.add(peer)) {
+            _peersFinished.countDown();
+        }
+    }
+
+    private void peerReported(int peer) {
+        if (_reportedPeers.add(peer)) {
+            _peersReported.countDown();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.newrelic.codingchallenge;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.function.IntConsumer;
+import java.util.logging.Logger;
+
+// Reads one peer's ClusterLink and feeds the numbers it forwards into this
+// node's read queues, exactly like a listener would. Every number has to be one
+// this node owns - anything else means the two nodes disagree about the layout,
+// and the connection is dropped rather than deduplicating numbers in the wrong
+// place. Each batch is acknowledged once it's on the read queues, so the peer
+// knows what it can stop holding on to.
+//
+// The peer's goodbye and the totals it sends after it are passed on to the
+// ClusterNode, which waits for them during shutdown.
+public class ClusterReceiver implements Runnable {
+    private final Socket _socket;
+    private final ClusterTopology _topology;
+    private final FlowControl _flowControl;
+    private final ClusterStats _stats;
+    private final TerminationSignal _terminationSignal;
+    private final IntConsumer _onBye;
+    private final IntConsumer _onFinalStats;
+    private final Logger _logger;
+    private final ReadRouter.Batch _batch;
+    private final byte[] _numbers;
+    private final Counter _receivedMetric;
+    private int _peer = -1;
+    private boolean _saidBye;
+
+    public ClusterReceiver(Socket socket, ClusterTopology topology, ReadRouter readRouter, FlowControl flowControl,
+            ClusterStats stats, TerminationSignal terminationSignal, IntConsumer onBye, IntConsumer onFinalStats,
+            MetricsRegistry metrics, Logger logger) {
+        _socket = socket;
+        _topology = topology;
+        _flowControl = flowControl;
+        _stats = stats;
+        _terminationSignal = terminationSignal;
+        _onBye = onBye;
+        _onFinalStats = onFinalStats;
+        _logger = logger;
+        _batch = readRouter.newBatch(ClusterLink.MAX_BATCH);
+        _numbers = new byte[ClusterLink.MAX_BATCH * Integer.BYTES];
+        _receivedMetric = metrics.counter("cluster_received_numbers_total");
+    }
+
+    @Override
+    public void run() {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(_socket.getInputStream(),
+                    _numbers.length + 64));
+            DataOutputStream acks = new DataOutputStream(new BufferedOutputStream(_socket.getOutputStream(),
+                    ClusterLink.ACK_BYTES));
+
+            while (handleFrame(in, acks)) {
+                // the peer's link is pushed back on through TCP while the local
+                // queues are full
+                _flowControl.awaitCapacity();
+            }
+        } catch (EOFException ex) {
+            _logger.warning(String.format("Node %d hung up without saying goodbye", _peer));
+        } catch (IOException ex) {
+            // closing the socket during shutdown lands here too
+            _logger.warning(String.format("Dropped the link from node %d: %s", _peer, ex.getMessage()));
+        } catch (InterruptedException ex) {
+            _logger.warning(String.format("Interrupted while receiving from node %d", _peer));
+        } finally {
+            _batch.close();
+            shutdown();
+        }
+    }
+
+    public void shutdown() {
+        try {
+            if (!_socket.isClosed()) {
+                _socket.close();
+            }
+        } catch (IOException ex) {
+        }
+    }
+
+    // handles one frame, acknowledging numbers on `acks`; returns false once the
+    // peer has hung up after its goodbye
+    public boolean handleFrame(DataInputStream in, DataOutputStream acks) throws IOException, InterruptedException {
+        int type = in.read();
+
+        if (type < 0) {
+            if (_saidBye) {
+                return false;
+            }
+
+            throw new EOFException();
+        }
+
+        if (_peer < 0 && type != ClusterLink.HELLO) {
+            throw new IOException(String.format("Expected a hello, got frame type %d", type));
+        }
+
+        switch (type) {
+        case ClusterLink.HELLO:
+            _peer = in.readInt();
+
+            if (_peer < 0 || _peer >= _topology.nodes() || _peer == _topology.nodeId()) {
+                throw new IOException(String.format("Not a peer: node %d", _peer));
+            }
+
+            _logger.info(String.format("Node %d linked to this node", _peer));
+            return true;
+        case ClusterLink.NUMBERS:
+            long sequence = in.readLong();
+
+            readNumbers(in);
+            acks.writeByte(ClusterLink.ACK);
+            acks.writeLong(sequence);
+            acks.flush();
+            return true;
+        case ClusterLink.STATS:
+            _stats.update(_peer, in.readLong(), in.readLong(), in.readLong());
+
+            // anything after the goodbye is the peer's last word
+            if (_saidBye) {
+                _onFinalStats.accept(_peer);
+            }
+
+            return true;
+        case ClusterLink.TERMINATE:
+            _logger.info(String.format("Node %d passed on a terminate", _peer));
+            _terminationSignal.set();
+            return true;
+        case ClusterLink.BYE:
+            _saidBye = true;
+            _onBye.accept(_peer);
+            return true;
+        default:
+            throw new IOException(String.format("Unknown frame type %d", type));
+        }
+    }
+
+    private void readNumbers(DataInputStream in) throws IOException, InterruptedException {
+        int count = in.readInt();
+
+        if (count <= 0 || count > ClusterLink.MAX_BATCH) {
+            throw new IOException(String.format("Bad batch size %d", count));
+        }
+
+        in.readFully(_numbers, 0, count * Integer.BYTES);
+        ByteBuffer numbers = ByteBuffer.wrap(_numbers, 0, count * Integer.BYTES);
+
+        try {
+            for (int i = 0; i < count; i++) {
+                int number = numbers.getInt();
+
+                if (!_topology.owns(number)) {
+                    throw new IOException(String.format("Node %d sent %d, which isn't this node's", _peer, number));
+                }
+
+                _batch.add(number);
+            }
+
+            _batch.publish();
+        } finally {
+            _batch.clear();
+        }
+
+        _receivedMetric.add(count);
+    }
+}
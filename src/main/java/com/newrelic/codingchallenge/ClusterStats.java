@@ -0,0 +1,88 @@
+package com.newrelic.codingchallenge;
+
+// The running totals of every node in a cluster, so any node can report on the
+// whole number space.
+//
+// This node's own figures are read live; each peer's are whatever its link sent
+// last, which is at most a second or so old while it's up. All of them are
+// totals since startup rather than per-interval counts, so a lost or repeated
+// update never skews the sum.
+public class ClusterStats {
+    public static class Totals {
+        private final long _uniques;
+        private final long _duplicates;
+        private final long _seen;
+        private final int _reporting;
+
+        Totals(long uniques, long duplicates, long seen, int reporting) {
+            _uniques = uniques;
+            _duplicates = duplicates;
+            _seen = seen;
+            _reporting = reporting;
+        }
+
+        public long uniques() {
+            return _uniques;
+        }
+
+        public long duplicates() {
+            return _duplicates;
+        }
+
+        public long seen() {
+            return _seen;
+        }
+
+        // the number of nodes the totals include
+        public int reporting() {
+            return _reporting;
+        }
+    }
+
+    private final int _nodeId;
+    private final long[][] _nodes;
+    private final DedupCounters _counters;
+
+    public ClusterStats(int nodeId, int nodes, DedupCounters counters) {
+        _nodeId = nodeId;
+        _nodes = new long[nodes][];
+        _counters = counters;
+    }
+
+    public int nodes() {
+        return _nodes.length;
+    }
+
+    // this node's totals as { uniques, duplicates, seen }
+    public long[] local() {
+        DedupCounters.Snapshot snapshot = _counters.snapshot();
+
+        return new long[] { snapshot.uniques(), snapshot.duplicates(), snapshot.total() };
+    }
+
+    public synchronized void update(int node, long uniques, long duplicates, long seen) {
+        if (node != _nodeId) {
+            _nodes[node] = new long[] { uniques, duplicates, seen };
+        }
+    }
+
+    // sums this node and every peer that has reported at least once
+    public synchronized Totals totals() {
+        long[] local = local();
+        long uniques = local[0];
+        long duplicates = local[1];
+        long seen = local[2];
+        int reporting = 1;
+
+        for (int node = 0; node < _nodes.length; node++) {
+            if (node != _nodeId && _nodes[node] != null) {
+                uniques += _nodes[node][0];
+                duplicates += _nodes[node][1];
+                seen += _nodes[node][2];
+                reporting++;
+            }
+        }
+
+        return new Totals(uniques, duplicates, seen, reporting);
+    }
+}
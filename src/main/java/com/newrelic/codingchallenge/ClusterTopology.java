@@ -0,0 +1,114 @@
+package com.newrelic.codingchallenge;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Which node of a cluster owns which numbers.
+//
+// Every node is started with the same list of cluster addresses, so they all
+// agree on the layout without talking about it. The number space is split into
+// nodes * shards contiguous ranges, laid out the same way ShardedNumberSet
+// splits it for a single server: node i owns ranges [i * shards, (i + 1) * shards),
+// one per local reader. With one node this is exactly the single-server layout.
+public class ClusterTopology {
+    private final List<InetSocketAddress> _nodes;
+    private final int _nodeId;
+    private final int _shards;
+    private final int _shardWidth;
+
+    public ClusterTopology(List<InetSocketAddress> nodes, int nodeId, int shards) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A cluster needs at least one node");
+        }
+
+        if (nodeId < 0 || nodeId >= nodes.size()) {
+            throw new IllegalArgumentException(
+                    String.format("Node id must be between 0 and %d: %d", nodes.size() - 1, nodeId));
+        }
+
+        int totalShards = nodes.size() * shards;
+
+        _nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        _nodeId = nodeId;
+        _shards = shards;
+        _shardWidth = ShardedNumberSet.shardWidth(OffHeapNumberSet.NUMBER_SPACE, totalShards);
+
+        if ((long) (totalShards - 1) * _shardWidth >= OffHeapNumberSet.NUMBER_SPACE) {
+            throw new IllegalArgumentException(String.format("Too many shards across the cluster: %d", totalShards));
+        }
+    }
+
+    // a single server is a cluster of one
+    public static ClusterTopology standalone(int shards) {
+        return new ClusterTopology(Collections.singletonList(new InetSocketAddress(0)), 0, shards);
+    }
+
+    // parses host:port,host:port,... - the cluster address of every node, in node
+    // id order
+    public static ClusterTopology parse(String nodes, int nodeId, int shards) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+
+        for (String node : nodes.split(",")) {
+            int colon = node.lastIndexOf(':');
+
+            if (colon <= 0) {
+                throw new IllegalArgumentException(String.format("Expected host:port: %s", node));
+            }
+
+            int port = ServerOptions.parseInt("cluster", node.substring(colon + 1), 1, 65535);
+            addresses.add(InetSocketAddress.createUnresolved(node.substring(0, colon).trim(), port));
+        }
+
+        return new ClusterTopology(addresses, nodeId, shards);
+    }
+
+    public int nodes() {
+        return _nodes.size();
+    }
+
+    public int nodeId() {
+        return _nodeId;
+    }
+
+    public boolean isClustered() {
+        return _nodes.size() > 1;
+    }
+
+    // the address peers connect to for this node; unresolved, so a node that's
+    // down at startup doesn't stop the others from starting
+    public InetSocketAddress address(int node) {
+        return _nodes.get(node);
+    }
+
+    public String describe(int node) {
+        return String.format("%s:%d", _nodes.get(node).getHostString(), _nodes.get(node).getPort());
+    }
+
+    // local readers per node
+    public int shards() {
+        return _shards;
+    }
+
+    public int totalShards() {
+        return _nodes.size() * _shards;
+    }
+
+    // the global range index of the first range this node owns
+    public int firstShard() {
+        return _nodeId * _shards;
+    }
+
+    public int shardWidth() {
+        return _shardWidth;
+    }
+
+    public int ownerOf(int number) {
+        return number / _shardWidth / _shards;
+    }
+
+    public boolean owns(int number) {
+        return number >= 0 && number < OffHeapNumberSet.NUMBER_SPACE && ownerOf(number) == _nodeId;
+    }
+}
@@ -0,0 +1,94 @@
+package com.newrelic.codingchallenge;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+// The metrics one client connection feeds, for both ingest modes: its own
+// ingest counter, labelled with the client's address, plus the server-wide
+// ingest, rejected-input and publish latency metrics. The per-connection
+// counter is dropped from the registry when the connection closes.
+//
+// It also emits the connection's flight recorder events: opened, rejected and
+// closed, and one per batch received.
+public class ConnectionMetrics {
+    private final MetricsRegistry _registry;
+    private final String _label;
+    private final String _connectionName;
+    private final Counter _connectionNumbers;
+    private final Counter _numbers;
+    private final Counter _rejected;
+    private final Histogram _publishNanos;
+
+    public ConnectionMetrics(MetricsRegistry registry, SocketAddress remoteAddress) {
+        _registry = registry;
+        _label = label(remoteAddress);
+        _connectionName = String.format("ingest_numbers_total{connection=\"%s\"}", _label);
+        _connectionNumbers = registry.counter(_connectionName);
+        _numbers = registry.counter("ingest_numbers_total");
+        _rejected = registry.counter("ingest_rejected_total");
+        _publishNanos = registry.histogram("ingest_publish_nanos");
+        connectionEvent("opened");
+    }
+
+    // a batch of `count` numbers went to the readers, which took `nanos` - that
+    // includes any time spent waiting on a full read queue
+    public void published(int count, long nanos) {
+        if (count > 0) {
+            _connectionNumbers.add(count);
+            _numbers.add(count);
+            _publishNanos.record(nanos);
+        }
+    }
+
+    // the client sent something that wasn't a number and was disconnected
+    public void rejected() {
+        _rejected.increment();
+        connectionEvent("rejected");
+    }
+
+    // commits a batch event the listener began as soon as its read returned
+    public void received(PipelineEvents.BatchReceived event, int count, int bytes, long publishNanos) {
+        if (event.shouldCommit()) {
+            event.connection = _label;
+            event.numbers = count;
+            event.bytes = bytes;
+            event.publishNanos = publishNanos;
+            event.commit();
+        }
+    }
+
+    public void close() {
+        _registry.remove(_connectionName);
+        connectionEvent("closed");
+    }
+
+    private void connectionEvent(String state) {
+        PipelineEvents.Connection event = new PipelineEvents.Connection();
+
+        if (event.isEnabled()) {
+            event.connection = _label;
+            event.state = state;
+            event.numbers = _connectionNumbers.sum();
+            event.commit();
+        }
+    }
+
+    // just the host, which is what fair lanes and their weights go by
+    public static String host(SocketAddress address) {
+        if (address instanceof InetSocketAddress) {
+            return ((InetSocketAddress) address).getHostString();
+        }
+
+        return String.valueOf(address);
+    }
+
+    // host:port, without the leading slash InetSocketAddress.toString() adds
+    private static String label(SocketAddress address) {
+        if (address instanceof InetSocketAddress) {
+            InetSocketAddress inet = (InetSocketAddress) address;
+            return String.format("%s:%d", inet.getHostString(), inet.getPort());
+        }
+
+        return String.valueOf(address);
+    }
+}
@@ -0,0 +1,69 @@
+package com.newrelic.codingchallenge;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Tracks the listeners that are currently connected and decides when the next
+// one may start.
+//
+// A connection holds one of maxClients permits from the moment it's admitted
+// until its listener finishes, and only then leaves the registry - so the set
+// never holds more than maxClients listeners, however often clients reconnect.
+// The acceptors all share one registry, so the limit holds across them; a
+// client past it isn't read from until a slot frees up.
+public class ConnectionRegistry {
+    private final Semaphore _permits;
+    private final Set<NumberListener> _listeners;
+
+    public ConnectionRegistry(int maxClients) {
+        _permits = new Semaphore(maxClients);
+        _listeners = ConcurrentHashMap.newKeySet();
+    }
+
+    // waits up to the timeout for a free slot; a true return must be followed
+    // by either register() or release()
+    public boolean admit(long timeout, TimeUnit unit) throws InterruptedException {
+        return _permits.tryAcquire(timeout, unit);
+    }
+
+    public void register(NumberListener listener) {
+        _listeners.add(listener);
+    }
+
+    // gives the slot back once a listener is done, or when an admitted
+    // connection never made it to a listener (listener may be null)
+    public void release(NumberListener listener) {
+        if (listener != null) {
+            _listeners.remove(listener);
+        }
+
+        _permits.release();
+    }
+
+    // wraps a listener so it leaves the registry when it finishes, however it
+    // finishes
+    public Runnable track(NumberListener listener) {
+        register(listener);
+
+        return () -> {
+            try {
+                listener.run();
+            } finally {
+                release(listener);
+            }
+        };
+    }
+
+    public int active() {
+        return _listeners.size();
+    }
+
+    // closes every connected socket, which unblocks their listeners' reads
+    public void shutdownAll() {
+        for (NumberListener listener : _listeners) {
+            listener.shutdown();
+        }
+    }
+}
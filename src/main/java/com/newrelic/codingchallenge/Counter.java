@@ -0,0 +1,41 @@
+package com.newrelic.codingchallenge;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// A count that many threads can bump at once without fighting over one cache
+// line - LongAdder stripes the updates and only adds them up when read. The
+// registry samples each counter once a second to turn it into a rate.
+public class Counter {
+    private final LongAdder _count;
+    private long _lastSample;
+    private volatile double _rate;
+
+    public Counter() {
+        _count = new LongAdder();
+    }
+
+    public void increment() {
+        _count.increment();
+    }
+
+    public void add(long amount) {
+        _count.add(amount);
+    }
+
+    public long sum() {
+        return _count.sum();
+    }
+
+    // the increase per second over the last sample interval
+    public double rate() {
+        return _rate;
+    }
+
+    // called from the registry's sampler thread only
+    void sample(long elapsedNanos) {
+        long sample = _count.sum();
+
+        _rate = (sample - _lastSample) * 1e9 / Math.max(1, elapsedNanos);
+        _lastSample = sample;
+    }
+}
@@ -0,0 +1,195 @@
+package com.newrelic.codingchallenge;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// The unique and duplicate counts behind the 10-second report, kept so that a
+// report never mixes figures from different moments.
+//
+// Each reader gets a stripe of its own - a sequence number and two running
+// totals on a cache line nothing else writes to - so counting a batch is a
+// couple of uncontended stores, with no compare-and-set and no cache line
+// bouncing between readers. The sequence is odd while a batch is being counted
+// (a seqlock), so snapshot() can always read a stripe's uniques and duplicates
+// as of the same batch.
+//
+// The totals only ever grow. A report is the difference between this epoch's
+// snapshot and the last one, so nothing is lost or counted twice between the
+// two, and the unique total is the set's size at startup plus every unique
+// since - the same cut as the other two figures, rather than a separate read
+// of the set a moment later.
+//
+// tick() records a snapshot in a ring of per-second buckets, which is where the
+// sliding-window rates come from.
+//
+// Duplicates the listeners' recent-number caches caught never reach a reader,
+// so they're counted on a separate counter and added in at each snapshot.
+public class DedupCounters {
+    // 16 longs keep every stripe on its own pair of cache lines, which also stops
+    // the adjacent-line prefetcher from pulling a neighbour's stripe along
+    private static final int STRIDE = 16;
+    private static final int SEQUENCE = 0;
+    private static final int UNIQUES = 1;
+    private static final int DUPLICATES = 2;
+
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    public static final int WINDOW_SECONDS = 60;
+
+    public static class Snapshot {
+        private final long _epoch;
+        private final long _uniques;
+        private final long _duplicates;
+        private final long _total;
+        private final long _nanos;
+
+        Snapshot(long epoch, long uniques, long duplicates, long total, long nanos) {
+            _epoch = epoch;
+            _uniques = uniques;
+            _duplicates = duplicates;
+            _total = total;
+            _nanos = nanos;
+        }
+
+        public long epoch() {
+            return _epoch;
+        }
+
+        // uniques and duplicates since startup
+        public long uniques() {
+            return _uniques;
+        }
+
+        public long duplicates() {
+            return _duplicates;
+        }
+
+        // the number of distinct numbers seen, including any restored at startup
+        public long total() {
+            return _total;
+        }
+
+        public long nanos() {
+            return _nanos;
+        }
+    }
+
+    public class Stripe {
+        private final int _base;
+
+        private Stripe(int base) {
+            _base = base;
+        }
+
+        // only the reader that owns the stripe may call this
+        public void add(long uniques, long duplicates) {
+            long sequence = _cells[_base + SEQUENCE];
+
+            CELLS.setOpaque(_cells, _base + SEQUENCE, sequence + 1);
+            VarHandle.storeStoreFence();
+            CELLS.setOpaque(_cells, _base + UNIQUES, _cells[_base + UNIQUES] + uniques);
+            CELLS.setOpaque(_cells, _base + DUPLICATES, _cells[_base + DUPLICATES] + duplicates);
+            CELLS.setRelease(_cells, _base + SEQUENCE, sequence + 2);
+        }
+    }
+
+    private final long[] _cells;
+    private final Stripe[] _stripes;
+    private final long _baseline;
+    private final Counter _cachedDuplicates;
+    private final Snapshot[] _ring;
+    private long _epoch;
+    private int _ticks;
+
+    // one stripe per reader; baseline is how many numbers the set held before any
+    // reader started
+    public DedupCounters(int stripes, long baseline) {
+        this(stripes, baseline, new Counter());
+    }
+
+    // the same, also counting the duplicates the listeners caught themselves
+    public DedupCounters(int stripes, long baseline, Counter cachedDuplicates) {
+        _cells = new long[stripes * STRIDE];
+        _stripes = new Stripe[stripes];
+        _baseline = baseline;
+        _cachedDuplicates = cachedDuplicates;
+        _ring = new Snapshot[WINDOW_SECONDS + 1];
+
+        for (int i = 0; i < stripes; i++) {
+            _stripes[i] = new Stripe(i * STRIDE);
+        }
+    }
+
+    public Stripe stripe(int stripe) {
+        return _stripes[stripe];
+    }
+
+    public synchronized Snapshot snapshot() {
+        long uniques = 0;
+        long duplicates = 0;
+
+        for (Stripe stripe : _stripes) {
+            int base = stripe._base;
+
+            while (true) {
+                long before = (long) CELLS.getAcquire(_cells, base + SEQUENCE);
+                long stripeUniques = (long) CELLS.getOpaque(_cells, base + UNIQUES);
+                long stripeDuplicates = (long) CELLS.getOpaque(_cells, base + DUPLICATES);
+                VarHandle.loadLoadFence();
+
+                // an odd sequence, or one that moved while we read, means the reader
+                // was partway through a batch; the next look will be past it
+                if ((before & 1) == 0 && before == (long) CELLS.getOpaque(_cells, base + SEQUENCE)) {
+                    uniques += stripeUniques;
+                    duplicates += stripeDuplicates;
+                    break;
+                }
+
+                Thread.onSpinWait();
+            }
+        }
+
+        duplicates += _cachedDuplicates.sum();
+
+        return new Snapshot(++_epoch, uniques, duplicates, _baseline + uniques, System.nanoTime());
+    }
+
+    // takes this second's snapshot for the sliding windows
+    public synchronized void tick() {
+        _ring[_ticks++ % _ring.length] = snapshot();
+    }
+
+    // the average uniques per second over the last `seconds` ticks (or as many
+    // as there have been)
+    public synchronized long uniquesPerSecond(int seconds) {
+        return rate(seconds, true);
+    }
+
+    public synchronized long duplicatesPerSecond(int seconds) {
+        return rate(seconds, false);
+    }
+
+    private long rate(int seconds, boolean uniques) {
+        if (seconds <= 0 || seconds > WINDOW_SECONDS) {
+            throw new IllegalArgumentException(
+                    String.format("Window must be between 1 and %d seconds: %d", WINDOW_SECONDS, seconds));
+        }
+
+        if (_ticks < 2) {
+            return 0;
+        }
+
+        int span = Math.min(seconds, _ticks - 1);
+        Snapshot latest = _ring[(_ticks - 1) % _ring.length];
+        Snapshot earliest = _ring[(_ticks - 1 - span) % _ring.length];
+        long elapsed = latest.nanos() - earliest.nanos();
+
+        if (elapsed <= 0) {
+            return 0;
+        }
+
+        long count = uniques ? latest.uniques() - earliest.uniques() : latest.duplicates() - earliest.duplicates();
+
+        return (long) (count * 1_000_000_000.0 / elapsed);
+    }
+}
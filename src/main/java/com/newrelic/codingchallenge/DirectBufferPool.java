@@ -0,0 +1,51 @@
+package com.newrelic.codingchallenge;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands out direct byte buffers of a fixed size and takes them back when a
+// connection is done with them, so that connection churn doesn't turn into a
+// steady stream of (slow to allocate, slow to free) direct allocations.
+public class DirectBufferPool {
+    private final ConcurrentLinkedQueue<ByteBuffer> _buffers;
+    private final AtomicInteger _pooled;
+    private final int _bufferSize;
+    private final int _maxPooled;
+
+    public DirectBufferPool(int bufferSize, int maxPooled) {
+        _buffers = new ConcurrentLinkedQueue<>();
+        _pooled = new AtomicInteger();
+        _bufferSize = bufferSize;
+        _maxPooled = maxPooled;
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = _buffers.poll();
+
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(_bufferSize);
+        }
+
+        _pooled.decrementAndGet();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() != _bufferSize) {
+            return;
+        }
+
+        if (_pooled.incrementAndGet() > _maxPooled) {
+            _pooled.decrementAndGet();
+            return;
+        }
+
+        buffer.clear();
+        _buffers.offer(buffer);
+    }
+
+    public int pooled() {
+        return _pooled.get();
+    }
+}
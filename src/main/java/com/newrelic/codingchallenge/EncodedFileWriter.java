@@ -0,0 +1,116 @@
+package com.newrelic.codingchallenge;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Writes a stream of numbers to a file through a LogEncoder, for the one-off
+// files - the sorted export at shutdown and the converter's output - rather than
+// the live log.
+//
+// Like snapshots, the file is written under a temporary name and only moved
+// into place by finish(), so a reader never sees half of one. Closing without
+// finishing - say, because writing threw - deletes the temporary file instead.
+public class EncodedFileWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final Path _path;
+    private final Path _temp;
+    private final FileChannel _channel;
+    private final LogEncoder _encoder;
+    private final LogEncoder.Sink _sink;
+    private final ByteBuffer _buffer;
+    private long _count;
+    private boolean _finished;
+
+    public EncodedFileWriter(Path path, LogEncoder encoder) throws IOException {
+        _path = path;
+        _temp = path.resolveSibling(path.getFileName() + ".tmp");
+        _channel = FileChannel.open(_temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        _encoder = encoder;
+        _sink = this::room;
+        _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    // streams the whole set to the file, smallest number first, in one pass over
+    // the bitmap. Returns how many numbers were written.
+    public static long writeSorted(NumberSet numbers, Path path, LogEncoder encoder) throws IOException {
+        try (EncodedFileWriter writer = new EncodedFileWriter(path, encoder)) {
+            try {
+                numbers.forEach(writer::writeUnchecked);
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+
+            writer.finish();
+            return writer.count();
+        }
+    }
+
+    public void write(int number) throws IOException {
+        _encoder.encode(number, _sink);
+        _count++;
+    }
+
+    public long count() {
+        return _count;
+    }
+
+    // writes out whatever the encoder is holding and moves the file into place
+    public void finish() throws IOException {
+        try (FileChannel channel = _channel) {
+            _encoder.flush(_sink);
+            writeBuffer();
+            channel.force(false);
+        }
+
+        Files.move(_temp, _path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        _finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_finished) {
+            return;
+        }
+
+        try {
+            _channel.close();
+        } finally {
+            Files.deleteIfExists(_temp);
+        }
+    }
+
+    private void writeUnchecked(int number) {
+        try {
+            write(number);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private ByteBuffer room(int bytes) throws IOException {
+        if (_buffer.remaining() < bytes) {
+            writeBuffer();
+        }
+
+        return _buffer;
+    }
+
+    private void writeBuffer() throws IOException {
+        _buffer.flip();
+
+        while (_buffer.hasRemaining()) {
+            _channel.write(_buffer);
+        }
+
+        _buffer.clear();
+    }
+}
@@ -0,0 +1,266 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+// Feeds capture files straight into the read queues, with no sockets in the
+// way, so the cost of dedup and logging can be measured on their own.
+//
+// A capture is whatever a client would have sent on one connection: nine-digit
+// lines, or the binary handshake and frames (the load generator writes these
+// with --capture-dir). Each file is memory-mapped and decoded with the same
+// NumberDecoder the listeners use, so anything a listener would reject stops
+// the replay of that file there too. A "terminate" only ends the chunk it's
+// in (see below), so a capture shouldn't have one anywhere but at the end.
+//
+// Text files are split into chunks at line boundaries, one chunk per thread
+// (or at most MAX_CHUNK each), and the chunks are decoded in parallel. Binary
+// frames can't be found from the middle of a file, so a binary capture is
+// always one chunk. Every chunk publishes in batches through a ReadRouter and
+// waits on flow control, just like a listener does.
+public class FileReplay {
+    private static final long MAX_CHUNK = 1 << 30;
+    private static final int WINDOW = 64 * 1024;
+
+    // the longest line a valid text capture can have: "terminate\r\n"
+    private static final int MAX_LINE = 11;
+
+    public static class Result {
+        private final long _numbers;
+        private final long _bytes;
+        private final long _nanos;
+
+        Result(long numbers, long bytes, long nanos) {
+            _numbers = numbers;
+            _bytes = bytes;
+            _nanos = nanos;
+        }
+
+        public long numbers() {
+            return _numbers;
+        }
+
+        public long bytes() {
+            return _bytes;
+        }
+
+        // wall time from the first chunk starting to the last one finishing
+        public long nanos() {
+            return _nanos;
+        }
+    }
+
+    private static class Chunk {
+        private final Path _path;
+        private final FileChannel _channel;
+        private final long _start;
+        private final long _end;
+
+        private Chunk(Path path, FileChannel channel, long start, long end) {
+            _path = path;
+            _channel = channel;
+            _start = start;
+            _end = end;
+        }
+    }
+
+    private final List<Path> _files;
+    private final int _threads;
+    private final ReadRouter _readRouter;
+    private final FlowControl _flowControl;
+    private final Logger _logger;
+    private final Counter _numbersMetric;
+    private final Counter _bytesMetric;
+    private final Counter _rejectedMetric;
+    private final Histogram _decodeNanos;
+    private final Histogram _publishNanos;
+
+    public FileReplay(List<Path> files, int threads, ReadRouter readRouter, FlowControl flowControl,
+            MetricsRegistry metrics, Logger logger) {
+        _files = files;
+        _threads = threads;
+        _readRouter = readRouter;
+        _flowControl = flowControl;
+        _logger = logger;
+        _numbersMetric = metrics.counter("replay_numbers_total");
+        _bytesMetric = metrics.counter("replay_bytes_total");
+        _rejectedMetric = metrics.counter("replay_rejected_total");
+        _decodeNanos = metrics.histogram("replay_decode_nanos");
+        _publishNanos = metrics.histogram("replay_publish_nanos");
+    }
+
+    // replays every file and returns once all of them have been queued
+    public Result run() throws IOException, InterruptedException {
+        List<FileChannel> channels = new ArrayList<>();
+        ExecutorService service = Executors.newFixedThreadPool(_threads);
+
+        try {
+            List<Chunk> chunks = new ArrayList<>();
+
+            for (Path file : _files) {
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                channels.add(channel);
+                chunks.addAll(split(file, channel));
+            }
+
+            long start = System.nanoTime();
+            List<Future<long[]>> futures = new ArrayList<>();
+
+            for (Chunk chunk : chunks) {
+                futures.add(service.submit(() -> replay(chunk)));
+            }
+
+            long numbers = 0;
+            long bytes = 0;
+
+            for (Future<long[]> future : futures) {
+                long[] replayed = future.get();
+                numbers += replayed[0];
+                bytes += replayed[1];
+            }
+
+            return new Result(numbers, bytes, System.nanoTime() - start);
+        } catch (ExecutionException ex) {
+            throw new IOException(String.format("Error while replaying: %s", ex.getCause().getMessage()),
+                    ex.getCause());
+        } finally {
+            service.shutdownNow();
+
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    private List<Chunk> split(Path file, FileChannel channel) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long size = channel.size();
+
+        if (isBinary(channel)) {
+            chunks.add(new Chunk(file, channel, 0, size));
+            return chunks;
+        }
+
+        long chunkSize = Math.min(Math.max((size + _threads - 1) / _threads, WINDOW), MAX_CHUNK);
+        long start = 0;
+
+        while (start < size) {
+            long end = nextLine(channel, Math.min(start + chunkSize, size));
+
+            chunks.add(new Chunk(file, channel, start, end));
+            start = end;
+        }
+
+        return chunks;
+    }
+
+    private static boolean isBinary(FileChannel channel) throws IOException {
+        int length = (int) Math.min(channel.size(), NumberDecoder.HANDSHAKE.length());
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+        for (int i = 0; i < NumberDecoder.HANDSHAKE.length(); i++) {
+            if (i >= length || bytes.get(i) != NumberDecoder.HANDSHAKE.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // the start of the first line at or after `position`. A file with no newline
+    // there isn't valid anyway; the chunk just ends where it is and the decoder
+    // rejects what doesn't parse.
+    private static long nextLine(FileChannel channel, long position) throws IOException {
+        if (position == 0 || position >= channel.size()) {
+            return position;
+        }
+
+        long mapEnd = Math.min(position + MAX_LINE, channel.size());
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position - 1, mapEnd - position + 1);
+
+        for (int i = 0; i < bytes.limit(); i++) {
+            if (bytes.get(i) == '\n') {
+                return position + i;
+            }
+        }
+
+        return position;
+    }
+
+    // decodes and queues one chunk a window at a time; returns the numbers and
+    // bytes it got through
+    private long[] replay(Chunk chunk) throws IOException, InterruptedException {
+        // with --lanes, each file gets lanes of its own, as a connection would
+        ReadRouter.Batch batch = _readRouter.newBatch(NumberDecoder.maxNumbers(WINDOW),
+                String.valueOf(chunk._path.getFileName()));
+
+        try {
+            return replay(chunk, batch);
+        } finally {
+            batch.close();
+        }
+    }
+
+    private long[] replay(Chunk chunk, ReadRouter.Batch batch) throws IOException, InterruptedException {
+        NumberDecoder decoder = new NumberDecoder();
+        NumberDecoder.Handler handler = batch::add;
+        long numbers = 0;
+        long position = chunk._start;
+
+        while (position < chunk._end) {
+            long mapLength = Math.min(chunk._end - position, MAX_CHUNK);
+            MappedByteBuffer mapped = chunk._channel.map(FileChannel.MapMode.READ_ONLY, position, mapLength);
+
+            for (int offset = 0; offset < mapLength; offset += WINDOW) {
+                int length = (int) Math.min(WINDOW, mapLength - offset);
+
+                _flowControl.awaitCapacity();
+
+                long start = System.nanoTime();
+                mapped.limit(offset + length).position(offset);
+
+                NumberDecoder.Status status = decoder.decode(mapped, handler);
+
+                if (position + offset + length == chunk._end && status == NumberDecoder.Status.CONTINUE) {
+                    // a last line without a newline still counts
+                    status = decoder.finish(handler);
+                }
+
+                int count = batch.received();
+                long decoded = System.nanoTime();
+
+                batch.publish();
+
+                _decodeNanos.record(decoded - start);
+                _publishNanos.record(System.nanoTime() - decoded);
+                _numbersMetric.add(count);
+                _bytesMetric.add(length);
+                numbers += count;
+
+                if (status == NumberDecoder.Status.MALFORMED) {
+                    _rejectedMetric.increment();
+                    _logger.warning(String.format("Stopped replaying %s: invalid input between bytes %d and %d",
+                            chunk._path, position + offset, position + offset + length));
+                }
+
+                if (status != NumberDecoder.Status.CONTINUE) {
+                    return new long[] { numbers, position + offset + length - chunk._start };
+                }
+            }
+
+            position += mapLength;
+        }
+
+        return new long[] { numbers, chunk._end - chunk._start };
+    }
+}
@@ -0,0 +1,128 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// The sink behind numbers.log (or numbers.seg).
+//
+// Numbers are encoded by the LogEncoder straight into a direct buffer - no
+// strings, no charset encoder - and the buffer goes to the LogOutput when it
+// fills up or when the NumberLogger running the sink flushes it.
+public class FileSink implements NumberSink {
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final LogOutput _output;
+    private final LogEncoder _encoder;
+    private final LogEncoder.Sink _sink;
+    private final ByteBuffer _buffer;
+    private final Counter _numbersMetric;
+    private final Counter _bytesMetric;
+    private final Histogram _writeNanos;
+    private final Histogram _flushNanos;
+    private volatile long _bytesWritten;
+    private long _numbersSinceFlush;
+    private long _numbersWritten;
+    private volatile long _numbersFlushed;
+    private long _bytesAtLastFlush;
+    private long _lastFlush;
+
+    public FileSink(LogOutput output, LogEncoder encoder, MetricsRegistry metrics) {
+        _output = output;
+        _encoder = encoder;
+        _sink = this::room;
+        _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        _lastFlush = System.nanoTime();
+        _numbersMetric = metrics.counter("log_numbers_total");
+        _bytesMetric = metrics.counter("log_bytes_total");
+        _writeNanos = metrics.histogram("log_write_nanos");
+        _flushNanos = metrics.histogram("log_flush_nanos");
+    }
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public void write(int[] numbers, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            _encoder.encode(numbers[i], _sink);
+        }
+
+        _numbersMetric.add(length);
+        _numbersSinceFlush += length;
+        _numbersWritten += length;
+    }
+
+    // hands everything encoded so far to the output
+    @Override
+    public void flush(boolean sync) throws IOException {
+        PipelineEvents.LogFlush event = new PipelineEvents.LogFlush();
+        event.begin();
+
+        _encoder.flush(_sink);
+        writeBuffer();
+
+        long start = System.nanoTime();
+        long previousFlush = _lastFlush;
+
+        _output.flush(sync);
+        _lastFlush = System.nanoTime();
+        _flushNanos.record(_lastFlush - start);
+
+        if (event.shouldCommit()) {
+            event.numbers = _numbersSinceFlush;
+            event.bytes = _bytesWritten - _bytesAtLastFlush;
+            event.synced = sync;
+            event.sinceLastFlush = _lastFlush - previousFlush;
+            event.commit();
+        }
+
+        _numbersSinceFlush = 0;
+        _bytesAtLastFlush = _bytesWritten;
+        _numbersFlushed = _numbersWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _output.close();
+    }
+
+    // the number of bytes handed to the output so far
+    public long bytesWritten() {
+        return _bytesWritten;
+    }
+
+    // the number of numbers written to the output as of the last flush
+    public long numbersFlushed() {
+        return _numbersFlushed;
+    }
+
+    // makes room in the buffer for the encoder, writing it out if it's too full
+    private ByteBuffer room(int bytes) throws IOException {
+        if (_buffer.remaining() < bytes) {
+            writeBuffer();
+        }
+
+        return _buffer;
+    }
+
+    private void writeBuffer() throws IOException {
+        _buffer.flip();
+
+        int length = _buffer.remaining();
+
+        if (length == 0) {
+            _buffer.clear();
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        _output.write(_buffer);
+        _writeNanos.record(System.nanoTime() - start);
+        _buffer.clear();
+        _bytesWritten += length;
+        _bytesMetric.add(length);
+    }
+}
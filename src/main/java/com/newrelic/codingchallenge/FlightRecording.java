@@ -0,0 +1,56 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.logging.Logger;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+// The recording --jfr-file starts at startup: the JDK's low-overhead "default"
+// settings plus every PipelineEvents event, kept on disk and written to the
+// file when the server shuts down (or, failing that, when the JVM exits).
+public class FlightRecording {
+    private final Recording _recording;
+    private final Path _path;
+    private final Logger _logger;
+
+    private FlightRecording(Recording recording, Path path, Logger logger) {
+        _recording = recording;
+        _path = path;
+        _logger = logger;
+    }
+
+    public static FlightRecording start(Path path, Logger logger) throws IOException {
+        Recording recording;
+
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+        } catch (ParseException ex) {
+            throw new IOException(String.format("Could not read the default JFR settings: %s", ex.getMessage()), ex);
+        }
+
+        recording.setName("number-server");
+        recording.setToDisk(true);
+        recording.setDumpOnExit(true);
+        recording.setDestination(path);
+        recording.start();
+
+        return new FlightRecording(recording, path, logger);
+    }
+
+    // stops recording and writes the file
+    public boolean stop() {
+        try {
+            _recording.stop();
+            _logger.info(String.format("Wrote flight recording to %s", _path));
+            return true;
+        } catch (IllegalStateException ex) {
+            _logger.severe(String.format("Error while writing flight recording: %s", ex.getMessage()));
+            return false;
+        } finally {
+            _recording.close();
+        }
+    }
+}
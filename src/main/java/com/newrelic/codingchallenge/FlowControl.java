@@ -0,0 +1,121 @@
+package com.newrelic.codingchallenge;
+
+// Decides when ingest should stop reading from sockets because the pipeline
+// behind it is backed up.
+//
+// The ring buffers are bounded already, so a full queue would eventually stall
+// a listener in publish() anyway - but by then everything between the socket
+// and the disk is full. This pauses reading as soon as any queue passes its
+// high-water mark and resumes once every queue is back under its low-water mark,
+// so the kernel's socket buffers fill up and TCP slows the clients down while
+// the readers and logger catch up. The gap between the two marks keeps it from
+// flapping on and off with every batch.
+public class FlowControl {
+    private final IntRingBuffer[] _queues;
+    private final int[] _highWater;
+    private final int[] _lowWater;
+    private final WaitStrategy _waitStrategy;
+
+    private volatile boolean _throttled;
+    private long _throttledSince;
+    private long _throttleEvents;
+    private long _throttledNanos;
+
+    public FlowControl(int highWaterPercent, int lowWaterPercent, WaitStrategy waitStrategy,
+            IntRingBuffer... queues) {
+        if (lowWaterPercent < 0 || lowWaterPercent >= highWaterPercent || highWaterPercent > 100) {
+            throw new IllegalArgumentException(String.format(
+                    "Water marks must satisfy 0 <= low < high <= 100: low %d, high %d", lowWaterPercent,
+                    highWaterPercent));
+        }
+
+        _queues = queues;
+        _highWater = new int[queues.length];
+        _lowWater = new int[queues.length];
+        _waitStrategy = waitStrategy;
+
+        for (int i = 0; i < queues.length; i++) {
+            // at least one, or an empty queue would count as backed up
+            _highWater[i] = Math.max(1, (int) ((long) queues[i].capacity() * highWaterPercent / 100));
+            _lowWater[i] = (int) ((long) queues[i].capacity() * lowWaterPercent / 100);
+        }
+    }
+
+    // checks the queues and returns whether ingest should hold off reading
+    public boolean isThrottled() {
+        if (_throttled) {
+            if (allAtOrBelow(_lowWater)) {
+                release();
+                return false;
+            }
+
+            return true;
+        }
+
+        if (anyAtOrAbove(_highWater)) {
+            throttle();
+            return true;
+        }
+
+        return false;
+    }
+
+    // blocks a listener until the pipeline has room again
+    public void awaitCapacity() throws InterruptedException {
+        int attempt = 0;
+
+        while (isThrottled()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Interrupted while throttled");
+            }
+
+            _waitStrategy.idle(attempt++);
+        }
+    }
+
+    // how many times ingest has been paused
+    public synchronized long throttleEvents() {
+        return _throttleEvents;
+    }
+
+    // the total time ingest has spent paused, including a pause in progress
+    public synchronized long throttledNanos() {
+        return _throttledNanos + (_throttled ? System.nanoTime() - _throttledSince : 0);
+    }
+
+    // the transitions are rare, so they lock; the checks on every read don't
+    private synchronized void throttle() {
+        if (!_throttled) {
+            _throttledSince = System.nanoTime();
+            _throttleEvents++;
+            _throttled = true;
+        }
+    }
+
+    private synchronized void release() {
+        if (_throttled) {
+            _throttledNanos += System.nanoTime() - _throttledSince;
+            _throttled = false;
+        }
+    }
+
+    private boolean anyAtOrAbove(int[] marks) {
+        for (int i = 0; i < _queues.length; i++) {
+            if (_queues[i].size() >= marks[i]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean allAtOrBelow(int[] marks) {
+        for (int i = 0; i < _queues.length; i++) {
+            if (_queues[i].size() > marks[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
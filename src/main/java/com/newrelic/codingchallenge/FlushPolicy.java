@@ -0,0 +1,34 @@
+package com.newrelic.codingchallenge;
+
+// How long NumberLogger may hold encoded numbers before handing them to its
+// output, and when it asks the output to make them durable.
+public class FlushPolicy {
+    public enum SyncMode {
+        // leave it to the OS; a crash can lose whatever hadn't been written back
+        NEVER,
+        // sync on every flush; safest and slowest
+        EVERY_FLUSH,
+        // sync once, when the logger closes the file
+        ON_CLOSE
+    }
+
+    private final long _flushIntervalNanos;
+    private final SyncMode _syncMode;
+
+    public FlushPolicy(long flushIntervalNanos, SyncMode syncMode) {
+        _flushIntervalNanos = flushIntervalNanos;
+        _syncMode = syncMode;
+    }
+
+    public long flushIntervalNanos() {
+        return _flushIntervalNanos;
+    }
+
+    public boolean syncOnFlush() {
+        return _syncMode == SyncMode.EVERY_FLUSH;
+    }
+
+    public boolean syncOnClose() {
+        return _syncMode != SyncMode.NEVER;
+    }
+}
@@ -0,0 +1,74 @@
+package com.newrelic.codingchallenge;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// A latency histogram with one bucket per power of two, which is plenty of
+// resolution to see which stage is slow and costs one striped add to record.
+// Percentiles are reported as the upper edge of the bucket they fall in.
+public class Histogram {
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] _buckets;
+    private final LongAdder _count;
+    private final LongAdder _sum;
+    private final LongAccumulator _max;
+
+    public Histogram() {
+        _buckets = new LongAdder[BUCKETS];
+
+        for (int i = 0; i < BUCKETS; i++) {
+            _buckets[i] = new LongAdder();
+        }
+
+        _count = new LongAdder();
+        _sum = new LongAdder();
+        _max = new LongAccumulator(Math::max, 0);
+    }
+
+    public void record(long value) {
+        value = Math.max(0, value);
+
+        // bucket i holds [2^(i-1), 2^i - 1], with zero alone in bucket 0
+        _buckets[BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+        _count.increment();
+        _sum.add(value);
+        _max.accumulate(value);
+    }
+
+    public long count() {
+        return _count.sum();
+    }
+
+    public long sum() {
+        return _sum.sum();
+    }
+
+    public long max() {
+        return _max.get();
+    }
+
+    // the smallest bucket edge that at least `quantile` of the values are under
+    public long percentile(double quantile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = _buckets[i].sum();
+            total += counts[i];
+        }
+
+        long target = (long) Math.ceil(quantile * total);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+
+            if (seen >= target && seen > 0) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+            }
+        }
+
+        return 0;
+    }
+}
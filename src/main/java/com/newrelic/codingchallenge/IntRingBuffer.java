@@ -0,0 +1,212 @@
+package com.newrelic.codingchallenge;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A bounded queue of primitive ints between two pipeline stages, backed by an
+// array that's allocated once up front - no nodes and no boxing per number.
+//
+// There's always exactly one consumer. Producers can be many (multiProducer,
+// e.g. the listeners feeding the reader) or one (singleProducer, e.g. the reader
+// feeding the logger, which skips the compare-and-set on the claim).
+//
+// Producers claim a run of slots by moving the tail, copy their values in, and
+// then mark each slot available by storing the lap it was written in. The
+// consumer only reads a slot once it's marked for the current lap, so a slow
+// producer never exposes a half-written batch, and a producer never overwrites a
+// slot before the consumer has moved past it.
+public class IntRingBuffer implements BatchPublisher, BatchSource {
+    private final int[] _values;
+    private final AtomicIntegerArray _available;
+    private final int _mask;
+    private final int _shift;
+    private final boolean _multiProducer;
+    private final WaitStrategy _waitStrategy;
+
+    // the next sequence a producer will claim, and the next one the consumer
+    // will read
+    private final AtomicLong _tail;
+    private final AtomicLong _head;
+
+    private volatile boolean _closed;
+
+    public static IntRingBuffer multiProducer(int capacity, WaitStrategy waitStrategy) {
+        return new IntRingBuffer(capacity, true, waitStrategy);
+    }
+
+    public static IntRingBuffer singleProducer(int capacity, WaitStrategy waitStrategy) {
+        return new IntRingBuffer(capacity, false, waitStrategy);
+    }
+
+    private IntRingBuffer(int capacity, boolean multiProducer, WaitStrategy waitStrategy) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(String.format("Capacity must be a power of two: %d", capacity));
+        }
+
+        _values = new int[capacity];
+        _available = new AtomicIntegerArray(capacity);
+        _mask = capacity - 1;
+        _shift = Integer.numberOfTrailingZeros(capacity);
+        _multiProducer = multiProducer;
+        _waitStrategy = waitStrategy;
+        _tail = new AtomicLong();
+        _head = new AtomicLong();
+
+        for (int i = 0; i < capacity; i++) {
+            _available.set(i, -1);
+        }
+    }
+
+    public int capacity() {
+        return _values.length;
+    }
+
+    // the number of values claimed by producers but not yet drained; only an
+    // estimate while other threads are using the buffer
+    @Override
+    public int size() {
+        return (int) Math.max(0, _tail.get() - _head.get());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public WaitStrategy waitStrategy() {
+        return _waitStrategy;
+    }
+
+    // marks the end of the stream: every producer has stopped for good, so once
+    // the consumer has drained what's left it can stop too. Producers must be done
+    // publishing before this is called; it doesn't stop them.
+    @Override
+    public void close() {
+        _closed = true;
+    }
+
+    public boolean isClosed() {
+        return _closed;
+    }
+
+    // true once the buffer is closed and the consumer has taken everything. The
+    // closed flag is read first, so every value published before close() counts.
+    @Override
+    public boolean isDrained() {
+        return _closed && isEmpty();
+    }
+
+    public void publish(int value) throws InterruptedException {
+        long sequence = claim(1);
+
+        _values[(int) sequence & _mask] = value;
+        _available.lazySet((int) sequence & _mask, lap(sequence));
+    }
+
+    // publishes values[offset, offset + length), waiting for space when the buffer
+    // is full. Batches bigger than the buffer go in capacity-sized pieces.
+    @Override
+    public void publish(int[] values, int offset, int length) throws InterruptedException {
+        while (length > 0) {
+            int count = Math.min(length, _values.length);
+
+            copy(values, offset, count, claim(count));
+            offset += count;
+            length -= count;
+        }
+    }
+
+    // publishes the whole batch if there's room for it right now, and nothing
+    // otherwise; never waits
+    public boolean tryPublish(int[] values, int offset, int length) {
+        if (length > _values.length) {
+            return false;
+        }
+
+        long sequence = tryClaim(length);
+
+        if (sequence < 0) {
+            return false;
+        }
+
+        copy(values, offset, length, sequence);
+        return true;
+    }
+
+    // copies up to into.length available values into the array and returns how
+    // many there were, without waiting. Only the consumer may call this.
+    @Override
+    public int drain(int[] into) {
+        return drain(into, 0, into.length);
+    }
+
+    // the same, but copies at most max values into the array from offset on
+    public int drain(int[] into, int offset, int max) {
+        long head = _head.get();
+        int count = 0;
+
+        while (count < max) {
+            long sequence = head + count;
+            int index = (int) sequence & _mask;
+
+            if (_available.get(index) != lap(sequence)) {
+                break;
+            }
+
+            into[offset + count++] = _values[index];
+        }
+
+        if (count > 0) {
+            _head.lazySet(head + count);
+        }
+
+        return count;
+    }
+
+    private void copy(int[] values, int offset, int count, long sequence) {
+        for (int i = 0; i < count; i++, sequence++) {
+            _values[(int) sequence & _mask] = values[offset + i];
+            _available.lazySet((int) sequence & _mask, lap(sequence));
+        }
+    }
+
+    // claims count slots, or returns -1 if they aren't free
+    private long tryClaim(int count) {
+        while (true) {
+            long tail = _tail.get();
+            long next = tail + count;
+
+            if (next - _head.get() > _values.length) {
+                return -1;
+            }
+
+            if (!_multiProducer) {
+                _tail.lazySet(next);
+                return tail;
+            }
+
+            if (_tail.compareAndSet(tail, next)) {
+                return tail;
+            }
+        }
+    }
+
+    private long claim(int count) throws InterruptedException {
+        int attempt = 0;
+        long sequence;
+
+        while ((sequence = tryClaim(count)) < 0) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Interrupted while waiting for space in the ring buffer");
+            }
+
+            _waitStrategy.idle(attempt++);
+        }
+
+        return sequence;
+    }
+
+    private int lap(long sequence) {
+        return (int) (sequence >>> _shift);
+    }
+}
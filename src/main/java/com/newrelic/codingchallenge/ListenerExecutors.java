@@ -0,0 +1,42 @@
+package com.newrelic.codingchallenge;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+// Builds the executor the blocking listeners run on.
+//
+// The server is still compiled for Java 11, so virtual threads are looked up at
+// runtime: on JDK 21 and later each listener gets its own virtual thread, which
+// costs next to nothing to start and parks instead of holding an OS thread while
+// it waits on its socket. On older JDKs it falls back to a cached pool of
+// platform threads; the ConnectionRegistry caps how many run at once either way.
+public class ListenerExecutors {
+    private ListenerExecutors() {
+    }
+
+    public static ExecutorService create(ServerOptions.IngestMode mode, int maxClients, Logger logger) {
+        if (mode != ServerOptions.IngestMode.VIRTUAL) {
+            return Executors.newFixedThreadPool(maxClients);
+        }
+
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            logger.warning(String.format("Virtual threads need JDK 21 or later (running %s); using platform threads",
+                    System.getProperty("java.version")));
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+}
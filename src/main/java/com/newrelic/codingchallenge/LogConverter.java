@@ -0,0 +1,97 @@
+package com.newrelic.codingchallenge;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+// Turns the binary files back into the text format of numbers.log, one number
+// per line:
+//
+//   java -cp coding-challenge-shadow.jar com.newrelic.codingchallenge.LogConverter <input> <output>
+//
+// The input can be a segment file (--log-format=segments or --export=segments)
+// or a snapshot of the seen set; the format is worked out from its first bytes.
+// Segments come out in the order they were written, sorted within each segment;
+// a snapshot comes out fully sorted.
+public class LogConverter {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: LogConverter <segments or snapshot file> <text output>");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        long count = convert(Paths.get(args[0]), Paths.get(args[1]));
+
+        Logger.getGlobal().info(String.format("Wrote %d numbers to %s in %d ms", count, args[1],
+                (System.nanoTime() - start) / 1_000_000));
+    }
+
+    // returns how many numbers were written
+    public static long convert(Path input, Path output) throws IOException {
+        if (NumberSetSnapshot.logLength(input) >= 0) {
+            ShardedNumberSet numbers = new ShardedNumberSet(1);
+            NumberSetSnapshot.read(input, numbers);
+
+            return EncodedFileWriter.writeSorted(numbers, output, new TextLogEncoder());
+        }
+
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+                EncodedFileWriter writer = new EncodedFileWriter(output, new TextLogEncoder())) {
+            ByteBuffer segment = ByteBuffer.allocate(SegmentLogEncoder.maxSegmentSize());
+
+            while (readFully(channel, segment, SegmentLogEncoder.HEADER_SIZE)) {
+                int length = segment.getInt(8);
+
+                if (segment.getInt(0) != SegmentLogEncoder.MAGIC || length < 0
+                        || SegmentLogEncoder.HEADER_SIZE + length > segment.capacity()) {
+                    throw new IOException(String.format("Not a segment file: %s", input));
+                }
+
+                readFully(channel, segment, SegmentLogEncoder.HEADER_SIZE + length);
+                segment.flip();
+
+                try {
+                    SegmentLogEncoder.decode(segment, number -> {
+                        try {
+                            writer.write(number);
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    });
+                } catch (UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+
+                segment.clear();
+            }
+
+            writer.finish();
+            return writer.count();
+        }
+    }
+
+    // reads until the buffer's position reaches `until`. Returns false at a clean
+    // end of file, before any of the segment was read.
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, int until) throws IOException {
+        buffer.limit(until);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (buffer.position() == 0) {
+                    return false;
+                }
+
+                throw new EOFException("Ran out of input in the middle of a segment");
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Turns unique numbers into the bytes of an output file. The encoder doesn't own
+// a buffer; it asks the sink for one with enough room whenever it has something
+// to put down, and the sink writes out what's already there if it has to.
+public interface LogEncoder {
+    interface Sink {
+        // returns a buffer with at least `bytes` remaining, positioned where the
+        // next bytes go
+        ByteBuffer room(int bytes) throws IOException;
+    }
+
+    void encode(int number, Sink sink) throws IOException;
+
+    // puts down anything the encoder has been holding back; called before every
+    // flush of the output
+    void flush(Sink sink) throws IOException;
+}
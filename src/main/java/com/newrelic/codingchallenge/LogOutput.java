@@ -0,0 +1,16 @@
+package com.newrelic.codingchallenge;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Where FileSink puts the bytes it has encoded. The sink does its own
+// buffering, so an output only ever sees large writes.
+public interface LogOutput extends Closeable {
+    // writes everything between the buffer's position and limit
+    void write(ByteBuffer buffer) throws IOException;
+
+    // makes everything written so far visible to other readers of the file, and
+    // if `sync` is set, durable on disk
+    void flush(boolean sync) throws IOException;
+}
@@ -0,0 +1,162 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+
+// Reads every number in (part of) numbers.log back into a NumberSet.
+//
+// The file is split into one chunk per thread and each chunk is memory-mapped
+// and parsed independently. A chunk owns every line that starts inside it: it
+// skips the partial line it starts in the middle of, and reads past its end to
+// finish its last line.
+//
+// Scanning stops at the first line that isn't a number. That's normally the end
+// of a file cut short by a crash - half a line, or the zero-filled tail of a
+// memory-mapped chunk - and validLength() says where the good part ends. Valid
+// lines after a bad one mean the file is damaged, and that's an error.
+public class LogScanner {
+    private static final long MIN_CHUNK = 1 << 20;
+    private static final long MAX_CHUNK = 1 << 30;
+
+    // a line can't be longer than this; mapped past the end of a chunk so the
+    // chunk can finish its last line
+    private static final int MAX_LINE = NumberDecoder.DIGITS + 1;
+
+    public static class Result {
+        private final long _numbers;
+        private final long _validLength;
+
+        Result(long numbers, long validLength) {
+            _numbers = numbers;
+            _validLength = validLength;
+        }
+
+        // the number of lines read, including ones already in the set
+        public long numbers() {
+            return _numbers;
+        }
+
+        public long validLength() {
+            return _validLength;
+        }
+    }
+
+    private static class Chunk {
+        long start;
+        long lines;
+        long firstInvalid = -1;
+    }
+
+    public static Result scan(FileChannel channel, long from, NumberSet seenNumbers, int threads)
+            throws IOException, InterruptedException {
+        long end = channel.size();
+
+        if (from >= end) {
+            return new Result(0, end);
+        }
+
+        long chunkSize = Math.min(Math.max((end - from + threads - 1) / threads, MIN_CHUNK), MAX_CHUNK);
+        ExecutorService service = Executors.newFixedThreadPool(threads);
+        List<Future<Chunk>> futures = new ArrayList<>();
+
+        try {
+            for (long start = from; start < end; start += chunkSize) {
+                final long chunkStart = start;
+                final long chunkEnd = Math.min(start + chunkSize, end);
+
+                futures.add(service.submit(() -> scanChunk(channel, from, chunkStart, chunkEnd, end, seenNumbers)));
+            }
+
+            long lines = 0;
+            long firstInvalid = -1;
+            List<Chunk> chunks = new ArrayList<>();
+
+            for (Future<Chunk> future : futures) {
+                Chunk chunk = future.get();
+                chunks.add(chunk);
+                lines += chunk.lines;
+
+                if (firstInvalid < 0 && chunk.firstInvalid >= 0) {
+                    firstInvalid = chunk.firstInvalid;
+                }
+            }
+
+            if (firstInvalid < 0) {
+                return new Result(lines, end);
+            }
+
+            for (Chunk chunk : chunks) {
+                if (chunk.start > firstInvalid && chunk.lines > 0) {
+                    throw new IOException(String.format("numbers.log is damaged at offset %d", firstInvalid));
+                }
+            }
+
+            return new Result(lines, firstInvalid);
+        } catch (ExecutionException ex) {
+            throw new IOException(String.format("Error while scanning log: %s", ex.getCause().getMessage()),
+                    ex.getCause());
+        } finally {
+            service.shutdownNow();
+        }
+    }
+
+    private static Chunk scanChunk(FileChannel channel, long from, long start, long end, long fileEnd,
+            NumberSet seenNumbers) throws IOException {
+        // map one byte before the chunk to see whether it starts on a line boundary
+        long mapStart = start == from ? start : start - 1;
+        long mapEnd = Math.min(end + MAX_LINE, fileEnd);
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+
+        Chunk chunk = new Chunk();
+        chunk.start = start;
+
+        int limit = bytes.limit();
+        int chunkLimit = (int) (end - mapStart);
+        int position = 0;
+
+        if (start != from) {
+            // skip the rest of a line that started in the previous chunk
+            while (position < limit && bytes.get(position) != '\n') {
+                position++;
+            }
+
+            position++;
+        }
+
+        while (position < chunkLimit) {
+            int value = 0;
+            int digits = 0;
+            int i = position;
+
+            while (i < limit && digits <= NumberDecoder.DIGITS) {
+                byte b = bytes.get(i);
+
+                if (b < '0' || b > '9') {
+                    break;
+                }
+
+                value = value * 10 + (b - '0');
+                digits++;
+                i++;
+            }
+
+            if (digits == 0 || digits > NumberDecoder.DIGITS || i == limit || bytes.get(i) != '\n') {
+                chunk.firstInvalid = mapStart + position;
+                break;
+            }
+
+            seenNumbers.add(value);
+            chunk.lines++;
+            position = i + 1;
+        }
+
+        return chunk;
+    }
+}
@@ -1,136 +1,541 @@
 package com.newrelic.codingchallenge;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.net.ServerSocket;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 public class Main {
     public static String LOG_FILE_PATH = "./numbers.log";
+    public static String SNAPSHOT_FILE_PATH = "./numbers.snapshot";
+    public static String SEGMENTS_FILE_PATH = "./numbers.seg";
+    public static String EXPORT_FILE_PATH = "./numbers.sorted";
+    public static String TCP_SPILL_FILE_PATH = "./tcp-sink.spill";
+
+    // how long a snapshot may wait for numbers.log to catch up with it, on top of
+    // the log's flush interval
+    private static final long SNAPSHOT_CATCH_UP_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final long LOGGER_ABORT_SECONDS = 5;
 
     public static void main(final String[] args) throws Exception {
+        final ServerOptions options = ServerOptions.parse(args);
+
         // create the queues and atomic counters necessary for all of this to connect
-        // - a concurrent queue for the readers
-        // - a concurrent queue for the logger
-        // - atomic integers for the reporter
-        // - a concurrent set for the list of unique numbers
-        final ConcurrentLinkedQueue<Integer> readQueue = new ConcurrentLinkedQueue<Integer>();
-        final ConcurrentLinkedQueue<Integer> logQueue = new ConcurrentLinkedQueue<Integer>();
-        final AtomicInteger uniques = new AtomicInteger();
-        final AtomicInteger duplicates = new AtomicInteger();
-        final AtomicBoolean terminationSignal = new AtomicBoolean();
-        final Set<Integer> seenNumbers = ConcurrentHashMap.newKeySet();
+        // - a bounded ring buffer for each reader shard, fed by every listener
+        // - a bounded ring buffer for the logger, fed by the readers
+        // - striped counters for the reporter, one stripe per reader
+        // - an off-heap bitset for the list of unique numbers, split into one
+        // slice per reader shard
+        // - in a cluster, a bounded ring buffer for the link to each other node,
+        // carrying the numbers that node owns
+        final MetricsRegistry metrics = new MetricsRegistry();
+        final int shards = options.getShards();
+        final ClusterTopology topology = options.getClusterTopology();
+        final IntRingBuffer[] readQueues = new IntRingBuffer[shards];
+        final ReadLanes[] readLanes = new ReadLanes[shards];
+        final BatchSource[] readSources = new BatchSource[shards];
+        final IntRingBuffer[] linkQueues = new IntRingBuffer[topology.nodes()];
+
+        // with --lanes, each reader gets a lane per connection instead of one shared
+        // queue, with the queue's capacity split between as many clients as may
+        // connect. A full lane only holds up its own connection, so lanes aren't
+        // part of flow control.
+        final int laneCapacity = Integer.highestOneBit(
+                Math.max(1, options.getQueueCapacity() / ServerOptions.MAX_CLIENTS));
+
+        for (int i = 0; i < shards; i++) {
+            if (options.getLaneMode() == ServerOptions.LaneMode.SHARED) {
+                readQueues[i] = IntRingBuffer.multiProducer(options.getQueueCapacity(), options.createWaitStrategy());
+                readSources[i] = readQueues[i];
+            } else {
+                readLanes[i] = new ReadLanes(laneCapacity, options.getLaneWeights(), options.createWaitStrategy(),
+                        metrics);
+                readSources[i] = readLanes[i];
+            }
+        }
+
+        for (int node = 0; node < topology.nodes(); node++) {
+            if (node != topology.nodeId()) {
+                linkQueues[node] = IntRingBuffer.multiProducer(options.getQueueCapacity(),
+                        options.createWaitStrategy());
+            }
+        }
+
+        final ReadRouter readRouter = ReadRouter.forCluster(topology, readQueues, readLanes, linkQueues,
+                options.getClientRate(), options.getListenerCache(), metrics);
+        final IntRingBuffer logQueue = shards == 1
+                ? IntRingBuffer.singleProducer(options.getQueueCapacity(), options.createWaitStrategy())
+                : IntRingBuffer.multiProducer(options.getQueueCapacity(), options.createWaitStrategy());
+
+        // with --tcp-sink, the uniques also go to a queue of their own for the TCP
+        // sink, which only holds up ingest if it's allowed to block
+        final IntRingBuffer tcpSinkQueue = options.getTcpSinkHost() == null ? null
+                : shards == 1 ? IntRingBuffer.singleProducer(options.getQueueCapacity(), options.createWaitStrategy())
+                        : IntRingBuffer.multiProducer(options.getQueueCapacity(), options.createWaitStrategy());
+        final boolean tcpSinkBlocks = options.getTcpSinkOverflow() == SinkFanout.OverflowPolicy.BLOCK;
+
+        // ingest stops reading once any of the queues is past its high-water mark.
+        // Peers' links only wait on the local queues - if they waited on the link
+        // queues too, two nodes each full of numbers for the other would wait on
+        // each other forever.
+        final IntRingBuffer[] localQueues = Arrays.copyOf(readQueues, shards + 2);
+        localQueues[shards] = logQueue;
+        localQueues[shards + 1] = tcpSinkBlocks ? tcpSinkQueue : null;
+        final IntRingBuffer[] allQueues = Stream.concat(Arrays.stream(localQueues), Arrays.stream(linkQueues))
+                .filter(Objects::nonNull).toArray(IntRingBuffer[]::new);
+        final FlowControl flowControl = new FlowControl(options.getHighWaterPercent(), options.getLowWaterPercent(),
+                options.createWaitStrategy(), allQueues);
+        final FlowControl peerFlowControl = new FlowControl(options.getHighWaterPercent(),
+                options.getLowWaterPercent(), options.createWaitStrategy(),
+                Arrays.stream(localQueues).filter(Objects::nonNull).toArray(IntRingBuffer[]::new));
+        final TerminationSignal terminationSignal = new TerminationSignal();
+        // the readers and the logger keep going after a terminate until their
+        // queues are closed and empty; this stops them early if draining runs past
+        // the shutdown deadline
+        final AtomicBoolean abortSignal = new AtomicBoolean();
+        final ShardedNumberSet seenNumbers = new ShardedNumberSet(shards, topology.firstShard(),
+                topology.totalShards());
         final Logger logger = Logger.getGlobal();
 
-        // create the log file and writeable buffer
-        final BufferedWriter writer = new BufferedWriter(new FileWriter(LOG_FILE_PATH));
+        // start recording before anything else, so the recording covers startup
+        // and any restore too
+        final FlightRecording recording = options.getJfrFile() != null
+                ? FlightRecording.start(Paths.get(options.getJfrFile()), logger)
+                : null;
+
+        if (recording != null) {
+            logger.info(String.format("Recording flight recorder events to %s", options.getJfrFile()));
+        }
+
+        // when restarting, rebuild the seen set from the last snapshot and the log
+        // before anything else touches them, and append to the log from there
+        final long logStart = options.isRestore()
+                ? WarmRestart.restore(seenNumbers, Paths.get(LOG_FILE_PATH), Paths.get(SNAPSHOT_FILE_PATH),
+                        Runtime.getRuntime().availableProcessors(), logger)
+                : 0;
 
-        // start up a thread pool for the number readers
+        // the set only changes through the readers from here on, so its size now
+        // plus every unique they count is its size at any later snapshot
+        final DedupCounters counters = new DedupCounters(shards, seenNumbers.size(),
+                metrics.counter("ingest_cache_hits_total"));
+
+        // create the log file; the logger closes it when it stops
+        final LogOutput logOutput = openLogOutput(options);
+
+        // every sink gets the readers' uniques through the fanout: the log always,
+        // blocking when its queue is full, and the TCP sink if there is one, under
+        // its own overflow policy
+        final FileSink fileSink = new FileSink(logOutput, options.createLogEncoder(), metrics);
+        final SinkFanout uniques = new SinkFanout(metrics, logger);
+        final List<NumberLogger> sinkWorkers = new ArrayList<>();
+
+        uniques.add(fileSink.name(), logQueue, SinkFanout.OverflowPolicy.BLOCK, null);
+        sinkWorkers.add(new NumberLogger(fileSink, options.createFlushPolicy(), logQueue, null, abortSignal, metrics,
+                logger));
+
+        if (tcpSinkQueue != null) {
+            TcpSink tcpSink = new TcpSink(options.getTcpSinkHost(), options.getTcpSinkPort(), abortSignal, metrics,
+                    logger);
+            SpillFile spill = options.getTcpSinkOverflow() == SinkFanout.OverflowPolicy.SPILL
+                    ? new SpillFile(Paths.get(TCP_SPILL_FILE_PATH))
+                    : null;
+
+            uniques.add(tcpSink.name(), tcpSinkQueue, options.getTcpSinkOverflow(), spill);
+            sinkWorkers.add(new NumberLogger(tcpSink, options.createFlushPolicy(), tcpSinkQueue, spill, abortSignal,
+                    metrics, logger));
+            logger.info(String.format("Forwarding unique numbers to %s:%d", options.getTcpSinkHost(),
+                    options.getTcpSinkPort()));
+        }
+
+        // start up a thread pool for the number readers, one per shard
         // - if the number wasn't in the set, it increments the "new" atomic
-        // counter and sends the number to be written to the log
+        // counter and sends the number to every sink
         // - if the number was in the set, it increments the "dup" atomic counter
-        logger.info("Starting reader thread");
+        logger.info(String.format("Starting %d reader threads", shards));
 
-        ExecutorService readerService = Executors.newSingleThreadExecutor();
-        readerService.execute(
-                new NumberReader(readQueue, logQueue, uniques, duplicates, seenNumbers, terminationSignal, logger));
+        ExecutorService readerService = Executors.newFixedThreadPool(shards);
+        final List<NumberReader> readers = new ArrayList<>();
 
-        // start up a thread pool for the logger
-        logger.info("Starting logger thread");
+        for (int i = 0; i < shards; i++) {
+            readers.add(new NumberReader(readSources[i], uniques, counters.stripe(i), seenNumbers.shard(i),
+                    abortSignal, metrics, logger));
+            readerService.execute(readers.get(i));
+        }
 
-        ExecutorService loggerService = Executors.newSingleThreadExecutor();
-        loggerService.execute(new NumberLogger(writer, logQueue, terminationSignal, logger));
+        // start up a thread pool for the sinks, one thread each
+        logger.info(String.format("Starting %d sink threads", sinkWorkers.size()));
+
+        ExecutorService loggerService = Executors.newFixedThreadPool(sinkWorkers.size());
+
+        for (NumberLogger sinkWorker : sinkWorkers) {
+            loggerService.execute(sinkWorker);
+        }
 
         // start up a scheduled thread pool for the reporter
         // - every 10 seconds, the reporter reads out the value of the counters and
         // writes them to stdout, then resets the counters
         logger.info("Starting reporter thread");
 
-        ScheduledExecutorService reporterService = Executors.newScheduledThreadPool(1);
-        reporterService.scheduleAtFixedRate(new NumberReporter(uniques, duplicates, seenNumbers, logger), 10, 10,
-                TimeUnit.SECONDS);
-
-        ExecutorService listenerService = Executors.newFixedThreadPool(5);
-        ServerSocket server;
-        List<NumberListener> listeners = new ArrayList<>();
-
-        // this is here and not in a try-with-resources so the dumb gatekeeper
-        // service can close it later
-        server = new ServerSocket(4000);
-
-        // DEBUG ONLY - start up a thread pool that reports backpressure on the queues
-        // logger.info("Starting backpressure thread");
-
-        // ScheduledExecutorService backpressureService =
-        // Executors.newScheduledThreadPool(1);
-
-        // backpressureService.scheduleAtFixedRate(() -> {
-        // logger.info(String.format("STATUS: Active threads: %d; Read Queue: %d; Log
-        // Queue: %d",
-        // ((ThreadPoolExecutor) listenerService).getActiveCount(), readQueue.size(),
-        // logQueue.size()));
-        // }, 1, 1, TimeUnit.SECONDS);
-
-        // This seems like a horrible hack but I haven't been able to find a better way
-        // to do it, either in my head or on the internet. Both the accept call on the
-        // server and the read calls in the listener block, so they don't see the
-        // termination signal change until another connection is attempted or the client
-        // disconnects, respectively.
-        //
-        // Since I haven't found a cleaner way to prevent that blocking, I'll just check
-        // the status of the terminate signal every second and if it's set, kill
-        // everything manually.
-        //
-        // A day later: maybe something like a Guava service manager could make this
-        // easier?
-        ScheduledExecutorService gatekeeperService = Executors.newScheduledThreadPool(1);
-
-        gatekeeperService.scheduleAtFixedRate(() -> {
-            if (terminationSignal.get()) {
-                logger.info("Shutting down");
-
-                for (NumberListener listener : listeners) {
-                    listener.shutdown();
+        ScheduledExecutorService reporterService = Executors.newScheduledThreadPool(2);
+        final ClusterStats clusterStats = new ClusterStats(topology.nodeId(), topology.nodes(), counters);
+        final NumberReporter numberReporter = new NumberReporter(counters,
+                topology.isClustered() ? clusterStats : null, flowControl, logger);
+        reporterService.scheduleAtFixedRate(numberReporter, 10, 10, TimeUnit.SECONDS);
+
+        // snapshots share the reporter's thread pool, which has a second thread so
+        // a snapshot waiting for the log to catch up doesn't hold a report back
+        final SnapshotWriter snapshotWriter = options.getSnapshotSeconds() > 0
+                ? new SnapshotWriter(seenNumbers, Paths.get(SNAPSHOT_FILE_PATH), fileSink, logStart, readers,
+                        options.createFlushPolicy().flushIntervalNanos() + SNAPSHOT_CATCH_UP_NANOS, logger)
+                : null;
+
+        if (snapshotWriter != null) {
+            reporterService.scheduleWithFixedDelay(snapshotWriter, options.getSnapshotSeconds(),
+                    options.getSnapshotSeconds(), TimeUnit.SECONDS);
+        }
+
+        // listeners run on fixed pools of platform threads or on virtual threads,
+        // one pool per acceptor; either way the registry admits at most MAX_CLIENTS
+        // at a time across all of them and forgets each one as soon as its
+        // connection closes. The NIO ingest mode opens its own channel and closes it
+        // when it sees the termination signal.
+        final ConnectionRegistry connections = new ConnectionRegistry(ServerOptions.MAX_CLIENTS);
+        final boolean replaying = options.getReplayFiles() != null;
+        final AcceptorGroup acceptors = options.getIngestMode() != ServerOptions.IngestMode.NIO && !replaying
+                ? new AcceptorGroup(options.getPort(), options.getAcceptors(), options.getIngestMode(), connections,
+                        readRouter, flowControl, terminationSignal, metrics, logger)
+                : null;
+
+        // the queue depths and set size are read when the metrics are scraped; the
+        // counters and histograms are fed by the stages themselves
+        for (int i = 0; i < shards; i++) {
+            metrics.gauge(String.format("read_queue_depth{shard=\"%d\"}", i), readSources[i]::size);
+        }
+
+        metrics.gauge("log_queue_depth", logQueue::size);
+
+        // the same depths for flight recordings, however they were started
+        final Map<String, IntRingBuffer> namedQueues = new LinkedHashMap<>();
+
+        for (int i = 0; i < shards; i++) {
+            if (readQueues[i] != null) {
+                namedQueues.put(String.format("read-%d", i), readQueues[i]);
+            }
+        }
+
+        namedQueues.put("log", logQueue);
+
+        if (tcpSinkQueue != null) {
+            namedQueues.put("sink-tcp", tcpSinkQueue);
+        }
+
+        for (int node = 0; node < topology.nodes(); node++) {
+            if (linkQueues[node] != null) {
+                namedQueues.put(String.format("link-%d", node), linkQueues[node]);
+            }
+        }
+
+        PipelineEvents.watchQueues(namedQueues);
+        // the reporter's unique total: the same figure as seenNumbers.size() without
+        // adding up the set's block counts on every scrape
+        metrics.gauge("seen_numbers", () -> counters.snapshot().total());
+        metrics.gauge("flow_throttle_events_total", flowControl::throttleEvents);
+        metrics.gauge("flow_throttled_nanos_total", flowControl::throttledNanos);
+
+        if (options.getListenerCache() > 0) {
+            final Counter cacheLookups = metrics.counter("ingest_cache_lookups_total");
+            final Counter cacheHits = metrics.counter("ingest_cache_hits_total");
+            metrics.gauge("ingest_cache_hit_percent",
+                    () -> cacheLookups.sum() == 0 ? 0 : cacheHits.sum() * 100 / cacheLookups.sum());
+        }
+
+        metrics.gauge("dedup_uniques_per_second{window=\"10s\"}", () -> counters.uniquesPerSecond(10));
+        metrics.gauge("dedup_uniques_per_second{window=\"60s\"}", () -> counters.uniquesPerSecond(60));
+        metrics.gauge("dedup_duplicates_per_second{window=\"10s\"}", () -> counters.duplicatesPerSecond(10));
+        metrics.gauge("dedup_duplicates_per_second{window=\"60s\"}", () -> counters.duplicatesPerSecond(60));
+        reporterService.scheduleAtFixedRate(() -> {
+            metrics.sample();
+            counters.tick();
+        }, 1, 1, TimeUnit.SECONDS);
+
+        // link up with the rest of the cluster before taking any clients, so peers
+        // can start forwarding to this node as soon as they have numbers for it
+        final ClusterNode cluster = topology.isClustered()
+                ? new ClusterNode(topology, linkQueues, clusterStats, terminationSignal, metrics, logger)
+                : null;
+
+        if (cluster != null) {
+            logger.info(String.format("Starting cluster node %d of %d on %s", topology.nodeId(), topology.nodes(),
+                    topology.describe(topology.nodeId())));
+            cluster.start(readRouter, peerFlowControl);
+
+            for (int node = 0; node < topology.nodes(); node++) {
+                if (linkQueues[node] != null) {
+                    metrics.gauge(String.format("cluster_link_queue_depth{node=\"%d\"}", node),
+                            linkQueues[node]::size);
                 }
+            }
+
+            metrics.gauge("cluster_peers_connected", cluster::connectedPeers);
+        }
+
+        final MetricsServer metricsServer = options.getMetricsPort() > 0
+                ? new MetricsServer(options.getMetricsPort(), metrics)
+                : null;
+
+        if (metricsServer != null) {
+            logger.info(String.format("Serving metrics on http://localhost:%d/metrics", metricsServer.localPort()));
+            metricsServer.start();
+        }
+
+        final QueryServer queryServer = options.getQueryPort() > 0
+                ? new QueryServer(options.getQueryPort(), new QueryHandler(seenNumbers), metrics, logger)
+                : null;
+
+        if (queryServer != null) {
+            logger.info(String.format("Answering queries on localhost:%d", queryServer.localPort()));
+            queryServer.start();
+        }
+
+        // once ingest has stopped, shut down one stage at a time, front to back, so
+        // every number that made it into a queue gets deduplicated and logged
+        final ShutdownCoordinator shutdown = new ShutdownCoordinator(options.getShutdownTimeoutNanos(), logger);
 
-                listenerService.shutdownNow();
-                readerService.shutdownNow();
-                loggerService.shutdownNow();
-                reporterService.shutdownNow();
-                gatekeeperService.shutdownNow();
-                // backpressureService.shutdownNow();
+        shutdown.addPhase("ingest", deadline -> {
+            // the acceptors have already stopped; hang up on whoever is still connected
+            connections.shutdownAll();
 
+            if (acceptors == null || acceptors.awaitListeners(deadline)) {
+                return true;
+            }
+
+            acceptors.shutdownNow();
+            return false;
+        });
+
+        if (cluster != null) {
+            shutdown.addPhase("forward", cluster::closeLinks);
+
+            // the peers' links feed the read queues too, so they have to finish
+            // before the queues can be closed
+            shutdown.addPhase("peers", cluster::awaitPeers);
+        }
+
+        shutdown.addPhase("dedup", deadline -> {
+            // nothing publishes to the read queues any more; the readers stop once
+            // they've emptied them
+            for (BatchSource readSource : readSources) {
+                readSource.close();
+            }
+
+            if (ShutdownCoordinator.awaitTermination(readerService, deadline)) {
+                return true;
+            }
+
+            abortSignal.set(true);
+            readerService.shutdownNow();
+            return false;
+        });
+
+        shutdown.addPhase("log", deadline -> {
+            // each sink stops once it has written everything, then flushes (and for
+            // the log, syncs) as it closes
+            logQueue.close();
+
+            if (tcpSinkQueue != null) {
+                tcpSinkQueue.close();
+            }
+
+            if (ShutdownCoordinator.awaitTermination(loggerService, deadline)) {
+                return true;
+            }
+
+            // not shutdownNow - interrupting the logger mid-write would close the log
+            // file under it; have it stop at the next batch and close up instead
+            abortSignal.set(true);
+            loggerService.awaitTermination(LOGGER_ABORT_SECONDS, TimeUnit.SECONDS);
+            return false;
+        });
+
+        if (options.getExportFormat() != ServerOptions.ExportFormat.NONE) {
+            shutdown.addPhase("export", deadline -> {
+                // the readers are done, so the set won't change under the export
                 try {
-                    server.close();
-                    writer.close();
-                } catch (Exception ex) {
+                    long exported = EncodedFileWriter.writeSorted(seenNumbers, Paths.get(EXPORT_FILE_PATH),
+                            options.createExportEncoder());
+                    logger.info(String.format("Exported %d numbers to %s", exported, EXPORT_FILE_PATH));
+                    return true;
+                } catch (IOException ex) {
+                    logger.severe(String.format("Error while exporting numbers: %s", ex.getMessage()));
+                    return false;
                 }
+            });
+        }
+
+        if (cluster != null) {
+            // every node's readers are done by now or soon will be; swap final
+            // totals so the last report covers the whole cluster
+            shutdown.addPhase("cluster", cluster::finish);
+        }
+
+        shutdown.addPhase("report", deadline -> {
+            // let a scheduled snapshot or report that's already running finish
+            reporterService.shutdown();
+            reporterService.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+            // the set and the log now match exactly, which makes for the best
+            // snapshot there is - unless something was cut short above
+            if (snapshotWriter != null && shutdown.isClean()) {
+                snapshotWriter.run();
             }
-        }, 1, 1, TimeUnit.SECONDS);
 
-        // start up a server with 5 listeners
-        logger.info("Starting server on port 4000");
-
-        while (!terminationSignal.get()) {
-            try {
-                NumberListener numberListener = new NumberListener(server.accept(), readQueue, terminationSignal,
-                        logger);
-                listeners.add(numberListener);
-                listenerService.execute(numberListener);
-            } catch (Exception ex) {
-                logger.info(String.format("Exception while connecting: %s", ex.getMessage()));
+            // one last report covering everything since the previous one
+            numberReporter.run();
+
+            if (options.getListenerCache() > 0) {
+                reportListenerCache(metrics, logger);
             }
+
+            return true;
+        });
+
+        if (recording != null) {
+            shutdown.addPhase("recording", deadline -> recording.stop());
         }
+
+        FileReplay.Result replayed = null;
+
+        if (replaying) {
+            // no clients; push the capture files through the readers and the log as
+            // fast as they'll go, then shut down as if terminated
+            logger.info(String.format("Replaying %d files on %d threads", options.getReplayFiles().size(),
+                    options.getReplayThreads()));
+
+            replayed = new FileReplay(options.getReplayFiles(), options.getReplayThreads(), readRouter, flowControl,
+                    metrics, logger).run();
+            terminationSignal.set();
+        } else if (options.getIngestMode() == ServerOptions.IngestMode.NIO) {
+            // the NIO server returns once the termination signal is set and its event
+            // loops have stopped
+            logger.info(String.format("Starting NIO server on port %d with %d event loops", options.getPort(),
+                    options.getEventLoops()));
+
+            NioNumberServer nioServer = new NioNumberServer(options.getPort(), ServerOptions.MAX_CLIENTS,
+                    options.getEventLoops(), readRouter, flowControl, terminationSignal, metrics, logger);
+            metrics.gauge("connections_active", nioServer::activeClients);
+            nioServer.run();
+        } else {
+            metrics.gauge("connections_active", connections::active);
+
+            // start up a server with 5 listeners
+            logger.info(String.format("Starting server on port %d with %s listeners", options.getPort(),
+                    options.getIngestMode() == ServerOptions.IngestMode.VIRTUAL ? "virtual thread" : "thread pool"));
+
+            if (options.getAcceptors() > 1) {
+                logger.info(String.format("Accepting on %d threads %s", options.getAcceptors(),
+                        acceptors.isReusingPort() ? "with SO_REUSEPORT" : "sharing one server socket"));
+            }
+
+            // runs until the termination signal closes the server sockets
+            acceptors.run();
+        }
+
+        logger.info("Shutting down");
+        shutdown.run();
+
+        if (replayed != null) {
+            reportReplay(replayed, shutdown.timings(), metrics, logger);
+        }
+
+        if (queryServer != null) {
+            queryServer.stop();
+        }
+
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+    }
+
+    // how much the listeners' recent-number caches kept off the read queues
+    private static void reportListenerCache(MetricsRegistry metrics, Logger logger) {
+        long lookups = metrics.counter("ingest_cache_lookups_total").sum();
+        long hits = metrics.counter("ingest_cache_hits_total").sum();
+
+        logger.info(String.format(
+                "Listener caches caught %d of %d numbers as duplicates (%.1f%%), %d bytes the read queues didn't carry",
+                hits, lookups, lookups == 0 ? 0.0 : hits * 100.0 / lookups, hits * Integer.BYTES));
+    }
+
+    // how fast each stage went over the replay: numbers over the wall time until
+    // the stage had finished everything, and over the time its threads actually
+    // spent on batches between them - the cost of the stage alone
+    private static void reportReplay(FileReplay.Result replayed, Map<String, Long> timings, MetricsRegistry metrics,
+            Logger logger) {
+        long replayNanos = replayed.nanos();
+        long dedupNanos = replayNanos + timings.getOrDefault("ingest", 0L) + timings.getOrDefault("dedup", 0L);
+        long logNanos = dedupNanos + timings.getOrDefault("log", 0L);
+
+        logger.info(String.format("Replayed %d numbers (%d bytes) in %d ms", replayed.numbers(), replayed.bytes(),
+                TimeUnit.NANOSECONDS.toMillis(replayNanos)));
+        logger.info(describeStage("replay", replayed.numbers(), replayNanos,
+                metrics.histogram("replay_decode_nanos").sum() + metrics.histogram("replay_publish_nanos").sum()));
+        logger.info(describeStage("dedup", metrics.counter("dedup_numbers_total").sum(), dedupNanos,
+                metrics.histogram("dedup_batch_nanos").sum()));
+        logger.info(describeStage("log", metrics.counter("log_numbers_total").sum(), logNanos,
+                metrics.histogram("sink_write_nanos{sink=\"file\"}").sum()
+                        + metrics.histogram("log_flush_nanos").sum()));
+    }
+
+    private static String describeStage(String stage, long numbers, long wallNanos, long busyNanos) {
+        return String.format("%-6s %,d numbers: %,.0f/s over %d ms, %,.0f/s over %d ms busy", stage, numbers,
+                numbers * 1e9 / Math.max(1, wallNanos), TimeUnit.NANOSECONDS.toMillis(wallNanos),
+                numbers * 1e9 / Math.max(1, busyNanos), TimeUnit.NANOSECONDS.toMillis(busyNanos));
+    }
+
+    private static LogOutput openLogOutput(ServerOptions options) throws IOException {
+        Path path = Paths.get(options.getLogFormat() == ServerOptions.LogFormat.TEXT ? LOG_FILE_PATH
+                : SEGMENTS_FILE_PATH);
+
+        // a restart appends to the log it restored from; otherwise start over. A
+        // snapshot only describes the log it was taken of, so it goes before that
+        // log does - a later --restore would otherwise load it against the new one
+        if (!options.isRestore()) {
+            Files.deleteIfExists(Paths.get(SNAPSHOT_FILE_PATH));
+        }
+
+        StandardOpenOption start = options.isRestore() ? StandardOpenOption.APPEND
+                : StandardOpenOption.TRUNCATE_EXISTING;
+
+        if (options.getLogMode() == ServerOptions.LogMode.MAPPED) {
+            // mapping needs read access and doesn't work on a channel opened for
+            // APPEND; the mapped output starts at the end of the file by itself
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+
+            if (!options.isRestore()) {
+                channel.truncate(0);
+            }
+
+            return new MappedLogOutput(channel, options.getLogChunkMegabytes() * 1024 * 1024);
+        }
+
+        return new ChannelLogOutput(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                start));
     }
 }
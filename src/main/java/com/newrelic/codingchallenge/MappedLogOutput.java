@@ -0,0 +1,65 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Writes into a memory-mapped window of the file, mapping the next chunk each
+// time the current one fills up. Mapping past the end grows the file a whole
+// chunk at a time rather than a write at a time; close() trims the unused tail
+// of the last chunk so the file ends where the numbers do.
+//
+// The channel has to be open for both reading and writing to be mapped.
+public class MappedLogOutput implements LogOutput {
+    private final FileChannel _channel;
+    private final int _chunkSize;
+    private MappedByteBuffer _chunk;
+    private long _chunkStart;
+
+    public MappedLogOutput(FileChannel channel, int chunkSize) throws IOException {
+        _channel = channel;
+        _chunkSize = chunkSize;
+        _chunkStart = channel.size();
+        _chunk = channel.map(FileChannel.MapMode.READ_WRITE, _chunkStart, _chunkSize);
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (!_chunk.hasRemaining()) {
+                _chunk.force();
+                _chunkStart += _chunk.position();
+                _chunk = _channel.map(FileChannel.MapMode.READ_WRITE, _chunkStart, _chunkSize);
+            }
+
+            int count = Math.min(buffer.remaining(), _chunk.remaining());
+            int limit = buffer.limit();
+
+            buffer.limit(buffer.position() + count);
+            _chunk.put(buffer);
+            buffer.limit(limit);
+        }
+    }
+
+    @Override
+    public void flush(boolean sync) throws IOException {
+        // writes to a shared mapping are visible to other readers as soon as they
+        // happen; only durability needs anything extra
+        if (sync) {
+            _chunk.force();
+        }
+    }
+
+    // the number of bytes of numbers in the file
+    public long size() {
+        return _chunkStart + _chunk.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _chunk.force();
+        _channel.truncate(size());
+        _channel.close();
+    }
+}
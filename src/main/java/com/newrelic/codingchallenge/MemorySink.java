@@ -0,0 +1,60 @@
+package com.newrelic.codingchallenge;
+
+import java.util.Arrays;
+
+// Keeps every number it's given in memory - a tap for tests, or for anything
+// else that wants to see the uniques as they go by.
+public class MemorySink implements NumberSink {
+    private final String _name;
+    private int[] _numbers;
+    private int _size;
+    private int _flushes;
+    private boolean _closed;
+
+    public MemorySink(String name) {
+        _name = name;
+        _numbers = new int[1024];
+    }
+
+    @Override
+    public String name() {
+        return _name;
+    }
+
+    @Override
+    public synchronized void write(int[] numbers, int offset, int length) {
+        if (_size + length > _numbers.length) {
+            _numbers = Arrays.copyOf(_numbers, Math.max(_numbers.length * 2, _size + length));
+        }
+
+        System.arraycopy(numbers, offset, _numbers, _size, length);
+        _size += length;
+    }
+
+    @Override
+    public synchronized void flush(boolean sync) {
+        _flushes++;
+    }
+
+    @Override
+    public synchronized void close() {
+        _closed = true;
+    }
+
+    // everything written so far, in the order it arrived
+    public synchronized int[] numbers() {
+        return Arrays.copyOf(_numbers, _size);
+    }
+
+    public synchronized int size() {
+        return _size;
+    }
+
+    public synchronized int flushes() {
+        return _flushes;
+    }
+
+    public synchronized boolean isClosed() {
+        return _closed;
+    }
+}
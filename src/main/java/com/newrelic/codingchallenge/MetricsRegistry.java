@@ -0,0 +1,111 @@
+package com.newrelic.codingchallenge;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+// Every live metric the server keeps, by name.
+//
+// The stages look their counters and histograms up once, when they're built, and
+// then only ever touch the striped instruments themselves - nothing on the hot
+// path goes through the map. Gauges are read lazily, when someone asks for the
+// metrics, so a queue depth costs nothing until it's scraped.
+//
+// Names follow the Prometheus text format, labels included, e.g.
+// ingest_numbers_total{connection="127.0.0.1:51234"}.
+public class MetricsRegistry {
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+    private final Map<String, Counter> _counters;
+    private final Map<String, LongSupplier> _gauges;
+    private final Map<String, Histogram> _histograms;
+    private long _lastSample;
+
+    public MetricsRegistry() {
+        _counters = new ConcurrentSkipListMap<>();
+        _gauges = new ConcurrentSkipListMap<>();
+        _histograms = new ConcurrentSkipListMap<>();
+        _lastSample = System.nanoTime();
+    }
+
+    // returns the counter with this name, creating it the first time
+    public Counter counter(String name) {
+        return _counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public Histogram histogram(String name) {
+        return _histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    public void gauge(String name, LongSupplier value) {
+        _gauges.put(name, value);
+    }
+
+    // drops a metric that belongs to something that's gone, like a connection
+    public void remove(String name) {
+        _counters.remove(name);
+        _gauges.remove(name);
+        _histograms.remove(name);
+    }
+
+    // turns the counters into per-second rates; scheduled once a second
+    public synchronized void sample() {
+        long now = System.nanoTime();
+
+        for (Counter counter : _counters.values()) {
+            counter.sample(now - _lastSample);
+        }
+
+        _lastSample = now;
+    }
+
+    // writes everything out as plain text, one "name value" per line
+    public String render() {
+        StringBuilder out = new StringBuilder();
+
+        for (Map.Entry<String, Counter> entry : _counters.entrySet()) {
+            line(out, entry.getKey(), "", entry.getValue().sum());
+            line(out, entry.getKey(), "_per_second", String.format("%.1f", entry.getValue().rate()));
+        }
+
+        for (Map.Entry<String, LongSupplier> entry : _gauges.entrySet()) {
+            line(out, entry.getKey(), "", entry.getValue().getAsLong());
+        }
+
+        for (Map.Entry<String, Histogram> entry : _histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+
+            line(out, entry.getKey(), "_count", histogram.count());
+            line(out, entry.getKey(), "_sum", histogram.sum());
+            line(out, entry.getKey(), "_max", histogram.max());
+
+            for (double quantile : QUANTILES) {
+                line(out, withLabel(entry.getKey(), String.format("quantile=\"%s\"", quantile)), "",
+                        histogram.percentile(quantile));
+            }
+        }
+
+        return out.toString();
+    }
+
+    // the suffix goes on the metric name, before any labels
+    private static void line(StringBuilder out, String name, String suffix, Object value) {
+        int labels = name.indexOf('{');
+
+        if (labels < 0) {
+            out.append(name).append(suffix);
+        } else {
+            out.append(name, 0, labels).append(suffix).append(name, labels, name.length());
+        }
+
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String withLabel(String name, String label) {
+        if (name.endsWith("}")) {
+            return name.substring(0, name.length() - 1) + "," + label + "}";
+        }
+
+        return name + "{" + label + "}";
+    }
+}
@@ -0,0 +1,89 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+// One client connection in the NIO ingest mode. The event loop calls read()
+// whenever the channel is readable; the bytes are decoded straight out of the
+// direct buffer by a NumberDecoder, which carries its state between reads, so a
+// record split across two reads is handled without copying anything.
+public class NioConnection implements NumberDecoder.Handler {
+    private final SocketChannel _channel;
+    private final ByteBuffer _buffer;
+    private final TerminationSignal _terminationSignal;
+    private final NumberDecoder _decoder;
+    private final ReadRouter.Batch _batch;
+    private final ConnectionMetrics _metrics;
+
+    public NioConnection(SocketChannel channel, ByteBuffer buffer, ReadRouter readRouter,
+            TerminationSignal terminationSignal, MetricsRegistry metrics) throws IOException {
+        _channel = channel;
+        _buffer = buffer;
+        _terminationSignal = terminationSignal;
+        _decoder = new NumberDecoder();
+        _batch = readRouter.newBatch(NumberDecoder.maxNumbers(buffer.capacity()),
+                ConnectionMetrics.host(channel.getRemoteAddress()));
+        _metrics = new ConnectionMetrics(metrics, channel.getRemoteAddress());
+    }
+
+    public SocketChannel channel() {
+        return _channel;
+    }
+
+    public ByteBuffer buffer() {
+        return _buffer;
+    }
+
+    public ConnectionMetrics metrics() {
+        return _metrics;
+    }
+
+    // returns false when the connection should be closed - the client hung up,
+    // sent something invalid, or asked the server to terminate
+    public boolean read() throws IOException, InterruptedException {
+        int read = _channel.read(_buffer);
+        PipelineEvents.BatchReceived event = new PipelineEvents.BatchReceived();
+        event.begin();
+
+        if (read < 0) {
+            NumberDecoder.Status status = _decoder.finish(this);
+            publishBatch(event, 0);
+            checkTermination(status);
+            return false;
+        }
+
+        _buffer.flip();
+        NumberDecoder.Status status = _decoder.decode(_buffer, this);
+        _buffer.clear();
+
+        publishBatch(event, read);
+        checkTermination(status);
+
+        return status == NumberDecoder.Status.CONTINUE;
+    }
+
+    @Override
+    public void onNumber(int number) {
+        _batch.add(number);
+    }
+
+    private void publishBatch(PipelineEvents.BatchReceived event, int bytes) throws InterruptedException {
+        int count = _batch.received();
+        long start = System.nanoTime();
+
+        _batch.publish();
+
+        long nanos = System.nanoTime() - start;
+        _metrics.published(count, nanos);
+        _metrics.received(event, count, bytes, nanos);
+    }
+
+    private void checkTermination(NumberDecoder.Status status) {
+        if (status == NumberDecoder.Status.TERMINATE) {
+            _terminationSignal.set();
+        } else if (status == NumberDecoder.Status.MALFORMED) {
+            _metrics.rejected();
+        }
+    }
+}
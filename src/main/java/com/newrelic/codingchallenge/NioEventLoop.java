@@ -0,0 +1,169 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+
+// A single selector thread that reads from every connection the NioNumberServer
+// hands it. Channels are registered from the acceptor thread through a queue,
+// since a selector can't safely be registered with while another thread is
+// blocked in select().
+public class NioEventLoop implements Runnable {
+    private static final long SELECT_TIMEOUT_MILLIS = 100;
+    // how often to look at the queues again while reading is paused
+    private static final long THROTTLED_SELECT_MILLIS = 1;
+
+    private final Selector _selector;
+    private final ConcurrentLinkedQueue<SocketChannel> _incoming;
+    private final DirectBufferPool _bufferPool;
+    private final ReadRouter _readRouter;
+    private final FlowControl _flowControl;
+    private final TerminationSignal _terminationSignal;
+    private final Runnable _onClose;
+    private final MetricsRegistry _metrics;
+    private final Logger _logger;
+    private boolean _paused;
+
+    public NioEventLoop(DirectBufferPool bufferPool, ReadRouter readRouter, FlowControl flowControl,
+            TerminationSignal terminationSignal, Runnable onClose, MetricsRegistry metrics, Logger logger)
+            throws IOException {
+        _selector = Selector.open();
+        _incoming = new ConcurrentLinkedQueue<>();
+        _bufferPool = bufferPool;
+        _readRouter = readRouter;
+        _flowControl = flowControl;
+        _terminationSignal = terminationSignal;
+        _onClose = onClose;
+        _metrics = metrics;
+        _logger = logger;
+
+        // don't wait out the select timeout to notice a terminate
+        terminationSignal.onSet(_selector::wakeup);
+    }
+
+    public void register(SocketChannel channel) {
+        _incoming.add(channel);
+        _selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!_terminationSignal.isSet() && !Thread.currentThread().isInterrupted()) {
+                registerIncoming();
+                applyFlowControl();
+
+                _selector.select(_paused ? THROTTLED_SELECT_MILLIS : SELECT_TIMEOUT_MILLIS);
+
+                Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    handleReadable(key);
+                }
+            }
+        } catch (IOException | ClosedSelectorException ex) {
+            _logger.severe(String.format("Encountered error in event loop: %s", ex.getMessage()));
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void registerIncoming() {
+        SocketChannel channel;
+
+        while ((channel = _incoming.poll()) != null) {
+            try {
+                NioConnection connection = new NioConnection(channel, _bufferPool.acquire(), _readRouter,
+                        _terminationSignal, _metrics);
+                channel.register(_selector, _paused ? 0 : SelectionKey.OP_READ, connection);
+            } catch (IOException ex) {
+                _logger.severe(String.format("Error while registering connection: %s", ex.getMessage()));
+                closeChannel(channel);
+                _onClose.run();
+            }
+        }
+    }
+
+    // stops selecting for reads while the pipeline is backed up, which leaves the
+    // data in the sockets and lets TCP push back on the clients, and starts again
+    // once it has drained
+    private void applyFlowControl() {
+        boolean throttled = _flowControl.isThrottled();
+
+        if (throttled == _paused) {
+            return;
+        }
+
+        _paused = throttled;
+
+        for (SelectionKey key : _selector.keys()) {
+            if (key.isValid()) {
+                key.interestOps(_paused ? 0 : SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private void handleReadable(SelectionKey key) {
+        NioConnection connection = (NioConnection) key.attachment();
+        boolean open;
+
+        try {
+            open = key.isValid() && key.isReadable() && connection.read();
+        } catch (IOException ex) {
+            _logger.severe(String.format("Encountered error while reading from socket: %s", ex.getMessage()));
+            open = false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            open = false;
+        }
+
+        if (!open) {
+            close(key);
+        }
+    }
+
+    private void close(SelectionKey key) {
+        NioConnection connection = (NioConnection) key.attachment();
+
+        key.cancel();
+        closeChannel(connection.channel());
+        _bufferPool.release(connection.buffer());
+        connection.metrics().close();
+        _onClose.run();
+    }
+
+    private void closeChannel(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            _logger.severe(String.format("Error while closing socket: %s", ex.getMessage()));
+        }
+    }
+
+    private void shutdown() {
+        try {
+            for (SelectionKey key : new ArrayList<>(_selector.keys())) {
+                close(key);
+            }
+
+            SocketChannel channel;
+
+            while ((channel = _incoming.poll()) != null) {
+                closeChannel(channel);
+            }
+
+            _selector.close();
+        } catch (IOException | ClosedSelectorException ex) {
+            _logger.severe(String.format("Error while closing selector: %s", ex.getMessage()));
+        }
+    }
+}
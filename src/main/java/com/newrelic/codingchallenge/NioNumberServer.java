@@ -0,0 +1,145 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+// The non-blocking ingest mode: instead of a thread per connection, a small set
+// of NioEventLoops multiplexes every client.
+//
+// This thread only accepts. Accepted connections wait in a pending list until
+// one of the MAX_CLIENTS active slots frees up, which is the same thing the
+// fixed listener thread pool does in the blocking mode - the client can connect,
+// but nothing reads from it until it's its turn.
+public class NioNumberServer implements Runnable {
+    private static final long SELECT_TIMEOUT_MILLIS = 100;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long EVENT_LOOP_STOP_SECONDS = 5;
+
+    private final ServerSocketChannel _server;
+    private final int _maxClients;
+    private final ReadRouter _readRouter;
+    private final TerminationSignal _terminationSignal;
+    private final Logger _logger;
+    private final NioEventLoop[] _eventLoops;
+    private final ArrayDeque<SocketChannel> _pending;
+    private final AtomicInteger _active;
+    private final Selector _selector;
+    private int _nextEventLoop;
+
+    public NioNumberServer(int port, int maxClients, int eventLoops, ReadRouter readRouter,
+            FlowControl flowControl, TerminationSignal terminationSignal, MetricsRegistry metrics, Logger logger) throws IOException {
+        _maxClients = maxClients;
+        _readRouter = readRouter;
+        _terminationSignal = terminationSignal;
+        _logger = logger;
+        _pending = new ArrayDeque<>();
+        _active = new AtomicInteger();
+        _selector = Selector.open();
+
+        // bind up front so a port that's already taken fails startup rather than
+        // the accept thread
+        _server = ServerSocketChannel.open();
+        _server.bind(new InetSocketAddress(port));
+        _server.configureBlocking(false);
+        _server.register(_selector, SelectionKey.OP_ACCEPT);
+        terminationSignal.onSet(_selector::wakeup);
+
+        DirectBufferPool bufferPool = new DirectBufferPool(BUFFER_SIZE, maxClients);
+        _eventLoops = new NioEventLoop[eventLoops];
+
+        for (int i = 0; i < eventLoops; i++) {
+            _eventLoops[i] = new NioEventLoop(bufferPool, _readRouter, flowControl, _terminationSignal,
+                    this::release, metrics, _logger);
+        }
+    }
+
+    @Override
+    public void run() {
+        ExecutorService eventLoopService = Executors.newFixedThreadPool(_eventLoops.length);
+
+        for (NioEventLoop eventLoop : _eventLoops) {
+            eventLoopService.execute(eventLoop);
+        }
+
+        try (ServerSocketChannel server = _server) {
+            while (!_terminationSignal.isSet()) {
+                _selector.select(SELECT_TIMEOUT_MILLIS);
+                _selector.selectedKeys().clear();
+
+                SocketChannel channel;
+
+                while ((channel = server.accept()) != null) {
+                    channel.configureBlocking(false);
+                    _pending.add(channel);
+                }
+
+                admitPending();
+            }
+        } catch (IOException ex) {
+            _logger.severe(String.format("Encountered error while accepting connections: %s", ex.getMessage()));
+            _terminationSignal.set();
+        } finally {
+            closePending();
+            eventLoopService.shutdown();
+
+            // the event loops close their connections as soon as they see the signal;
+            // wait for that so nothing publishes to the read queues after run() returns
+            try {
+                if (!eventLoopService.awaitTermination(EVENT_LOOP_STOP_SECONDS, TimeUnit.SECONDS)) {
+                    _logger.warning("Event loops did not stop in time");
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            try {
+                _selector.close();
+            } catch (IOException ex) {
+            }
+        }
+    }
+
+    public int localPort() {
+        return _server.socket().getLocalPort();
+    }
+
+    public int activeClients() {
+        return _active.get();
+    }
+
+    private void admitPending() {
+        while (!_pending.isEmpty() && _active.get() < _maxClients) {
+            _active.incrementAndGet();
+            _eventLoops[_nextEventLoop].register(_pending.poll());
+            _nextEventLoop = (_nextEventLoop + 1) % _eventLoops.length;
+        }
+    }
+
+    // called from the event loops when a connection closes
+    private void release() {
+        _active.decrementAndGet();
+        _selector.wakeup();
+    }
+
+    private void closePending() {
+        for (SocketChannel channel : _pending) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                _logger.severe(String.format("Error while closing socket: %s", ex.getMessage()));
+            }
+        }
+
+        _pending.clear();
+    }
+}
@@ -0,0 +1,296 @@
+package com.newrelic.codingchallenge;
+
+import java.nio.ByteBuffer;
+
+// Decodes the wire protocol - nine ASCII digits or the word "terminate", each
+// followed by a newline - straight from raw bytes.
+//
+// Validation and conversion happen in the same pass, and nothing is allocated per
+// record: decoded numbers go to a long-lived Handler as primitive ints. The decoder
+// keeps its state between calls, so a record split across two reads (or two
+// buffers) decodes exactly as if it had arrived in one piece.
+//
+// A client can switch to the binary protocol by sending HANDSHAKE ("BINARY/1")
+// as its very first line. Nothing in the text protocol starts with a 'B', so a
+// text client can never trip it by accident. From then on the client sends
+// frames: a 4-byte big-endian count of up to MAX_FRAME_NUMBERS, then that many
+// 4-byte big-endian numbers. A count of BINARY_TERMINATE (-1) is the binary
+// "terminate". That's 4 bytes a number instead of 10, with no digits to parse.
+//
+// A decoder belongs to a single connection and isn't thread safe.
+public class NumberDecoder {
+    public interface Handler {
+        void onNumber(int number);
+    }
+
+    public enum Status {
+        // everything so far was valid; keep reading
+        CONTINUE,
+        // the client sent "terminate"; anything after it was not decoded
+        TERMINATE,
+        // the client sent something that isn't part of the protocol
+        MALFORMED
+    }
+
+    public static final int DIGITS = 9;
+    public static final String HANDSHAKE = "BINARY/1";
+    public static final int MAX_FRAME_NUMBERS = 1 << 16;
+    public static final int BINARY_TERMINATE = -1;
+
+    private static final byte[] TERMINATE = { 't', 'e', 'r', 'm', 'i', 'n', 'a', 't', 'e' };
+    private static final byte[] BINARY = { 'B', 'I', 'N', 'A', 'R', 'Y', '/', '1' };
+
+    private int _value;
+    private int _digits;
+    private byte[] _word;
+    private int _letters;
+    private boolean _carriageReturn;
+    private boolean _started;
+    private boolean _binary;
+    private int _bytes;
+    private int _remaining;
+    private boolean _done;
+
+    // the most numbers a read of `bytes` bytes can decode to, in either protocol
+    public static int maxNumbers(int bytes) {
+        return bytes / Integer.BYTES + 1;
+    }
+
+    public Status decode(byte[] bytes, int offset, int length, Handler handler) {
+        int end = offset + length;
+
+        for (int i = offset; i < end; i++) {
+            if (_binary) {
+                return decodeBinary(bytes, i, end, handler);
+            }
+
+            Status status = next(bytes[i], handler);
+
+            if (status != Status.CONTINUE) {
+                return status;
+            }
+        }
+
+        return Status.CONTINUE;
+    }
+
+    // decodes the bytes between the buffer's position and limit without moving
+    // either, so it works the same on heap and direct buffers
+    public Status decode(ByteBuffer buffer, Handler handler) {
+        int limit = buffer.limit();
+
+        for (int i = buffer.position(); i < limit; i++) {
+            if (_binary) {
+                return decodeBinary(buffer, i, limit, handler);
+            }
+
+            Status status = next(buffer.get(i), handler);
+
+            if (status != Status.CONTINUE) {
+                return status;
+            }
+        }
+
+        return Status.CONTINUE;
+    }
+
+    // called when the client closes its end. A last record without a trailing
+    // newline still counts; anything else left over is malformed.
+    public Status finish(Handler handler) {
+        if (_done || isAtBoundary()) {
+            return Status.CONTINUE;
+        }
+
+        if (_binary) {
+            return malformed();
+        }
+
+        return next((byte) '\n', handler);
+    }
+
+    // true if the decoder is between records, i.e. nothing partial is buffered
+    public boolean isAtBoundary() {
+        if (_binary) {
+            return _bytes == 0 && _remaining == 0;
+        }
+
+        return _digits == 0 && _letters == 0 && !_carriageReturn;
+    }
+
+    public boolean isBinary() {
+        return _binary;
+    }
+
+    private Status next(byte b, Handler handler) {
+        if (_done) {
+            return Status.MALFORMED;
+        }
+
+        if (_carriageReturn && b != '\n') {
+            return malformed();
+        }
+
+        // partway through a word, only its next letter will do (the handshake ends
+        // in a digit)
+        if (_letters > 0 && _letters < _word.length) {
+            if (_word[_letters] != b) {
+                return malformed();
+            }
+
+            _letters++;
+            return Status.CONTINUE;
+        }
+
+        if (b >= '0' && b <= '9') {
+            if (_letters > 0 || _digits == DIGITS) {
+                return malformed();
+            }
+
+            _value = _value * 10 + (b - '0');
+            _digits++;
+            return Status.CONTINUE;
+        }
+
+        if (b == '\n') {
+            if (_digits == DIGITS) {
+                handler.onNumber(_value);
+                reset();
+                return Status.CONTINUE;
+            }
+
+            if (_word == TERMINATE && _letters == TERMINATE.length) {
+                reset();
+                _done = true;
+                return Status.TERMINATE;
+            }
+
+            if (_word == BINARY && _letters == BINARY.length) {
+                reset();
+                _binary = true;
+                return Status.CONTINUE;
+            }
+
+            return malformed();
+        }
+
+        if (b == '\r') {
+            _carriageReturn = true;
+            return Status.CONTINUE;
+        }
+
+        if (_letters == 0) {
+            // the handshake only counts as the first line of the connection
+            _word = b == BINARY[0] && !_started ? BINARY : TERMINATE;
+        }
+
+        if (_digits > 0 || _letters == _word.length || _word[_letters] != b) {
+            return malformed();
+        }
+
+        _letters++;
+        return Status.CONTINUE;
+    }
+
+    // whole numbers are read straight out of the array; only one split across
+    // two reads goes a byte at a time
+    private Status decodeBinary(byte[] bytes, int offset, int end, Handler handler) {
+        int i = offset;
+
+        while (i < end) {
+            Status status;
+
+            if (_bytes == 0 && end - i >= Integer.BYTES) {
+                status = nextBinary((bytes[i] & 0xff) << 24 | (bytes[i + 1] & 0xff) << 16
+                        | (bytes[i + 2] & 0xff) << 8 | (bytes[i + 3] & 0xff), handler);
+                i += Integer.BYTES;
+            } else {
+                status = nextBinaryByte(bytes[i++], handler);
+            }
+
+            if (status != Status.CONTINUE) {
+                return status;
+            }
+        }
+
+        return Status.CONTINUE;
+    }
+
+    private Status decodeBinary(ByteBuffer buffer, int offset, int limit, Handler handler) {
+        int i = offset;
+
+        while (i < limit) {
+            Status status;
+
+            if (_bytes == 0 && limit - i >= Integer.BYTES) {
+                status = nextBinary((buffer.get(i) & 0xff) << 24 | (buffer.get(i + 1) & 0xff) << 16
+                        | (buffer.get(i + 2) & 0xff) << 8 | (buffer.get(i + 3) & 0xff), handler);
+                i += Integer.BYTES;
+            } else {
+                status = nextBinaryByte(buffer.get(i++), handler);
+            }
+
+            if (status != Status.CONTINUE) {
+                return status;
+            }
+        }
+
+        return Status.CONTINUE;
+    }
+
+    private Status nextBinaryByte(byte b, Handler handler) {
+        _value = _value << 8 | (b & 0xff);
+
+        if (++_bytes < Integer.BYTES) {
+            return Status.CONTINUE;
+        }
+
+        int value = _value;
+        _value = 0;
+        _bytes = 0;
+
+        return nextBinary(value, handler);
+    }
+
+    private Status nextBinary(int value, Handler handler) {
+        if (_done) {
+            return Status.MALFORMED;
+        }
+
+        if (_remaining > 0) {
+            if (value < 0 || value >= OffHeapNumberSet.NUMBER_SPACE) {
+                return malformed();
+            }
+
+            handler.onNumber(value);
+            _remaining--;
+            return Status.CONTINUE;
+        }
+
+        // a frame header
+        if (value == BINARY_TERMINATE) {
+            _done = true;
+            return Status.TERMINATE;
+        }
+
+        if (value < 0 || value > MAX_FRAME_NUMBERS) {
+            return malformed();
+        }
+
+        _remaining = value;
+        return Status.CONTINUE;
+    }
+
+    private Status malformed() {
+        _done = true;
+        return Status.MALFORMED;
+    }
+
+    private void reset() {
+        _value = 0;
+        _digits = 0;
+        _word = null;
+        _letters = 0;
+        _carriageReturn = false;
+        _started = true;
+    }
+}
@@ -1,32 +1,46 @@
 package com.newrelic.codingchallenge;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
-import java.util.Scanner;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
-public class NumberListener implements Runnable {
+public class NumberListener implements Runnable, NumberDecoder.Handler {
+    private static final int BUFFER_SIZE = 8 * 1024;
+
     private Socket _socket;
-    private ConcurrentLinkedQueue<Integer> _readQueue;
-    private AtomicBoolean _terminationSignal;
+    private TerminationSignal _terminationSignal;
     private Logger _logger;
+    private NumberDecoder _decoder;
+    private byte[] _buffer;
+    private ReadRouter.Batch _batch;
+    private ConnectionMetrics _metrics;
+    private FlowControl _flowControl;
 
-    public NumberListener(Socket socket, ConcurrentLinkedQueue<Integer> readQueue, AtomicBoolean terminationSignal,
-            Logger logger) {
+    public NumberListener(Socket socket, ReadRouter readRouter, FlowControl flowControl,
+            TerminationSignal terminationSignal, MetricsRegistry metrics, Logger logger) {
         _socket = socket;
-        _readQueue = readQueue;
+        _flowControl = flowControl;
         _terminationSignal = terminationSignal;
         _logger = logger;
+        _decoder = new NumberDecoder();
+        _buffer = new byte[BUFFER_SIZE];
+        _batch = readRouter.newBatch(NumberDecoder.maxNumbers(BUFFER_SIZE),
+                ConnectionMetrics.host(socket.getRemoteSocketAddress()));
+        _metrics = new ConnectionMetrics(metrics, socket.getRemoteSocketAddress());
     }
 
     @Override
     public void run() {
         try {
-            Scanner in = new Scanner(_socket.getInputStream());
+            InputStream in = _socket.getInputStream();
+
+            while (!_terminationSignal.isSet()) {
+                // while the pipeline is backed up, leave the data in the socket and let
+                // TCP slow the client down
+                _flowControl.awaitCapacity();
 
-            while (!_terminationSignal.get()) {
-                if (!in.hasNextLine() || !handleSocketInput(in)) {
+                if (!handleSocketInput(in)) {
                     break;
                 }
             }
@@ -38,6 +52,9 @@ public class NumberListener implements Runnable {
             }
         } catch (Exception ex) {
             _logger.severe(String.format("Encountered error while reading from socket: %s", ex.getMessage()));
+        } finally {
+            _batch.close();
+            _metrics.close();
         }
     }
 
@@ -51,19 +68,55 @@ public class NumberListener implements Runnable {
         }
     }
 
-    public boolean handleSocketInput(Scanner in) {
-        String socketInput = in.nextLine();
+    // reads whatever is available from the socket and queues every complete number
+    // in it. Returns false when the connection should be closed.
+    public boolean handleSocketInput(InputStream in) throws IOException {
+        int read = in.read(_buffer);
+        PipelineEvents.BatchReceived event = new PipelineEvents.BatchReceived();
+        event.begin();
 
-        if (!socketInput.matches("\\d{9}|terminate")) {
+        NumberDecoder.Status status = read < 0 ? _decoder.finish(this) : _decoder.decode(_buffer, 0, read, this);
+        int count = _batch.received();
+        long publishStart = System.nanoTime();
+
+        if (!publishBatch()) {
             return false;
         }
 
-        if (socketInput.equals("terminate")) {
-            _terminationSignal.set(true);
-        } else {
-            _readQueue.add(Integer.parseInt(socketInput));
+        _metrics.received(event, count, Math.max(read, 0), System.nanoTime() - publishStart);
+
+        if (status == NumberDecoder.Status.TERMINATE) {
+            _terminationSignal.set();
+        } else if (status == NumberDecoder.Status.MALFORMED) {
+            _metrics.rejected();
         }
 
-        return true;
+        return read >= 0 && status == NumberDecoder.Status.CONTINUE;
+    }
+
+    @Override
+    public void onNumber(int number) {
+        // a read can't hold more records than the batch has room for, but guard
+        // against it anyway rather than overflowing
+        if (_batch.isFull()) {
+            publishBatch();
+        }
+
+        _batch.add(number);
+    }
+
+    // hands everything decoded from the last read to the reader in one go
+    private boolean publishBatch() {
+        int count = _batch.received();
+        long start = System.nanoTime();
+
+        try {
+            _batch.publish();
+            _metrics.published(count, System.nanoTime() - start);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 }
@@ -1,44 +1,125 @@
 package com.newrelic.codingchallenge;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
+// Runs one NumberSink on its own thread: drains batches of unique numbers from
+// the sink's queue, hands them to the sink, and flushes it when the flush policy
+// says the numbers in it have waited long enough. numbers.log is written by one
+// of these with a FileSink; each extra sink gets another.
+//
+// If the SinkFanout had to spill numbers for this sink to disk, they're picked
+// up once the queue is empty. The logger stops once its queue is closed and
+// everything, spilled or not, has gone to the sink, then flushes and closes it.
 public class NumberLogger implements Runnable {
-    private BufferedWriter _writer;
-    private ConcurrentLinkedQueue<Integer> _logQueue;
+    private static final int BATCH_SIZE = 4096;
+
+    private NumberSink _sink;
+    private FlushPolicy _flushPolicy;
+    private IntRingBuffer _logQueue;
+    private SpillFile _spill;
     private AtomicBoolean _terminationSignal;
     private Logger _logger;
+    private int[] _batch;
+    private long _lastFlush;
+    private Counter _numbersMetric;
+    private Histogram _writeNanos;
+
+    // the numbers.log writer, as it's always been
+    public NumberLogger(LogOutput output, LogEncoder encoder, FlushPolicy flushPolicy, IntRingBuffer logQueue,
+            AtomicBoolean terminationSignal, MetricsRegistry metrics, Logger logger) {
+        this(new FileSink(output, encoder, metrics), flushPolicy, logQueue, null, terminationSignal, metrics, logger);
+    }
 
-    public NumberLogger(BufferedWriter writer, ConcurrentLinkedQueue<Integer> logQueue, AtomicBoolean terminationSignal,
-            Logger logger) {
-        _writer = writer;
+    // spill may be null if the sink's overflow policy never spills
+    public NumberLogger(NumberSink sink, FlushPolicy flushPolicy, IntRingBuffer logQueue, SpillFile spill,
+            AtomicBoolean terminationSignal, MetricsRegistry metrics, Logger logger) {
+        _sink = sink;
+        _flushPolicy = flushPolicy;
         _logQueue = logQueue;
+        _spill = spill;
         _terminationSignal = terminationSignal;
         _logger = logger;
+        _batch = new int[BATCH_SIZE];
+        _lastFlush = System.nanoTime();
+        _numbersMetric = metrics.counter(String.format("sink_numbers_total{sink=\"%s\"}", sink.name()));
+        _writeNanos = metrics.histogram(String.format("sink_write_nanos{sink=\"%s\"}", sink.name()));
+        metrics.gauge(String.format("sink_lag{sink=\"%s\"}", sink.name()), this::lag);
     }
 
     @Override
     public void run() {
-        while (!_terminationSignal.get()) {
-            try {
-                evaluateQueue();
-            } catch (IOException ioException) {
-                _logger.severe(
-                        String.format("Encountered exception while writing to log: %s", ioException.getMessage()));
-                break;
+        int idle = 0;
+
+        try {
+            while (!_terminationSignal.get()) {
+                if (evaluateQueue() > 0) {
+                    idle = 0;
+                } else if (_logQueue.isDrained() && (_spill == null || _spill.isEmpty())) {
+                    // the readers have stopped and every unique number has gone to the
+                    // sink; close() below flushes the rest
+                    break;
+                } else {
+                    _logQueue.waitStrategy().idle(idle++);
+                }
+
+                if (System.nanoTime() - _lastFlush >= _flushPolicy.flushIntervalNanos()) {
+                    flush(_flushPolicy.syncOnFlush());
+                }
             }
+        } catch (IOException ioException) {
+            _logger.severe(String.format("Encountered exception while writing to the %s sink: %s", _sink.name(),
+                    ioException.getMessage()));
+        } finally {
+            close();
         }
     }
 
-    public void evaluateQueue() throws IOException {
-        if (_logQueue.isEmpty()) {
-            return;
+    // hands a batch of numbers from the queue (or failing that, the spill file) to
+    // the sink and returns how many there were
+    public int evaluateQueue() throws IOException {
+        int count = _logQueue.drain(_batch);
+
+        if (count == 0 && _spill != null) {
+            count = _spill.read(_batch);
         }
 
-        _writer.write(String.format("%d", _logQueue.poll()));
-        _writer.newLine();
+        if (count > 0) {
+            long start = System.nanoTime();
+
+            _sink.write(_batch, 0, count);
+            _writeNanos.record(System.nanoTime() - start);
+            _numbersMetric.add(count);
+        }
+
+        return count;
+    }
+
+    public void flush(boolean sync) throws IOException {
+        _sink.flush(sync);
+        _lastFlush = System.nanoTime();
+    }
+
+    public NumberSink sink() {
+        return _sink;
+    }
+
+    // numbers waiting for the sink, in its queue or spilled
+    public long lag() {
+        return _logQueue.size() + (_spill != null ? _spill.size() : 0);
+    }
+
+    private void close() {
+        try {
+            flush(_flushPolicy.syncOnClose());
+            _sink.close();
+
+            if (_spill != null) {
+                _spill.close();
+            }
+        } catch (IOException ex) {
+            _logger.severe(String.format("Error while closing the %s sink: %s", _sink.name(), ex.getMessage()));
+        }
     }
 }
@@ -1,37 +1,58 @@
 package com.newrelic.codingchallenge;
 
-import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 public class NumberReader implements Runnable {
-    private ConcurrentLinkedQueue<Integer> _readQueue;
-    private ConcurrentLinkedQueue<Integer> _logQueue;
-    private AtomicInteger _uniques;
-    private AtomicInteger _duplicates;
-    private Set<Integer> _seenNumbers;
+    private static final int BATCH_SIZE = 4096;
+
+    private BatchSource _readQueue;
+    private BatchPublisher _logQueue;
+    private DedupCounters.Stripe _counters;
+    private NumberSet _seenNumbers;
     private AtomicBoolean _terminationSignal;
     private Logger _logger;
+    private int[] _batch;
+    private int[] _uniqueBatch;
+    private Counter _numbersMetric;
+    private Counter _uniquesMetric;
+    private Counter _duplicatesMetric;
+    private Histogram _batchNanos;
+    // odd while a batch is being deduplicated and handed on, so a snapshot can
+    // tell when every number it saw in the set has gone to the logger
+    private volatile long _batches;
+    private volatile long _uniquesPublished;
 
-    public NumberReader(ConcurrentLinkedQueue<Integer> readQueue, ConcurrentLinkedQueue<Integer> logQueue,
-            AtomicInteger uniques, AtomicInteger duplicates, Set<Integer> seenNumbers, AtomicBoolean terminationSignal,
-            Logger logger) {
+    public NumberReader(BatchSource readQueue, BatchPublisher logQueue, DedupCounters.Stripe counters,
+            NumberSet seenNumbers, AtomicBoolean terminationSignal, MetricsRegistry metrics, Logger logger) {
         _readQueue = readQueue;
         _logQueue = logQueue;
-        _uniques = uniques;
-        _duplicates = duplicates;
+        _counters = counters;
         _seenNumbers = seenNumbers;
         _terminationSignal = terminationSignal;
         _logger = logger;
+        _batch = new int[BATCH_SIZE];
+        _uniqueBatch = new int[BATCH_SIZE];
+        _numbersMetric = metrics.counter("dedup_numbers_total");
+        _uniquesMetric = metrics.counter("dedup_uniques_total");
+        _duplicatesMetric = metrics.counter("dedup_duplicates_total");
+        _batchNanos = metrics.histogram("dedup_batch_nanos");
     }
 
     @Override
     public void run() {
+        int idle = 0;
+
         while (!_terminationSignal.get()) {
             try {
-                evaluateQueue();
+                if (evaluateQueue() > 0) {
+                    idle = 0;
+                } else if (_readQueue.isDrained()) {
+                    // the listeners have stopped and everything they sent is dealt with
+                    break;
+                } else {
+                    _readQueue.waitStrategy().idle(idle++);
+                }
             } catch (InterruptedException ex) {
                 _logger.severe(String.format("Encountered error while reading from queue: %s", ex.getMessage()));
                 break;
@@ -39,18 +60,72 @@ public class NumberReader implements Runnable {
         }
     }
 
-    public void evaluateQueue() throws InterruptedException {
-        if (_readQueue.isEmpty()) {
-            return;
+    // takes a batch of numbers off the read queue, sends the new ones on to the
+    // logger, and returns how many numbers there were
+    public int evaluateQueue() throws InterruptedException {
+        int count = _readQueue.drain(_batch);
+
+        if (count == 0) {
+            return 0;
+        }
+
+        _batches++;
+
+        try {
+            return deduplicate(count);
+        } finally {
+            _batches++;
+        }
+    }
+
+    // how many batches this reader has started and finished; odd while one is
+    // in progress
+    public long batches() {
+        return _batches;
+    }
+
+    // every unique this reader has handed to the logger so far
+    public long uniquesPublished() {
+        return _uniquesPublished;
+    }
+
+    private int deduplicate(int count) throws InterruptedException {
+        PipelineEvents.BatchDeduplicated event = new PipelineEvents.BatchDeduplicated();
+        event.begin();
+
+        long start = System.nanoTime();
+        int uniques = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (_seenNumbers.add(_batch[i])) {
+                _uniqueBatch[uniques++] = _batch[i];
+            }
         }
 
-        Integer newNumber = _readQueue.poll();
+        // counted as one batch, so a report never has a batch's uniques without
+        // its duplicates
+        _counters.add(uniques, count - uniques);
 
-        if (_seenNumbers.add(newNumber)) {
-            _uniques.incrementAndGet();
-            _logQueue.add(newNumber);
-        } else {
-            _duplicates.incrementAndGet();
+        if (uniques > 0) {
+            _logQueue.publish(_uniqueBatch, 0, uniques);
+            _uniquesPublished += uniques;
         }
+
+        _numbersMetric.add(count);
+        _uniquesMetric.add(uniques);
+        _duplicatesMetric.add(count - uniques);
+        // includes handing the uniques to the logger, so a backed up log queue
+        // shows up here
+        _batchNanos.record(System.nanoTime() - start);
+
+        if (event.shouldCommit()) {
+            event.numbers = count;
+            event.uniques = uniques;
+            event.duplicates = count - uniques;
+            event.queueDepth = _readQueue.size();
+            event.commit();
+        }
+
+        return count;
     }
 }
@@ -1,29 +1,84 @@
 package com.newrelic.codingchallenge;
 
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 public class NumberReporter implements Runnable {
-    private AtomicInteger _uniques;
-    private AtomicInteger _duplicates;
-    private Set<Integer> _seenNumbers;
+    private DedupCounters _counters;
+    private ClusterStats _clusterStats;
+    private FlowControl _flowControl;
     private Logger _logger;
+    private DedupCounters.Snapshot _last;
+    private long _lastClusterUniques;
+    private long _lastClusterDuplicates;
+    private long _lastThrottleEvents;
+    private long _lastThrottledNanos;
 
-    public NumberReporter(AtomicInteger uniques, AtomicInteger duplicates, Set<Integer> seenNumbers, Logger logger) {
-        _uniques = uniques;
-        _duplicates = duplicates;
-        _seenNumbers = seenNumbers;
+    public NumberReporter(DedupCounters counters, Logger logger) {
+        this(counters, null, logger);
+    }
+
+    // with cluster stats, each report is followed by one covering the whole cluster
+    public NumberReporter(DedupCounters counters, ClusterStats clusterStats, Logger logger) {
+        this(counters, clusterStats, null, logger);
+    }
+
+    // with flow control, any report period in which ingest was throttled gets a
+    // line saying how often and for how long
+    public NumberReporter(DedupCounters counters, ClusterStats clusterStats, FlowControl flowControl,
+            Logger logger) {
+        _counters = counters;
+        _clusterStats = clusterStats;
+        _flowControl = flowControl;
         _logger = logger;
     }
 
     @Override
     public void run() {
-        int numUniques = _uniques.getAndSet(0);
-        int numDuplicates = _duplicates.getAndSet(0);
-        int numNumbers = _seenNumbers.size();
+        // one snapshot for all three figures; the counters only grow, so the
+        // figures since the last report are the difference between two snapshots
+        DedupCounters.Snapshot snapshot = _counters.snapshot();
+        long numUniques = snapshot.uniques() - (_last == null ? 0 : _last.uniques());
+        long numDuplicates = snapshot.duplicates() - (_last == null ? 0 : _last.duplicates());
 
         _logger.info(String.format("Received %d unique numbers, %d duplicates. Unique total: %d", numUniques,
-                numDuplicates, numNumbers));
+                numDuplicates, snapshot.total()));
+
+        _last = snapshot;
+
+        if (_flowControl != null) {
+            reportThrottling();
+        }
+
+        if (_clusterStats != null) {
+            reportCluster();
+        }
+    }
+
+    private void reportThrottling() {
+        long events = _flowControl.throttleEvents();
+        long nanos = _flowControl.throttledNanos();
+
+        if (events > _lastThrottleEvents || nanos > _lastThrottledNanos) {
+            _logger.info(String.format("Throttled ingest %d times for %d ms. Throttled total: %d times, %d ms",
+                    events - _lastThrottleEvents, TimeUnit.NANOSECONDS.toMillis(nanos - _lastThrottledNanos),
+                    events, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        }
+
+        _lastThrottleEvents = events;
+        _lastThrottledNanos = nanos;
+    }
+
+    // the nodes send running totals too
+    private void reportCluster() {
+        ClusterStats.Totals totals = _clusterStats.totals();
+
+        _logger.info(String.format(
+                "Cluster (%d of %d nodes reporting): received %d unique numbers, %d duplicates. Unique total: %d",
+                totals.reporting(), _clusterStats.nodes(), totals.uniques() - _lastClusterUniques,
+                totals.duplicates() - _lastClusterDuplicates, totals.seen()));
+
+        _lastClusterUniques = totals.uniques();
+        _lastClusterDuplicates = totals.duplicates();
     }
 }
@@ -0,0 +1,28 @@
+package com.newrelic.codingchallenge;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+// The set of numbers the server has already seen. Implementations must be safe
+// to call from several reader threads at once.
+public interface NumberSet {
+    // returns true if the number was not in the set before this call
+    boolean add(int number);
+
+    boolean contains(int number);
+
+    // the number of unique numbers in the set. Not meant for hot paths: it may
+    // add up per-block counts rather than read a single counter
+    long size();
+
+    // the number of numbers in [from, to] in the set
+    long count(int from, int to);
+
+    // calls the action for every number in the set, smallest first. Numbers
+    // added while this runs may or may not be included.
+    void forEach(IntConsumer action);
+
+    // calls the action for every number in [from, to] in the set, smallest
+    // first, until it returns false. Returns false if the action stopped it.
+    boolean forEach(int from, int to, IntPredicate action);
+}
@@ -0,0 +1,109 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// A binary snapshot of the dedup bitmap, so a restart can load the seen set in
+// one sequential read instead of re-parsing all of numbers.log.
+//
+// The file is a fixed header followed by the raw bitmap of the whole number
+// space. The header records how long numbers.log was when the snapshot was
+// taken; everything after that point in the log is replayed on top of it.
+//
+// Snapshots are written to a temporary file and moved into place, so a crash
+// mid-write leaves the previous snapshot intact.
+public class NumberSetSnapshot {
+    private static final long MAGIC = 0x4e52534e41503031L; // "NRSNAP01"
+    private static final int HEADER_SIZE = 24;
+    private static final long BITMAP_SIZE = OffHeapNumberSet.NUMBER_SPACE / 8;
+
+    public static void write(Path path, ShardedNumberSet seenNumbers, long logLength) throws IOException {
+        commit(writeTemporary(path, seenNumbers, logLength), path);
+    }
+
+    // writes the snapshot next to path without replacing what's there yet, and
+    // returns where it went
+    public static Path writeTemporary(Path path, ShardedNumberSet seenNumbers, long logLength)
+            throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(MAGIC);
+            header.putInt(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 1 : 0);
+            header.putInt(OffHeapNumberSet.NUMBER_SPACE);
+            header.putLong(logLength);
+            header.flip();
+
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            seenNumbers.writeTo(channel);
+            channel.force(false);
+        }
+
+        return temp;
+    }
+
+    // moves a snapshot from writeTemporary() into place
+    public static void commit(Path temp, Path path) throws IOException {
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // the length of numbers.log the snapshot covers, or -1 if there's no snapshot
+    // this build can load
+    public static long logLength(Path path) throws IOException {
+        if (!Files.exists(path) || Files.size(path) != HEADER_SIZE + BITMAP_SIZE) {
+            return -1;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readHeader(channel);
+        }
+    }
+
+    // loads the snapshot into an empty set and returns the length of numbers.log
+    // it covers
+    public static long read(Path path, ShardedNumberSet seenNumbers) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long logLength = readHeader(channel);
+
+            if (logLength < 0) {
+                throw new IOException(String.format("Not a usable snapshot: %s", path));
+            }
+
+            seenNumbers.readFrom(channel);
+
+            return logLength;
+        }
+    }
+
+    private static long readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        while (header.hasRemaining()) {
+            if (channel.read(header) < 0) {
+                return -1;
+            }
+        }
+
+        header.flip();
+
+        boolean littleEndian = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+        if (header.getLong() != MAGIC || header.getInt() != (littleEndian ? 1 : 0)
+                || header.getInt() != OffHeapNumberSet.NUMBER_SPACE) {
+            return -1;
+        }
+
+        return header.getLong();
+    }
+}
@@ -0,0 +1,23 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+
+// Somewhere unique numbers go: numbers.log, a downstream consumer over TCP, a
+// tap in a test.
+//
+// Every sink is run by a NumberLogger of its own, on its own thread and fed from
+// its own queue by the SinkFanout, so a sink is only ever called from one thread
+// and a slow one only holds up its own queue. Numbers arrive in batches, in no
+// particular order.
+public interface NumberSink {
+    // for logs and metric labels
+    String name();
+
+    void write(int[] numbers, int offset, int length) throws IOException;
+
+    // hands on anything buffered; sync also asks for it to be made durable, where
+    // that means something
+    void flush(boolean sync) throws IOException;
+
+    void close() throws IOException;
+}
@@ -0,0 +1,274 @@
+package com.newrelic.codingchallenge;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+// A fixed-size bitset living outside the Java heap - one bit per possible number.
+//
+// Every input is a nine-digit number, so the whole space is 10^9 bits, or about
+// 125 MB. That's a lot less than a hash set of boxed integers once a few million
+// numbers have shown up, and since it's off-heap the garbage collector never has
+// to look at it.
+//
+// Bits are set with a compare-and-set on the 64-bit word that holds them, so any
+// number of readers can share one instance without locking. A set can also cover
+// just a slice of the space, [offset, offset + capacity), which is how the
+// sharded readers each get their own piece.
+//
+// Alongside the words it keeps a rank index: the number of set bits in each
+// block of BLOCK_WORDS words. A successful add bumps its block's count - the
+// one increment it has always made to keep the size - so counting a range only
+// has to popcount the words at its ragged ends and add up the blocks in
+// between, which keeps a count over the whole space to a few tens of thousands
+// of additions.
+public class OffHeapNumberSet implements NumberSet {
+    public static final int NUMBER_SPACE = 1_000_000_000;
+
+    // 32768 numbers per block; about 30,000 blocks cover the whole space
+    static final int BLOCK_WORDS = 512;
+
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+
+    private final ByteBuffer _words;
+    private final int _wordCount;
+    private final int _offset;
+    private final int _capacity;
+    private final AtomicIntegerArray _blockCounts;
+
+    public OffHeapNumberSet() {
+        this(NUMBER_SPACE);
+    }
+
+    public OffHeapNumberSet(int capacity) {
+        this(0, capacity);
+    }
+
+    public OffHeapNumberSet(int offset, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(String.format("Capacity must be positive: %d", capacity));
+        }
+
+        int wordCount = (int) ((capacity + 63L) >>> 6);
+
+        // atomic access through the var handle needs 8-byte aligned words, so
+        // over-allocate a little and slice an aligned view out of it. Direct buffers
+        // are zeroed on allocation.
+        _words = ByteBuffer.allocateDirect(wordCount * Long.BYTES + Long.BYTES).alignedSlice(Long.BYTES)
+                .order(ByteOrder.nativeOrder());
+        _wordCount = wordCount;
+        _offset = offset;
+        _capacity = capacity;
+        _blockCounts = new AtomicIntegerArray((wordCount + BLOCK_WORDS - 1) / BLOCK_WORDS);
+    }
+
+    public int offset() {
+        return _offset;
+    }
+
+    public int capacity() {
+        return _capacity;
+    }
+
+    @Override
+    public boolean add(int number) {
+        int index = index(number);
+        int offset = (index >>> 6) << 3;
+        long mask = 1L << index;
+
+        long word = (long) WORDS.getVolatile(_words, offset);
+
+        while ((word & mask) == 0) {
+            long witness = (long) WORDS.compareAndExchange(_words, offset, word, word | mask);
+
+            if (witness == word) {
+                _blockCounts.getAndIncrement((index >>> 6) / BLOCK_WORDS);
+                return true;
+            }
+
+            word = witness;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean contains(int number) {
+        int index = index(number);
+        long word = (long) WORDS.getVolatile(_words, (index >>> 6) << 3);
+
+        return (word & (1L << index)) != 0;
+    }
+
+    // adds up every block count - about 30,000 reads for the whole space - so
+    // it's only called when a restore and startup need the starting total; the
+    // reporter and the seen_numbers gauge use DedupCounters instead
+    @Override
+    public long size() {
+        long size = 0;
+
+        for (int i = 0; i < _blockCounts.length(); i++) {
+            size += _blockCounts.get(i);
+        }
+
+        return size;
+    }
+
+    // numbers in [from, to] that are in the set; the parts of the range outside
+    // the slice are simply empty
+    @Override
+    public long count(int from, int to) {
+        int first = Math.max(from, _offset) - _offset;
+        int last = (int) Math.min(to, (long) _offset + _capacity - 1) - _offset;
+
+        if (first > last) {
+            return 0;
+        }
+
+        int firstWord = first >>> 6;
+        int lastWord = last >>> 6;
+
+        // masks for the bits at or above `first` and at or below `last`
+        long firstMask = -1L << first;
+        long lastMask = -1L >>> (63 - (last & 63));
+
+        if (firstWord == lastWord) {
+            return Long.bitCount(word(firstWord) & firstMask & lastMask);
+        }
+
+        return Long.bitCount(word(firstWord) & firstMask) + countWords(firstWord + 1, lastWord)
+                + Long.bitCount(word(lastWord) & lastMask);
+    }
+
+    @Override
+    public boolean forEach(int from, int to, IntPredicate action) {
+        int first = Math.max(from, _offset) - _offset;
+        int last = (int) Math.min(to, (long) _offset + _capacity - 1) - _offset;
+
+        if (first > last) {
+            return true;
+        }
+
+        for (int i = first >>> 6; i <= last >>> 6; i++) {
+            long word = word(i);
+
+            if (i == first >>> 6) {
+                word &= -1L << first;
+            }
+
+            if (i == last >>> 6) {
+                word &= -1L >>> (63 - (last & 63));
+            }
+
+            while (word != 0) {
+                if (!action.test(_offset + (i << 6) + Long.numberOfTrailingZeros(word))) {
+                    return false;
+                }
+
+                word &= word - 1;
+            }
+        }
+
+        return true;
+    }
+
+    // walks the words in order and only looks at the bits that are set, so the
+    // cost is one read per 64 numbers of space plus one call per member
+    @Override
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < _wordCount; i++) {
+            long word = (long) WORDS.getVolatile(_words, i << 3);
+
+            while (word != 0) {
+                action.accept(_offset + (i << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    // writes the raw words, in native byte order, to the channel. Safe to call
+    // while other threads are adding: bits only ever go from 0 to 1, so the copy
+    // holds everything added before the call and maybe some of what's added during.
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer words = wordView();
+
+        while (words.hasRemaining()) {
+            channel.write(words);
+        }
+    }
+
+    // replaces the contents of the set with words written by writeTo. Not safe to
+    // call while the set is in use.
+    public void readFrom(ReadableByteChannel channel) throws IOException {
+        ByteBuffer words = wordView();
+
+        while (words.hasRemaining()) {
+            if (channel.read(words) < 0) {
+                throw new EOFException("Ran out of input while reading number set");
+            }
+        }
+
+        for (int block = 0; block < _blockCounts.length(); block++) {
+            int count = 0;
+
+            for (int i = block * BLOCK_WORDS; i < Math.min((block + 1) * BLOCK_WORDS, _wordCount); i++) {
+                count += Long.bitCount(_words.getLong(i << 3));
+            }
+
+            _blockCounts.set(block, count);
+        }
+    }
+
+    // the set bits in words [from, to): whole blocks come from the index, and
+    // only the words before the first block boundary and after the last one are
+    // counted one by one
+    private long countWords(int from, int to) {
+        long count = 0;
+        int i = from;
+
+        for (; i < to && i % BLOCK_WORDS != 0; i++) {
+            count += Long.bitCount(word(i));
+        }
+
+        for (; i + BLOCK_WORDS <= to; i += BLOCK_WORDS) {
+            count += _blockCounts.get(i / BLOCK_WORDS);
+        }
+
+        for (; i < to; i++) {
+            count += Long.bitCount(word(i));
+        }
+
+        return count;
+    }
+
+    private long word(int index) {
+        return (long) WORDS.getVolatile(_words, index << 3);
+    }
+
+    private ByteBuffer wordView() {
+        ByteBuffer words = _words.duplicate();
+        words.limit(_wordCount * Long.BYTES);
+
+        return words;
+    }
+
+    private int index(int number) {
+        int index = number - _offset;
+
+        if (index < 0 || index >= _capacity) {
+            throw new IndexOutOfBoundsException(String.format("Number %d is outside of the set's range [%d, %d)",
+                    number, _offset, (long) _offset + _capacity));
+        }
+
+        return index;
+    }
+}
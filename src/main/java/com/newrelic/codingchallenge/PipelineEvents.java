@@ -0,0 +1,144 @@
+package com.newrelic.codingchallenge;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// JDK Flight Recorder events for every stage of the pipeline, so a recording
+// shows which stage a slowdown is in and lines it up with GC, safepoints and
+// the rest of what the JVM records.
+//
+// Each stage times a batch with begin() and commit(), so an event's duration is
+// how long that stage spent on it, and the fields say how much work it was.
+// When nothing is recording, isEnabled() is false and the stages skip the
+// event entirely; the JIT removes the allocation, so the cost is a check per
+// batch. All the events are on by default in any recording: --jfr-file starts
+// one at startup, or attach one with jcmd <pid> JFR.start.
+public class PipelineEvents {
+    private PipelineEvents() {
+    }
+
+    // reports the depth of every named queue once a second while a recording
+    // wants QueueDepth events
+    public static void watchQueues(Map<String, IntRingBuffer> queues) {
+        Map<String, IntRingBuffer> watched = new LinkedHashMap<>(queues);
+
+        FlightRecorder.addPeriodicEvent(QueueDepth.class, () -> {
+            for (Map.Entry<String, IntRingBuffer> queue : watched.entrySet()) {
+                QueueDepth event = new QueueDepth();
+                event.queue = queue.getKey();
+                event.depth = queue.getValue().size();
+                event.capacity = queue.getValue().capacity();
+                event.commit();
+            }
+        });
+    }
+
+    @Name("com.newrelic.codingchallenge.BatchReceived")
+    @Label("Batch Received")
+    @Category({ "Number Server", "Ingest" })
+    @Description("A read from a client socket, decoded and handed to the read queues")
+    @StackTrace(false)
+    public static class BatchReceived extends Event {
+        @Label("Connection")
+        public String connection;
+
+        @Label("Numbers")
+        public int numbers;
+
+        @Label("Bytes")
+        @DataAmount
+        public int bytes;
+
+        @Label("Publish Time")
+        @Description("Time spent handing the numbers to the read queues, including waiting on a full one")
+        @Timespan
+        public long publishNanos;
+    }
+
+    @Name("com.newrelic.codingchallenge.BatchDeduplicated")
+    @Label("Batch Deduplicated")
+    @Category({ "Number Server", "Dedup" })
+    @Description("A batch taken off a read queue, checked against the seen set, with its uniques sent to the logger")
+    @StackTrace(false)
+    public static class BatchDeduplicated extends Event {
+        @Label("Numbers")
+        public int numbers;
+
+        @Label("Uniques")
+        public int uniques;
+
+        @Label("Duplicates")
+        public int duplicates;
+
+        @Label("Queue Depth")
+        @Description("Numbers still waiting on the read queue once the batch was taken")
+        public int queueDepth;
+    }
+
+    @Name("com.newrelic.codingchallenge.LogFlush")
+    @Label("Log Flush")
+    @Category({ "Number Server", "Log" })
+    @Description("Everything encoded since the last flush written out to the log")
+    @StackTrace(false)
+    public static class LogFlush extends Event {
+        @Label("Numbers")
+        public long numbers;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+
+        @Label("Synced")
+        public boolean synced;
+
+        @Label("Since Last Flush")
+        @Description("The longest any of the numbers could have waited in the logger's buffer")
+        @Timespan
+        public long sinceLastFlush;
+    }
+
+    @Name("com.newrelic.codingchallenge.QueueDepth")
+    @Label("Queue Depth")
+    @Category({ "Number Server", "Queues" })
+    @Description("How full one of the pipeline's ring buffers is")
+    @Period("1 s")
+    @StackTrace(false)
+    public static class QueueDepth extends Event {
+        @Label("Queue")
+        public String queue;
+
+        @Label("Depth")
+        public int depth;
+
+        @Label("Capacity")
+        public int capacity;
+    }
+
+    @Name("com.newrelic.codingchallenge.Connection")
+    @Label("Connection")
+    @Category({ "Number Server", "Ingest" })
+    @Description("A client connected, was rejected for invalid input, or disconnected")
+    @StackTrace(false)
+    public static class Connection extends Event {
+        @Label("Connection")
+        public String connection;
+
+        @Label("State")
+        public String state;
+
+        @Label("Numbers")
+        @Description("Numbers received on the connection so far")
+        public long numbers;
+    }
+}
@@ -0,0 +1,110 @@
+package com.newrelic.codingchallenge;
+
+// Answers the query port's requests from the live seen set. One request per
+// line, one response line per request, in the same order:
+//
+// - SEEN n - "true" or "false"
+// - COUNT a b - how many numbers in [a, b] have been seen
+// - LIST a b [limit] - the seen numbers in [a, b], smallest first and space
+// separated, at most limit of them (default DEFAULT_LIMIT). To page through a
+// bigger range, ask again from one past the last number returned.
+//
+// Anything else gets "ERROR" and a reason. The set is only ever read, so
+// queries never hold up a reader; they may or may not see numbers that are
+// added while they run.
+//
+// In a cluster each node only knows its own ranges: counts and lists cover what
+// this node owns, and SEEN for anyone else's number is an error.
+public class QueryHandler {
+    public static final int DEFAULT_LIMIT = 1000;
+    public static final int MAX_LIMIT = 100_000;
+
+    private final ShardedNumberSet _seenNumbers;
+
+    public QueryHandler(ShardedNumberSet seenNumbers) {
+        _seenNumbers = seenNumbers;
+    }
+
+    // appends the response to one request line, without the newline
+    public void handle(String request, StringBuilder response) {
+        String[] parts = request.trim().split("\\s+");
+        int start = response.length();
+
+        try {
+            switch (parts[0].toUpperCase()) {
+            case "SEEN":
+                expectArguments(parts, 1, 1);
+                seen(parseNumber(parts[1]), response);
+                break;
+            case "COUNT":
+                expectArguments(parts, 2, 2);
+                response.append(_seenNumbers.count(parseNumber(parts[1]), parseNumber(parts[2])));
+                break;
+            case "LIST":
+                expectArguments(parts, 2, 3);
+                list(parseNumber(parts[1]), parseNumber(parts[2]),
+                        parts.length > 3 ? parseLimit(parts[3]) : DEFAULT_LIMIT, response);
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("unknown request %s", parts[0]));
+            }
+        } catch (IllegalArgumentException ex) {
+            response.setLength(start);
+            response.append("ERROR ").append(ex.getMessage());
+        }
+    }
+
+    private void seen(int number, StringBuilder response) {
+        if (!_seenNumbers.covers(number)) {
+            throw new IllegalArgumentException(String.format("%d belongs to another node", number));
+        }
+
+        response.append(_seenNumbers.contains(number));
+    }
+
+    private void list(int from, int to, int limit, StringBuilder response) {
+        int[] listed = new int[1];
+
+        _seenNumbers.forEach(from, to, number -> {
+            if (listed[0] > 0) {
+                response.append(' ');
+            }
+
+            response.append(number);
+            return ++listed[0] < limit;
+        });
+    }
+
+    private static void expectArguments(String[] parts, int min, int max) {
+        if (parts.length - 1 < min || parts.length - 1 > max) {
+            throw new IllegalArgumentException(String.format("%s takes %s arguments", parts[0].toUpperCase(),
+                    min == max ? Integer.toString(min) : min + " to " + max));
+        }
+    }
+
+    private static int parseNumber(String value) {
+        try {
+            int number = Integer.parseInt(value);
+
+            if (number >= 0 && number < OffHeapNumberSet.NUMBER_SPACE) {
+                return number;
+            }
+        } catch (NumberFormatException ex) {
+        }
+
+        throw new IllegalArgumentException(String.format("not a number between 0 and 999999999: %s", value));
+    }
+
+    private static int parseLimit(String value) {
+        try {
+            int limit = Integer.parseInt(value);
+
+            if (limit > 0 && limit <= MAX_LIMIT) {
+                return limit;
+            }
+        } catch (NumberFormatException ex) {
+        }
+
+        throw new IllegalArgumentException(String.format("limit must be between 1 and %d: %s", MAX_LIMIT, value));
+    }
+}
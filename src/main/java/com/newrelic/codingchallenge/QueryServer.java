@@ -0,0 +1,140 @@
+package com.newrelic.codingchallenge;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+// Serves QueryHandler requests on their own port, apart from ingest.
+//
+// Like the metrics endpoint it only listens on the loopback address and runs on
+// its own few daemon threads: at most MAX_CLIENTS connections are answered at
+// once, and anyone past that waits until one hangs up. Queries only read the
+// set, so the cost to ingest is whatever CPU and memory bandwidth they use.
+//
+// Requests can be pipelined. Responses are buffered and only flushed once the
+// server has caught up with everything the client has sent so far, so a batch
+// of requests gets its answers back in about one write.
+public class QueryServer {
+    public static final int MAX_CLIENTS = 4;
+
+    private final ServerSocket _server;
+    private final QueryHandler _handler;
+    private final Logger _logger;
+    private final ExecutorService _executor;
+    private final Set<Socket> _clients;
+    private final Counter _requestsMetric;
+    private final Histogram _requestNanos;
+
+    public QueryServer(int port, QueryHandler handler, MetricsRegistry metrics, Logger logger) throws IOException {
+        _server = new ServerSocket();
+        _server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        _handler = handler;
+        _logger = logger;
+        // the accept loop plus one thread per client
+        _executor = Executors.newFixedThreadPool(MAX_CLIENTS + 1, runnable -> {
+            Thread thread = new Thread(runnable, "query-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        _clients = ConcurrentHashMap.newKeySet();
+        _requestsMetric = metrics.counter("query_requests_total");
+        _requestNanos = metrics.histogram("query_request_nanos");
+    }
+
+    public void start() {
+        _executor.execute(this::acceptClients);
+    }
+
+    public void stop() {
+        try {
+            _server.close();
+        } catch (IOException ex) {
+        }
+
+        for (Socket client : _clients) {
+            close(client);
+        }
+
+        _executor.shutdownNow();
+    }
+
+    public int localPort() {
+        return _server.getLocalPort();
+    }
+
+    private void acceptClients() {
+        while (!_server.isClosed()) {
+            try {
+                Socket client = _server.accept();
+
+                _clients.add(client);
+                _executor.execute(() -> serve(client));
+            } catch (Exception ex) {
+                if (!_server.isClosed()) {
+                    _logger.warning(String.format("Exception while accepting a query client: %s", ex.getMessage()));
+                }
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+            Writer out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(),
+                    StandardCharsets.US_ASCII));
+            StringBuilder response = new StringBuilder();
+            String request;
+
+            while ((request = in.readLine()) != null) {
+                if (request.isBlank()) {
+                    continue;
+                }
+
+                long start = System.nanoTime();
+
+                response.setLength(0);
+                _handler.handle(request, response);
+                out.append(response).append('\n');
+                _requestsMetric.increment();
+                _requestNanos.record(System.nanoTime() - start);
+
+                // more requests already waiting means the client is pipelining;
+                // answer them all before flushing
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+
+            out.flush();
+        } catch (IOException ex) {
+            // closing the socket during shutdown lands here too
+            if (!_server.isClosed()) {
+                _logger.info(String.format("Query client went away: %s", ex.getMessage()));
+            }
+        } finally {
+            close(client);
+            _clients.remove(client);
+        }
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ex) {
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.newrelic.codingchallenge;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-connection input lanes in front of one reader, so one fast client can't
+// bury everyone else's numbers behind its own in a shared read queue.
+//
+// Each connection publishes into a lane of its own - a single-producer
+// IntRingBuffer - and the reader drains the lanes in turn, taking up to
+// QUANTUM numbers times the lane's weight from each before moving on. With
+// every weight at 1 that's plain round-robin; weights are given per client
+// host. A client sending faster than its share fills its own lane and blocks
+// in publish, so its listener stops reading and TCP pushes back on it alone,
+// while the other lanes keep moving.
+//
+// Each lane remembers when its recent batches were published, so the reader
+// can time how long every client's numbers waited to be deduplicated:
+// lane_queue_delay_nanos{client="host"}. A lane goes away once its connection
+// has closed it and the reader has emptied it.
+public class ReadLanes implements BatchSource {
+    public static final int QUANTUM = 1024;
+
+    // batches a lane keeps publish times for; past that, batches go untimed
+    // until the reader catches up
+    private static final int MARKS = 256;
+
+    public class Lane implements BatchPublisher {
+        private final int _weight;
+        private final IntRingBuffer _queue;
+        private final Histogram _delay;
+        private final long[] _markSequences;
+        private final long[] _markNanos;
+        private final AtomicLong _markTail;
+        private final AtomicLong _markHead;
+        private long _published;
+        private long _drained;
+        private volatile boolean _closed;
+
+        private Lane(String client, int weight) {
+            _weight = weight;
+            _queue = IntRingBuffer.singleProducer(_laneCapacity, _waitStrategy);
+            _delay = _metrics.histogram(String.format("lane_queue_delay_nanos{client=\"%s\"}", client));
+            _markSequences = new long[MARKS];
+            _markNanos = new long[MARKS];
+            _markTail = new AtomicLong();
+            _markHead = new AtomicLong();
+        }
+
+        public int weight() {
+            return _weight;
+        }
+
+        @Override
+        public void publish(int[] values, int offset, int length) throws InterruptedException {
+            _queue.publish(values, offset, length);
+            _published += length;
+
+            long tail = _markTail.get();
+
+            if (tail - _markHead.get() < MARKS) {
+                _markSequences[(int) tail & (MARKS - 1)] = _published;
+                _markNanos[(int) tail & (MARKS - 1)] = System.nanoTime();
+                _markTail.lazySet(tail + 1);
+            }
+        }
+
+        // the connection is done with the lane; it's dropped once it's empty
+        public void close() {
+            _closed = true;
+        }
+
+        private int drain(int[] into, int offset, int max) {
+            int count = _queue.drain(into, offset, max);
+
+            if (count == 0) {
+                return 0;
+            }
+
+            _drained += count;
+
+            // every batch that's now been drained all the way waited until now
+            long now = System.nanoTime();
+            long head = _markHead.get();
+            long tail = _markTail.get();
+
+            while (head < tail && _markSequences[(int) head & (MARKS - 1)] <= _drained) {
+                _delay.record(now - _markNanos[(int) head & (MARKS - 1)]);
+                head++;
+            }
+
+            _markHead.lazySet(head);
+            return count;
+        }
+
+        // closed first, so everything published before close() is seen
+        private boolean isFinished() {
+            return _closed && _queue.isEmpty();
+        }
+    }
+
+    private final List<Lane> _lanes;
+    private final int _laneCapacity;
+    private final Map<String, Integer> _weights;
+    private final WaitStrategy _waitStrategy;
+    private final MetricsRegistry _metrics;
+    private int _cursor;
+    private volatile boolean _closed;
+
+    // weights by client host; anyone not listed gets 1
+    public ReadLanes(int laneCapacity, Map<String, Integer> weights, WaitStrategy waitStrategy,
+            MetricsRegistry metrics) {
+        _lanes = new CopyOnWriteArrayList<>();
+        _laneCapacity = laneCapacity;
+        _weights = weights;
+        _waitStrategy = waitStrategy;
+        _metrics = metrics;
+    }
+
+    // a new lane for one connection from `client`; only that connection's
+    // thread may publish to it
+    public Lane open(String client) {
+        Lane lane = new Lane(client, _weights.getOrDefault(client, 1));
+
+        _lanes.add(lane);
+        return lane;
+    }
+
+    public int lanes() {
+        return _lanes.size();
+    }
+
+    // one turn around the lanes, starting from where the last call stopped,
+    // until the array is full
+    @Override
+    public int drain(int[] into) {
+        int count = 0;
+        int lanes = _lanes.size();
+
+        // only this thread removes lanes; others only add them at the end
+        for (int turn = 0; turn < lanes && count < into.length; turn++) {
+            if (_cursor >= _lanes.size()) {
+                _cursor = 0;
+            }
+
+            Lane lane = _lanes.get(_cursor);
+            count += lane.drain(into, count, Math.min(into.length - count, lane._weight * QUANTUM));
+
+            if (lane.isFinished()) {
+                // the next lane moves into this one's place
+                _lanes.remove(_cursor);
+            } else {
+                _cursor++;
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+
+        for (Lane lane : _lanes) {
+            size += lane._queue.size();
+        }
+
+        return size;
+    }
+
+    @Override
+    public WaitStrategy waitStrategy() {
+        return _waitStrategy;
+    }
+
+    @Override
+    public void close() {
+        _closed = true;
+    }
+
+    @Override
+    public boolean isDrained() {
+        return _closed && size() == 0;
+    }
+}
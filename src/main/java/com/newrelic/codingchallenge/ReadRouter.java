@@ -0,0 +1,241 @@
+package com.newrelic.codingchallenge;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+// Sends each number a listener decodes to the read queue of the NumberReader
+// that owns it. Numbers are split into the same contiguous ranges as the
+// ShardedNumberSet, so queue i only ever carries numbers for shard i.
+//
+// Listeners don't publish one number at a time: each one gets a Batch that
+// collects a read's worth of numbers per shard and publishes them together.
+//
+// In a cluster the router covers every node's ranges: the local ones lead to the
+// local readers' queues, and each range another node owns leads to the queue
+// of the link to that node - so the same queue shows up once per range.
+//
+// With --lanes, a local shard leads to a ReadLanes instead of one shared queue,
+// and each Batch opens its own lane in it the first time it publishes there.
+// With --client-rate, every client's Batch waits on a TokenBucket of its own
+// before publishing.
+//
+// With --listener-cache, every client's Batch also keeps the numbers it was
+// given recently in a RecentNumbers cache, and doesn't queue the ones it finds
+// there: they're certain to be duplicates, so they're only counted, on
+// ingest_cache_hits_total, once the batch they came in has been published.
+public class ReadRouter {
+    private final IntRingBuffer[] _queues;
+    private final IntRingBuffer[] _distinctQueues;
+    private final ReadLanes[] _lanes;
+    private final ReadLanes[] _distinctLanes;
+    private final int _shardWidth;
+    private final long _clientRate;
+    private final Counter _rateLimitedNanos;
+    private final int _cacheSize;
+    private final Counter _cacheLookups;
+    private final Counter _cacheHits;
+
+    public ReadRouter(IntRingBuffer... queues) {
+        this(ShardedNumberSet.shardWidth(OffHeapNumberSet.NUMBER_SPACE, queues.length), queues);
+    }
+
+    public ReadRouter(int shardWidth, IntRingBuffer... queues) {
+        this(shardWidth, queues, new ReadLanes[queues.length], 0, 0, null);
+    }
+
+    // each shard leads to either queues[i] or lanes[i], whichever isn't null;
+    // metrics is only needed with a client rate or cache
+    public ReadRouter(int shardWidth, IntRingBuffer[] queues, ReadLanes[] lanes, long clientRate, int cacheSize,
+            MetricsRegistry metrics) {
+        _queues = queues;
+        _distinctQueues = Arrays.stream(queues).filter(Objects::nonNull).distinct().toArray(IntRingBuffer[]::new);
+        _lanes = lanes;
+        _distinctLanes = Arrays.stream(lanes).filter(Objects::nonNull).distinct().toArray(ReadLanes[]::new);
+        _shardWidth = shardWidth;
+        _clientRate = clientRate;
+        _rateLimitedNanos = clientRate > 0 ? metrics.counter("ingest_rate_limited_nanos_total") : null;
+        _cacheSize = cacheSize;
+        _cacheLookups = cacheSize > 0 ? metrics.counter("ingest_cache_lookups_total") : null;
+        _cacheHits = cacheSize > 0 ? metrics.counter("ingest_cache_hits_total") : null;
+    }
+
+    // routes every range the topology's nodes own: `localQueues` for this node's
+    // own ranges and `linkQueues[node]` for everyone else's
+    public static ReadRouter forCluster(ClusterTopology topology, IntRingBuffer[] localQueues,
+            IntRingBuffer[] linkQueues) {
+        return forCluster(topology, localQueues, new ReadLanes[localQueues.length], linkQueues, 0, 0, null);
+    }
+
+    // the same, with this node's ranges leading to `localLanes[i]` wherever
+    // `localQueues[i]` is null
+    public static ReadRouter forCluster(ClusterTopology topology, IntRingBuffer[] localQueues,
+            ReadLanes[] localLanes, IntRingBuffer[] linkQueues, long clientRate, int cacheSize,
+            MetricsRegistry metrics) {
+        IntRingBuffer[] queues = new IntRingBuffer[topology.totalShards()];
+        ReadLanes[] lanes = new ReadLanes[topology.totalShards()];
+
+        for (int i = 0; i < queues.length; i++) {
+            int node = i / topology.shards();
+
+            if (node != topology.nodeId()) {
+                queues[i] = linkQueues[node];
+            } else {
+                queues[i] = localQueues[i % topology.shards()];
+                lanes[i] = localLanes[i % topology.shards()];
+            }
+        }
+
+        return new ReadRouter(topology.shardWidth(), queues, lanes, clientRate, cacheSize, metrics);
+    }
+
+    public int shards() {
+        return _queues.length;
+    }
+
+    public IntRingBuffer queue(int shard) {
+        return _queues[shard];
+    }
+
+    public int shardOf(int number) {
+        return number / _shardWidth;
+    }
+
+    // the number of values waiting in every read queue and lane
+    public int size() {
+        int size = 0;
+
+        for (IntRingBuffer queue : _distinctQueues) {
+            size += queue.size();
+        }
+
+        for (ReadLanes lanes : _distinctLanes) {
+            size += lanes.size();
+        }
+
+        return size;
+    }
+
+    // a batch that can hold `capacity` numbers between publishes; one per
+    // listener, since it isn't thread safe
+    public Batch newBatch(int capacity) {
+        return new Batch(capacity, "local", null, null);
+    }
+
+    // the same for a client connection: lanes are opened under the client's
+    // host, its publishes are held to the client rate if there is one, and its
+    // repeats are caught by a cache of its own if there is one
+    public Batch newBatch(int capacity, String client) {
+        return new Batch(capacity, client, _clientRate > 0 ? new TokenBucket(_clientRate) : null,
+                _cacheSize > 0 ? new RecentNumbers(_cacheSize) : null);
+    }
+
+    public class Batch {
+        private final int[][] _values;
+        private final int[] _sizes;
+        private final int _capacity;
+        private final String _client;
+        private final ReadLanes.Lane[] _openLanes;
+        private final TokenBucket _bucket;
+        private final RecentNumbers _recent;
+        private int _size;
+        private int _hits;
+
+        private Batch(int capacity, String client, TokenBucket bucket, RecentNumbers recent) {
+            _values = new int[_queues.length][capacity];
+            _sizes = new int[_queues.length];
+            _capacity = capacity;
+            _client = client;
+            _openLanes = new ReadLanes.Lane[_queues.length];
+            _bucket = bucket;
+            _recent = recent;
+        }
+
+        public boolean isFull() {
+            return _size == _capacity;
+        }
+
+        // the numbers waiting to be queued
+        public int size() {
+            return _size;
+        }
+
+        // every number added since the last publish, including the ones the cache
+        // caught
+        public int received() {
+            return _size + _hits;
+        }
+
+        public void add(int number) {
+            if (_recent != null && _recent.checkAndAdd(number)) {
+                _hits++;
+                return;
+            }
+
+            int shard = _queues.length == 1 ? 0 : shardOf(number);
+
+            _values[shard][_sizes[shard]++] = number;
+            _size++;
+        }
+
+        public void publish() throws InterruptedException {
+            try {
+                if (_bucket != null && received() > 0) {
+                    _rateLimitedNanos.add(_bucket.acquire(received()));
+                }
+
+                for (int shard = 0; shard < _queues.length; shard++) {
+                    if (_sizes[shard] > 0) {
+                        target(shard).publish(_values[shard], 0, _sizes[shard]);
+                    }
+                }
+
+                // only now are the numbers the hits repeat sure to reach a reader
+                if (_recent != null) {
+                    _cacheLookups.add(received());
+                    _cacheHits.add(_hits);
+                }
+            } finally {
+                clear();
+            }
+        }
+
+        public void clear() {
+            for (int shard = 0; shard < _sizes.length; shard++) {
+                _sizes[shard] = 0;
+            }
+
+            _size = 0;
+            _hits = 0;
+        }
+
+        // gives up the batch's lanes once it's done publishing for good; only the
+        // thread that publishes may call this
+        public void close() {
+            for (ReadLanes.Lane lane : _openLanes) {
+                if (lane != null) {
+                    lane.close();
+                }
+            }
+        }
+
+        private BatchPublisher target(int shard) {
+            if (_lanes[shard] == null) {
+                return _queues[shard];
+            }
+
+            // several shards can share a ReadLanes in a cluster; one lane in each
+            // is enough
+            if (_openLanes[shard] == null) {
+                for (int other = 0; other < _lanes.length; other++) {
+                    if (_lanes[other] == _lanes[shard] && _openLanes[other] != null) {
+                        return _openLanes[other];
+                    }
+                }
+
+                _openLanes[shard] = _lanes[shard].open(_client);
+            }
+
+            return _openLanes[shard];
+        }
+    }
+}
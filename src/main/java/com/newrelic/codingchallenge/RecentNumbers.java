@@ -0,0 +1,51 @@
+package com.newrelic.codingchallenge;
+
+import java.util.Arrays;
+
+// The numbers one connection sent most recently, in a small direct-mapped
+// cache: each number hashes to exactly one slot, and a new number simply
+// overwrites whatever was there. That makes a lookup one multiply, one shift
+// and one load from an array small enough to stay in L1 - no probing, no
+// eviction bookkeeping.
+//
+// A hit means the connection has already sent that number, so it's been
+// queued for a reader before (or in the same batch) and is certain to be a
+// duplicate by the time this copy would have got there. A miss means nothing;
+// the reader still has the final say. Only the connection's own thread may
+// use it.
+public class RecentNumbers {
+    // numbers are never negative, so this can't be mistaken for one
+    private static final int EMPTY = -1;
+
+    private final int[] _slots;
+    private final int _shift;
+
+    // size must be a power of two
+    public RecentNumbers(int size) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException(String.format("Size must be a power of two: %d", size));
+        }
+
+        _slots = new int[size];
+        _shift = 32 - Integer.numberOfTrailingZeros(size);
+        Arrays.fill(_slots, EMPTY);
+    }
+
+    // whether number was already in the cache; either way it's there afterwards
+    public boolean checkAndAdd(int number) {
+        // Fibonacci hashing, so runs of nearby numbers don't pile into neighbouring
+        // slots and evict each other
+        int slot = (int) (((number * 0x9E3779B9L) & 0xFFFFFFFFL) >>> _shift);
+
+        if (_slots[slot] == number) {
+            return true;
+        }
+
+        _slots[slot] = number;
+        return false;
+    }
+
+    public int size() {
+        return _slots.length;
+    }
+}
@@ -0,0 +1,133 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// A compact binary format: numbers are collected into blocks, and each block is
+// sorted and written as a segment of varint-encoded gaps between neighbours.
+//
+// A segment is
+//   magic       4 bytes, "NRSG"
+//   count       4-byte big-endian int, how many numbers follow
+//   length      4-byte big-endian int, how many bytes of varints follow
+//   gaps        the first number, then each number minus the one before it, as
+//               unsigned LEB128 varints (7 bits per byte, low bits first)
+//
+// Each segment is sorted on its own, not the file as a whole. With a few million
+// uniques spread over 10^9 the gaps mostly fit in two or three bytes, against
+// ten for a line of text, and a reader can skip a segment without decoding it.
+public class SegmentLogEncoder implements LogEncoder {
+    public static final int MAGIC = 0x4e525347; // "NRSG"
+    public static final int HEADER_SIZE = 12;
+
+    private static final int BLOCK_SIZE = 16 * 1024;
+    // the most bytes a varint of a number below 2^31 needs
+    private static final int MAX_VARINT = 5;
+
+    private final int[] _block;
+    private int _size;
+
+    public SegmentLogEncoder() {
+        _block = new int[BLOCK_SIZE];
+    }
+
+    // the biggest buffer a sink needs to be able to hand out
+    public static int maxSegmentSize() {
+        return HEADER_SIZE + BLOCK_SIZE * MAX_VARINT;
+    }
+
+    @Override
+    public void encode(int number, Sink sink) throws IOException {
+        _block[_size++] = number;
+
+        if (_size == _block.length) {
+            flush(sink);
+        }
+    }
+
+    @Override
+    public void flush(Sink sink) throws IOException {
+        if (_size == 0) {
+            return;
+        }
+
+        Arrays.sort(_block, 0, _size);
+
+        int length = 0;
+        int previous = 0;
+
+        for (int i = 0; i < _size; i++) {
+            length += varintSize(_block[i] - previous);
+            previous = _block[i];
+        }
+
+        ByteBuffer buffer = sink.room(HEADER_SIZE + length);
+        buffer.putInt(MAGIC);
+        buffer.putInt(_size);
+        buffer.putInt(length);
+        previous = 0;
+
+        for (int i = 0; i < _size; i++) {
+            int gap = _block[i] - previous;
+
+            while ((gap & ~0x7f) != 0) {
+                buffer.put((byte) (gap & 0x7f | 0x80));
+                gap >>>= 7;
+            }
+
+            buffer.put((byte) gap);
+            previous = _block[i];
+        }
+
+        _size = 0;
+    }
+
+    // reads segments from the buffer's position to its limit, calling the action
+    // for each number. Throws if the bytes aren't segments or a segment is cut
+    // short.
+    public static void decode(ByteBuffer buffer, IntConsumer action) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException(String.format("Not a segment at byte %d", buffer.position()));
+            }
+
+            int count = buffer.getInt();
+            int length = buffer.getInt();
+
+            if (length > buffer.remaining()) {
+                throw new IOException(String.format("Segment at byte %d is cut short", buffer.position()));
+            }
+
+            int end = buffer.position() + length;
+            int number = 0;
+
+            for (int i = 0; i < count; i++) {
+                int gap = 0;
+
+                for (int shift = 0;; shift += 7) {
+                    if (buffer.position() >= end) {
+                        throw new IOException(String.format("Segment ending at byte %d is malformed", end));
+                    }
+
+                    byte next = buffer.get();
+                    gap |= (next & 0x7f) << shift;
+
+                    if (next >= 0) {
+                        break;
+                    }
+                }
+
+                number += gap;
+                action.accept(number);
+            }
+
+            buffer.position(end);
+        }
+    }
+
+    private static int varintSize(int value) {
+        return value < 1 << 7 ? 1 : value < 1 << 14 ? 2 : value < 1 << 21 ? 3 : value < 1 << 28 ? 4 : 5;
+    }
+}
@@ -0,0 +1,496 @@
+package com.newrelic.codingchallenge;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Command line options for the server. Everything is optional and passed as
+// --name=value; anything left out keeps the behavior the server has always had.
+public class ServerOptions {
+    public enum IngestMode {
+        // one blocking NumberListener per connection on a fixed thread pool
+        THREADS,
+        // a couple of selector threads multiplexing every connection
+        NIO,
+        // one blocking NumberListener per connection, each on its own virtual
+        // thread (JDK 21+, platform threads otherwise)
+        VIRTUAL
+    }
+
+    public enum LogMode {
+        // write through a FileChannel
+        CHANNEL,
+        // copy into memory-mapped chunks of the file
+        MAPPED
+    }
+
+    public enum LogFormat {
+        // one decimal number per line in numbers.log
+        TEXT,
+        // sorted, varint-encoded blocks in numbers.seg
+        SEGMENTS
+    }
+
+    public enum ExportFormat {
+        NONE, TEXT, SEGMENTS
+    }
+
+    public enum WaitMode {
+        BUSY_SPIN, YIELD, BACKOFF
+    }
+
+    public enum LaneMode {
+        // every connection publishes into the same read queue
+        SHARED,
+        // a lane per connection, drained in turn
+        ROUND_ROBIN,
+        // a lane per connection, drained in proportion to --lane-weights
+        WEIGHTED
+    }
+
+    public static final int MAX_CLIENTS = 5;
+    public static final int MAX_LANE_WEIGHT = 64;
+    public static final int MAX_ACCEPTORS = 16;
+
+    private int _port = 4000;
+    private IngestMode _ingestMode = IngestMode.THREADS;
+    private int _eventLoops = 1;
+    private int _acceptors = 1;
+    private WaitMode _waitMode = WaitMode.BACKOFF;
+    private int _queueCapacity = 1 << 20;
+    private int _shards = 1;
+    private LogMode _logMode = LogMode.CHANNEL;
+    private LogFormat _logFormat = LogFormat.TEXT;
+    private ExportFormat _exportFormat = ExportFormat.NONE;
+    private int _logFlushMillis = 1000;
+    private FlushPolicy.SyncMode _logSync = FlushPolicy.SyncMode.ON_CLOSE;
+    private int _logChunkMegabytes = 64;
+    private boolean _restore = false;
+    private int _snapshotSeconds = 0;
+    private int _metricsPort = 0;
+    private int _queryPort = 0;
+    private String _jfrFile = null;
+    private int _shutdownTimeoutMillis = 10000;
+    private int _highWaterPercent = 75;
+    private int _lowWaterPercent = 25;
+    private String _cluster = null;
+    private int _nodeId = -1;
+    private String _tcpSinkHost = null;
+    private int _tcpSinkPort = 0;
+    private SinkFanout.OverflowPolicy _tcpSinkOverflow = SinkFanout.OverflowPolicy.DROP;
+    private List<Path> _replayFiles = null;
+    private int _replayThreads = Runtime.getRuntime().availableProcessors();
+    private LaneMode _laneMode = LaneMode.SHARED;
+    private Map<String, Integer> _laneWeights = null;
+    private int _clientRate = 0;
+    private int _listenerCache = 0;
+    private ClusterTopology _topology;
+
+    public static ServerOptions parse(String[] args) {
+        ServerOptions options = new ServerOptions();
+
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException(String.format("Expected an option like --name=value: %s", arg));
+            }
+
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+
+            switch (name) {
+            case "port":
+                options._port = parseInt(name, value, 0, 65535);
+                break;
+            case "ingest":
+                options._ingestMode = parseEnum(IngestMode.class, name, value);
+                break;
+            case "event-loops":
+                options._eventLoops = parseInt(name, value, 1, Runtime.getRuntime().availableProcessors());
+                break;
+            case "acceptors":
+                options._acceptors = parseInt(name, value, 1, MAX_ACCEPTORS);
+                break;
+            case "wait":
+                options._waitMode = parseEnum(WaitMode.class, name, value);
+                break;
+            case "queue-capacity":
+                options._queueCapacity = parseInt(name, value, 1, 1 << 30);
+
+                if (Integer.bitCount(options._queueCapacity) != 1) {
+                    throw new IllegalArgumentException(
+                            String.format("--%s must be a power of two: %s", name, value));
+                }
+
+                break;
+            case "shards":
+                options._shards = parseInt(name, value, 1, Runtime.getRuntime().availableProcessors());
+                break;
+            case "log-mode":
+                options._logMode = parseEnum(LogMode.class, name, value);
+                break;
+            case "log-format":
+                options._logFormat = parseEnum(LogFormat.class, name, value);
+                break;
+            case "export":
+                options._exportFormat = parseEnum(ExportFormat.class, name, value);
+                break;
+            case "log-flush-millis":
+                options._logFlushMillis = parseInt(name, value, 0, Integer.MAX_VALUE);
+                break;
+            case "log-sync":
+                options._logSync = parseEnum(FlushPolicy.SyncMode.class, name, value);
+                break;
+            case "log-chunk-mb":
+                options._logChunkMegabytes = parseInt(name, value, 1, 1024);
+                break;
+            case "restore":
+                options._restore = parseBoolean(name, value);
+                break;
+            case "snapshot-seconds":
+                options._snapshotSeconds = parseInt(name, value, 0, Integer.MAX_VALUE);
+                break;
+            case "metrics-port":
+                options._metricsPort = parseInt(name, value, 0, 65535);
+                break;
+            case "query-port":
+                options._queryPort = parseInt(name, value, 0, 65535);
+                break;
+            case "jfr-file":
+                options._jfrFile = value;
+                break;
+            case "shutdown-timeout-millis":
+                options._shutdownTimeoutMillis = parseInt(name, value, 0, Integer.MAX_VALUE);
+                break;
+            case "high-water-percent":
+                options._highWaterPercent = parseInt(name, value, 1, 100);
+                break;
+            case "low-water-percent":
+                options._lowWaterPercent = parseInt(name, value, 0, 99);
+                break;
+            case "cluster":
+                options._cluster = value;
+                break;
+            case "node-id":
+                options._nodeId = parseInt(name, value, 0, Integer.MAX_VALUE);
+                break;
+            case "tcp-sink":
+                int colon = value.lastIndexOf(':');
+
+                if (colon <= 0) {
+                    throw new IllegalArgumentException(String.format("--%s must be host:port: %s", name, value));
+                }
+
+                options._tcpSinkHost = value.substring(0, colon);
+                options._tcpSinkPort = parseInt(name, value.substring(colon + 1), 1, 65535);
+                break;
+            case "replay":
+                options._replayFiles = new ArrayList<>();
+
+                for (String file : value.split(",")) {
+                    if (!file.isEmpty()) {
+                        options._replayFiles.add(Paths.get(file));
+                    }
+                }
+
+                if (options._replayFiles.isEmpty()) {
+                    throw new IllegalArgumentException(String.format("--%s needs at least one file", name));
+                }
+
+                break;
+            case "replay-threads":
+                options._replayThreads = parseInt(name, value, 1, Runtime.getRuntime().availableProcessors());
+                break;
+            case "tcp-sink-overflow":
+                options._tcpSinkOverflow = parseEnum(SinkFanout.OverflowPolicy.class, name, value);
+                break;
+            case "lanes":
+                options._laneMode = parseEnum(LaneMode.class, name, value);
+                break;
+            case "lane-weights":
+                options._laneWeights = new HashMap<>();
+
+                for (String weight : value.split(",")) {
+                    int equals = weight.lastIndexOf('=');
+
+                    if (equals <= 0) {
+                        throw new IllegalArgumentException(
+                                String.format("--%s must be host=weight,...: %s", name, value));
+                    }
+
+                    options._laneWeights.put(weight.substring(0, equals),
+                            parseInt(name, weight.substring(equals + 1), 1, MAX_LANE_WEIGHT));
+                }
+
+                break;
+            case "client-rate":
+                options._clientRate = parseInt(name, value, 0, Integer.MAX_VALUE);
+                break;
+            case "listener-cache":
+                options._listenerCache = parseInt(name, value, 0, 1 << 20);
+
+                if (options._listenerCache > 0 && Integer.bitCount(options._listenerCache) != 1) {
+                    throw new IllegalArgumentException(
+                            String.format("--%s must be a power of two: %s", name, value));
+                }
+
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown option: --%s", name));
+            }
+        }
+
+        if (options._restore && options._logFormat != LogFormat.TEXT) {
+            throw new IllegalArgumentException("--restore only works with --log-format=text");
+        }
+
+        if (options._acceptors > 1 && options._ingestMode == IngestMode.NIO) {
+            throw new IllegalArgumentException("--acceptors only works with --ingest=threads or --ingest=virtual");
+        }
+
+        // a lane or a client's rate blocks whoever publishes, which would be the
+        // whole event loop
+        if ((options._laneMode != LaneMode.SHARED || options._clientRate > 0)
+                && options._ingestMode == IngestMode.NIO) {
+            throw new IllegalArgumentException(
+                    "--lanes and --client-rate only work with --ingest=threads or --ingest=virtual");
+        }
+
+        if (options._laneWeights != null && options._laneMode != LaneMode.WEIGHTED) {
+            throw new IllegalArgumentException("--lane-weights needs --lanes=weighted");
+        }
+
+        if (options._replayFiles != null && options._cluster != null) {
+            throw new IllegalArgumentException("--replay doesn't work with --cluster");
+        }
+
+        if (options._lowWaterPercent >= options._highWaterPercent) {
+            throw new IllegalArgumentException(
+                    String.format("--low-water-percent must be below --high-water-percent: %d >= %d",
+                            options._lowWaterPercent, options._highWaterPercent));
+        }
+
+        if (options._cluster == null) {
+            if (options._nodeId >= 0) {
+                throw new IllegalArgumentException("--node-id needs --cluster");
+            }
+
+            options._topology = ClusterTopology.standalone(options._shards);
+        } else {
+            // snapshots and the log are per node, and restoring would need every
+            // node to agree on where they left off
+            if (options._restore || options._snapshotSeconds > 0) {
+                throw new IllegalArgumentException("--restore and --snapshot-seconds don't work with --cluster");
+            }
+
+            options._topology = ClusterTopology.parse(options._cluster, Math.max(0, options._nodeId),
+                    options._shards);
+        }
+
+        return options;
+    }
+
+    public int getPort() {
+        return _port;
+    }
+
+    public IngestMode getIngestMode() {
+        return _ingestMode;
+    }
+
+    public int getEventLoops() {
+        return _eventLoops;
+    }
+
+    public int getAcceptors() {
+        return _acceptors;
+    }
+
+    public WaitMode getWaitMode() {
+        return _waitMode;
+    }
+
+    public int getQueueCapacity() {
+        return _queueCapacity;
+    }
+
+    public int getShards() {
+        return _shards;
+    }
+
+    public LogMode getLogMode() {
+        return _logMode;
+    }
+
+    public LogFormat getLogFormat() {
+        return _logFormat;
+    }
+
+    // what to write the sorted seen set as at shutdown, if anything
+    public ExportFormat getExportFormat() {
+        return _exportFormat;
+    }
+
+    public int getLogChunkMegabytes() {
+        return _logChunkMegabytes;
+    }
+
+    // keep numbers.log and the seen set from the previous run instead of starting over
+    public boolean isRestore() {
+        return _restore;
+    }
+
+    // how often to snapshot the seen set; 0 turns snapshots off
+    public int getSnapshotSeconds() {
+        return _snapshotSeconds;
+    }
+
+    // the loopback port the metrics endpoint listens on; 0 (the default) turns
+    // it off
+    public int getMetricsPort() {
+        return _metricsPort;
+    }
+
+    // the loopback port that answers queries about the seen set; 0 (the default)
+    // turns it off
+    public int getQueryPort() {
+        return _queryPort;
+    }
+
+    // where to write a flight recording started at startup, or null for none
+    public String getJfrFile() {
+        return _jfrFile;
+    }
+
+    // how long a terminate may spend draining the queues into the log
+    public long getShutdownTimeoutNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(_shutdownTimeoutMillis);
+    }
+
+    // how full any queue may get before ingest stops reading from sockets, and how
+    // far every queue must drain before it starts again
+    public int getHighWaterPercent() {
+        return _highWaterPercent;
+    }
+
+    public int getLowWaterPercent() {
+        return _lowWaterPercent;
+    }
+
+    // the nodes of the cluster this server is part of and the ranges each one
+    // owns; a single node owning everything unless --cluster is given
+    public ClusterTopology getClusterTopology() {
+        return _topology;
+    }
+
+    // where to forward every unique number as well as the log, or null for
+    // nowhere
+    public String getTcpSinkHost() {
+        return _tcpSinkHost;
+    }
+
+    public int getTcpSinkPort() {
+        return _tcpSinkPort;
+    }
+
+    // what to do with uniques when the TCP sink's queue is full
+    public SinkFanout.OverflowPolicy getTcpSinkOverflow() {
+        return _tcpSinkOverflow;
+    }
+
+    // capture files to push through the pipeline instead of listening for
+    // clients, or null to listen as usual
+    public List<Path> getReplayFiles() {
+        return _replayFiles;
+    }
+
+    public int getReplayThreads() {
+        return _replayThreads;
+    }
+
+    public LaneMode getLaneMode() {
+        return _laneMode;
+    }
+
+    // weights by client host for --lanes=weighted; anyone not listed gets 1
+    public Map<String, Integer> getLaneWeights() {
+        return _laneWeights == null ? Collections.emptyMap() : _laneWeights;
+    }
+
+    // how many numbers a second each connection may send; 0 for no limit
+    public int getClientRate() {
+        return _clientRate;
+    }
+
+    // how many recent numbers each connection remembers, to skip queueing its
+    // repeats; 0 turns the cache off
+    public int getListenerCache() {
+        return _listenerCache;
+    }
+
+    public FlushPolicy createFlushPolicy() {
+        return new FlushPolicy(TimeUnit.MILLISECONDS.toNanos(_logFlushMillis), _logSync);
+    }
+
+    public LogEncoder createLogEncoder() {
+        return _logFormat == LogFormat.SEGMENTS ? new SegmentLogEncoder() : new TextLogEncoder();
+    }
+
+    public LogEncoder createExportEncoder() {
+        return _exportFormat == ExportFormat.SEGMENTS ? new SegmentLogEncoder() : new TextLogEncoder();
+    }
+
+    public WaitStrategy createWaitStrategy() {
+        switch (_waitMode) {
+        case BUSY_SPIN:
+            return new BusySpinWaitStrategy();
+        case YIELD:
+            return new YieldingWaitStrategy();
+        default:
+            return new BackoffWaitStrategy();
+        }
+    }
+
+    static int parseInt(String name, String value, int min, int max) {
+        int parsed;
+
+        try {
+            parsed = Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("--%s must be a number: %s", name, value));
+        }
+
+        if (parsed < min || parsed > max) {
+            throw new IllegalArgumentException(
+                    String.format("--%s must be between %d and %d: %d", name, min, max, parsed));
+        }
+
+        return parsed;
+    }
+
+    static boolean parseBoolean(String name, String value) {
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+
+        throw new IllegalArgumentException(String.format("--%s must be true or false: %s", name, value));
+    }
+
+    static <E extends Enum<E>> E parseEnum(Class<E> type, String name, String value) {
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equalsIgnoreCase(value.replace('-', '_'))) {
+                return constant;
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("Unknown value for --%s: %s", name, value));
+    }
+}
@@ -0,0 +1,145 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+// The full number space split into contiguous, equally sized ranges, each backed
+// by its own OffHeapNumberSet. Each shard is owned by one NumberReader, so readers
+// never touch each other's memory; the set as a whole still answers for any
+// number, which is what the reporter and anything else outside the readers need.
+//
+// In a cluster, a node's set only holds the ranges that node owns - `shards` of
+// the `totalShards` ranges, starting at `firstShard` - and anything outside them
+// is simply never seen.
+public class ShardedNumberSet implements NumberSet {
+    private final OffHeapNumberSet[] _shards;
+    private final int _shardWidth;
+    private final int _firstShard;
+
+    public ShardedNumberSet(int shards) {
+        this(shards, 0, shards);
+    }
+
+    public ShardedNumberSet(int shards, int firstShard, int totalShards) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException(String.format("Shard count must be positive: %d", shards));
+        }
+
+        if (firstShard < 0 || firstShard + shards > totalShards) {
+            throw new IllegalArgumentException(
+                    String.format("Shards %d-%d don't fit in %d", firstShard, firstShard + shards - 1, totalShards));
+        }
+
+        _shardWidth = shardWidth(OffHeapNumberSet.NUMBER_SPACE, totalShards);
+        _shards = new OffHeapNumberSet[shards];
+        _firstShard = firstShard;
+
+        if ((long) (totalShards - 1) * _shardWidth >= OffHeapNumberSet.NUMBER_SPACE) {
+            throw new IllegalArgumentException(String.format("Too many shards: %d", totalShards));
+        }
+
+        for (int i = 0; i < shards; i++) {
+            int offset = (firstShard + i) * _shardWidth;
+            int capacity = Math.min(_shardWidth, OffHeapNumberSet.NUMBER_SPACE - offset);
+
+            _shards[i] = new OffHeapNumberSet(offset, capacity);
+        }
+    }
+
+    // the width of each range when `space` numbers are split `shards` ways; the
+    // last range may be a little narrower. Widths are rounded up to a whole number
+    // of 64-bit words so the shards' words, laid end to end, are exactly the words
+    // of one set covering the whole space - whatever the shard count.
+    public static int shardWidth(int space, int shards) {
+        long width = (space + (long) shards - 1) / shards;
+
+        return (int) Math.min((width + 63) & ~63L, space);
+    }
+
+    public int shards() {
+        return _shards.length;
+    }
+
+    public OffHeapNumberSet shard(int shard) {
+        return _shards[shard];
+    }
+
+    public int shardOf(int number) {
+        return number / _shardWidth - _firstShard;
+    }
+
+    // whether the number falls in one of this set's ranges
+    public boolean covers(int number) {
+        int shard = shardOf(number);
+
+        return number >= 0 && shard >= 0 && shard < _shards.length;
+    }
+
+    @Override
+    public boolean add(int number) {
+        return _shards[shardOf(number)].add(number);
+    }
+
+    @Override
+    public boolean contains(int number) {
+        return covers(number) && _shards[shardOf(number)].contains(number);
+    }
+
+    // writes every shard's words in order, which is the bitmap of the whole space
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        for (OffHeapNumberSet shard : _shards) {
+            shard.writeTo(channel);
+        }
+    }
+
+    public void readFrom(ReadableByteChannel channel) throws IOException {
+        for (OffHeapNumberSet shard : _shards) {
+            shard.readFrom(channel);
+        }
+    }
+
+    // the shards cover ascending, contiguous ranges, so visiting them in turn
+    // keeps the whole walk in order
+    @Override
+    public void forEach(IntConsumer action) {
+        for (OffHeapNumberSet shard : _shards) {
+            shard.forEach(action);
+        }
+    }
+
+    @Override
+    public long count(int from, int to) {
+        long count = 0;
+
+        for (OffHeapNumberSet shard : _shards) {
+            count += shard.count(from, to);
+        }
+
+        return count;
+    }
+
+    @Override
+    public boolean forEach(int from, int to, IntPredicate action) {
+        for (OffHeapNumberSet shard : _shards) {
+            if (!shard.forEach(from, to, action)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+
+        for (OffHeapNumberSet shard : _shards) {
+            size += shard.size();
+        }
+
+        return size;
+    }
+}
@@ -0,0 +1,111 @@
+package com.newrelic.codingchallenge;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// Runs the server's shutdown as a fixed sequence of phases - stop ingest, drain
+// the dedup stage, drain and close the log, and so on - against one overall
+// deadline, and logs how long each phase took.
+//
+// Each phase gets the deadline and reports whether it finished in time. A phase
+// that misses it is expected to cut its losses and return; the phases after it
+// still run, so the log is closed properly however the rest went, but
+// isClean() turns false for anything that only makes sense after a full drain.
+public class ShutdownCoordinator {
+    public interface Phase {
+        // returns false if the phase had to give up at the deadline
+        boolean run(long deadlineNanos) throws InterruptedException;
+    }
+
+    private final long _timeoutNanos;
+    private final Logger _logger;
+    private final List<String> _names;
+    private final List<Phase> _phases;
+    private final Map<String, Long> _timings;
+    private volatile boolean _clean;
+
+    public ShutdownCoordinator(long timeoutNanos, Logger logger) {
+        _timeoutNanos = timeoutNanos;
+        _logger = logger;
+        _names = new ArrayList<>();
+        _phases = new ArrayList<>();
+        _timings = new LinkedHashMap<>();
+        _clean = true;
+    }
+
+    public ShutdownCoordinator addPhase(String name, Phase phase) {
+        _names.add(name);
+        _phases.add(phase);
+        return this;
+    }
+
+    // runs every phase in order and returns whether they all finished in time
+    public boolean run() {
+        long start = System.nanoTime();
+        long deadline = start + _timeoutNanos;
+
+        for (int i = 0; i < _phases.size(); i++) {
+            long phaseStart = System.nanoTime();
+            boolean finished;
+
+            try {
+                finished = _phases.get(i).run(deadline);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                finished = false;
+            } catch (RuntimeException ex) {
+                _logger.severe(String.format("Shutdown phase %s failed: %s", _names.get(i), ex.getMessage()));
+                finished = false;
+            }
+
+            _timings.put(_names.get(i), System.nanoTime() - phaseStart);
+
+            if (!finished) {
+                _logger.warning(String.format("Shutdown phase %s did not finish in time", _names.get(i)));
+                _clean = false;
+            }
+        }
+
+        _logger.info(String.format("Shut down in %d ms (%s)", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                describeTimings()));
+
+        return _clean;
+    }
+
+    // true while every phase so far has finished before the deadline
+    public boolean isClean() {
+        return _clean;
+    }
+
+    // nanoseconds per phase, in the order they ran
+    public Map<String, Long> timings() {
+        return _timings;
+    }
+
+    // stops the executor accepting work and waits for what it's running, up to
+    // the deadline
+    public static boolean awaitTermination(ExecutorService service, long deadlineNanos)
+            throws InterruptedException {
+        service.shutdown();
+        return service.awaitTermination(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private String describeTimings() {
+        StringBuilder out = new StringBuilder();
+
+        for (Map.Entry<String, Long> timing : _timings.entrySet()) {
+            if (out.length() > 0) {
+                out.append(", ");
+            }
+
+            out.append(String.format("%s %.1f ms", timing.getKey(), timing.getValue() / 1e6));
+        }
+
+        return out.toString();
+    }
+}
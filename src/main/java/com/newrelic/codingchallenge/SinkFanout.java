@@ -0,0 +1,96 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+// Hands each batch of unique numbers from the readers to every sink's queue.
+//
+// What happens when a sink's queue is full is up to that sink's overflow policy:
+// BLOCK waits for room, which holds the readers (and through flow control, the
+// clients) back - numbers.log always blocks, since it has to have every
+// number. DROP throws the batch away and counts it. SPILL appends it to the
+// sink's SpillFile, and keeps spilling until the sink has caught up on what's
+// there, so the sink reads everything back before the queue gets ahead again.
+// Either way a sink that isn't BLOCK never slows the readers down.
+public class SinkFanout implements BatchPublisher {
+    public enum OverflowPolicy {
+        BLOCK, DROP, SPILL
+    }
+
+    private static class Route {
+        private final String _name;
+        private final IntRingBuffer _queue;
+        private final OverflowPolicy _policy;
+        private final SpillFile _spill;
+        private final Counter _dropped;
+        private final Counter _spilled;
+
+        private Route(String name, IntRingBuffer queue, OverflowPolicy policy, SpillFile spill,
+                MetricsRegistry metrics) {
+            _name = name;
+            _queue = queue;
+            _policy = policy;
+            _spill = spill;
+            _dropped = metrics.counter(String.format("sink_dropped_total{sink=\"%s\"}", name));
+            _spilled = metrics.counter(String.format("sink_spilled_total{sink=\"%s\"}", name));
+        }
+    }
+
+    private final List<Route> _routes;
+    private final MetricsRegistry _metrics;
+    private final Logger _logger;
+
+    public SinkFanout(MetricsRegistry metrics, Logger logger) {
+        _routes = new ArrayList<>();
+        _metrics = metrics;
+        _logger = logger;
+    }
+
+    // adds a sink's queue; spill is only needed for the SPILL policy. Every sink
+    // has to be added before the readers start.
+    public void add(String name, IntRingBuffer queue, OverflowPolicy policy, SpillFile spill) {
+        if (policy == OverflowPolicy.SPILL && spill == null) {
+            throw new IllegalArgumentException(String.format("The %s sink needs a spill file to spill", name));
+        }
+
+        _routes.add(new Route(name, queue, policy, spill, _metrics));
+    }
+
+    @Override
+    public void publish(int[] values, int offset, int length) throws InterruptedException {
+        for (int i = 0; i < _routes.size(); i++) {
+            Route route = _routes.get(i);
+
+            switch (route._policy) {
+            case BLOCK:
+                route._queue.publish(values, offset, length);
+                break;
+            case DROP:
+                if (!route._queue.tryPublish(values, offset, length)) {
+                    route._dropped.add(length);
+                }
+
+                break;
+            case SPILL:
+                if (!route._spill.isEmpty() || !route._queue.tryPublish(values, offset, length)) {
+                    spill(route, values, offset, length);
+                }
+
+                break;
+            }
+        }
+    }
+
+    private void spill(Route route, int[] values, int offset, int length) {
+        try {
+            route._spill.write(values, offset, length);
+            route._spilled.add(length);
+        } catch (IOException ex) {
+            route._dropped.add(length);
+            _logger.warning(String.format("Dropped %d numbers for the %s sink, couldn't spill them: %s", length,
+                    route._name, ex.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.newrelic.codingchallenge;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// Periodically writes a NumberSetSnapshot of the live seen set.
+//
+// The log length is read before the bitmap is copied, so every number logged
+// after that point gets replayed on restore even if it also made it into the
+// bitmap. The other way round, a reader marks a number as seen before the
+// logger writes it, so the copy can hold uniques that aren't in numbers.log
+// yet - and after a crash, a restore would count them as seen and never log
+// them. So the copy only goes in as the snapshot once the log has caught up
+// with it: every reader has finished the batch it was on when the copy ended,
+// and the log has flushed every unique the readers have handed on since. If
+// that takes longer than the timeout, the copy is thrown away and the
+// previous snapshot stays.
+public class SnapshotWriter implements Runnable {
+    private static final long POLL_MILLIS = 10;
+
+    private final ShardedNumberSet _seenNumbers;
+    private final Path _path;
+    private final FileSink _log;
+    private final long _logStart;
+    private final List<NumberReader> _readers;
+    private final long _timeoutNanos;
+    private final Logger _logger;
+
+    // logStart is how long the log was before the file sink started writing
+    public SnapshotWriter(ShardedNumberSet seenNumbers, Path path, FileSink log, long logStart,
+            List<NumberReader> readers, long timeoutNanos, Logger logger) {
+        _seenNumbers = seenNumbers;
+        _path = path;
+        _log = log;
+        _logStart = logStart;
+        _readers = readers;
+        _timeoutNanos = timeoutNanos;
+        _logger = logger;
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        Path temp = null;
+
+        try {
+            temp = NumberSetSnapshot.writeTemporary(_path, _seenNumbers, _logStart + _log.bytesWritten());
+
+            if (!awaitLogged(start + _timeoutNanos)) {
+                _logger.warning(String.format("Skipped snapshot: numbers.log didn't catch up within %d ms",
+                        TimeUnit.NANOSECONDS.toMillis(_timeoutNanos)));
+                return;
+            }
+
+            NumberSetSnapshot.commit(temp, _path);
+            temp = null;
+
+            _logger.info(String.format("Wrote snapshot in %d ms",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            _logger.severe(String.format("Error while writing snapshot: %s", ex.getMessage()));
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    // waits until everything in the set as of now is in the flushed log
+    private boolean awaitLogged(long deadline) throws InterruptedException {
+        for (NumberReader reader : _readers) {
+            long batches = reader.batches();
+
+            // a batch in progress may have marked numbers it hasn't handed on yet
+            while ((batches & 1) == 1 && reader.batches() == batches) {
+                if (System.nanoTime() >= deadline) {
+                    return false;
+                }
+
+                Thread.sleep(POLL_MILLIS);
+            }
+        }
+
+        long published = 0;
+
+        for (NumberReader reader : _readers) {
+            published += reader.uniquesPublished();
+        }
+
+        while (_log.numbersFlushed() < published) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+
+            Thread.sleep(POLL_MILLIS);
+        }
+
+        return true;
+    }
+
+    private void deleteQuietly(Path temp) {
+        if (temp == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(temp);
+        } catch (Exception ex) {
+            _logger.warning(String.format("Couldn't delete %s: %s", temp, ex.getMessage()));
+        }
+    }
+}
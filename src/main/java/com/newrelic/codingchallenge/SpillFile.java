@@ -0,0 +1,106 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Where a sink's numbers go when its queue is full and its overflow policy is
+// to spill: raw 4-byte ints appended to a file, read back from the front by the
+// sink's NumberLogger once its queue is empty.
+//
+// Any reader may spill, so writes and reads take a lock; it's only used while a
+// sink is behind, which is the slow path anyway. Once everything spilled has
+// been read back the file is truncated, so it only grows for as long as the
+// sink stays behind.
+public class SpillFile {
+    private final Path _path;
+    private final FileChannel _channel;
+    private ByteBuffer _buffer;
+    private long _readPosition;
+    private long _writePosition;
+
+    public SpillFile(Path path) throws IOException {
+        _path = path;
+        _channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        _buffer = ByteBuffer.allocate(16 * 1024);
+    }
+
+    public synchronized void write(int[] values, int offset, int length) throws IOException {
+        ByteBuffer buffer = buffer(length);
+
+        for (int i = offset; i < offset + length; i++) {
+            buffer.putInt(values[i]);
+        }
+
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            _writePosition += _channel.write(buffer, _writePosition);
+        }
+    }
+
+    // reads up to into.length spilled numbers, oldest first, and returns how many
+    // there were
+    public synchronized int read(int[] into) throws IOException {
+        int count = (int) Math.min(into.length, size());
+
+        if (count == 0) {
+            return 0;
+        }
+
+        ByteBuffer buffer = buffer(count);
+        buffer.limit(count * Integer.BYTES);
+
+        while (buffer.hasRemaining()) {
+            int read = _channel.read(buffer, _readPosition + buffer.position());
+
+            if (read < 0) {
+                throw new IOException(String.format("%s is shorter than expected", _path));
+            }
+        }
+
+        buffer.flip();
+
+        for (int i = 0; i < count; i++) {
+            into[i] = buffer.getInt();
+        }
+
+        _readPosition += count * Integer.BYTES;
+
+        // caught up; start the file over
+        if (_readPosition == _writePosition) {
+            _channel.truncate(0);
+            _readPosition = 0;
+            _writePosition = 0;
+        }
+
+        return count;
+    }
+
+    // the number of numbers waiting to be read back
+    public synchronized long size() {
+        return (_writePosition - _readPosition) / Integer.BYTES;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public synchronized void close() throws IOException {
+        _channel.close();
+        Files.deleteIfExists(_path);
+    }
+
+    private ByteBuffer buffer(int numbers) {
+        if (_buffer.capacity() < numbers * Integer.BYTES) {
+            _buffer = ByteBuffer.allocate(numbers * Integer.BYTES);
+        }
+
+        _buffer.clear();
+        return _buffer;
+    }
+}
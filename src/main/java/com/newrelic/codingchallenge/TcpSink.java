@@ -0,0 +1,152 @@
+package com.newrelic.codingchallenge;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+// Sends unique numbers to a downstream consumer over TCP, in the binary protocol
+// the server itself accepts: the handshake, then one frame per batch. Pointing
+// it at another server's ingest port makes that server a replica.
+//
+// The connection is made on the first write and remade whenever it breaks.
+// While the consumer can't be reached, write() keeps retrying the batch, so the
+// sink's queue fills up and its overflow policy decides what happens to the
+// rest. Delivery is best effort across a reconnect: whatever was in flight when
+// the connection broke may be lost or sent twice.
+public class TcpSink implements NumberSink {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final long RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private final String _host;
+    private final int _port;
+    private final AtomicBoolean _abortSignal;
+    private final Logger _logger;
+    private final Counter _failures;
+    private Socket _socket;
+    private DataOutputStream _out;
+
+    // stops retrying once the abort signal is set
+    public TcpSink(String host, int port, AtomicBoolean abortSignal, MetricsRegistry metrics, Logger logger) {
+        _host = host;
+        _port = port;
+        _abortSignal = abortSignal;
+        _logger = logger;
+        _failures = metrics.counter("sink_failures_total{sink=\"tcp\"}");
+    }
+
+    @Override
+    public String name() {
+        return "tcp";
+    }
+
+    @Override
+    public void write(int[] numbers, int offset, int length) throws IOException {
+        while (true) {
+            try {
+                DataOutputStream out = connect();
+
+                for (int sent = 0; sent < length; sent += NumberDecoder.MAX_FRAME_NUMBERS) {
+                    int count = Math.min(length - sent, NumberDecoder.MAX_FRAME_NUMBERS);
+
+                    out.writeInt(count);
+
+                    for (int i = offset + sent; i < offset + sent + count; i++) {
+                        out.writeInt(numbers[i]);
+                    }
+                }
+
+                return;
+            } catch (IOException ex) {
+                failed(ex);
+            }
+        }
+    }
+
+    @Override
+    public void flush(boolean sync) throws IOException {
+        if (_out == null) {
+            return;
+        }
+
+        try {
+            _out.flush();
+        } catch (IOException ex) {
+            failed(ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush(false);
+        } finally {
+            disconnect();
+        }
+    }
+
+    private DataOutputStream connect() throws IOException {
+        if (_out != null) {
+            return _out;
+        }
+
+        if (_abortSignal.get()) {
+            throw new IOException(String.format("Gave up sending to %s:%d", _host, _port));
+        }
+
+        Socket socket = new Socket();
+
+        try {
+            socket.connect(new InetSocketAddress(_host, _port), CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(),
+                    BUFFER_SIZE));
+            out.write((NumberDecoder.HANDSHAKE + "\n").getBytes(StandardCharsets.US_ASCII));
+
+            _socket = socket;
+            _out = out;
+            _logger.info(String.format("Sending unique numbers to %s:%d", _host, _port));
+            return out;
+        } catch (IOException ex) {
+            socket.close();
+            throw ex;
+        }
+    }
+
+    private void failed(IOException ex) throws IOException {
+        boolean wasConnected = _out != null;
+
+        disconnect();
+        _failures.increment();
+
+        if (_abortSignal.get()) {
+            throw ex;
+        }
+
+        if (wasConnected) {
+            _logger.warning(String.format("Lost the connection to %s:%d: %s", _host, _port, ex.getMessage()));
+        }
+
+        LockSupport.parkNanos(RETRY_NANOS);
+    }
+
+    private void disconnect() {
+        if (_socket != null) {
+            try {
+                _socket.close();
+            } catch (IOException ex) {
+            }
+        }
+
+        _socket = null;
+        _out = null;
+    }
+}
@@ -0,0 +1,63 @@
+package com.newrelic.codingchallenge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Set when a client sends "terminate" (or the server gives up on accepting).
+//
+// Loops can still poll isSet(), but whatever is blocked - the accept loop, a
+// selector - registers a hook that unblocks it the moment the signal is set,
+// instead of someone checking a flag once a second. Each hook runs exactly
+// once, on the thread that set the signal.
+public class TerminationSignal {
+    private final CountDownLatch _latch;
+    private final List<Runnable> _hooks;
+    private volatile boolean _set;
+
+    public TerminationSignal() {
+        _latch = new CountDownLatch(1);
+        _hooks = new ArrayList<>();
+    }
+
+    public boolean isSet() {
+        return _set;
+    }
+
+    public void set() {
+        List<Runnable> hooks;
+
+        synchronized (this) {
+            if (_set) {
+                return;
+            }
+
+            _set = true;
+            hooks = new ArrayList<>(_hooks);
+            _hooks.clear();
+        }
+
+        _latch.countDown();
+
+        for (Runnable hook : hooks) {
+            hook.run();
+        }
+    }
+
+    // runs the hook when the signal is set, or right away if it already is
+    public void onSet(Runnable hook) {
+        synchronized (this) {
+            if (!_set) {
+                _hooks.add(hook);
+                return;
+            }
+        }
+
+        hook.run();
+    }
+
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return _latch.await(timeout, unit);
+    }
+}
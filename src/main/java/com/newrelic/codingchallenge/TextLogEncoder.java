@@ -0,0 +1,35 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// The original numbers.log format: each number's digits, without zero padding,
+// and a newline.
+public class TextLogEncoder implements LogEncoder {
+    // the longest line: nine digits and a newline
+    private static final int MAX_LINE = NumberDecoder.DIGITS + 1;
+
+    @Override
+    public void encode(int number, Sink sink) throws IOException {
+        ByteBuffer buffer = sink.room(MAX_LINE);
+        int length = 1;
+
+        for (int remaining = number / 10; remaining > 0; remaining /= 10) {
+            length++;
+        }
+
+        int position = buffer.position();
+
+        for (int i = position + length - 1; i >= position; i--) {
+            buffer.put(i, (byte) ('0' + number % 10));
+            number /= 10;
+        }
+
+        buffer.put(position + length, (byte) '\n');
+        buffer.position(position + length + 1);
+    }
+
+    @Override
+    public void flush(Sink sink) {
+    }
+}
@@ -0,0 +1,43 @@
+package com.newrelic.codingchallenge;
+
+import java.util.concurrent.TimeUnit;
+
+// Holds one connection to a steady rate of numbers a second, allowing bursts
+// of up to a second's worth after it's been quiet.
+//
+// A batch takes its tokens up front and waits off any it's short, so a batch
+// bigger than the bucket just waits longer. Waiting happens before the batch
+// is published, which leaves the rest of the client's data in the socket,
+// the same way flow control does. A bucket belongs to one connection and
+// isn't thread safe.
+public class TokenBucket {
+    private final long _rate;
+    private final double _burst;
+    private double _tokens;
+    private long _refilled;
+
+    public TokenBucket(long ratePerSecond) {
+        _rate = ratePerSecond;
+        _burst = ratePerSecond;
+        _tokens = _burst;
+        _refilled = System.nanoTime();
+    }
+
+    // takes count tokens, waiting until the bucket would have had them; returns
+    // how long that was in nanoseconds
+    public long acquire(int count) throws InterruptedException {
+        long now = System.nanoTime();
+
+        _tokens = Math.min(_burst, _tokens + (now - _refilled) * (double) _rate / TimeUnit.SECONDS.toNanos(1));
+        _refilled = now;
+        _tokens -= count;
+
+        if (_tokens >= 0) {
+            return 0;
+        }
+
+        long wait = (long) (-_tokens * TimeUnit.SECONDS.toNanos(1) / _rate);
+        TimeUnit.NANOSECONDS.sleep(wait);
+        return wait;
+    }
+}
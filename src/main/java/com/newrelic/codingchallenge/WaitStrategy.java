@@ -0,0 +1,13 @@
+package com.newrelic.codingchallenge;
+
+// What a pipeline stage does when there's nothing for it to do - its input queue
+// is empty, or the queue it's publishing to is full. `attempt` counts how many
+// times in a row the caller has come up empty, so strategies can back off the
+// longer a stage stays idle.
+//
+// The choice trades latency for CPU: busy-spinning reacts fastest but pins a
+// core per stage, parking costs a little latency after a quiet spell but leaves
+// idle stages close to free.
+public interface WaitStrategy {
+    void idle(int attempt);
+}
@@ -0,0 +1,65 @@
+package com.newrelic.codingchallenge;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// Rebuilds the seen set from a previous run before the server starts taking
+// connections: load the latest snapshot if there is one, then replay whatever
+// numbers.log has gained since it was taken.
+public class WarmRestart {
+    // restores the set and returns the length of numbers.log, which is where
+    // the logger should start appending
+    public static long restore(ShardedNumberSet seenNumbers, Path logPath, Path snapshotPath, int threads,
+            Logger logger) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+
+        if (!Files.exists(logPath)) {
+            // a snapshot without its log would be loaded against the new one next
+            // time
+            Files.deleteIfExists(snapshotPath);
+            logger.info("No numbers.log to restore from; starting empty");
+            return 0;
+        }
+
+        try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // a snapshot that claims more of the log than there is belongs to some
+            // other numbers.log
+            long from = NumberSetSnapshot.logLength(snapshotPath);
+
+            if (from > log.size()) {
+                logger.warning("Deleting snapshot that doesn't match numbers.log");
+                Files.delete(snapshotPath);
+                from = -1;
+            }
+
+            long fromSnapshot = 0;
+
+            if (from >= 0) {
+                NumberSetSnapshot.read(snapshotPath, seenNumbers);
+                fromSnapshot = seenNumbers.size();
+            } else {
+                from = 0;
+            }
+
+            LogScanner.Result result = LogScanner.scan(log, from, seenNumbers, threads);
+
+            if (result.validLength() < log.size()) {
+                logger.warning(String.format("Dropping %d bytes of incomplete records from the end of numbers.log",
+                        log.size() - result.validLength()));
+                log.truncate(result.validLength());
+            }
+
+            logger.info(String.format(
+                    "Restored %d unique numbers (%d from snapshot, %d log lines replayed) in %d ms",
+                    seenNumbers.size(), fromSnapshot, result.numbers(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+
+            return result.validLength();
+        }
+    }
+}
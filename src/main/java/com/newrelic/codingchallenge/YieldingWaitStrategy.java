@@ -0,0 +1,17 @@
+package com.newrelic.codingchallenge;
+
+// Spins for a little while, then yields the core to anything else that wants to
+// run. Still looks busy to the OS, but plays nicer with other threads on a box
+// with fewer cores than stages.
+public class YieldingWaitStrategy implements WaitStrategy {
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public void idle(int attempt) {
+        if (attempt < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AcceptorGroupTest {
+    private IntRingBuffer readQueue;
+    private TerminationSignal terminationSignal;
+    private MetricsRegistry metrics;
+    private Logger logger;
+    private ExecutorService service;
+
+    private AcceptorGroup acceptors;
+    private Future<?> acceptorsFuture;
+
+    @Before
+    public void setup() throws Exception {
+        readQueue = IntRingBuffer.multiProducer(1024, new BusySpinWaitStrategy());
+        terminationSignal = new TerminationSignal();
+        metrics = new MetricsRegistry();
+        logger = mock(Logger.class);
+        service = Executors.newSingleThreadExecutor();
+
+        acceptors = new AcceptorGroup(0, 3, ServerOptions.IngestMode.THREADS, new ConnectionRegistry(2),
+                new ReadRouter(readQueue), new FlowControl(75, 25, new BusySpinWaitStrategy(), readQueue),
+                terminationSignal, metrics, logger);
+        acceptorsFuture = service.submit(() -> {
+            acceptors.run();
+            return null;
+        });
+    }
+
+    @After
+    public void teardown() {
+        terminationSignal.set();
+        acceptors.shutdownNow();
+        service.shutdownNow();
+    }
+
+    @Test(timeout = 5000)
+    public void testItQueuesNumbersFromEveryConnection() throws Exception {
+        for (int i = 1; i <= 6; i++) {
+            try (Socket socket = new Socket("localhost", acceptors.localPort())) {
+                socket.getOutputStream().write(bytes(String.format("%09d\n", i)));
+            }
+
+            waitForQueueSize(i);
+        }
+
+        long accepted = 0;
+
+        for (int i = 0; i < 3; i++) {
+            accepted += metrics.counter(String.format("accept_connections_total{acceptor=\"%d\"}", i)).sum();
+        }
+
+        assertThat(accepted, equalTo(6L));
+        assertThat(metrics.histogram("accept_handoff_nanos").count(), equalTo(6L));
+    }
+
+    @Test(timeout = 5000)
+    public void testItOnlyReadsFromMaxClientsAtATimeAcrossAcceptors() throws Exception {
+        List<Socket> sockets = new ArrayList<>();
+
+        try {
+            sockets.add(new Socket("localhost", acceptors.localPort()));
+            sockets.add(new Socket("localhost", acceptors.localPort()));
+
+            // whichever acceptors they landed on, both are listening before the third
+            // connects
+            while (metrics.histogram("accept_handoff_nanos").count() < 2) {
+                Thread.sleep(10);
+            }
+
+            sockets.add(new Socket("localhost", acceptors.localPort()));
+
+            sockets.get(2).getOutputStream().write(bytes("000000003\n"));
+            Thread.sleep(200);
+
+            assertThat(readQueue.isEmpty(), equalTo(true));
+
+            sockets.get(0).close();
+            waitForQueueSize(1);
+
+            assertThat(poll(readQueue), equalTo(3));
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testItStopsAcceptingWhenTheTerminationSignalIsSet() throws Exception {
+        terminationSignal.set();
+
+        acceptorsFuture.get();
+
+        assertThat(acceptors.awaitListeners(System.nanoTime() + 1_000_000_000L), equalTo(true));
+    }
+
+    private void waitForQueueSize(int size) throws InterruptedException {
+        while (readQueue.size() < size) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static int poll(IntRingBuffer queue) {
+        int[] values = new int[1];
+
+        return queue.drain(values) == 1 ? values[0] : -1;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,98 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClusterLinkTest {
+    private ServerSocket peer;
+    private IntRingBuffer queue;
+    private AtomicBoolean abortSignal;
+    private MetricsRegistry metrics;
+    private Thread thread;
+
+    @Before
+    public void setup() throws Exception {
+        peer = new ServerSocket(0);
+        queue = IntRingBuffer.multiProducer(16, new BusySpinWaitStrategy());
+        abortSignal = new AtomicBoolean();
+        metrics = new MetricsRegistry();
+
+        ClusterLink link = new ClusterLink(0, 1, new InetSocketAddress("localhost", peer.getLocalPort()), queue,
+                new ClusterStats(0, 2, new DedupCounters(1, 0)), abortSignal, metrics, mock(Logger.class));
+        thread = new Thread(link);
+        thread.start();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        abortSignal.set(true);
+        thread.join();
+        peer.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testItResendsWhatWasntAcknowledgedAfterReconnecting() throws Exception {
+        queue.publish(new int[] { 600000000, 700000000 }, 0, 2);
+
+        // the first connection takes the batch and drops it without an ack
+        try (Socket first = peer.accept()) {
+            DataInputStream in = new DataInputStream(first.getInputStream());
+
+            assertThat(nextFrame(in), equalTo(ClusterLink.HELLO));
+            in.readInt();
+            assertThat(nextFrame(in), equalTo(ClusterLink.NUMBERS));
+        }
+
+        try (Socket second = peer.accept()) {
+            DataInputStream in = new DataInputStream(second.getInputStream());
+            DataOutputStream out = new DataOutputStream(second.getOutputStream());
+
+            assertThat(nextFrame(in), equalTo(ClusterLink.HELLO));
+            in.readInt();
+            assertThat(nextFrame(in), equalTo(ClusterLink.NUMBERS));
+
+            long sequence = in.readLong();
+
+            assertThat(sequence, equalTo(0L));
+            assertThat(in.readInt(), equalTo(2));
+            assertThat(in.readInt(), equalTo(600000000));
+            assertThat(in.readInt(), equalTo(700000000));
+
+            out.writeByte(ClusterLink.ACK);
+            out.writeLong(sequence);
+            out.flush();
+            queue.close();
+
+            // only once everything is acknowledged does it say goodbye
+            assertThat(nextFrame(in), equalTo(ClusterLink.BYE));
+            assertThat(metrics.counter("cluster_forwarded_numbers_total{node=\"1\"}").sum(), equalTo(2L));
+        }
+    }
+
+    // the type of the next frame that isn't the link's running totals
+    private static int nextFrame(DataInputStream in) throws Exception {
+        int type = in.read();
+
+        while (type == ClusterLink.STATS) {
+            in.readLong();
+            in.readLong();
+            in.readLong();
+            type = in.read();
+        }
+
+        return type;
+    }
+}
@@ -0,0 +1,129 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.net.ServerSocket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+// two nodes on localhost, each owning half of the space
+public class ClusterNodeTest {
+    private IntRingBuffer[] readQueues;
+    private ReadRouter[] routers;
+    private TerminationSignal[] terminationSignals;
+    private ClusterNode[] nodes;
+    private ExecutorService service;
+
+    @Before
+    public void setup() throws Exception {
+        String cluster = String.format("127.0.0.1:%d,127.0.0.1:%d", freePort(), freePort());
+
+        readQueues = new IntRingBuffer[2];
+        routers = new ReadRouter[2];
+        terminationSignals = new TerminationSignal[2];
+        nodes = new ClusterNode[2];
+        service = Executors.newFixedThreadPool(2);
+
+        for (int node = 0; node < 2; node++) {
+            ClusterTopology topology = ClusterTopology.parse(cluster, node, 1);
+            IntRingBuffer[] linkQueues = new IntRingBuffer[2];
+            linkQueues[1 - node] = IntRingBuffer.multiProducer(1024, new BusySpinWaitStrategy());
+            IntRingBuffer readQueue = IntRingBuffer.multiProducer(1024, new BusySpinWaitStrategy());
+
+            readQueues[node] = readQueue;
+            routers[node] = ReadRouter.forCluster(topology, new IntRingBuffer[] { readQueue }, linkQueues);
+            terminationSignals[node] = new TerminationSignal();
+            nodes[node] = new ClusterNode(topology, linkQueues,
+                    new ClusterStats(node, 2, new DedupCounters(1, 0)), terminationSignals[node],
+                    new MetricsRegistry(), mock(Logger.class));
+            nodes[node].start(routers[node], new FlowControl(75, 25, new BusySpinWaitStrategy(), readQueue));
+        }
+    }
+
+    @After
+    public void teardown() {
+        for (ClusterNode node : nodes) {
+            node.stop();
+        }
+
+        service.shutdownNow();
+    }
+
+    @Test
+    public void testItForwardsNumbersToTheNodeThatOwnsThem() throws Exception {
+        ReadRouter.Batch batch = routers[0].newBatch(4);
+        batch.add(1);
+        batch.add(999999999);
+        batch.publish();
+
+        int[] values = new int[4];
+
+        assertThat(readQueues[0].drain(values), equalTo(1));
+        assertThat(values[0], equalTo(1));
+        assertThat(awaitNumbers(readQueues[1], values), equalTo(1));
+        assertThat(values[0], equalTo(999999999));
+    }
+
+    @Test
+    public void testATerminateReachesEveryNode() throws Exception {
+        terminationSignals[1].set();
+
+        assertThat(terminationSignals[0].await(5, TimeUnit.SECONDS), equalTo(true));
+    }
+
+    @Test
+    public void testItDeliversEverythingBeforeSayingGoodbye() throws Exception {
+        ReadRouter.Batch batch = routers[1].newBatch(4);
+        batch.add(7);
+        batch.add(8);
+        batch.publish();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        assertThat(nodes[1].closeLinks(deadline), equalTo(true));
+        assertThat(nodes[0].closeLinks(deadline), equalTo(true));
+        assertThat(nodes[0].awaitPeers(deadline), equalTo(true));
+        assertThat(readQueues[0].drain(new int[4]), equalTo(2));
+    }
+
+    @Test
+    public void testEachNodeEndsUpWithTheOthersFinalTotals() throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        nodes[0].closeLinks(deadline);
+        nodes[1].closeLinks(deadline);
+
+        // finishing waits for the peer's final totals, so both have to run at once
+        Future<Boolean> first = service.submit(() -> nodes[0].finish(deadline));
+        Future<Boolean> second = service.submit(() -> nodes[1].finish(deadline));
+
+        assertThat(first.get(), equalTo(true));
+        assertThat(second.get(), equalTo(true));
+    }
+
+    private static int awaitNumbers(IntRingBuffer queue, int[] values) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        int count = 0;
+
+        while (count == 0 && System.nanoTime() < deadline) {
+            count = queue.drain(values);
+            Thread.sleep(1);
+        }
+
+        return count;
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClusterReceiverTest {
+    private IntRingBuffer readQueue;
+    private ClusterStats stats;
+    private TerminationSignal terminationSignal;
+    private List<Integer> byes;
+    private List<Integer> reports;
+
+    private ClusterReceiver receiver;
+    private ByteArrayOutputStream bytes;
+    private DataOutputStream frames;
+    private ByteArrayOutputStream ackBytes;
+    private DataOutputStream acks;
+
+    @Before
+    public void setup() throws IOException {
+        // this is node 1 of 2, which owns the upper half of the space
+        ClusterTopology topology = ClusterTopology.parse("localhost:5001,localhost:5002", 1, 1);
+        readQueue = IntRingBuffer.multiProducer(16, new BusySpinWaitStrategy());
+        stats = new ClusterStats(1, 2, new DedupCounters(1, 0));
+        terminationSignal = new TerminationSignal();
+        byes = new ArrayList<>();
+        reports = new ArrayList<>();
+
+        receiver = new ClusterReceiver(mock(Socket.class), topology, ReadRouter.forCluster(topology,
+                new IntRingBuffer[] { readQueue }, new IntRingBuffer[2]),
+                new FlowControl(75, 25, new BusySpinWaitStrategy(), readQueue), stats, terminationSignal, byes::add,
+                reports::add, new MetricsRegistry(), mock(Logger.class));
+        bytes = new ByteArrayOutputStream();
+        frames = new DataOutputStream(bytes);
+        ackBytes = new ByteArrayOutputStream();
+        acks = new DataOutputStream(ackBytes);
+        frames.writeByte(ClusterLink.HELLO);
+        frames.writeInt(0);
+    }
+
+    @Test
+    public void testItQueuesTheNumbersAPeerForwardsAndAcknowledgesThem() throws Exception {
+        frames.writeByte(ClusterLink.NUMBERS);
+        frames.writeLong(7);
+        frames.writeInt(2);
+        frames.writeInt(500000000);
+        frames.writeInt(999999999);
+
+        DataInputStream in = input();
+        receiver.handleFrame(in, acks);
+        receiver.handleFrame(in, acks);
+
+        int[] values = new int[4];
+        assertThat(readQueue.drain(values), equalTo(2));
+        assertThat(values[1], equalTo(999999999));
+
+        DataInputStream acked = new DataInputStream(new ByteArrayInputStream(ackBytes.toByteArray()));
+        assertThat(acked.readByte(), equalTo((byte) ClusterLink.ACK));
+        assertThat(acked.readLong(), equalTo(7L));
+    }
+
+    @Test(expected = IOException.class)
+    public void testItDropsAPeerThatSendsNumbersThisNodeDoesNotOwn() throws Exception {
+        frames.writeByte(ClusterLink.NUMBERS);
+        frames.writeLong(0);
+        frames.writeInt(1);
+        frames.writeInt(5);
+
+        DataInputStream in = input();
+        receiver.handleFrame(in, acks);
+        receiver.handleFrame(in, acks);
+    }
+
+    @Test(expected = IOException.class)
+    public void testItExpectsAHelloFirst() throws Exception {
+        bytes.reset();
+        frames.writeByte(ClusterLink.BYE);
+
+        receiver.handleFrame(input(), acks);
+    }
+
+    @Test
+    public void testItPassesOnATerminate() throws Exception {
+        frames.writeByte(ClusterLink.TERMINATE);
+
+        DataInputStream in = input();
+        receiver.handleFrame(in, acks);
+        receiver.handleFrame(in, acks);
+
+        assertThat(terminationSignal.isSet(), equalTo(true));
+    }
+
+    @Test
+    public void testOnlyTheTotalsAfterTheGoodbyeAreFinal() throws Exception {
+        frames.writeByte(ClusterLink.STATS);
+        frames.writeLong(3);
+        frames.writeLong(1);
+        frames.writeLong(3);
+        frames.writeByte(ClusterLink.BYE);
+        frames.writeByte(ClusterLink.STATS);
+        frames.writeLong(4);
+        frames.writeLong(1);
+        frames.writeLong(4);
+
+        DataInputStream in = input();
+
+        while (receiver.handleFrame(in, acks)) {
+            if (byes.isEmpty()) {
+                assertThat(reports.size(), equalTo(0));
+            }
+        }
+
+        assertThat(byes, equalTo(List.of(0)));
+        assertThat(reports, equalTo(List.of(0)));
+        assertThat(stats.totals().seen(), equalTo(4L));
+    }
+
+    private DataInputStream input() {
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}
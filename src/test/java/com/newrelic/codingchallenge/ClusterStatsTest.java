@@ -0,0 +1,49 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClusterStatsTest {
+    private DedupCounters counters;
+    private ClusterStats stats;
+
+    @Before
+    public void setup() {
+        counters = new DedupCounters(1, 0);
+        counters.stripe(0).add(10, 2);
+        stats = new ClusterStats(1, 3, counters);
+    }
+
+    @Test
+    public void testItOnlyCountsThisNodeUntilPeersReport() {
+        ClusterStats.Totals totals = stats.totals();
+
+        assertThat(totals.uniques(), equalTo(10L));
+        assertThat(totals.reporting(), equalTo(1));
+    }
+
+    @Test
+    public void testItAddsTheLatestTotalsFromEachPeer() {
+        stats.update(0, 5, 1, 5);
+        stats.update(2, 7, 0, 7);
+        stats.update(2, 8, 1, 8);
+        counters.stripe(0).add(1, 0);
+
+        ClusterStats.Totals totals = stats.totals();
+
+        assertThat(totals.uniques(), equalTo(24L));
+        assertThat(totals.duplicates(), equalTo(4L));
+        assertThat(totals.seen(), equalTo(24L));
+        assertThat(totals.reporting(), equalTo(3));
+    }
+
+    @Test
+    public void testItIgnoresUpdatesClaimingToBeThisNode() {
+        stats.update(1, 100, 100, 100);
+
+        assertThat(stats.totals().uniques(), equalTo(10L));
+    }
+}
@@ -0,0 +1,58 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import org.junit.Test;
+
+public class ClusterTopologyTest {
+    @Test
+    public void testItSplitsTheSpaceIntoOneRangePerNode() {
+        ClusterTopology topology = ClusterTopology.parse("localhost:5001,localhost:5002", 1, 1);
+
+        assertThat(topology.nodes(), equalTo(2));
+        assertThat(topology.ownerOf(0), equalTo(0));
+        assertThat(topology.ownerOf(499999999), equalTo(0));
+        assertThat(topology.ownerOf(500000000), equalTo(1));
+        assertThat(topology.owns(999999999), equalTo(true));
+        assertThat(topology.owns(1), equalTo(false));
+    }
+
+    @Test
+    public void testItGivesEachNodeAsManyRangesAsItHasShards() {
+        ClusterTopology topology = ClusterTopology.parse("a:1,b:2,c:3", 1, 2);
+
+        assertThat(topology.totalShards(), equalTo(6));
+        assertThat(topology.firstShard(), equalTo(2));
+        assertThat(topology.ownerOf(2 * topology.shardWidth()), equalTo(1));
+        assertThat(topology.ownerOf(4 * topology.shardWidth() - 1), equalTo(1));
+        assertThat(topology.ownerOf(4 * topology.shardWidth()), equalTo(2));
+    }
+
+    @Test
+    public void testAStandaloneServerOwnsEverything() {
+        ClusterTopology topology = ClusterTopology.standalone(2);
+
+        assertThat(topology.isClustered(), equalTo(false));
+        assertThat(topology.owns(0), equalTo(true));
+        assertThat(topology.owns(999999999), equalTo(true));
+        assertThat(topology.shardWidth(), equalTo(ShardedNumberSet.shardWidth(OffHeapNumberSet.NUMBER_SPACE, 2)));
+    }
+
+    @Test
+    public void testItDescribesNodesByHostAndPort() {
+        ClusterTopology topology = ClusterTopology.parse("localhost:5001, 127.0.0.1:5002", 0, 1);
+
+        assertThat(topology.describe(1), equalTo("127.0.0.1:5002"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItRejectsAddressesWithoutAPort() {
+        ClusterTopology.parse("localhost:5001,localhost", 0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItRejectsANodeIdOutsideTheCluster() {
+        ClusterTopology.parse("localhost:5001,localhost:5002", 2, 1);
+    }
+}
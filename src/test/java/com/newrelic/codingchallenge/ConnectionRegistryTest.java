@@ -0,0 +1,80 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectionRegistryTest {
+    private ConnectionRegistry registry;
+
+    @Before
+    public void setup() {
+        registry = new ConnectionRegistry(2);
+    }
+
+    @Test
+    public void testItAdmitsUpToTheLimit() throws InterruptedException {
+        assertThat(registry.admit(0, TimeUnit.SECONDS), equalTo(true));
+        assertThat(registry.admit(0, TimeUnit.SECONDS), equalTo(true));
+        assertThat(registry.admit(10, TimeUnit.MILLISECONDS), equalTo(false));
+    }
+
+    @Test
+    public void testItForgetsAListenerWhenItFinishes() throws InterruptedException {
+        NumberListener listener = mock(NumberListener.class);
+
+        registry.admit(0, TimeUnit.SECONDS);
+        Runnable tracked = registry.track(listener);
+
+        assertThat(registry.active(), equalTo(1));
+
+        tracked.run();
+
+        verify(listener).run();
+        assertThat(registry.active(), equalTo(0));
+    }
+
+    @Test
+    public void testItFreesTheSlotEvenWhenTheListenerThrows() throws InterruptedException {
+        NumberListener listener = mock(NumberListener.class);
+        doThrow(new RuntimeException("boom")).when(listener).run();
+
+        registry.admit(0, TimeUnit.SECONDS);
+        registry.admit(0, TimeUnit.SECONDS);
+
+        try {
+            registry.track(listener).run();
+        } catch (RuntimeException ex) {
+        }
+
+        assertThat(registry.active(), equalTo(0));
+        assertThat(registry.admit(0, TimeUnit.SECONDS), equalTo(true));
+    }
+
+    @Test
+    public void testItFreesTheSlotForAConnectionThatNeverStarted() throws InterruptedException {
+        registry.admit(0, TimeUnit.SECONDS);
+        registry.admit(0, TimeUnit.SECONDS);
+        registry.release(null);
+
+        assertThat(registry.admit(0, TimeUnit.SECONDS), equalTo(true));
+    }
+
+    @Test
+    public void testItShutsDownEveryActiveListener() {
+        NumberListener first = mock(NumberListener.class);
+        NumberListener second = mock(NumberListener.class);
+
+        registry.track(first);
+        registry.track(second);
+        registry.shutdownAll();
+
+        verify(first).shutdown();
+        verify(second).shutdown();
+    }
+}
@@ -0,0 +1,130 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DedupCountersTest {
+    private DedupCounters counters;
+
+    @Before
+    public void setup() {
+        counters = new DedupCounters(3, 100);
+    }
+
+    @Test
+    public void testItSumsEveryStripe() {
+        counters.stripe(0).add(1, 2);
+        counters.stripe(2).add(3, 4);
+
+        DedupCounters.Snapshot snapshot = counters.snapshot();
+
+        assertThat(snapshot.uniques(), equalTo(4L));
+        assertThat(snapshot.duplicates(), equalTo(6L));
+        assertThat(snapshot.total(), equalTo(104L));
+    }
+
+    @Test
+    public void testItCountsTheDuplicatesTheListenersCaught() {
+        Counter cachedDuplicates = new Counter();
+        counters = new DedupCounters(3, 100, cachedDuplicates);
+
+        counters.stripe(1).add(5, 1);
+        cachedDuplicates.add(7);
+
+        DedupCounters.Snapshot snapshot = counters.snapshot();
+
+        assertThat(snapshot.uniques(), equalTo(5L));
+        assertThat(snapshot.duplicates(), equalTo(8L));
+    }
+
+    @Test
+    public void testEachSnapshotIsANewEpoch() {
+        long first = counters.snapshot().epoch();
+
+        assertThat(counters.snapshot().epoch(), equalTo(first + 1));
+    }
+
+    @Test
+    public void testItCountsPastTheRangeOfAnInt() {
+        counters.stripe(0).add(Integer.MAX_VALUE, 0);
+        counters.stripe(0).add(Integer.MAX_VALUE, 0);
+
+        assertThat(counters.snapshot().uniques(), equalTo(2L * Integer.MAX_VALUE));
+    }
+
+    @Test(timeout = 10000)
+    public void testASnapshotNeverSplitsABatch() throws Exception {
+        ExecutorService service = Executors.newFixedThreadPool(3);
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Future<?>> writers = new ArrayList<>();
+
+        // every batch adds the same to both counts, so any snapshot that caught a
+        // stripe halfway through one would show them differing
+        for (int i = 0; i < 3; i++) {
+            DedupCounters.Stripe stripe = counters.stripe(i);
+
+            writers.add(service.submit(() -> {
+                while (!stop.get()) {
+                    stripe.add(3, 3);
+                }
+            }));
+        }
+
+        long last = 0;
+
+        try {
+            for (int i = 0; i < 20000; i++) {
+                DedupCounters.Snapshot snapshot = counters.snapshot();
+
+                assertThat(snapshot.uniques(), equalTo(snapshot.duplicates()));
+                assertTrue(snapshot.uniques() >= last);
+                last = snapshot.uniques();
+            }
+        } finally {
+            stop.set(true);
+            service.shutdown();
+        }
+
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+    }
+
+    @Test
+    public void testItHasNoRateUntilItHasTickedTwice() {
+        counters.stripe(0).add(10, 10);
+        counters.tick();
+
+        assertThat(counters.uniquesPerSecond(10), equalTo(0L));
+    }
+
+    @Test
+    public void testItMeasuresRatesBetweenTicks() throws InterruptedException {
+        counters.tick();
+        counters.stripe(0).add(1000, 0);
+        Thread.sleep(50);
+        counters.tick();
+
+        long rate = counters.uniquesPerSecond(10);
+
+        // 1000 in a little over 50ms
+        assertTrue(rate > 0 && rate <= 20000);
+        assertThat(counters.duplicatesPerSecond(60), equalTo(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItOnlyKeepsAMinutesWorthOfBuckets() {
+        counters.uniquesPerSecond(DedupCounters.WINDOW_SECONDS + 1);
+    }
+}
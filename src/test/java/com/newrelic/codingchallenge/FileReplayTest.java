@@ -0,0 +1,114 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileReplayTest {
+    private Path directory;
+    private IntRingBuffer readQueue;
+    private MetricsRegistry metrics;
+
+    @Before
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("replay");
+        readQueue = IntRingBuffer.multiProducer(1 << 16, new BusySpinWaitStrategy());
+        metrics = new MetricsRegistry();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        for (Path file : Files.list(directory).toArray(Path[]::new)) {
+            Files.delete(file);
+        }
+
+        Files.delete(directory);
+    }
+
+    @Test(timeout = 5000)
+    public void testItQueuesEveryLineOfATextCaptureSplitAcrossThreads() throws Exception {
+        StringBuilder text = new StringBuilder();
+
+        // 64KB chunks, which don't end on line boundaries
+        for (int i = 0; i < 30000; i++) {
+            text.append(String.format("%09d\n", i));
+        }
+
+        FileReplay.Result result = replay(7, write("text.cap", NumberDecoderTest.bytes(text.toString())));
+
+        assertThat(result.numbers(), equalTo(30000L));
+        assertThat(result.bytes(), equalTo(300000L));
+        assertThat(drainSorted(30000), equalTo(range(30000)));
+    }
+
+    @Test(timeout = 5000)
+    public void testItQueuesABinaryCapture() throws Exception {
+        Path file = write("binary.cap", NumberDecoderTest.binary(NumberDecoderTest.frame(2, 1),
+                NumberDecoderTest.frame(0)));
+
+        FileReplay.Result result = replay(2, file);
+
+        assertThat(result.numbers(), equalTo(3L));
+        assertThat(drainSorted(3), equalTo(new int[] { 0, 1, 2 }));
+    }
+
+    @Test(timeout = 5000)
+    public void testItCountsALastLineWithoutANewline() throws Exception {
+        replay(1, write("text.cap", NumberDecoderTest.bytes("000000001\n000000002")));
+
+        assertThat(drainSorted(2), equalTo(new int[] { 1, 2 }));
+    }
+
+    @Test(timeout = 5000)
+    public void testItStopsAFileAtInvalidInputButKeepsReplayingTheOthers() throws Exception {
+        Path bad = write("bad.cap", NumberDecoderTest.bytes("000000001\nhello\n000000002\n"));
+        Path good = write("good.cap", NumberDecoderTest.bytes("000000003\n"));
+
+        FileReplay.Result result = replay(1, bad, good);
+
+        assertThat(result.numbers(), equalTo(2L));
+        assertThat(drainSorted(2), equalTo(new int[] { 1, 3 }));
+        assertThat(metrics.counter("replay_rejected_total").sum(), equalTo(1L));
+    }
+
+    private FileReplay.Result replay(int threads, Path... files) throws Exception {
+        FileReplay replay = new FileReplay(List.of(files), threads, new ReadRouter(readQueue),
+                new FlowControl(75, 25, new BusySpinWaitStrategy(), readQueue), metrics, mock(Logger.class));
+
+        return replay.run();
+    }
+
+    private Path write(String name, byte[] bytes) throws Exception {
+        return Files.write(directory.resolve(name), bytes);
+    }
+
+    private int[] drainSorted(int count) {
+        int[] values = new int[count];
+
+        assertThat(readQueue.drain(values), equalTo(count));
+        assertThat(readQueue.isEmpty(), equalTo(true));
+
+        Arrays.sort(values);
+        return values;
+    }
+
+    private static int[] range(int count) {
+        int[] values = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            values[i] = i;
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,84 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class FlowControlTest {
+    private IntRingBuffer readQueue;
+    private IntRingBuffer logQueue;
+    private FlowControl flowControl;
+
+    @Before
+    public void setup() {
+        readQueue = IntRingBuffer.multiProducer(16, new BusySpinWaitStrategy());
+        logQueue = IntRingBuffer.singleProducer(16, new BusySpinWaitStrategy());
+        flowControl = new FlowControl(75, 25, new BusySpinWaitStrategy(), readQueue, logQueue);
+    }
+
+    @Test
+    public void testItThrottlesAtTheHighWaterMarkAndReleasesAtTheLowWaterMark() throws InterruptedException {
+        readQueue.publish(new int[11], 0, 11);
+
+        assertThat("below the high-water mark", flowControl.isThrottled(), equalTo(false));
+
+        readQueue.publish(0);
+
+        assertThat("at the high-water mark", flowControl.isThrottled(), equalTo(true));
+
+        readQueue.drain(new int[6]);
+
+        assertThat("between the marks", flowControl.isThrottled(), equalTo(true));
+
+        readQueue.drain(new int[2]);
+
+        assertThat("at the low-water mark", flowControl.isThrottled(), equalTo(false));
+        assertThat(flowControl.throttleEvents(), equalTo(1L));
+    }
+
+    @Test
+    public void testItWatchesEveryQueue() throws InterruptedException {
+        logQueue.publish(new int[12], 0, 12);
+
+        assertThat(flowControl.isThrottled(), equalTo(true));
+    }
+
+    @Test
+    public void testItCountsTimeSpentThrottled() throws InterruptedException {
+        readQueue.publish(new int[12], 0, 12);
+        flowControl.isThrottled();
+        Thread.sleep(20);
+
+        assertThat(flowControl.throttledNanos() >= 20_000_000, equalTo(true));
+    }
+
+    @Test(timeout = 1000)
+    public void testItBlocksUntilThereIsCapacity() throws Exception {
+        readQueue.publish(new int[12], 0, 12);
+
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        Future<?> waiting = service.submit(() -> {
+            flowControl.awaitCapacity();
+            return null;
+        });
+
+        Thread.sleep(50);
+
+        assertThat(waiting.isDone(), equalTo(false));
+
+        readQueue.drain(new int[12]);
+        waiting.get();
+        service.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItRequiresTheLowWaterMarkBelowTheHighOne() {
+        new FlowControl(50, 50, new BusySpinWaitStrategy(), readQueue);
+    }
+}
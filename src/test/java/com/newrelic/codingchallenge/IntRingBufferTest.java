@@ -0,0 +1,191 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class IntRingBufferTest {
+    @Test
+    public void testItDrainsValuesInTheOrderTheyWerePublished() throws InterruptedException {
+        IntRingBuffer queue = IntRingBuffer.singleProducer(8, new BusySpinWaitStrategy());
+        int[] values = new int[8];
+
+        queue.publish(1);
+        queue.publish(new int[] { 2, 3, 4 }, 0, 3);
+
+        assertThat(queue.size(), equalTo(4));
+        assertThat(queue.drain(values), equalTo(4));
+        assertThat(values[0], equalTo(1));
+        assertThat(values[3], equalTo(4));
+        assertThat(queue.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void testItIsOnlyDrainedOnceClosedAndEmpty() throws InterruptedException {
+        IntRingBuffer queue = IntRingBuffer.singleProducer(8, new BusySpinWaitStrategy());
+
+        queue.publish(1);
+        queue.close();
+
+        assertThat(queue.isClosed(), equalTo(true));
+        assertThat(queue.isDrained(), equalTo(false));
+
+        queue.drain(new int[8]);
+
+        assertThat(queue.isDrained(), equalTo(true));
+    }
+
+    @Test
+    public void testItDrainsNoMoreThanTheArrayHolds() throws InterruptedException {
+        IntRingBuffer queue = IntRingBuffer.singleProducer(8, new BusySpinWaitStrategy());
+        int[] values = new int[2];
+
+        queue.publish(new int[] { 1, 2, 3 }, 0, 3);
+
+        assertThat(queue.drain(values), equalTo(2));
+        assertThat(queue.drain(values), equalTo(1));
+        assertThat(values[0], equalTo(3));
+    }
+
+    @Test
+    public void testItWrapsAroundTheEndOfTheArray() throws InterruptedException {
+        IntRingBuffer queue = IntRingBuffer.singleProducer(4, new BusySpinWaitStrategy());
+        int[] values = new int[4];
+
+        for (int lap = 0; lap < 10; lap++) {
+            queue.publish(new int[] { lap, lap + 1, lap + 2 }, 0, 3);
+
+            assertThat(queue.drain(values), equalTo(3));
+            assertThat(values[2], equalTo(lap + 2));
+        }
+    }
+
+    @Test
+    public void testItReturnsZeroWhenEmpty() {
+        IntRingBuffer queue = IntRingBuffer.multiProducer(4, new BusySpinWaitStrategy());
+
+        assertThat(queue.drain(new int[4]), equalTo(0));
+    }
+
+    @Test(timeout = 1000)
+    public void testItWaitsForSpaceWhenFull() throws Exception {
+        IntRingBuffer queue = IntRingBuffer.singleProducer(2, new YieldingWaitStrategy());
+        ExecutorService service = Executors.newSingleThreadExecutor();
+
+        queue.publish(new int[] { 1, 2 }, 0, 2);
+
+        Future<?> f = service.submit(() -> {
+            queue.publish(3);
+            return null;
+        });
+
+        Thread.sleep(50);
+
+        assertThat(f.isDone(), equalTo(false));
+
+        queue.drain(new int[1]);
+        f.get();
+
+        assertThat(queue.size(), equalTo(2));
+        service.shutdown();
+    }
+
+    @Test
+    public void testTryPublishOnlyPublishesWhenTheWholeBatchFits() {
+        IntRingBuffer queue = IntRingBuffer.singleProducer(4, new BusySpinWaitStrategy());
+        int[] values = new int[4];
+
+        assertThat(queue.tryPublish(new int[] { 1, 2, 3 }, 0, 3), equalTo(true));
+        assertThat(queue.tryPublish(new int[] { 4, 5 }, 0, 2), equalTo(false));
+        assertThat(queue.tryPublish(new int[] { 4 }, 0, 1), equalTo(true));
+        assertThat(queue.tryPublish(new int[] { 1, 2, 3, 4, 5 }, 0, 5), equalTo(false));
+
+        assertThat(queue.drain(values), equalTo(4));
+        assertThat(values[3], equalTo(4));
+    }
+
+    @Test(timeout = 1000)
+    public void testItPublishesBatchesLargerThanTheBuffer() throws Exception {
+        IntRingBuffer queue = IntRingBuffer.singleProducer(4, new YieldingWaitStrategy());
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        int[] batch = new int[10];
+
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = i;
+        }
+
+        Future<?> f = service.submit(() -> {
+            queue.publish(batch, 0, batch.length);
+            return null;
+        });
+
+        int[] values = new int[4];
+        int next = 0;
+
+        while (next < batch.length) {
+            int count = queue.drain(values);
+
+            for (int i = 0; i < count; i++) {
+                assertThat(values[i], equalTo(next++));
+            }
+        }
+
+        f.get();
+        service.shutdown();
+    }
+
+    @Test(timeout = 5000)
+    public void testItDeliversEveryValueFromSeveralProducers() throws Exception {
+        IntRingBuffer queue = IntRingBuffer.multiProducer(64, new BackoffWaitStrategy());
+        ExecutorService service = Executors.newFixedThreadPool(4);
+        int perProducer = 10000;
+
+        for (int p = 0; p < 4; p++) {
+            final int producer = p;
+
+            service.submit(() -> {
+                int[] batch = new int[7];
+
+                for (int i = 0; i < perProducer; i += batch.length) {
+                    int length = Math.min(batch.length, perProducer - i);
+
+                    for (int j = 0; j < length; j++) {
+                        batch[j] = producer * perProducer + i + j;
+                    }
+
+                    queue.publish(batch, 0, length);
+                }
+
+                return null;
+            });
+        }
+
+        boolean[] seen = new boolean[4 * perProducer];
+        int[] values = new int[32];
+        int received = 0;
+
+        while (received < seen.length) {
+            int count = queue.drain(values);
+
+            for (int i = 0; i < count; i++) {
+                assertThat(seen[values[i]], equalTo(false));
+                seen[values[i]] = true;
+            }
+
+            received += count;
+        }
+
+        assertThat(queue.isEmpty(), equalTo(true));
+        service.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItRequiresAPowerOfTwoCapacity() {
+        IntRingBuffer.singleProducer(10, new BusySpinWaitStrategy());
+    }
+}
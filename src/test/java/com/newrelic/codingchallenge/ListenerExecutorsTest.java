@@ -0,0 +1,28 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+public class ListenerExecutorsTest {
+    @Test(timeout = 5000)
+    public void testItRunsListenersInVirtualModeOnAnyJdk() throws Exception {
+        Logger logger = mock(Logger.class);
+        ExecutorService executor = ListenerExecutors.create(ServerOptions.IngestMode.VIRTUAL, 5, logger);
+
+        try {
+            Future<Boolean> virtual = executor.submit(() -> Thread.currentThread().toString().contains("Virtual"));
+
+            assertThat(virtual.get(), equalTo(ListenerExecutors.virtualThreadsAvailable()));
+            verify(logger, times(ListenerExecutors.virtualThreadsAvailable() ? 0 : 1)).warning(anyString());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
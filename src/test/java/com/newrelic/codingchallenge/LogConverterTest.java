@@ -0,0 +1,103 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LogConverterTest {
+    private Path directory;
+    private Path input;
+    private Path output;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("log-converter");
+        input = directory.resolve("numbers.seg");
+        output = directory.resolve("numbers.log");
+    }
+
+    @After
+    public void teardown() throws IOException {
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(output);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void testItConvertsSegmentsToText() throws IOException {
+        try (EncodedFileWriter writer = new EncodedFileWriter(input, new SegmentLogEncoder())) {
+            writer.write(42);
+            writer.write(7);
+            writer.finish();
+        }
+
+        assertThat(LogConverter.convert(input, output), equalTo(2L));
+        assertThat(contents(output), equalTo("7\n42\n"));
+    }
+
+    @Test
+    public void testItConvertsASnapshotToSortedText() throws IOException {
+        ShardedNumberSet numbers = new ShardedNumberSet(2);
+        numbers.add(999999999);
+        numbers.add(3);
+        NumberSetSnapshot.write(input, numbers, 0);
+
+        assertThat(LogConverter.convert(input, output), equalTo(2L));
+        assertThat(contents(output), equalTo("3\n999999999\n"));
+    }
+
+    @Test
+    public void testItExportsTheSetInOrder() throws IOException {
+        ShardedNumberSet numbers = new ShardedNumberSet(2);
+        numbers.add(999999999);
+        numbers.add(500000000);
+        numbers.add(12);
+
+        assertThat(EncodedFileWriter.writeSorted(numbers, input, new SegmentLogEncoder()), equalTo(3L));
+        LogConverter.convert(input, output);
+
+        assertThat(contents(output), equalTo("12\n500000000\n999999999\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testItRejectsAFileItDoesNotRecognize() throws IOException {
+        Files.write(input, "000000001\n000000002\n".getBytes(StandardCharsets.US_ASCII));
+
+        LogConverter.convert(input, output);
+    }
+
+    @Test
+    public void testItLeavesNoOutputWhenItFails() throws IOException {
+        Files.write(input, "000000001\n000000002\n".getBytes(StandardCharsets.US_ASCII));
+
+        try {
+            LogConverter.convert(input, output);
+        } catch (IOException ex) {
+        }
+
+        assertThat(Files.exists(output), equalTo(false));
+        assertThat(Files.exists(output.resolveSibling(output.getFileName() + ".tmp")), equalTo(false));
+    }
+
+    @Test
+    public void testItDoesNotMoveAnUnfinishedFileIntoPlace() throws IOException {
+        try (EncodedFileWriter writer = new EncodedFileWriter(output, new TextLogEncoder())) {
+            writer.write(42);
+        }
+
+        assertThat(Files.exists(output), equalTo(false));
+        assertThat(Files.exists(output.resolveSibling(output.getFileName() + ".tmp")), equalTo(false));
+    }
+
+    private static String contents(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,79 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LogOutputTest {
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        file = Files.createTempFile("numbers", ".log");
+    }
+
+    @After
+    public void teardown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testTheMappedOutputWritesAcrossChunksAndTrimsTheFileOnClose() throws IOException {
+        MappedLogOutput output = new MappedLogOutput(open(), 8);
+
+        output.write(ascii("123456789\n"));
+        output.write(ascii("42\n"));
+        output.close();
+
+        assertThat(contents(), equalTo("123456789\n42\n"));
+    }
+
+    @Test
+    public void testTheMappedOutputAppendsToAnExistingFile() throws IOException {
+        Files.write(file, "1\n".getBytes(StandardCharsets.US_ASCII));
+
+        MappedLogOutput output = new MappedLogOutput(open(), 16);
+
+        output.write(ascii("2\n"));
+
+        assertThat(output.size(), equalTo(4L));
+
+        output.close();
+
+        assertThat(contents(), equalTo("1\n2\n"));
+    }
+
+    @Test
+    public void testTheChannelOutputWritesEverything() throws IOException {
+        ChannelLogOutput output = new ChannelLogOutput(open());
+
+        output.write(ascii("123456789\n"));
+        output.flush(true);
+        output.close();
+
+        assertThat(contents(), equalTo("123456789\n"));
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private String contents() throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.US_ASCII);
+    }
+
+    private static ByteBuffer ascii(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,93 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+    private MetricsRegistry metrics;
+
+    @Before
+    public void setup() {
+        metrics = new MetricsRegistry();
+    }
+
+    @Test
+    public void testItReturnsTheSameCounterForTheSameName() {
+        assertThat(metrics.counter("a_total"), sameInstance(metrics.counter("a_total")));
+    }
+
+    @Test
+    public void testItRendersCountersAndRates() throws InterruptedException {
+        metrics.counter("a_total").add(5);
+        Thread.sleep(10);
+        metrics.sample();
+
+        String rendered = metrics.render();
+
+        assertThat(rendered, containsString("a_total 5\n"));
+        assertThat(rendered, containsString("a_total_per_second "));
+        assertThat(rendered, not(containsString("a_total_per_second 0.0\n")));
+    }
+
+    @Test
+    public void testItPutsSuffixesBeforeLabels() {
+        metrics.counter("a_total{connection=\"x\"}").increment();
+
+        assertThat(metrics.render(), containsString("a_total_per_second{connection=\"x\"} "));
+    }
+
+    @Test
+    public void testItReadsGaugesWhenRendering() {
+        int[] depth = { 1 };
+        metrics.gauge("depth", () -> depth[0]);
+        depth[0] = 7;
+
+        assertThat(metrics.render(), containsString("depth 7\n"));
+    }
+
+    @Test
+    public void testItRendersHistogramQuantiles() {
+        Histogram histogram = metrics.histogram("latency_nanos");
+
+        for (int i = 0; i < 99; i++) {
+            histogram.record(10);
+        }
+
+        histogram.record(1000);
+
+        String rendered = metrics.render();
+
+        assertThat(rendered, containsString("latency_nanos_count 100\n"));
+        assertThat(rendered, containsString("latency_nanos_max 1000\n"));
+        assertThat(rendered, containsString("latency_nanos{quantile=\"0.5\"} 15\n"));
+        assertThat(rendered, containsString("latency_nanos{quantile=\"0.99\"} 15\n"));
+    }
+
+    @Test
+    public void testItReportsTheBucketEachPercentileFallsIn() {
+        Histogram histogram = new Histogram();
+
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(1 << 20);
+
+        assertThat(histogram.percentile(0.3), equalTo(0L));
+        assertThat(histogram.percentile(0.6), equalTo(1L));
+        assertThat(histogram.percentile(1.0), equalTo((1L << 21) - 1));
+        assertThat(histogram.sum(), equalTo((1L << 20) + 1));
+    }
+
+    @Test
+    public void testItRemovesMetrics() {
+        metrics.counter("gone_total").increment();
+        metrics.remove("gone_total");
+
+        assertThat(metrics.render(), not(containsString("gone_total")));
+    }
+}
@@ -0,0 +1,61 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsServerTest {
+    private MetricsRegistry metrics;
+    private MetricsServer server;
+
+    @Before
+    public void setup() throws IOException {
+        metrics = new MetricsRegistry();
+        server = new MetricsServer(0, metrics);
+        server.start();
+    }
+
+    @After
+    public void teardown() {
+        server.stop();
+    }
+
+    @Test(timeout = 5000)
+    public void testItServesTheMetricsAsPlainText() throws IOException {
+        metrics.counter("ingest_numbers_total").add(42);
+
+        HttpURLConnection connection = open("/metrics");
+
+        assertThat(connection.getResponseCode(), equalTo(200));
+        assertThat(connection.getContentType(), containsString("text/plain"));
+
+        try (InputStream in = connection.getInputStream()) {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+
+            assertThat(body, containsString("ingest_numbers_total 42\n"));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testItOnlyAnswersGets() throws IOException {
+        HttpURLConnection connection = open("/metrics");
+        connection.setRequestMethod("DELETE");
+
+        assertThat(connection.getResponseCode(), equalTo(405));
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        return (HttpURLConnection) new URL(String.format("http://127.0.0.1:%d%s", server.localPort(), path))
+                .openConnection();
+    }
+}
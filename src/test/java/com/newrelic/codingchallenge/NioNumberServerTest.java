@@ -0,0 +1,168 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NioNumberServerTest {
+    private IntRingBuffer readQueue;
+    private TerminationSignal terminationSignal;
+    private Logger logger;
+    private ExecutorService service;
+
+    private NioNumberServer server;
+    private Future<?> serverFuture;
+
+    @Before
+    public void setup() throws Exception {
+        readQueue = IntRingBuffer.multiProducer(1024, new BusySpinWaitStrategy());
+        terminationSignal = new TerminationSignal();
+        logger = mock(Logger.class);
+        service = Executors.newSingleThreadExecutor();
+
+        server = new NioNumberServer(0, 2, 1, new ReadRouter(readQueue),
+                new FlowControl(50, 25, new BusySpinWaitStrategy(), readQueue), terminationSignal,
+                new MetricsRegistry(), logger);
+        serverFuture = service.submit(server);
+    }
+
+    @After
+    public void teardown() {
+        terminationSignal.set();
+        service.shutdownNow();
+    }
+
+    @Test(timeout = 5000)
+    public void testItQueuesNumbersSplitAcrossWrites() throws Exception {
+        try (Socket socket = new Socket("localhost", server.localPort())) {
+            OutputStream out = socket.getOutputStream();
+
+            out.write(bytes("000000001\n0000"));
+            out.flush();
+            Thread.sleep(50);
+            out.write(bytes("00002\n"));
+            out.flush();
+
+            waitForQueueSize(2);
+        }
+
+        assertThat(poll(readQueue), equalTo(1));
+        assertThat(poll(readQueue), equalTo(2));
+    }
+
+    @Test(timeout = 5000)
+    public void testItQueuesBinaryFrames() throws Exception {
+        try (Socket socket = new Socket("localhost", server.localPort())) {
+            socket.getOutputStream().write(NumberDecoderTest.binary(NumberDecoderTest.frame(1, 2),
+                    NumberDecoderTest.frame(3)));
+
+            waitForQueueSize(3);
+        }
+
+        assertThat(poll(readQueue), equalTo(1));
+        assertThat(poll(readQueue), equalTo(2));
+        assertThat(poll(readQueue), equalTo(3));
+    }
+
+    @Test(timeout = 5000)
+    public void testItClosesTheConnectionOnInvalidInput() throws Exception {
+        try (Socket socket = new Socket("localhost", server.localPort())) {
+            socket.getOutputStream().write(bytes("000000001\n10000000t\n000000002\n"));
+
+            InputStream in = socket.getInputStream();
+
+            assertThat(in.read(), equalTo(-1));
+        }
+
+        assertThat(poll(readQueue), equalTo(1));
+        assertThat(readQueue.isEmpty(), equalTo(true));
+    }
+
+    @Test(timeout = 5000)
+    public void testItSetsTheTerminationSignalWhenItReceivesTerminationInput() throws Exception {
+        try (Socket socket = new Socket("localhost", server.localPort())) {
+            socket.getOutputStream().write(bytes("terminate\n"));
+
+            serverFuture.get();
+        }
+
+        assertThat(terminationSignal.isSet(), equalTo(true));
+    }
+
+    @Test(timeout = 5000)
+    public void testItOnlyReadsFromMaxClientsAtATime() throws Exception {
+        List<Socket> sockets = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 3; i++) {
+                sockets.add(new Socket("localhost", server.localPort()));
+            }
+
+            sockets.get(2).getOutputStream().write(bytes("000000003\n"));
+            Thread.sleep(200);
+
+            assertThat(readQueue.isEmpty(), equalTo(true));
+
+            sockets.get(0).close();
+            waitForQueueSize(1);
+
+            assertThat(poll(readQueue), equalTo(3));
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testItStopsReadingWhileTheQueueIsPastTheHighWaterMark() throws Exception {
+        readQueue.publish(new int[600], 0, 600);
+
+        try (Socket socket = new Socket("localhost", server.localPort())) {
+            socket.getOutputStream().write(bytes("000000007\n"));
+            Thread.sleep(200);
+
+            assertThat(readQueue.size(), equalTo(600));
+
+            // below the low-water mark of 256
+            readQueue.drain(new int[400]);
+            waitForQueueSize(201);
+        }
+
+        int[] values = new int[201];
+        readQueue.drain(values);
+
+        assertThat(values[200], equalTo(7));
+    }
+
+    private void waitForQueueSize(int size) throws InterruptedException {
+        while (readQueue.size() < size) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static int poll(IntRingBuffer queue) {
+        int[] values = new int[1];
+
+        return queue.drain(values) == 1 ? values[0] : -1;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
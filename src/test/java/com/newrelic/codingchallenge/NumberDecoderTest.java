@@ -0,0 +1,270 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class NumberDecoderTest {
+    private List<Integer> numbers;
+    private NumberDecoder.Handler handler;
+
+    private NumberDecoder decoder;
+
+    @Before
+    public void setup() {
+        numbers = new ArrayList<>();
+        handler = numbers::add;
+
+        decoder = new NumberDecoder();
+    }
+
+    @Test
+    public void testItDecodesNumbers() {
+        NumberDecoder.Status status = decode("000000001\n123456789\n");
+
+        assertThat(status, equalTo(NumberDecoder.Status.CONTINUE));
+        assertThat(numbers, equalTo(Arrays.asList(1, 123456789)));
+    }
+
+    @Test
+    public void testItAcceptsCarriageReturnLineEndings() {
+        decode("000000001\r\n");
+
+        assertThat(numbers, equalTo(Arrays.asList(1)));
+    }
+
+    @Test
+    public void testItRecognizesTerminate() {
+        NumberDecoder.Status status = decode("000000001\nterminate\n000000002\n");
+
+        assertThat(status, equalTo(NumberDecoder.Status.TERMINATE));
+        assertThat(numbers, equalTo(Arrays.asList(1)));
+    }
+
+    @Test
+    public void testItReportsNonNumericInputAsMalformed() {
+        assertThat(decode("10000000t\n"), equalTo(NumberDecoder.Status.MALFORMED));
+    }
+
+    @Test
+    public void testItReportsShortNumbersAsMalformed() {
+        assertThat(decode("1\n"), equalTo(NumberDecoder.Status.MALFORMED));
+    }
+
+    @Test
+    public void testItReportsLongNumbersAsMalformed() {
+        assertThat(decode("1000000001\n"), equalTo(NumberDecoder.Status.MALFORMED));
+    }
+
+    @Test
+    public void testItReportsEmptyLinesAsMalformed() {
+        assertThat(decode("\n"), equalTo(NumberDecoder.Status.MALFORMED));
+    }
+
+    @Test
+    public void testItReportsMisspelledTerminateAsMalformed() {
+        assertThat(decode("terminat\n"), equalTo(NumberDecoder.Status.MALFORMED));
+    }
+
+    @Test
+    public void testItDoesNotDecodeAnythingAfterMalformedInput() {
+        decode("abc\n");
+
+        assertThat(decode("000000001\n"), equalTo(NumberDecoder.Status.MALFORMED));
+        assertThat(numbers.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void testItDecodesANumberSplitAcrossReads() {
+        assertThat(decode("0000"), equalTo(NumberDecoder.Status.CONTINUE));
+        assertThat(numbers.isEmpty(), equalTo(true));
+        assertThat(decoder.isAtBoundary(), equalTo(false));
+
+        decode("00042\n");
+
+        assertThat(numbers, equalTo(Arrays.asList(42)));
+        assertThat(decoder.isAtBoundary(), equalTo(true));
+    }
+
+    @Test
+    public void testItDecodesANewlineSplitFromItsNumber() {
+        decode("000000042");
+        decode("\n");
+
+        assertThat(numbers, equalTo(Arrays.asList(42)));
+    }
+
+    @Test
+    public void testItDecodesTerminateSplitAcrossReads() {
+        decode("term");
+
+        assertThat(decode("inate\n"), equalTo(NumberDecoder.Status.TERMINATE));
+    }
+
+    @Test
+    public void testItDecodesEverySplitPointTheSameWay() {
+        byte[] input = bytes("000000001\n999999999\r\n000000003\n");
+
+        for (int split = 0; split <= input.length; split++) {
+            numbers.clear();
+            decoder = new NumberDecoder();
+
+            decoder.decode(input, 0, split, handler);
+            decoder.decode(input, split, input.length - split, handler);
+
+            assertThat(String.format("split at %d", split), numbers, equalTo(Arrays.asList(1, 999999999, 3)));
+        }
+    }
+
+    @Test
+    public void testItDecodesFromAByteBufferWithoutMovingIt() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(32);
+        buffer.put(bytes("000000007\n00000"));
+        buffer.flip();
+
+        decoder.decode(buffer, handler);
+
+        assertThat(buffer.position(), equalTo(0));
+        assertThat(numbers, equalTo(Arrays.asList(7)));
+
+        buffer.clear();
+        buffer.put(bytes("0008\n"));
+        buffer.flip();
+
+        decoder.decode(buffer, handler);
+
+        assertThat(numbers, equalTo(Arrays.asList(7, 8)));
+    }
+
+    @Test
+    public void testItFinishesAFinalNumberWithoutANewline() {
+        decode("000000005");
+
+        assertThat(decoder.finish(handler), equalTo(NumberDecoder.Status.CONTINUE));
+        assertThat(numbers, equalTo(Arrays.asList(5)));
+    }
+
+    @Test
+    public void testItReportsAPartialNumberAtTheEndAsMalformed() {
+        decode("0000");
+
+        assertThat(decoder.finish(handler), equalTo(NumberDecoder.Status.MALFORMED));
+    }
+
+    @Test
+    public void testItSwitchesToBinaryAfterTheHandshake() {
+        byte[] input = binary(frame(1, 999999999), frame(), frame(42));
+
+        assertThat(decoder.decode(input, 0, input.length, handler), equalTo(NumberDecoder.Status.CONTINUE));
+        assertThat(decoder.isBinary(), equalTo(true));
+        assertThat(numbers, equalTo(Arrays.asList(1, 999999999, 42)));
+        assertThat(decoder.isAtBoundary(), equalTo(true));
+    }
+
+    @Test
+    public void testItDecodesBinaryTerminate() {
+        byte[] input = binary(frame(7), ByteBuffer.allocate(4).putInt(NumberDecoder.BINARY_TERMINATE).array(),
+                frame(8));
+
+        assertThat(decoder.decode(input, 0, input.length, handler), equalTo(NumberDecoder.Status.TERMINATE));
+        assertThat(numbers, equalTo(Arrays.asList(7)));
+    }
+
+    @Test
+    public void testItDecodesEveryBinarySplitPointTheSameWay() {
+        byte[] input = binary(frame(1, 2), frame(123456789));
+
+        for (int split = 0; split <= input.length; split++) {
+            numbers.clear();
+            decoder = new NumberDecoder();
+
+            decoder.decode(input, 0, split, handler);
+            decoder.decode(input, split, input.length - split, handler);
+
+            assertThat(String.format("split at %d", split), numbers, equalTo(Arrays.asList(1, 2, 123456789)));
+        }
+    }
+
+    @Test
+    public void testItDecodesBinaryFromAByteBuffer() {
+        byte[] input = binary(frame(5, 6));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(input.length);
+        buffer.put(input).flip();
+
+        decoder.decode(buffer, handler);
+
+        assertThat(numbers, equalTo(Arrays.asList(5, 6)));
+    }
+
+    @Test
+    public void testItReportsBinaryNumbersOutOfRangeAsMalformed() {
+        byte[] input = binary(frame(1, 1000000000, 2));
+
+        assertThat(decoder.decode(input, 0, input.length, handler), equalTo(NumberDecoder.Status.MALFORMED));
+        assertThat(numbers, equalTo(Arrays.asList(1)));
+    }
+
+    @Test
+    public void testItReportsOversizedFramesAsMalformed() {
+        byte[] input = binary(ByteBuffer.allocate(4).putInt(NumberDecoder.MAX_FRAME_NUMBERS + 1).array());
+
+        assertThat(decoder.decode(input, 0, input.length, handler), equalTo(NumberDecoder.Status.MALFORMED));
+    }
+
+    @Test
+    public void testItOnlyAcceptsTheHandshakeAsTheFirstLine() {
+        assertThat(decode("000000001\n" + NumberDecoder.HANDSHAKE + "\n"), equalTo(NumberDecoder.Status.MALFORMED));
+        assertThat(decoder.isBinary(), equalTo(false));
+    }
+
+    @Test
+    public void testItReportsAPartialFrameAtTheEndAsMalformed() {
+        byte[] input = binary(frame(1, 2));
+
+        decoder.decode(input, 0, input.length - 1, handler);
+
+        assertThat(decoder.finish(handler), equalTo(NumberDecoder.Status.MALFORMED));
+        assertThat(numbers, equalTo(Arrays.asList(1)));
+    }
+
+    private NumberDecoder.Status decode(String value) {
+        byte[] input = bytes(value);
+
+        return decoder.decode(input, 0, input.length, handler);
+    }
+
+    static byte[] frame(int... values) {
+        ByteBuffer frame = ByteBuffer.allocate(4 * (values.length + 1));
+        frame.putInt(values.length);
+
+        for (int value : values) {
+            frame.putInt(value);
+        }
+
+        return frame.array();
+    }
+
+    // the handshake followed by the given frames
+    static byte[] binary(byte[]... frames) {
+        ByteBuffer input = ByteBuffer.allocate(1024);
+        input.put(bytes(NumberDecoder.HANDSHAKE + "\n"));
+
+        for (byte[] frame : frames) {
+            input.put(frame);
+        }
+
+        return Arrays.copyOf(input.array(), input.position());
+    }
+
+    static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
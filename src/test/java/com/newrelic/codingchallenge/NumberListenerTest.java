@@ -4,13 +4,14 @@ import static org.mockito.Mockito.*;
 import static org.junit.Assert.assertThat;
 import static org.hamcrest.CoreMatchers.equalTo;
 
-import java.util.Scanner;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.net.Socket;
 
 import org.junit.Before;
@@ -18,22 +19,25 @@ import org.junit.Test;
 
 public class NumberListenerTest {
 
-    private ConcurrentLinkedQueue<Integer> readerQueue;
-    private AtomicBoolean terminationSignal;
+    private IntRingBuffer readerQueue;
+    private TerminationSignal terminationSignal;
     private Logger logger;
-    private Scanner scanner;
+    private InputStream input;
     private Socket socket;
+    private MetricsRegistry metrics;
 
     private NumberListener listener;
 
     @Before
     public void setup() {
-        readerQueue = new ConcurrentLinkedQueue<>();
-        terminationSignal = new AtomicBoolean();
+        readerQueue = IntRingBuffer.multiProducer(16, new BusySpinWaitStrategy());
+        terminationSignal = new TerminationSignal();
         logger = mock(Logger.class);
         socket = mock(Socket.class);
+        metrics = new MetricsRegistry();
 
-        listener = new NumberListener(socket, readerQueue, terminationSignal, logger);
+        listener = new NumberListener(socket, new ReadRouter(readerQueue),
+                new FlowControl(75, 25, new BusySpinWaitStrategy(), readerQueue), terminationSignal, metrics, logger);
     }
 
     @Test(timeout = 1000)
@@ -41,7 +45,7 @@ public class NumberListenerTest {
         ExecutorService service = Executors.newSingleThreadExecutor();
         Future<?> f = service.submit(listener);
 
-        terminationSignal.set(true);
+        terminationSignal.set();
 
         // this seems gross but I'm not really sure how to test it otherwise
         Thread.sleep(100);
@@ -50,56 +54,104 @@ public class NumberListenerTest {
     }
 
     @Test
-    public void testItAcceptsProperlyFormattedInput() {
-        scanner = new Scanner("100000000");
+    public void testItAcceptsProperlyFormattedInput() throws IOException {
+        input = input("100000000\n");
 
-        boolean result = listener.handleSocketInput(scanner);
+        boolean result = listener.handleSocketInput(input);
 
         assertThat(result, equalTo(true));
     }
 
     @Test
-    public void testItQueuesTheNumberWhenItReceivesNumericInput() throws InterruptedException {
-        scanner = new Scanner("100000000");
+    public void testItQueuesTheNumberWhenItReceivesNumericInput() throws IOException {
+        input = input("100000000\n");
 
-        listener.handleSocketInput(scanner);
+        listener.handleSocketInput(input);
 
-        assertThat(readerQueue.poll(), equalTo(100000000));
+        assertThat(poll(readerQueue), equalTo(100000000));
     }
 
     @Test
-    public void testItSetsTheTerminationSignalWhenItReceivesTerminationInput() {
-        scanner = new Scanner("terminate");
+    public void testItSetsTheTerminationSignalWhenItReceivesTerminationInput() throws IOException {
+        input = input("terminate\n");
 
-        listener.handleSocketInput(scanner);
+        listener.handleSocketInput(input);
 
-        assertThat(terminationSignal.get(), equalTo(true));
+        assertThat(terminationSignal.isSet(), equalTo(true));
     }
 
     @Test
-    public void testItRejectsNonNumericInput() {
-        scanner = new Scanner("10000000t");
+    public void testItRejectsNonNumericInput() throws IOException {
+        input = input("10000000t\n");
 
-        listener.handleSocketInput(scanner);
+        listener.handleSocketInput(input);
 
-        assertThat(terminationSignal.get(), equalTo(false));
+        assertThat(terminationSignal.isSet(), equalTo(false));
     }
 
     @Test
-    public void testItRejectsNumericInputThatIsTooSmall() {
-        scanner = new Scanner("1");
+    public void testItCountsIngestedAndRejectedInput() throws IOException {
+        listener.handleSocketInput(input("000000001\n000000002\n"));
+        listener.handleSocketInput(input("bad\n"));
 
-        listener.handleSocketInput(scanner);
+        assertThat(metrics.counter("ingest_numbers_total").sum(), equalTo(2L));
+        assertThat(metrics.counter("ingest_rejected_total").sum(), equalTo(1L));
+        assertThat(metrics.histogram("ingest_publish_nanos").count(), equalTo(1L));
+    }
+
+    @Test
+    public void testItRejectsNumericInputThatIsTooSmall() throws IOException {
+        input = input("1\n");
+
+        listener.handleSocketInput(input);
+
+        assertThat(terminationSignal.isSet(), equalTo(false));
+    }
 
-        assertThat(terminationSignal.get(), equalTo(false));
+    @Test
+    public void testItRejectsNumericInputThatIsTooLarge() throws IOException {
+        input = input("1000000001\n");
+
+        listener.handleSocketInput(input);
+
+        assertThat(terminationSignal.isSet(), equalTo(false));
     }
 
     @Test
-    public void testItRejectsNumericInputThatIsTooLarge() {
-        scanner = new Scanner("1000000001");
+    public void testItClosesTheConnectionWhenTheClientHangsUp() throws IOException {
+        input = input("");
+
+        boolean result = listener.handleSocketInput(input);
+
+        assertThat(result, equalTo(false));
+    }
 
-        listener.handleSocketInput(scanner);
+    @Test
+    public void testItQueuesAFinalNumberWithoutATrailingNewline() throws IOException {
+        input = input("100000000");
+
+        listener.handleSocketInput(input);
+        listener.handleSocketInput(input);
+
+        assertThat(poll(readerQueue), equalTo(100000000));
+    }
+
+    @Test
+    public void testItQueuesBinaryFrames() throws IOException {
+        input = new ByteArrayInputStream(NumberDecoderTest.binary(NumberDecoderTest.frame(5, 999999999)));
+
+        assertThat(listener.handleSocketInput(input), equalTo(true));
+        assertThat(poll(readerQueue), equalTo(5));
+        assertThat(poll(readerQueue), equalTo(999999999));
+    }
+
+    private static int poll(IntRingBuffer queue) {
+        int[] values = new int[1];
+
+        return queue.drain(values) == 1 ? values[0] : -1;
+    }
 
-        assertThat(terminationSignal.get(), equalTo(false));
+    private static InputStream input(String value) {
+        return new ByteArrayInputStream(value.getBytes(StandardCharsets.US_ASCII));
     }
 }
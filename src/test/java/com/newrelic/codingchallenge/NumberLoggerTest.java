@@ -4,12 +4,14 @@ import static org.mockito.Mockito.*;
 import static org.junit.Assert.assertThat;
 import static org.hamcrest.CoreMatchers.equalTo;
 
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
@@ -17,21 +19,24 @@ import org.junit.Before;
 import org.junit.Test;
 
 public class NumberLoggerTest {
-    private ConcurrentLinkedQueue<Integer> logQueue;
+    private IntRingBuffer logQueue;
     private AtomicBoolean terminationSignal;
     private Logger logger;
-    private BufferedWriter writer;
+    private MemoryLogOutput output;
+    private MetricsRegistry metrics;
 
     private NumberLogger numberLogger;
 
     @Before
     public void setup() {
-        logQueue = new ConcurrentLinkedQueue<>();
+        logQueue = IntRingBuffer.singleProducer(16, new BusySpinWaitStrategy());
         terminationSignal = new AtomicBoolean();
         logger = mock(Logger.class);
-        writer = mock(BufferedWriter.class);
+        output = new MemoryLogOutput();
+        metrics = new MetricsRegistry();
 
-        numberLogger = new NumberLogger(writer, logQueue, terminationSignal, logger);
+        numberLogger = new NumberLogger(output, new TextLogEncoder(), new FlushPolicy(TimeUnit.SECONDS.toNanos(1),
+                FlushPolicy.SyncMode.ON_CLOSE), logQueue, terminationSignal, metrics, logger);
     }
 
     @Test(timeout = 1000)
@@ -47,14 +52,100 @@ public class NumberLoggerTest {
         assertThat(f.isDone(), equalTo(true));
     }
 
+    @Test(timeout = 1000)
+    public void testItLogsEverythingLeftAndClosesOnceTheQueueIsClosed() throws InterruptedException {
+        logQueue.publish(new int[] { 1, 2 }, 0, 2);
+        logQueue.close();
+
+        numberLogger.run();
+
+        assertThat(output.contents(), equalTo("1\n2\n"));
+        assertThat(output.closed, equalTo(true));
+        assertThat("the log was synced as it closed", output.syncs, equalTo(1));
+    }
+
     @Test
-    public void testItWritesNumbersFromTheQueueToTheBuffer() throws IOException {
-        logQueue.add(1);
+    public void testItWritesNumbersFromTheQueueToTheBuffer() throws IOException, InterruptedException {
+        logQueue.publish(1);
 
         numberLogger.evaluateQueue();
+        numberLogger.flush(false);
 
-        verify(writer).write("1");
-
+        assertThat(output.contents(), equalTo("1\n"));
         assertThat(logQueue.size(), equalTo(0));
     }
+
+    @Test
+    public void testItWritesNumbersWithoutPadding() throws IOException, InterruptedException {
+        logQueue.publish(new int[] { 0, 10, 123456789, 999999999 }, 0, 4);
+
+        numberLogger.evaluateQueue();
+        numberLogger.flush(false);
+
+        assertThat(output.contents(), equalTo("0\n10\n123456789\n999999999\n"));
+    }
+
+    @Test
+    public void testItHoldsNumbersUntilItFlushes() throws IOException, InterruptedException {
+        logQueue.publish(1);
+
+        numberLogger.evaluateQueue();
+
+        assertThat(output.contents(), equalTo(""));
+    }
+
+    @Test
+    public void testItSyncsWhenAskedTo() throws IOException {
+        numberLogger.flush(true);
+
+        assertThat(output.syncs, equalTo(1));
+    }
+
+    @Test(timeout = 1000)
+    public void testItFlushesSyncsAndClosesTheOutputWhenItStops() throws Exception {
+        logQueue.publish(7);
+
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        Future<?> f = service.submit(numberLogger);
+
+        while (logQueue.size() > 0) {
+            Thread.sleep(10);
+        }
+
+        terminationSignal.set(true);
+        f.get();
+
+        assertThat(output.contents(), equalTo("7\n"));
+        assertThat(output.syncs, equalTo(1));
+        assertThat(output.closed, equalTo(true));
+    }
+
+    private static class MemoryLogOutput implements LogOutput {
+        private final ByteArrayOutputStream _bytes = new ByteArrayOutputStream();
+        private int syncs;
+        private boolean closed;
+
+        @Override
+        public void write(ByteBuffer buffer) {
+            while (buffer.hasRemaining()) {
+                _bytes.write(buffer.get());
+            }
+        }
+
+        @Override
+        public void flush(boolean sync) {
+            if (sync) {
+                syncs++;
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        String contents() {
+            return new String(_bytes.toByteArray(), StandardCharsets.US_ASCII);
+        }
+    }
 }
@@ -3,41 +3,38 @@ package com.newrelic.codingchallenge;
 import static org.junit.Assert.assertThat;
 import static org.hamcrest.CoreMatchers.equalTo;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import org.junit.Before;
 import org.junit.Test;
 
 public class NumberReaderTest {
-    private ConcurrentLinkedQueue<Integer> readQueue;
-    private ConcurrentLinkedQueue<Integer> logQueue;
-    private AtomicInteger uniques;
-    private AtomicInteger duplicates;
-    private Set<Integer> seenNumbers;
+    private IntRingBuffer readQueue;
+    private IntRingBuffer logQueue;
+    private DedupCounters counters;
+    private NumberSet seenNumbers;
     private AtomicBoolean terminationSignal;
+    private MetricsRegistry metrics;
     private Logger logger;
 
     private NumberReader reader;
 
     @Before
     public void setup() {
-        readQueue = new ConcurrentLinkedQueue<>();
-        logQueue = new ConcurrentLinkedQueue<>();
-        uniques = new AtomicInteger();
-        duplicates = new AtomicInteger();
-        seenNumbers = new HashSet<Integer>();
+        readQueue = IntRingBuffer.multiProducer(16, new BusySpinWaitStrategy());
+        logQueue = IntRingBuffer.singleProducer(16, new BusySpinWaitStrategy());
+        counters = new DedupCounters(1, 0);
+        seenNumbers = new OffHeapNumberSet(1000);
         terminationSignal = new AtomicBoolean();
+        metrics = new MetricsRegistry();
         logger = null;
 
-        reader = new NumberReader(readQueue, logQueue, uniques, duplicates, seenNumbers, terminationSignal, logger);
+        reader = new NumberReader(readQueue, logQueue, counters.stripe(0), seenNumbers, terminationSignal, metrics,
+                logger);
     }
 
     @Test(timeout = 1000)
@@ -53,41 +50,85 @@ public class NumberReaderTest {
         assertThat(f.isDone(), equalTo(true));
     }
 
+    @Test(timeout = 1000)
+    public void testItProcessesEverythingLeftAndStopsOnceTheQueueIsClosed() throws Exception {
+        readQueue.publish(new int[] { 1, 2, 1 }, 0, 3);
+        readQueue.close();
+
+        reader.run();
+
+        assertThat(counters.snapshot().uniques(), equalTo(2L));
+        assertThat(counters.snapshot().duplicates(), equalTo(1L));
+        assertThat(logQueue.size(), equalTo(2));
+    }
+
     @Test
     public void testItReadsAUniqueNumberFromTheQueueAndUpdatesUniqueAtomics() throws InterruptedException {
-        readQueue.add(1);
+        readQueue.publish(1);
 
         reader.evaluateQueue();
 
         assertThat("seenNumbers contains the number", seenNumbers.contains(1), equalTo(true));
-        assertThat("uniques has been incremented", uniques.get(), equalTo(1));
-        assertThat("duplicates has not been incremented", duplicates.get(), equalTo(0));
+        assertThat("uniques has been incremented", counters.snapshot().uniques(), equalTo(1L));
+        assertThat("duplicates has not been incremented", counters.snapshot().duplicates(), equalTo(0L));
     }
 
     @Test
     public void testItReadsAUniqueNumberFromTheQueueAndSendsItToBeLoggeed() throws InterruptedException {
-        readQueue.add(1);
+        readQueue.publish(1);
 
         reader.evaluateQueue();
 
-        assertThat("the log queue containes the number", logQueue.peek(), equalTo(1));
+        int[] logged = new int[16];
+
+        assertThat("the log queue containes the number", logQueue.drain(logged), equalTo(1));
+        assertThat("the log queue containes the number", logged[0], equalTo(1));
     }
 
     @Test
     public void testItReadsADuplicateNumberFromTheQueueAndUpdatesDuplicateAtomics() throws InterruptedException {
         seenNumbers.add(1);
-        readQueue.add(1);
+        readQueue.publish(1);
 
         reader.evaluateQueue();
 
         assertThat("seenNumbers contains the number", seenNumbers.contains(1), equalTo(true));
-        assertThat("duplicates has been incremented", duplicates.get(), equalTo(1));
+        assertThat("duplicates has been incremented", counters.snapshot().duplicates(), equalTo(1L));
+    }
+
+    @Test
+    public void testItReadsABatchOfNumbersFromTheQueue() throws InterruptedException {
+        readQueue.publish(new int[] { 1, 2, 1, 3 }, 0, 4);
+
+        int count = reader.evaluateQueue();
+
+        assertThat("the whole batch was read", count, equalTo(4));
+        assertThat("uniques has been incremented", counters.snapshot().uniques(), equalTo(3L));
+        assertThat("duplicates has been incremented", counters.snapshot().duplicates(), equalTo(1L));
+        assertThat("the uniques were sent to be logged", logQueue.size(), equalTo(3));
+    }
+
+    @Test
+    public void testItUpdatesTheDedupMetrics() throws InterruptedException {
+        readQueue.publish(new int[] { 1, 2, 1, 3 }, 0, 4);
+
+        reader.evaluateQueue();
+
+        assertThat(metrics.counter("dedup_numbers_total").sum(), equalTo(4L));
+        assertThat(metrics.counter("dedup_uniques_total").sum(), equalTo(3L));
+        assertThat(metrics.counter("dedup_duplicates_total").sum(), equalTo(1L));
+        assertThat(metrics.histogram("dedup_batch_nanos").count(), equalTo(1L));
+    }
+
+    @Test
+    public void testItReturnsZeroWhenTheQueueIsEmpty() throws InterruptedException {
+        assertThat(reader.evaluateQueue(), equalTo(0));
     }
 
     @Test
     public void testItReadsADuplicateNumberFromTheQueueAndDoesNotSendItToBeLoggeed() throws InterruptedException {
         seenNumbers.add(1);
-        readQueue.add(1);
+        readQueue.publish(1);
 
         reader.evaluateQueue();
 
@@ -1,54 +1,87 @@
 package com.newrelic.codingchallenge;
 
 import static org.mockito.Mockito.*;
-import static org.junit.Assert.assertThat;
-import static org.hamcrest.CoreMatchers.equalTo;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import org.junit.Before;
 import org.junit.Test;
 
 public class NumberReporterTest {
-    private AtomicInteger uniques;
-    private AtomicInteger duplicates;
-    private Set<Integer> seenNumbers;
+    private DedupCounters counters;
     private Logger logger;
 
     private NumberReporter reporter;
 
     @Before
     public void setup() {
-        uniques = new AtomicInteger();
-        duplicates = new AtomicInteger();
-        seenNumbers = new HashSet<>();
+        counters = new DedupCounters(2, 0);
         logger = mock(Logger.class);
 
-        reporter = new NumberReporter(uniques, duplicates, seenNumbers, logger);
+        reporter = new NumberReporter(counters, logger);
     }
 
     @Test
-    public void testItResetsTheAtomics() {
-        uniques.set(1);
-        duplicates.set(1);
-
+    public void testItOnlyReportsWhatsNewSinceTheLastReport() {
+        counters.stripe(0).add(1, 1);
+        reporter.run();
+        counters.stripe(1).add(2, 0);
         reporter.run();
 
-        assertThat(uniques.get(), equalTo(0));
-        assertThat(duplicates.get(), equalTo(0));
+        verify(logger).info("Received 1 unique numbers, 1 duplicates. Unique total: 1");
+        verify(logger).info("Received 2 unique numbers, 0 duplicates. Unique total: 3");
     }
 
     @Test
     public void testItLogsThePreviousValues() {
-        uniques.set(1);
-        duplicates.set(1);
-        seenNumbers.add(1);
+        counters.stripe(0).add(1, 1);
 
         reporter.run();
 
         verify(logger).info("Received 1 unique numbers, 1 duplicates. Unique total: 1");
     }
+
+    @Test
+    public void testTheTotalIncludesWhatWasThereAtStartup() {
+        reporter = new NumberReporter(new DedupCounters(1, 40), logger);
+
+        reporter.run();
+
+        verify(logger).info("Received 0 unique numbers, 0 duplicates. Unique total: 40");
+    }
+
+    @Test
+    public void testItAlsoReportsTheWholeClusterSinceTheLastReport() {
+        counters.stripe(0).add(10, 1);
+        ClusterStats stats = new ClusterStats(0, 3, counters);
+        reporter = new NumberReporter(counters, stats, logger);
+
+        stats.update(1, 5, 0, 5);
+        reporter.run();
+        stats.update(1, 8, 2, 8);
+        reporter.run();
+
+        verify(logger).info(
+                "Cluster (2 of 3 nodes reporting): received 15 unique numbers, 1 duplicates. Unique total: 15");
+        verify(logger).info(
+                "Cluster (2 of 3 nodes reporting): received 3 unique numbers, 2 duplicates. Unique total: 18");
+    }
+
+    @Test
+    public void testItReportsThrottlingSinceTheLastReport() {
+        FlowControl flowControl = mock(FlowControl.class);
+        when(flowControl.throttleEvents()).thenReturn(2L, 2L, 5L);
+        when(flowControl.throttledNanos()).thenReturn(TimeUnit.MILLISECONDS.toNanos(300),
+                TimeUnit.MILLISECONDS.toNanos(300), TimeUnit.MILLISECONDS.toNanos(1000));
+        reporter = new NumberReporter(counters, null, flowControl, logger);
+
+        reporter.run();
+        reporter.run();
+        reporter.run();
+
+        verify(logger).info("Throttled ingest 2 times for 300 ms. Throttled total: 2 times, 300 ms");
+        verify(logger).info("Throttled ingest 3 times for 700 ms. Throttled total: 5 times, 1000 ms");
+        verify(logger, times(2)).info(startsWith("Throttled"));
+    }
 }
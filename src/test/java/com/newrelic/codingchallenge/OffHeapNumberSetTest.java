@@ -0,0 +1,181 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapNumberSetTest {
+    private OffHeapNumberSet seenNumbers;
+
+    @Before
+    public void setup() {
+        seenNumbers = new OffHeapNumberSet(1000);
+    }
+
+    @Test
+    public void testItAddsANumberItHasNotSeen() {
+        assertThat(seenNumbers.add(42), equalTo(true));
+        assertThat(seenNumbers.contains(42), equalTo(true));
+    }
+
+    @Test
+    public void testItDoesNotAddANumberTwice() {
+        seenNumbers.add(42);
+
+        assertThat(seenNumbers.add(42), equalTo(false));
+    }
+
+    @Test
+    public void testItDoesNotConfuseNeighbouringNumbers() {
+        seenNumbers.add(63);
+        seenNumbers.add(64);
+
+        assertThat(seenNumbers.contains(62), equalTo(false));
+        assertThat(seenNumbers.contains(63), equalTo(true));
+        assertThat(seenNumbers.contains(64), equalTo(true));
+        assertThat(seenNumbers.contains(65), equalTo(false));
+    }
+
+    @Test
+    public void testItCountsUniqueNumbers() {
+        seenNumbers.add(0);
+        seenNumbers.add(1);
+        seenNumbers.add(1);
+        seenNumbers.add(999);
+
+        assertThat(seenNumbers.size(), equalTo(3L));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testItRejectsNumbersOutsideItsRange() {
+        seenNumbers.add(1000);
+    }
+
+    @Test
+    public void testItCountsEachNumberOnceWhenAddedFromSeveralThreads() throws Exception {
+        ExecutorService service = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            Callable<Integer> task = () -> {
+                int added = 0;
+
+                for (int i = 0; i < 1000; i++) {
+                    if (seenNumbers.add(i)) {
+                        added++;
+                    }
+                }
+
+                return added;
+            };
+
+            results.add(service.submit(task));
+        }
+
+        int added = 0;
+
+        for (Future<Integer> result : results) {
+            added += result.get();
+        }
+
+        service.shutdown();
+
+        assertThat(added, equalTo(1000));
+        assertThat(seenNumbers.size(), equalTo(1000L));
+    }
+
+    @Test
+    public void testItCoversASliceOfTheNumberSpace() {
+        OffHeapNumberSet slice = new OffHeapNumberSet(5000, 1000);
+
+        assertThat(slice.add(5000), equalTo(true));
+        assertThat(slice.add(5999), equalTo(true));
+        assertThat(slice.contains(5001), equalTo(false));
+        assertThat(slice.size(), equalTo(2L));
+    }
+
+    @Test
+    public void testItVisitsItsNumbersInAscendingOrder() {
+        OffHeapNumberSet slice = new OffHeapNumberSet(5000, 1000);
+        List<Integer> visited = new ArrayList<>();
+
+        slice.add(5999);
+        slice.add(5064);
+        slice.add(5000);
+        slice.add(5063);
+        slice.forEach(visited::add);
+
+        assertThat(visited, equalTo(List.of(5000, 5063, 5064, 5999)));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testItRejectsNumbersBelowItsSlice() {
+        new OffHeapNumberSet(5000, 1000).add(4999);
+    }
+
+    @Test
+    public void testItCountsRangesTheSameAsCheckingEveryNumber() {
+        // a few blocks' worth, so ranges cover whole blocks, partial blocks and
+        // partial words
+        int capacity = OffHeapNumberSet.BLOCK_WORDS * 64 * 3 + 100;
+        OffHeapNumberSet slice = new OffHeapNumberSet(1000, capacity);
+        Random random = new Random(17);
+
+        for (int i = 0; i < 20000; i++) {
+            slice.add(1000 + random.nextInt(capacity));
+        }
+
+        for (int i = 0; i < 50; i++) {
+            int from = random.nextInt(capacity + 2000);
+            int to = from + random.nextInt(capacity);
+            long expected = 0;
+
+            for (int number = Math.max(from, 1000); number <= Math.min(to, 1000 + capacity - 1); number++) {
+                if (slice.contains(number)) {
+                    expected++;
+                }
+            }
+
+            assertThat(slice.count(from, to), equalTo(expected));
+        }
+
+        assertThat(slice.count(0, Integer.MAX_VALUE), equalTo(slice.size()));
+    }
+
+    @Test
+    public void testItCountsASingleNumber() {
+        seenNumbers.add(64);
+
+        assertThat(seenNumbers.count(64, 64), equalTo(1L));
+        assertThat(seenNumbers.count(63, 63), equalTo(0L));
+        assertThat(seenNumbers.count(65, 64), equalTo(0L));
+    }
+
+    @Test
+    public void testItVisitsARangeUntilTheActionStops() {
+        List<Integer> visited = new ArrayList<>();
+
+        for (int number : new int[] { 3, 64, 65, 200, 999 }) {
+            seenNumbers.add(number);
+        }
+
+        boolean finished = seenNumbers.forEach(4, 998, number -> {
+            visited.add(number);
+            return visited.size() < 2;
+        });
+
+        assertThat(finished, equalTo(false));
+        assertThat(visited, equalTo(List.of(64, 65)));
+        assertThat(seenNumbers.forEach(66, 999, number -> true), equalTo(true));
+    }
+}
@@ -0,0 +1,122 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PipelineEventsTest {
+    private Path file;
+    private Recording recording;
+
+    @Before
+    public void setup() throws Exception {
+        file = Files.createTempFile("pipeline", ".jfr");
+        recording = new Recording();
+        recording.enable("com.newrelic.codingchallenge.BatchReceived");
+        recording.enable("com.newrelic.codingchallenge.BatchDeduplicated");
+        recording.enable("com.newrelic.codingchallenge.LogFlush");
+        recording.enable("com.newrelic.codingchallenge.Connection");
+        recording.start();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        recording.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testTheStagesRecordTheirBatches() throws Exception {
+        IntRingBuffer readQueue = IntRingBuffer.multiProducer(16, new BusySpinWaitStrategy());
+        IntRingBuffer logQueue = IntRingBuffer.singleProducer(16, new BusySpinWaitStrategy());
+        MetricsRegistry metrics = new MetricsRegistry();
+        Socket socket = mock(Socket.class);
+        when(socket.getRemoteSocketAddress()).thenReturn(new InetSocketAddress("127.0.0.1", 5000));
+
+        NumberListener listener = new NumberListener(socket, new ReadRouter(readQueue),
+                new FlowControl(75, 25, new BusySpinWaitStrategy(), readQueue), new TerminationSignal(), metrics,
+                mock(Logger.class));
+        NumberReader reader = new NumberReader(readQueue, logQueue, new DedupCounters(1, 0).stripe(0),
+                new OffHeapNumberSet(1000), new AtomicBoolean(), metrics, mock(Logger.class));
+        NumberLogger numberLogger = new NumberLogger(mock(LogOutput.class), new TextLogEncoder(),
+                new FlushPolicy(TimeUnit.SECONDS.toNanos(1), FlushPolicy.SyncMode.NEVER), logQueue,
+                new AtomicBoolean(), metrics, mock(Logger.class));
+
+        listener.handleSocketInput(new ByteArrayInputStream(
+                "000000001\n000000002\n000000001\n".getBytes(StandardCharsets.US_ASCII)));
+        reader.evaluateQueue();
+        numberLogger.evaluateQueue();
+        numberLogger.flush(false);
+
+        List<RecordedEvent> events = stop();
+
+        RecordedEvent received = only(events, "BatchReceived");
+        assertThat(received.getString("connection"), equalTo("127.0.0.1:5000"));
+        assertThat(received.getInt("numbers"), equalTo(3));
+        assertThat(received.getInt("bytes"), equalTo(30));
+
+        RecordedEvent deduplicated = only(events, "BatchDeduplicated");
+        assertThat(deduplicated.getInt("uniques"), equalTo(2));
+        assertThat(deduplicated.getInt("duplicates"), equalTo(1));
+
+        RecordedEvent flush = only(events, "LogFlush");
+        assertThat(flush.getLong("numbers"), equalTo(2L));
+        // "1\n2\n"
+        assertThat(flush.getLong("bytes"), equalTo(4L));
+        assertThat(flush.getBoolean("synced"), equalTo(false));
+
+        assertThat(only(events, "Connection").getString("state"), equalTo("opened"));
+    }
+
+    @Test
+    public void testConnectionsRecordBeingRejectedAndClosed() throws Exception {
+        ConnectionMetrics connection = new ConnectionMetrics(new MetricsRegistry(),
+                new InetSocketAddress("127.0.0.1", 5000));
+
+        connection.published(7, 100);
+        connection.rejected();
+        connection.close();
+
+        List<String> states = stop().stream().map(event -> event.getString("state") + " " + event.getLong("numbers"))
+                .collect(Collectors.toList());
+
+        assertThat(states, equalTo(List.of("opened 0", "rejected 7", "closed 7")));
+    }
+
+    private List<RecordedEvent> stop() throws Exception {
+        recording.stop();
+        recording.dump(file);
+
+        // events from one thread come back in the order they were committed
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = events.stream()
+                .filter(event -> event.getEventType().getName().equals("com.newrelic.codingchallenge." + name))
+                .collect(Collectors.toList());
+
+        assertThat(name, matching.size(), equalTo(1));
+        return matching.get(0);
+    }
+}
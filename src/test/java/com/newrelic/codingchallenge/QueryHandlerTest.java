@@ -0,0 +1,77 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryHandlerTest {
+    private ShardedNumberSet seenNumbers;
+    private QueryHandler handler;
+
+    @Before
+    public void setup() {
+        seenNumbers = new ShardedNumberSet(2);
+        handler = new QueryHandler(seenNumbers);
+
+        for (int number : new int[] { 7, 8, 500000000, 999999999 }) {
+            seenNumbers.add(number);
+        }
+    }
+
+    @Test
+    public void testItSaysWhetherANumberWasSeen() {
+        assertThat(respond("SEEN 7"), equalTo("true"));
+        assertThat(respond("seen 9"), equalTo("false"));
+    }
+
+    @Test
+    public void testItCountsARange() {
+        assertThat(respond("COUNT 0 999999999"), equalTo("4"));
+        assertThat(respond("COUNT 8 500000000"), equalTo("2"));
+    }
+
+    @Test
+    public void testItListsARangeInOrder() {
+        assertThat(respond("LIST 0 999999999"), equalTo("7 8 500000000 999999999"));
+        assertThat(respond("LIST 9 499999999"), equalTo(""));
+    }
+
+    @Test
+    public void testItStopsListingAtTheLimit() {
+        assertThat(respond("LIST 0 999999999 3"), equalTo("7 8 500000000"));
+    }
+
+    @Test
+    public void testItExplainsWhatsWrongWithABadRequest() {
+        assertThat(respond("SEEN"), equalTo("ERROR SEEN takes 1 arguments"));
+        assertThat(respond("COUNT 1 abc"), equalTo("ERROR not a number between 0 and 999999999: abc"));
+        assertThat(respond("LIST 0 1 0"), equalTo("ERROR limit must be between 1 and 100000: 0"));
+        assertThat(respond("DROP TABLE"), equalTo("ERROR unknown request DROP"));
+    }
+
+    @Test
+    public void testItOnlyAnswersForItsOwnNumbersInACluster() {
+        handler = new QueryHandler(new ShardedNumberSet(1, 1, 2));
+
+        assertThat(respond("SEEN 7"), equalTo("ERROR 7 belongs to another node"));
+        assertThat(respond("COUNT 0 999999999"), equalTo("0"));
+    }
+
+    @Test
+    public void testAnErrorOnlyReplacesItsOwnResponse() {
+        StringBuilder response = new StringBuilder("true\n");
+
+        handler.handle("SEEN x", response);
+
+        assertThat(response.toString(), equalTo("true\nERROR not a number between 0 and 999999999: x"));
+    }
+
+    private String respond(String request) {
+        StringBuilder response = new StringBuilder();
+        handler.handle(request, response);
+
+        return response.toString();
+    }
+}
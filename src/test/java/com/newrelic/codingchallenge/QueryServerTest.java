@@ -0,0 +1,57 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryServerTest {
+    private MetricsRegistry metrics;
+    private QueryServer server;
+
+    @Before
+    public void setup() throws Exception {
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(1);
+        seenNumbers.add(42);
+        seenNumbers.add(43);
+        metrics = new MetricsRegistry();
+
+        server = new QueryServer(0, new QueryHandler(seenNumbers), metrics, mock(Logger.class));
+        server.start();
+    }
+
+    @After
+    public void teardown() {
+        server.stop();
+    }
+
+    @Test(timeout = 5000)
+    public void testItAnswersPipelinedRequestsInOrder() throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.localPort())) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+
+            out.write("SEEN 42\nCOUNT 0 100\n\nLIST 0 100\nSEEN 44\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            assertThat(in.readLine(), equalTo("true"));
+            assertThat(in.readLine(), equalTo("2"));
+            assertThat(in.readLine(), equalTo("42 43"));
+            assertThat(in.readLine(), equalTo("false"));
+        }
+
+        assertThat(metrics.counter("query_requests_total").sum(), equalTo(4L));
+    }
+}
@@ -0,0 +1,135 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReadLanesTest {
+    private MetricsRegistry metrics;
+    private ReadLanes lanes;
+
+    @Before
+    public void setup() {
+        metrics = new MetricsRegistry();
+        lanes = new ReadLanes(1 << 14, Collections.emptyMap(), new BusySpinWaitStrategy(), metrics);
+    }
+
+    @Test
+    public void testItTakesAQuantumFromEachLaneInTurn() throws InterruptedException {
+        ReadLanes.Lane busy = lanes.open("busy");
+        ReadLanes.Lane quiet = lanes.open("quiet");
+
+        busy.publish(filled(1, 3 * ReadLanes.QUANTUM), 0, 3 * ReadLanes.QUANTUM);
+        quiet.publish(filled(2, 10), 0, 10);
+
+        int[] values = new int[4 * ReadLanes.QUANTUM];
+
+        // the quiet client's numbers don't wait behind everything the busy one sent
+        assertThat(lanes.drain(values), equalTo(ReadLanes.QUANTUM + 10));
+        assertThat(values[ReadLanes.QUANTUM], equalTo(2));
+        assertThat(lanes.drain(values), equalTo(ReadLanes.QUANTUM));
+        assertThat(lanes.size(), equalTo(ReadLanes.QUANTUM));
+    }
+
+    @Test
+    public void testItTakesMoreFromHeavierLanes() throws InterruptedException {
+        Map<String, Integer> weights = Collections.singletonMap("heavy", 3);
+        lanes = new ReadLanes(1 << 14, weights, new BusySpinWaitStrategy(), metrics);
+
+        ReadLanes.Lane heavy = lanes.open("heavy");
+        ReadLanes.Lane light = lanes.open("light");
+
+        heavy.publish(filled(1, 4 * ReadLanes.QUANTUM), 0, 4 * ReadLanes.QUANTUM);
+        light.publish(filled(2, 4 * ReadLanes.QUANTUM), 0, 4 * ReadLanes.QUANTUM);
+
+        int[] values = new int[8 * ReadLanes.QUANTUM];
+
+        assertThat(heavy.weight(), equalTo(3));
+        assertThat(lanes.drain(values), equalTo(4 * ReadLanes.QUANTUM));
+        assertThat(count(values, 4 * ReadLanes.QUANTUM, 1), equalTo(3 * ReadLanes.QUANTUM));
+    }
+
+    @Test
+    public void testItPicksUpWhereTheLastDrainStopped() throws InterruptedException {
+        ReadLanes.Lane first = lanes.open("a");
+        ReadLanes.Lane second = lanes.open("b");
+
+        first.publish(filled(1, 2 * ReadLanes.QUANTUM), 0, 2 * ReadLanes.QUANTUM);
+        second.publish(filled(2, 2 * ReadLanes.QUANTUM), 0, 2 * ReadLanes.QUANTUM);
+
+        int[] values = new int[ReadLanes.QUANTUM];
+
+        lanes.drain(values);
+        assertThat(values[0], equalTo(1));
+        lanes.drain(values);
+        assertThat(values[0], equalTo(2));
+        lanes.drain(values);
+        assertThat(values[0], equalTo(1));
+    }
+
+    @Test
+    public void testItDropsClosedLanesOnceTheyreEmpty() throws InterruptedException {
+        ReadLanes.Lane lane = lanes.open("a");
+
+        lane.publish(new int[] { 1, 2 }, 0, 2);
+        lane.close();
+
+        assertThat(lanes.lanes(), equalTo(1));
+        assertThat(lanes.drain(new int[1]), equalTo(1));
+        assertThat(lanes.lanes(), equalTo(1));
+        assertThat(lanes.drain(new int[1]), equalTo(1));
+        assertThat(lanes.lanes(), equalTo(0));
+    }
+
+    @Test
+    public void testItTimesHowLongEachClientsNumbersWaited() throws InterruptedException {
+        ReadLanes.Lane lane = lanes.open("10.0.0.1");
+
+        lane.publish(new int[] { 1, 2 }, 0, 2);
+        lane.publish(new int[] { 3 }, 0, 1);
+
+        Histogram delay = metrics.histogram("lane_queue_delay_nanos{client=\"10.0.0.1\"}");
+
+        // a batch only counts once all of it has been drained
+        lanes.drain(new int[1]);
+        assertThat(delay.count(), equalTo(0L));
+        lanes.drain(new int[2]);
+        assertThat(delay.count(), equalTo(2L));
+    }
+
+    @Test
+    public void testItIsDrainedOnceClosedAndEmpty() throws InterruptedException {
+        lanes.open("a").publish(new int[] { 1 }, 0, 1);
+        lanes.close();
+
+        assertThat(lanes.isDrained(), equalTo(false));
+
+        lanes.drain(new int[1]);
+
+        assertThat(lanes.isDrained(), equalTo(true));
+    }
+
+    private static int[] filled(int value, int count) {
+        int[] values = new int[count];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    private static int count(int[] values, int length, int value) {
+        int count = 0;
+
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+}
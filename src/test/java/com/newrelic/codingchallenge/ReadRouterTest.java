@@ -0,0 +1,177 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReadRouterTest {
+    private IntRingBuffer low;
+    private IntRingBuffer high;
+
+    private ReadRouter router;
+
+    @Before
+    public void setup() {
+        low = IntRingBuffer.multiProducer(16, new BusySpinWaitStrategy());
+        high = IntRingBuffer.multiProducer(16, new BusySpinWaitStrategy());
+
+        router = new ReadRouter(low, high);
+    }
+
+    @Test
+    public void testItRoutesNumbersTheSameWayAsTheShardedSet() {
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(2);
+
+        for (int number : new int[] { 0, 499999999, 500000000, 999999999 }) {
+            assertThat(router.shardOf(number), equalTo(seenNumbers.shardOf(number)));
+        }
+    }
+
+    @Test
+    public void testItPublishesEachNumberToItsShardsQueue() throws InterruptedException {
+        ReadRouter.Batch batch = router.newBatch(4);
+        int[] values = new int[4];
+
+        batch.add(1);
+        batch.add(999999999);
+        batch.add(2);
+        batch.publish();
+
+        assertThat(low.drain(values), equalTo(2));
+        assertThat(values[1], equalTo(2));
+        assertThat(high.drain(values), equalTo(1));
+        assertThat(values[0], equalTo(999999999));
+        assertThat(router.size(), equalTo(0));
+    }
+
+    @Test
+    public void testItEmptiesTheBatchWhenPublished() throws InterruptedException {
+        ReadRouter.Batch batch = router.newBatch(2);
+
+        batch.add(1);
+        batch.add(2);
+
+        assertThat(batch.isFull(), equalTo(true));
+
+        batch.publish();
+
+        assertThat(batch.isFull(), equalTo(false));
+        assertThat(router.size(), equalTo(2));
+    }
+
+    @Test
+    public void testInAClusterItSendsOtherNodesNumbersDownTheirLinks() throws InterruptedException {
+        ClusterTopology topology = ClusterTopology.parse("a:1,b:2", 0, 2);
+        IntRingBuffer link = IntRingBuffer.multiProducer(16, new BusySpinWaitStrategy());
+        ReadRouter clusterRouter = ReadRouter.forCluster(topology, new IntRingBuffer[] { low, high },
+                new IntRingBuffer[] { null, link });
+        ReadRouter.Batch batch = clusterRouter.newBatch(4);
+
+        batch.add(1);
+        batch.add(300000000);
+        batch.add(600000000);
+        batch.add(999999999);
+        batch.publish();
+
+        assertThat(low.size(), equalTo(1));
+        assertThat(high.size(), equalTo(1));
+        assertThat(link.size(), equalTo(2));
+        // the link queue covers two ranges but only counts once
+        assertThat(clusterRouter.size(), equalTo(4));
+    }
+
+    @Test
+    public void testWithLanesEachBatchPublishesIntoALaneOfItsOwn() throws InterruptedException {
+        ReadLanes lanes = new ReadLanes(16, Collections.emptyMap(), new BusySpinWaitStrategy(),
+                new MetricsRegistry());
+        ReadRouter laneRouter = new ReadRouter(ShardedNumberSet.shardWidth(OffHeapNumberSet.NUMBER_SPACE, 2),
+                new IntRingBuffer[] { low, null }, new ReadLanes[] { null, lanes }, 0, 0, null);
+        ReadRouter.Batch first = laneRouter.newBatch(4, "10.0.0.1");
+        ReadRouter.Batch second = laneRouter.newBatch(4, "10.0.0.2");
+
+        first.add(1);
+        first.add(999999999);
+        first.publish();
+        second.add(999999998);
+        second.publish();
+
+        assertThat(low.size(), equalTo(1));
+        assertThat(lanes.lanes(), equalTo(2));
+        assertThat(laneRouter.size(), equalTo(3));
+
+        first.close();
+        second.close();
+        lanes.drain(new int[4]);
+
+        assertThat(lanes.lanes(), equalTo(0));
+    }
+
+    @Test(timeout = 5000)
+    public void testItHoldsEachClientToTheClientRate() throws InterruptedException {
+        MetricsRegistry metrics = new MetricsRegistry();
+        ReadRouter limited = new ReadRouter(ShardedNumberSet.shardWidth(OffHeapNumberSet.NUMBER_SPACE, 2),
+                new IntRingBuffer[] { low, high }, new ReadLanes[2], 4, 0, metrics);
+        ReadRouter.Batch batch = limited.newBatch(8, "10.0.0.1");
+
+        for (int i = 0; i < 4; i++) {
+            batch.add(i);
+        }
+
+        batch.publish();
+        assertThat(metrics.counter("ingest_rate_limited_nanos_total").sum(), equalTo(0L));
+
+        // past the burst, so this one has to wait
+        batch.add(4);
+        batch.add(5);
+
+        batch.publish();
+        assertThat(metrics.counter("ingest_rate_limited_nanos_total").sum() > 0, equalTo(true));
+        assertThat(low.size(), equalTo(6));
+    }
+
+    @Test
+    public void testWithACacheItCountsRepeatsInsteadOfQueueingThem() throws InterruptedException {
+        MetricsRegistry metrics = new MetricsRegistry();
+        ReadRouter cached = new ReadRouter(ShardedNumberSet.shardWidth(OffHeapNumberSet.NUMBER_SPACE, 2),
+                new IntRingBuffer[] { low, high }, new ReadLanes[2], 0, 64, metrics);
+        ReadRouter.Batch batch = cached.newBatch(4, "10.0.0.1");
+
+        batch.add(1);
+        batch.add(2);
+        batch.add(1);
+
+        assertThat(batch.size(), equalTo(2));
+        assertThat(batch.received(), equalTo(3));
+        // not counted until the first 1 is on its way to a reader
+        assertThat(metrics.counter("ingest_cache_hits_total").sum(), equalTo(0L));
+
+        batch.publish();
+        batch.add(2);
+        batch.add(3);
+        batch.publish();
+
+        assertThat(low.size(), equalTo(3));
+        assertThat(metrics.counter("ingest_cache_hits_total").sum(), equalTo(2L));
+        assertThat(metrics.counter("ingest_cache_lookups_total").sum(), equalTo(5L));
+    }
+
+    @Test
+    public void testEachClientHasACacheOfItsOwn() throws InterruptedException {
+        ReadRouter cached = new ReadRouter(ShardedNumberSet.shardWidth(OffHeapNumberSet.NUMBER_SPACE, 2),
+                new IntRingBuffer[] { low, high }, new ReadLanes[2], 0, 64, new MetricsRegistry());
+        ReadRouter.Batch first = cached.newBatch(4, "10.0.0.1");
+        ReadRouter.Batch second = cached.newBatch(4, "10.0.0.2");
+
+        first.add(1);
+        first.publish();
+        second.add(1);
+        second.publish();
+
+        // the reader decides which of the two is the duplicate
+        assertThat(low.size(), equalTo(2));
+    }
+}
@@ -0,0 +1,61 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import org.junit.Test;
+
+public class RecentNumbersTest {
+    @Test
+    public void testItRemembersNumbersItHasSeen() {
+        RecentNumbers recent = new RecentNumbers(1024);
+
+        assertThat(recent.checkAndAdd(123456789), equalTo(false));
+        assertThat(recent.checkAndAdd(123456789), equalTo(true));
+        assertThat(recent.checkAndAdd(987654321), equalTo(false));
+        assertThat(recent.checkAndAdd(123456789), equalTo(true));
+    }
+
+    @Test
+    public void testItNeverMistakesZeroForAnEmptySlot() {
+        RecentNumbers recent = new RecentNumbers(16);
+
+        assertThat(recent.checkAndAdd(0), equalTo(false));
+        assertThat(recent.checkAndAdd(0), equalTo(true));
+    }
+
+    @Test
+    public void testANumberInTheSameSlotEvictsTheLastOne() {
+        // with one slot, every number lands in it
+        RecentNumbers recent = new RecentNumbers(1);
+
+        recent.checkAndAdd(1);
+        recent.checkAndAdd(2);
+
+        assertThat(recent.checkAndAdd(1), equalTo(false));
+    }
+
+    @Test
+    public void testItSpreadsARunOfNumbersOverTheSlots() {
+        RecentNumbers recent = new RecentNumbers(4096);
+
+        for (int number = 500000000; number < 500001024; number++) {
+            recent.checkAndAdd(number);
+        }
+
+        int remembered = 0;
+
+        for (int number = 500000000; number < 500001024; number++) {
+            if (recent.checkAndAdd(number)) {
+                remembered++;
+            }
+        }
+
+        assertThat(remembered > 900, equalTo(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItRejectsASizeThatIsntAPowerOfTwo() {
+        new RecentNumbers(1000);
+    }
+}
@@ -0,0 +1,103 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SegmentLogEncoderTest {
+    private ByteBuffer buffer;
+    private LogEncoder.Sink sink;
+    private SegmentLogEncoder encoder;
+
+    @Before
+    public void setup() {
+        buffer = ByteBuffer.allocate(SegmentLogEncoder.maxSegmentSize() * 2);
+        sink = bytes -> buffer;
+        encoder = new SegmentLogEncoder();
+    }
+
+    @Test
+    public void testItWritesNothingUntilFlushed() throws IOException {
+        encoder.encode(5, sink);
+
+        assertThat(buffer.position(), equalTo(0));
+    }
+
+    @Test
+    public void testItWritesEachFlushAsASortedSegment() throws IOException {
+        encoder.encode(999999999, sink);
+        encoder.encode(5, sink);
+        encoder.encode(300, sink);
+        encoder.flush(sink);
+
+        assertThat(decode(), equalTo(List.of(5, 300, 999999999)));
+    }
+
+    @Test
+    public void testItEncodesTheGapsAsVarints() throws IOException {
+        encoder.encode(1, sink);
+        encoder.encode(129, sink);
+        encoder.flush(sink);
+
+        // a one-byte first number and a two-byte gap of 128
+        assertThat(buffer.position(), equalTo(SegmentLogEncoder.HEADER_SIZE + 3));
+        assertThat(buffer.getInt(8), equalTo(3));
+    }
+
+    @Test
+    public void testItDecodesSeveralSegmentsInTheOrderTheyWereWritten() throws IOException {
+        encoder.encode(20, sink);
+        encoder.flush(sink);
+        encoder.encode(10, sink);
+        encoder.flush(sink);
+
+        assertThat(decode(), equalTo(List.of(20, 10)));
+    }
+
+    @Test
+    public void testItStartsANewSegmentWhenTheBlockIsFull() throws IOException {
+        for (int i = 0; i < 20000; i++) {
+            encoder.encode(i * 7, sink);
+        }
+
+        encoder.flush(sink);
+        List<Integer> decoded = decode();
+
+        assertThat(decoded.size(), equalTo(20000));
+        assertThat(decoded.get(19999), equalTo(19999 * 7));
+    }
+
+    @Test(expected = IOException.class)
+    public void testItRejectsBytesThatAreNotASegment() throws IOException {
+        SegmentLogEncoder.decode(ByteBuffer.wrap("000000001\n000000002\n".getBytes()), number -> {
+        });
+    }
+
+    @Test(expected = IOException.class)
+    public void testItRejectsATruncatedSegment() throws IOException {
+        encoder.encode(5, sink);
+        encoder.encode(6, sink);
+        encoder.flush(sink);
+        buffer.flip();
+        buffer.limit(buffer.limit() - 1);
+
+        SegmentLogEncoder.decode(buffer, number -> {
+        });
+    }
+
+    private List<Integer> decode() throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+
+        buffer.flip();
+        SegmentLogEncoder.decode(buffer, numbers::add);
+
+        return numbers;
+    }
+}
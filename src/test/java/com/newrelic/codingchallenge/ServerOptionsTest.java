@@ -0,0 +1,115 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ServerOptionsTest {
+    @Test
+    public void testItDefaultsToTheOriginalBehavior() {
+        ServerOptions options = ServerOptions.parse(new String[0]);
+
+        assertThat(options.getPort(), equalTo(4000));
+        assertThat(options.getIngestMode(), equalTo(ServerOptions.IngestMode.THREADS));
+        assertThat(options.getMetricsPort(), equalTo(0));
+    }
+
+    @Test
+    public void testItParsesOptions() {
+        ServerOptions options = ServerOptions.parse(new String[] { "--port=4100", "--ingest=nio", "--event-loops=1" });
+
+        assertThat(options.getPort(), equalTo(4100));
+        assertThat(options.getIngestMode(), equalTo(ServerOptions.IngestMode.NIO));
+        assertThat(options.getEventLoops(), equalTo(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItRejectsUnknownOptions() {
+        ServerOptions.parse(new String[] { "--nope=1" });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItRejectsValuesOutOfRange() {
+        ServerOptions.parse(new String[] { "--port=70000" });
+    }
+
+    @Test
+    public void testItParsesTheCluster() {
+        ServerOptions options = ServerOptions.parse(new String[] { "--cluster=localhost:5001,localhost:5002",
+                "--node-id=1" });
+
+        assertThat(options.getClusterTopology().nodes(), equalTo(2));
+        assertThat(options.getClusterTopology().nodeId(), equalTo(1));
+        assertThat(ServerOptions.parse(new String[0]).getClusterTopology().isClustered(), equalTo(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItRejectsRestoringACluster() {
+        ServerOptions.parse(new String[] { "--cluster=localhost:5001,localhost:5002", "--restore=true" });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItRejectsSeveralAcceptorsWithNio() {
+        ServerOptions.parse(new String[] { "--ingest=nio", "--acceptors=2" });
+    }
+
+    @Test
+    public void testItParsesTheTcpSink() {
+        ServerOptions options = ServerOptions.parse(new String[] { "--tcp-sink=replica.local:4000",
+                "--tcp-sink-overflow=spill" });
+
+        assertThat(options.getTcpSinkHost(), equalTo("replica.local"));
+        assertThat(options.getTcpSinkPort(), equalTo(4000));
+        assertThat(options.getTcpSinkOverflow(), equalTo(SinkFanout.OverflowPolicy.SPILL));
+        assertThat(ServerOptions.parse(new String[0]).getTcpSinkHost(), equalTo(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItRejectsATcpSinkWithoutAPort() {
+        ServerOptions.parse(new String[] { "--tcp-sink=replica.local" });
+    }
+
+    @Test
+    public void testItParsesTheReplayFiles() {
+        ServerOptions options = ServerOptions.parse(new String[] { "--replay=a.cap,b.cap" });
+
+        assertThat(options.getReplayFiles(), equalTo(List.of(Paths.get("a.cap"), Paths.get("b.cap"))));
+        assertThat(ServerOptions.parse(new String[0]).getReplayFiles(), equalTo(null));
+    }
+
+    @Test
+    public void testItParsesTheLanes() {
+        ServerOptions options = ServerOptions.parse(
+                new String[] { "--lanes=weighted", "--lane-weights=10.0.0.1=4,10.0.0.2=2", "--client-rate=1000" });
+
+        assertThat(options.getLaneMode(), equalTo(ServerOptions.LaneMode.WEIGHTED));
+        assertThat(options.getLaneWeights().get("10.0.0.1"), equalTo(4));
+        assertThat(options.getLaneWeights().get("10.0.0.2"), equalTo(2));
+        assertThat(options.getClientRate(), equalTo(1000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItRejectsLanesWithNio() {
+        ServerOptions.parse(new String[] { "--lanes=round-robin", "--ingest=nio" });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItRejectsLaneWeightsWithoutWeightedLanes() {
+        ServerOptions.parse(new String[] { "--lanes=round-robin", "--lane-weights=10.0.0.1=4" });
+    }
+
+    @Test
+    public void testItParsesTheListenerCache() {
+        assertThat(ServerOptions.parse(new String[0]).getListenerCache(), equalTo(0));
+        assertThat(ServerOptions.parse(new String[] { "--listener-cache=4096" }).getListenerCache(), equalTo(4096));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItRejectsAListenerCacheThatIsntAPowerOfTwo() {
+        ServerOptions.parse(new String[] { "--listener-cache=1000" });
+    }
+}
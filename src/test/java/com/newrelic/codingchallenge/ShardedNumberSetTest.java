@@ -0,0 +1,98 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ShardedNumberSetTest {
+    @Test
+    public void testItSplitsTheNumberSpaceIntoContiguousShards() {
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(3);
+
+        assertThat(seenNumbers.shard(0).offset(), equalTo(0));
+        assertThat(seenNumbers.shard(1).offset(), equalTo(333333376));
+        assertThat(seenNumbers.shard(2).offset(), equalTo(666666752));
+        assertThat(seenNumbers.shard(2).offset() + seenNumbers.shard(2).capacity(),
+                equalTo(OffHeapNumberSet.NUMBER_SPACE));
+    }
+
+    @Test
+    public void testItKeepsShardBoundariesOnWholeWords() {
+        for (int shards = 1; shards <= 64; shards++) {
+            assertThat(ShardedNumberSet.shardWidth(OffHeapNumberSet.NUMBER_SPACE, shards) % 64, equalTo(0));
+        }
+    }
+
+    @Test
+    public void testItAddsNumbersToTheShardThatOwnsThem() {
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(2);
+
+        assertThat(seenNumbers.add(0), equalTo(true));
+        assertThat(seenNumbers.add(999999999), equalTo(true));
+        assertThat(seenNumbers.add(999999999), equalTo(false));
+
+        assertThat(seenNumbers.shardOf(999999999), equalTo(1));
+        assertThat(seenNumbers.shard(1).contains(999999999), equalTo(true));
+        assertThat(seenNumbers.shard(0).size(), equalTo(1L));
+    }
+
+    @Test
+    public void testItSumsTheSizeOfEveryShard() {
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(4);
+
+        seenNumbers.shard(0).add(1);
+        seenNumbers.shard(3).add(999999998);
+        seenNumbers.shard(3).add(999999999);
+
+        assertThat(seenNumbers.size(), equalTo(3L));
+    }
+
+    @Test
+    public void testItVisitsEveryShardInOrder() {
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(3);
+        List<Integer> visited = new ArrayList<>();
+
+        seenNumbers.add(999999999);
+        seenNumbers.add(333333376);
+        seenNumbers.add(7);
+        seenNumbers.forEach(visited::add);
+
+        assertThat(visited, equalTo(List.of(7, 333333376, 999999999)));
+    }
+
+    @Test
+    public void testItCanHoldJustOneNodesRanges() {
+        // the second and third of four ranges
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(2, 1, 4);
+
+        assertThat(seenNumbers.covers(249999999), equalTo(false));
+        assertThat(seenNumbers.covers(250000000), equalTo(true));
+        assertThat(seenNumbers.covers(750000000), equalTo(false));
+        assertThat(seenNumbers.add(600000000), equalTo(true));
+        assertThat(seenNumbers.contains(600000000), equalTo(true));
+        assertThat(seenNumbers.contains(900000000), equalTo(false));
+        assertThat(seenNumbers.shard(1).offset(), equalTo(2 * seenNumbers.shard(0).capacity()));
+    }
+
+    @Test
+    public void testItCountsAndListsRangesAcrossShards() {
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(3);
+        List<Integer> listed = new ArrayList<>();
+
+        for (int number : new int[] { 5, 333333300, 333333400, 700000000, 999999999 }) {
+            seenNumbers.add(number);
+        }
+
+        seenNumbers.forEach(300000000, 999999999, number -> {
+            listed.add(number);
+            return listed.size() < 3;
+        });
+
+        assertThat(seenNumbers.count(6, 999999998), equalTo(3L));
+        assertThat(listed, equalTo(List.of(333333300, 333333400, 700000000)));
+    }
+}
@@ -0,0 +1,78 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShutdownCoordinatorTest {
+    private Logger logger;
+    private ShutdownCoordinator coordinator;
+
+    @Before
+    public void setup() {
+        logger = mock(Logger.class);
+        coordinator = new ShutdownCoordinator(TimeUnit.SECONDS.toNanos(1), logger);
+    }
+
+    @Test
+    public void testItRunsThePhasesInOrderAndTimesEach() {
+        List<String> ran = new ArrayList<>();
+
+        coordinator.addPhase("ingest", deadline -> ran.add("ingest"));
+        coordinator.addPhase("log", deadline -> ran.add("log"));
+
+        assertThat(coordinator.run(), equalTo(true));
+        assertThat(ran, equalTo(Arrays.asList("ingest", "log")));
+        assertThat(new ArrayList<>(coordinator.timings().keySet()), equalTo(Arrays.asList("ingest", "log")));
+        verify(logger).info(startsWith("Shut down in"));
+    }
+
+    @Test
+    public void testItKeepsGoingAfterAPhaseMissesTheDeadline() {
+        List<Boolean> cleanWhenLogRan = new ArrayList<>();
+
+        coordinator.addPhase("dedup", deadline -> false);
+        coordinator.addPhase("log", deadline -> cleanWhenLogRan.add(coordinator.isClean()));
+
+        assertThat(coordinator.run(), equalTo(false));
+        assertThat(cleanWhenLogRan, equalTo(Arrays.asList(false)));
+    }
+
+    @Test
+    public void testItTreatsAFailingPhaseAsUnfinished() {
+        coordinator.addPhase("dedup", deadline -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThat(coordinator.run(), equalTo(false));
+        verify(logger).severe(contains("boom"));
+    }
+
+    @Test(timeout = 5000)
+    public void testItStopsWaitingForAnExecutorAtTheDeadline() throws InterruptedException {
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        service.execute(() -> {
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException ex) {
+            }
+        });
+
+        boolean finished = ShutdownCoordinator.awaitTermination(service,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertThat(finished, equalTo(false));
+        service.shutdownNow();
+    }
+}
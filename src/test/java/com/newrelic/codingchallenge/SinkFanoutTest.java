@@ -0,0 +1,128 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SinkFanoutTest {
+    private MetricsRegistry metrics;
+    private Logger logger;
+    private Path spillPath;
+    private ExecutorService service;
+
+    private SinkFanout fanout;
+
+    @Before
+    public void setup() throws Exception {
+        metrics = new MetricsRegistry();
+        logger = mock(Logger.class);
+        spillPath = Files.createTempFile("sink", ".spill");
+        service = Executors.newSingleThreadExecutor();
+
+        fanout = new SinkFanout(metrics, logger);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        service.shutdownNow();
+        Files.deleteIfExists(spillPath);
+    }
+
+    @Test
+    public void testItSendsEveryBatchToEverySink() throws Exception {
+        IntRingBuffer first = IntRingBuffer.singleProducer(8, new BusySpinWaitStrategy());
+        IntRingBuffer second = IntRingBuffer.singleProducer(8, new BusySpinWaitStrategy());
+
+        fanout.add("first", first, SinkFanout.OverflowPolicy.BLOCK, null);
+        fanout.add("second", second, SinkFanout.OverflowPolicy.DROP, null);
+
+        fanout.publish(new int[] { 1, 2, 3 }, 1, 2);
+
+        assertThat(first.size(), equalTo(2));
+        assertThat(second.size(), equalTo(2));
+    }
+
+    @Test(timeout = 1000)
+    public void testABlockingSinkWaitsForRoom() throws Exception {
+        IntRingBuffer queue = IntRingBuffer.singleProducer(4, new BusySpinWaitStrategy());
+
+        fanout.add("block", queue, SinkFanout.OverflowPolicy.BLOCK, null);
+        fanout.publish(new int[] { 1, 2, 3, 4 }, 0, 4);
+
+        Future<?> f = service.submit(() -> {
+            fanout.publish(new int[] { 5 }, 0, 1);
+            return null;
+        });
+
+        Thread.sleep(100);
+        assertThat(f.isDone(), equalTo(false));
+
+        queue.drain(new int[1]);
+        f.get();
+
+        assertThat(queue.size(), equalTo(4));
+    }
+
+    @Test
+    public void testADroppingSinkCountsWhatDidntFitWithoutHoldingUpTheOthers() throws Exception {
+        IntRingBuffer full = IntRingBuffer.singleProducer(4, new BusySpinWaitStrategy());
+        IntRingBuffer other = IntRingBuffer.singleProducer(16, new BusySpinWaitStrategy());
+
+        fanout.add("drop", full, SinkFanout.OverflowPolicy.DROP, null);
+        fanout.add("other", other, SinkFanout.OverflowPolicy.BLOCK, null);
+
+        fanout.publish(new int[] { 1, 2, 3 }, 0, 3);
+        fanout.publish(new int[] { 4, 5, 6 }, 0, 3);
+
+        assertThat(full.size(), equalTo(3));
+        assertThat(other.size(), equalTo(6));
+        assertThat(metrics.counter("sink_dropped_total{sink=\"drop\"}").sum(), equalTo(3L));
+    }
+
+    @Test(timeout = 1000)
+    public void testASpillingSinkGetsEverythingOnceItCatchesUp() throws Exception {
+        IntRingBuffer queue = IntRingBuffer.singleProducer(4, new BusySpinWaitStrategy());
+        SpillFile spill = new SpillFile(spillPath);
+        MemorySink sink = new MemorySink("spill");
+        NumberLogger worker = new NumberLogger(sink, new FlushPolicy(TimeUnit.SECONDS.toNanos(1),
+                FlushPolicy.SyncMode.NEVER), queue, spill, new AtomicBoolean(), metrics, logger);
+
+        fanout.add("spill", queue, SinkFanout.OverflowPolicy.SPILL, spill);
+
+        fanout.publish(new int[] { 1, 2, 3 }, 0, 3);
+        fanout.publish(new int[] { 4, 5 }, 0, 2);
+        // the queue has room again, but this goes after what was spilled
+        queue.drain(new int[3]);
+        fanout.publish(new int[] { 6 }, 0, 1);
+
+        assertThat(spill.size(), equalTo(3L));
+        assertThat(metrics.counter("sink_spilled_total{sink=\"spill\"}").sum(), equalTo(3L));
+        assertThat(worker.lag(), equalTo(3L));
+
+        queue.close();
+        worker.run();
+
+        assertThat(sink.numbers(), equalTo(new int[] { 4, 5, 6 }));
+        assertThat(sink.isClosed(), equalTo(true));
+        assertThat(Files.exists(spillPath), equalTo(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testASpillingSinkNeedsASpillFile() {
+        fanout.add("spill", IntRingBuffer.singleProducer(4, new BusySpinWaitStrategy()),
+                SinkFanout.OverflowPolicy.SPILL, null);
+    }
+}
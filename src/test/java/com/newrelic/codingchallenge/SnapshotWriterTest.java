@@ -0,0 +1,79 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotWriterTest {
+    private Path directory;
+    private Path snapshot;
+    private IntRingBuffer readQueue;
+    private IntRingBuffer logQueue;
+    private ShardedNumberSet seenNumbers;
+    private FileSink log;
+    private NumberReader reader;
+    private SnapshotWriter writer;
+
+    @Before
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("snapshot");
+        snapshot = directory.resolve("numbers.snapshot");
+        readQueue = IntRingBuffer.multiProducer(16, new BusySpinWaitStrategy());
+        logQueue = IntRingBuffer.singleProducer(16, new BusySpinWaitStrategy());
+        seenNumbers = new ShardedNumberSet(1);
+
+        MetricsRegistry metrics = new MetricsRegistry();
+        log = new FileSink(new ChannelLogOutput(FileChannel.open(directory.resolve("numbers.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)), new TextLogEncoder(), metrics);
+        reader = new NumberReader(readQueue, logQueue, new DedupCounters(1, 0).stripe(0), seenNumbers.shard(0),
+                new AtomicBoolean(), metrics, mock(Logger.class));
+        writer = new SnapshotWriter(seenNumbers, snapshot, log, 0, List.of(reader),
+                TimeUnit.MILLISECONDS.toNanos(50), mock(Logger.class));
+    }
+
+    @After
+    public void teardown() throws Exception {
+        log.close();
+
+        for (Path file : Files.list(directory).toArray(Path[]::new)) {
+            Files.delete(file);
+        }
+
+        Files.delete(directory);
+    }
+
+    @Test(timeout = 5000)
+    public void testItWaitsForTheLogToHoldEverythingInTheSet() throws Exception {
+        readQueue.publish(new int[] { 1, 2 }, 0, 2);
+        reader.evaluateQueue();
+
+        // seen, but still on the way to the log
+        writer.run();
+
+        assertThat(Files.exists(snapshot), equalTo(false));
+        assertThat(Files.list(directory).count(), equalTo(1L));
+
+        int[] uniques = new int[2];
+        log.write(uniques, 0, logQueue.drain(uniques));
+        log.flush(false);
+        writer.run();
+
+        ShardedNumberSet restored = new ShardedNumberSet(1);
+
+        assertThat(NumberSetSnapshot.read(snapshot, restored), equalTo(4L));
+        assertThat(restored.size(), equalTo(2L));
+    }
+}
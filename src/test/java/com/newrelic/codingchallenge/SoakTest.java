@@ -0,0 +1,404 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+// An end-to-end run of the real server: Main on an ephemeral port, five clients
+// sending random numbers (with duplicates) at a fixed rate for a fixed time,
+// then a terminate. numbers.log has to come out as exactly the set of numbers
+// the clients sent - nothing missing, nothing extra, nothing twice - and the
+// run's throughput, peak heap and shutdown time go into a JSON report so runs
+// can be compared. Every file the server writes goes to a temporary directory,
+// and a log written as segments is converted back to text to be checked.
+//
+// It takes a while, so it only runs with -Dsoak=true; ./gradlew soak sets that
+// and passes on any -Psoak.* properties:
+// - soak.durationSeconds - how long the clients send for (default 10)
+// - soak.rate - numbers per second per client, 0 for as fast as possible
+// (default 200000)
+// - soak.keySpace - numbers are picked from 0 up to this, so it sets how
+// often they repeat (default 10000000)
+// - soak.format - text or binary (default text)
+// - soak.serverArgs - extra server options, space separated
+// - soak.report - where to write the report (default build/reports/soak/report.json)
+public class SoakTest {
+    private static final int CLIENTS = ServerOptions.MAX_CLIENTS;
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private Path directory;
+    private String logFilePath;
+    private String snapshotFilePath;
+    private String segmentsFilePath;
+    private String exportFilePath;
+    private String tcpSpillFilePath;
+    private ExecutorService service;
+
+    @Before
+    public void setup() throws Exception {
+        Assume.assumeTrue("soak runs only with -Dsoak=true", Boolean.getBoolean("soak"));
+
+        directory = Files.createTempDirectory("soak");
+        logFilePath = Main.LOG_FILE_PATH;
+        snapshotFilePath = Main.SNAPSHOT_FILE_PATH;
+        segmentsFilePath = Main.SEGMENTS_FILE_PATH;
+        exportFilePath = Main.EXPORT_FILE_PATH;
+        tcpSpillFilePath = Main.TCP_SPILL_FILE_PATH;
+        Main.LOG_FILE_PATH = directory.resolve("numbers.log").toString();
+        Main.SNAPSHOT_FILE_PATH = directory.resolve("numbers.snapshot").toString();
+        Main.SEGMENTS_FILE_PATH = directory.resolve("numbers.seg").toString();
+        Main.EXPORT_FILE_PATH = directory.resolve("numbers.sorted").toString();
+        Main.TCP_SPILL_FILE_PATH = directory.resolve("tcp-sink.spill").toString();
+        service = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        if (directory == null) {
+            return;
+        }
+
+        service.shutdownNow();
+        Main.LOG_FILE_PATH = logFilePath;
+        Main.SNAPSHOT_FILE_PATH = snapshotFilePath;
+        Main.SEGMENTS_FILE_PATH = segmentsFilePath;
+        Main.EXPORT_FILE_PATH = exportFilePath;
+        Main.TCP_SPILL_FILE_PATH = tcpSpillFilePath;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testTheServerLogsExactlyTheUniqueNumbersItWasSent() throws Exception {
+        int durationSeconds = Integer.getInteger("soak.durationSeconds", 10);
+        int rate = Integer.getInteger("soak.rate", 200_000);
+        int keySpace = Integer.getInteger("soak.keySpace", 10_000_000);
+        boolean binary = System.getProperty("soak.format", "text").equals("binary");
+        String serverArgs = System.getProperty("soak.serverArgs", "").trim();
+        Path reportPath = Paths.get(System.getProperty("soak.report", "build/reports/soak/report.json"));
+
+        int port = freePort();
+        int metricsPort = freePort();
+        List<String> args = new ArrayList<>(List.of("--port=" + port, "--metrics-port=" + metricsPort));
+
+        if (!serverArgs.isEmpty()) {
+            args.addAll(Arrays.asList(serverArgs.split("\\s+")));
+        }
+
+        resetPeakHeap();
+
+        Future<?> server = service.submit(() -> {
+            Main.main(args.toArray(new String[0]));
+            return null;
+        });
+
+        waitForServer(port, server);
+
+        List<Future<Client>> clients = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < CLIENTS; i++) {
+            Client client = new Client(port, i, rate, keySpace, binary, start + TimeUnit.SECONDS.toNanos(
+                    durationSeconds));
+            clients.add(service.submit(client));
+        }
+
+        BitSet expected = new BitSet(keySpace);
+        long sent = 0;
+
+        for (Future<Client> client : clients) {
+            expected.or(client.get()._sent);
+            sent += client.get()._count;
+        }
+
+        // a terminate drops whatever the listeners haven't read yet, so only send
+        // it once the server has taken in everything
+        waitForIngest(metricsPort, sent);
+        long ingestNanos = System.nanoTime() - start;
+        long peakHeap = peakHeap();
+
+        long terminated = System.nanoTime();
+        terminate(port, binary);
+        server.get(DRAIN_TIMEOUT_NANOS, TimeUnit.NANOSECONDS);
+        long shutdownNanos = System.nanoTime() - terminated;
+
+        Verification verification = verify(loggedNumbers(), expected);
+
+        String report = String.format(Locale.ROOT, "{\n" + "  \"timestamp\": %d,\n" + "  \"clients\": %d,\n"
+                + "  \"durationSeconds\": %d,\n" + "  \"ratePerClient\": %d,\n" + "  \"keySpace\": %d,\n"
+                + "  \"format\": \"%s\",\n" + "  \"serverArgs\": \"%s\",\n" + "  \"numbersSent\": %d,\n"
+                + "  \"uniques\": %d,\n" + "  \"numbersPerSecond\": %.1f,\n" + "  \"peakHeapBytes\": %d,\n"
+                + "  \"shutdownMillis\": %.1f,\n" + "  \"logged\": %d,\n" + "  \"missing\": %d,\n"
+                + "  \"unexpected\": %d,\n" + "  \"duplicated\": %d\n" + "}\n", System.currentTimeMillis(),
+                CLIENTS, durationSeconds, rate, keySpace, binary ? "binary" : "text", serverArgs.replace("\"", "\\\""),
+                sent, expected.cardinality(), sent * 1e9 / ingestNanos, peakHeap, shutdownNanos / 1e6,
+                verification._logged, verification._missing, verification._unexpected, verification._duplicated);
+
+        Files.createDirectories(reportPath.toAbsolutePath().getParent());
+        Files.write(reportPath, report.getBytes(StandardCharsets.UTF_8));
+
+        assertThat("missing", verification._missing, equalTo(0L));
+        assertThat("unexpected", verification._unexpected, equalTo(0L));
+        assertThat("duplicated", verification._duplicated, equalTo(0L));
+        assertThat(verification._logged, equalTo((long) expected.cardinality()));
+    }
+
+    // one of the five connections: random numbers from the key space, in ticks of
+    // 10ms so the rate holds over the whole run, remembering everything it sent
+    private static class Client implements Callable<Client> {
+        private final int _port;
+        private final int _rate;
+        private final int _keySpace;
+        private final boolean _binary;
+        private final long _deadline;
+        private final Random _random;
+        private final BitSet _sent;
+        private long _count;
+
+        private Client(int port, int id, int rate, int keySpace, boolean binary, long deadline) {
+            _port = port;
+            _rate = rate;
+            _keySpace = keySpace;
+            _binary = binary;
+            _deadline = deadline;
+            _random = new Random(id);
+            _sent = new BitSet(keySpace);
+        }
+
+        @Override
+        public Client call() throws Exception {
+            int perTick = _rate == 0 ? 4096 : Math.max(1, (int) (_rate * TICK_NANOS / TimeUnit.SECONDS.toNanos(1)));
+            int[] batch = new int[perTick];
+            byte[] text = new byte[perTick * 10];
+
+            try (Socket socket = new Socket("localhost", _port)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(),
+                        64 * 1024));
+
+                if (_binary) {
+                    out.write((NumberDecoder.HANDSHAKE + "\n").getBytes(StandardCharsets.US_ASCII));
+                }
+
+                long next = System.nanoTime();
+
+                while (next < _deadline) {
+                    for (int i = 0; i < perTick; i++) {
+                        batch[i] = _random.nextInt(_keySpace);
+                        _sent.set(batch[i]);
+                    }
+
+                    if (_binary) {
+                        out.writeInt(perTick);
+
+                        for (int number : batch) {
+                            out.writeInt(number);
+                        }
+                    } else {
+                        for (int i = 0; i < perTick; i++) {
+                            encode(batch[i], text, i * 10);
+                        }
+
+                        out.write(text);
+                    }
+
+                    _count += perTick;
+
+                    if (_rate > 0) {
+                        out.flush();
+                        next += TICK_NANOS;
+                        TimeUnit.NANOSECONDS.sleep(next - System.nanoTime());
+                    } else {
+                        next = System.nanoTime();
+                    }
+                }
+
+                out.flush();
+            }
+
+            return this;
+        }
+
+        private static void encode(int number, byte[] into, int offset) {
+            for (int i = offset + 8; i >= offset; i--) {
+                into[i] = (byte) ('0' + number % 10);
+                number /= 10;
+            }
+
+            into[offset + 9] = '\n';
+        }
+    }
+
+    private static class Verification {
+        private long _logged;
+        private long _missing;
+        private long _unexpected;
+        private long _duplicated;
+    }
+
+    // reads numbers.log back against the set the clients sent
+    private static Verification verify(Path log, BitSet expected) throws IOException {
+        Verification verification = new Verification();
+        BitSet logged = new BitSet(expected.size());
+
+        try (BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.US_ASCII)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                int number = Integer.parseInt(line);
+
+                verification._logged++;
+
+                if (number >= expected.size() || !expected.get(number)) {
+                    verification._unexpected++;
+                } else if (logged.get(number)) {
+                    verification._duplicated++;
+                } else {
+                    logged.set(number);
+                }
+            }
+        }
+
+        BitSet missing = (BitSet) expected.clone();
+        missing.andNot(logged);
+        verification._missing = missing.cardinality();
+
+        return verification;
+    }
+
+    // numbers.log, or a text copy of numbers.seg if the server logged segments
+    private Path loggedNumbers() throws IOException {
+        Path segments = Paths.get(Main.SEGMENTS_FILE_PATH);
+
+        if (!Files.exists(segments)) {
+            return Paths.get(Main.LOG_FILE_PATH);
+        }
+
+        Path converted = directory.resolve("numbers.seg.txt");
+        LogConverter.convert(segments, converted);
+
+        return converted;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void waitForServer(int port, Future<?> server) throws Exception {
+        while (true) {
+            if (server.isDone()) {
+                // startup failed; get() throws why
+                server.get();
+            }
+
+            try {
+                new Socket("localhost", port).close();
+                return;
+            } catch (IOException ex) {
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private static void waitForIngest(int metricsPort, long numbers) throws Exception {
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+
+        while (scrape(metricsPort, "ingest_numbers_total") < numbers) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError(String.format("The server only took in %d of %d numbers",
+                        scrape(metricsPort, "ingest_numbers_total"), numbers));
+            }
+
+            Thread.sleep(50);
+        }
+    }
+
+    private static long scrape(int metricsPort, String name) throws IOException {
+        try (InputStream in = new URL(String.format("http://localhost:%d/metrics", metricsPort)).openStream()) {
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (line.startsWith(name + " ")) {
+                    return Long.parseLong(line.substring(name.length() + 1).trim());
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    private static void terminate(int port, boolean binary) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+            if (binary) {
+                out.write((NumberDecoder.HANDSHAKE + "\n").getBytes(StandardCharsets.US_ASCII));
+                out.writeInt(NumberDecoder.BINARY_TERMINATE);
+            } else {
+                out.write("terminate\n".getBytes(StandardCharsets.US_ASCII));
+            }
+
+            out.flush();
+        }
+    }
+
+    // the server and the clients share the JVM, but the clients only hold a
+    // bitset each, so the peak is nearly all the server's
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        return peak;
+    }
+}
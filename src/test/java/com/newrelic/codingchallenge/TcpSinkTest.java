@@ -0,0 +1,113 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TcpSinkTest {
+    private ServerSocket server;
+    private AtomicBoolean abortSignal;
+    private MetricsRegistry metrics;
+    private ExecutorService service;
+
+    private TcpSink sink;
+
+    @Before
+    public void setup() throws Exception {
+        server = new ServerSocket(0);
+        abortSignal = new AtomicBoolean();
+        metrics = new MetricsRegistry();
+        service = Executors.newSingleThreadExecutor();
+
+        sink = new TcpSink("localhost", server.getLocalPort(), abortSignal, metrics, mock(Logger.class));
+    }
+
+    @After
+    public void teardown() throws Exception {
+        service.shutdownNow();
+        server.close();
+    }
+
+    @Test(timeout = 5000)
+    public void testItSendsNumbersInTheBinaryProtocol() throws Exception {
+        Future<List<Integer>> received = service.submit(this::receive);
+
+        sink.write(new int[] { 0, 7, 999999999 }, 0, 3);
+        sink.flush(false);
+        sink.write(new int[] { 42 }, 0, 1);
+        sink.close();
+
+        assertThat(received.get(), equalTo(List.of(0, 7, 999999999, 42)));
+    }
+
+    @Test(timeout = 5000)
+    public void testItKeepsRetryingUntilTheConsumerIsUp() throws Exception {
+        int port = server.getLocalPort();
+        server.close();
+
+        Future<?> f = service.submit(() -> {
+            sink.write(new int[] { 5 }, 0, 1);
+            sink.close();
+            return null;
+        });
+
+        while (metrics.counter("sink_failures_total{sink=\"tcp\"}").sum() == 0) {
+            Thread.sleep(10);
+        }
+
+        server = new ServerSocket(port);
+        ExecutorService receiver = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<List<Integer>> received = receiver.submit(this::receive);
+
+            f.get();
+            assertThat(received.get(), equalTo(List.of(5)));
+        } finally {
+            receiver.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 5000, expected = java.io.IOException.class)
+    public void testItGivesUpOnceAborted() throws Exception {
+        server.close();
+        abortSignal.set(true);
+
+        sink.write(new int[] { 5 }, 0, 1);
+    }
+
+    // decodes everything one connection sends, the way the server would
+    private List<Integer> receive() throws Exception {
+        List<Integer> numbers = new ArrayList<>();
+        NumberDecoder decoder = new NumberDecoder();
+        byte[] buffer = new byte[1024];
+
+        try (Socket socket = server.accept()) {
+            InputStream in = socket.getInputStream();
+            int read;
+
+            while ((read = in.read(buffer)) >= 0) {
+                assertThat(decoder.decode(buffer, 0, read, numbers::add), equalTo(NumberDecoder.Status.CONTINUE));
+            }
+        }
+
+        assertThat(decoder.isBinary(), equalTo(true));
+        assertThat(decoder.isAtBoundary(), equalTo(true));
+        return numbers;
+    }
+}
@@ -0,0 +1,49 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TerminationSignalTest {
+    @Test
+    public void testItRunsHooksOnceWhenSet() {
+        TerminationSignal signal = new TerminationSignal();
+        AtomicInteger runs = new AtomicInteger();
+
+        signal.onSet(runs::incrementAndGet);
+
+        assertThat(runs.get(), equalTo(0));
+
+        signal.set();
+        signal.set();
+
+        assertThat(signal.isSet(), equalTo(true));
+        assertThat(runs.get(), equalTo(1));
+    }
+
+    @Test
+    public void testItRunsALateHookRightAway() {
+        TerminationSignal signal = new TerminationSignal();
+        AtomicInteger runs = new AtomicInteger();
+
+        signal.set();
+        signal.onSet(runs::incrementAndGet);
+
+        assertThat(runs.get(), equalTo(1));
+    }
+
+    @Test(timeout = 1000)
+    public void testItWakesUpWaiters() throws InterruptedException {
+        TerminationSignal signal = new TerminationSignal();
+
+        assertThat(signal.await(10, TimeUnit.MILLISECONDS), equalTo(false));
+
+        new Thread(signal::set).start();
+
+        assertThat(signal.await(1, TimeUnit.SECONDS), equalTo(true));
+    }
+}
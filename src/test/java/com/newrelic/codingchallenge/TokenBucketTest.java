@@ -0,0 +1,31 @@
+package com.newrelic.codingchallenge;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TokenBucketTest {
+    @Test
+    public void testItLetsABurstThroughWithoutWaiting() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1000);
+
+        assertThat(bucket.acquire(1000), equalTo(0L));
+    }
+
+    @Test(timeout = 5000)
+    public void testItWaitsOffWhateverGoesPastTheRate() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1000);
+
+        bucket.acquire(1000);
+
+        long start = System.nanoTime();
+        long waited = bucket.acquire(100);
+
+        // 100 numbers at 1000 a second, less whatever refilled in between
+        assertThat(waited >= TimeUnit.MILLISECONDS.toNanos(50), equalTo(true));
+        assertThat(System.nanoTime() - start >= waited, equalTo(true));
+    }
+}
@@ -0,0 +1,148 @@
+package com.newrelic.codingchallenge;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WarmRestartTest {
+    private Path directory;
+    private Path log;
+    private Path snapshot;
+    private Logger logger;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("warm-restart");
+        log = directory.resolve("numbers.log");
+        snapshot = directory.resolve("numbers.snapshot");
+        logger = mock(Logger.class);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        Files.deleteIfExists(log);
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void testItStartsEmptyWithoutALog() throws Exception {
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(1);
+
+        assertThat(WarmRestart.restore(seenNumbers, log, snapshot, 2, logger), equalTo(0L));
+        assertThat(seenNumbers.size(), equalTo(0L));
+    }
+
+    @Test
+    public void testItDeletesASnapshotWhoseLogIsGone() throws Exception {
+        ShardedNumberSet before = new ShardedNumberSet(1);
+        before.add(5);
+        NumberSetSnapshot.write(snapshot, before, 2);
+
+        WarmRestart.restore(new ShardedNumberSet(1), log, snapshot, 1, logger);
+
+        assertThat(Files.exists(snapshot), equalTo(false));
+    }
+
+    @Test
+    public void testItRestoresTheSetFromTheLog() throws Exception {
+        write(log, "1\n999999999\n1\n123\n");
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(2);
+
+        long length = WarmRestart.restore(seenNumbers, log, snapshot, 2, logger);
+
+        assertThat(length, equalTo(Files.size(log)));
+        assertThat(seenNumbers.size(), equalTo(3L));
+        assertThat(seenNumbers.contains(999999999), equalTo(true));
+    }
+
+    @Test
+    public void testItDropsAnIncompleteLastLine() throws Exception {
+        write(log, "1\n2\n12");
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(1);
+
+        long length = WarmRestart.restore(seenNumbers, log, snapshot, 1, logger);
+
+        assertThat(length, equalTo(4L));
+        assertThat(Files.size(log), equalTo(4L));
+        assertThat(seenNumbers.size(), equalTo(2L));
+    }
+
+    @Test
+    public void testItDropsTheZeroFilledTailOfAMappedLog() throws Exception {
+        Files.write(log, new byte[] { '7', '\n', 0, 0, 0, 0 });
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(1);
+
+        assertThat(WarmRestart.restore(seenNumbers, log, snapshot, 1, logger), equalTo(2L));
+        assertThat(seenNumbers.contains(7), equalTo(true));
+    }
+
+    @Test
+    public void testItLoadsTheSnapshotAndReplaysTheRestOfTheLog() throws Exception {
+        write(log, "5\n6\n");
+
+        ShardedNumberSet before = new ShardedNumberSet(3);
+        before.add(5);
+        before.add(6);
+        before.add(500000000);
+        NumberSetSnapshot.write(snapshot, before, Files.size(log));
+
+        write(log, "5\n6\n7\n");
+
+        // a different shard count reads the same snapshot
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(2);
+        WarmRestart.restore(seenNumbers, log, snapshot, 2, logger);
+
+        assertThat(seenNumbers.size(), equalTo(4L));
+        assertThat(seenNumbers.contains(500000000), equalTo(true));
+        assertThat(seenNumbers.contains(7), equalTo(true));
+    }
+
+    @Test
+    public void testItIgnoresASnapshotOfALongerLog() throws Exception {
+        ShardedNumberSet before = new ShardedNumberSet(1);
+        before.add(5);
+        NumberSetSnapshot.write(snapshot, before, 1000);
+
+        write(log, "6\n");
+
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(1);
+        WarmRestart.restore(seenNumbers, log, snapshot, 1, logger);
+
+        assertThat(seenNumbers.contains(5), equalTo(false));
+        assertThat(seenNumbers.contains(6), equalTo(true));
+        assertThat(Files.exists(snapshot), equalTo(false));
+    }
+
+    @Test
+    public void testItScansALogSplitIntoSeveralChunks() throws Exception {
+        StringBuilder contents = new StringBuilder();
+
+        for (int i = 0; i < 300000; i++) {
+            contents.append(i * 3).append('\n');
+        }
+
+        write(log, contents.toString());
+        ShardedNumberSet seenNumbers = new ShardedNumberSet(4);
+
+        WarmRestart.restore(seenNumbers, log, snapshot, 4, logger);
+
+        assertThat(seenNumbers.size(), equalTo(300000L));
+        assertThat(seenNumbers.contains(899997), equalTo(true));
+        assertThat(seenNumbers.contains(899998), equalTo(false));
+    }
+
+    private static void write(Path path, String contents) throws IOException {
+        Files.write(path, contents.getBytes(StandardCharsets.US_ASCII));
+    }
+}